@@ -33,6 +33,7 @@ package com.google.protobuf;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -68,6 +69,14 @@ public final class CodedInputStream {
     return new CodedInputStream(raf);
   }
 
+  /**
+   * Create a new CodedInputStream reading from memory mapped file. Stream works with
+   * own duplicate of buffer, so many streams could read same mapped file concurrently.
+   */
+  public static CodedInputStream newInstance(ByteBuffer mapped) {
+    return new CodedInputStream(mapped);
+  }
+
   /**
    * Create a new CodedInputStream wrapping the given byte array slice.
    */
@@ -539,6 +548,7 @@ public final class CodedInputStream {
 
   private final byte[] buffer;
   private RandomAccessFile raf;
+  private ByteBuffer mapped;
   private int bufferSize;
   private int bufferSizeAfterLimit;
   private int bufferPos;
@@ -586,6 +596,16 @@ public final class CodedInputStream {
 		input = null;
 	}
 
+	private CodedInputStream(final ByteBuffer mapped) {
+		buffer = new byte[BUFFER_SIZE];
+		this.bufferSize = 0;
+		bufferPos = 0;
+		totalBytesRetired = 0;
+		this.mapped = mapped.duplicate();
+		this.mapped.position(0);
+		input = null;
+	}
+
   private CodedInputStream(final InputStream input) {
     buffer = new byte[BUFFER_SIZE];
     bufferSize = 0;
@@ -761,6 +781,15 @@ public final class CodedInputStream {
     	} else {
     		bufferSize = -1;
     	}
+    } else if (mapped != null) {
+    	// osmand change
+    	totalBytesRetired = mapped.position();
+    	bufferSize = Math.min(mapped.remaining(), buffer.length);
+    	if (bufferSize > 0) {
+    		mapped.get(buffer, 0, bufferSize);
+    	} else {
+    		bufferSize = -1;
+    	}
     } else {
     	bufferSize = (input == null) ? -1 : input.read(buffer);
     }
@@ -882,6 +911,12 @@ public final class CodedInputStream {
         	if(raf != null) {
         		raf.readFully(chunk, pos, chunk.length - pos);
         		n = chunk.length - pos;
+        	} else if (mapped != null) {
+        		if (mapped.remaining() < chunk.length - pos) {
+        			throw InvalidProtocolBufferException.truncatedMessage();
+        		}
+        		mapped.get(chunk, pos, chunk.length - pos);
+        		n = chunk.length - pos;
         	} else {
         		n = (input == null) ? -1 :
         	    input.read(chunk, pos, chunk.length - pos);
@@ -949,6 +984,15 @@ public final class CodedInputStream {
       	 if (n <= 0) {
              throw InvalidProtocolBufferException.truncatedMessage();
          }
+      } else if (mapped != null) {
+        bufferPos = 0;
+        bufferSize = 0;
+        int n = Math.min(size - pos, mapped.remaining());
+        mapped.position(mapped.position() + n);
+        totalBytesRetired = mapped.position();
+        if (n <= 0) {
+          throw InvalidProtocolBufferException.truncatedMessage();
+        }
       } else {
       // Keep refilling the buffer until we get to the point we wanted to skip
       // to.  This has the side effect of ensuring the limits are updated
@@ -975,7 +1019,11 @@ public final class CodedInputStream {
 	  } else {
 		  totalBytesRetired = (int) pointer;
 		  bufferSizeAfterLimit = 0;
-		  raf.seek(pointer);
+		  if (mapped != null) {
+			  mapped.position((int) pointer);
+		  } else {
+			  raf.seek(pointer);
+		  }
 		  bufferPos = 0;
 		  bufferSize = 0;
 	  }
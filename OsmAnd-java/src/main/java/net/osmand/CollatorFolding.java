@@ -0,0 +1,137 @@
+package net.osmand;
+
+import java.text.CollationElementIterator;
+import java.text.Normalizer;
+import java.text.RuleBasedCollator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Folding of chars to classes of primary collator: chars are equal for collator if they have same fold.
+ * Every fold is verified by collator, chars which can't be folded (expansions, scripts without base letters
+ * in the table) are {@link #COMPLEX} and strings with them should be compared by collator.
+ * Folds are calculated lazily once per char, so strings could be compared char by char without allocations
+ * (see {@link CollatorStringMatcher}).
+ */
+public class CollatorFolding {
+
+	public static final char NOT_CALCULATED = 0;
+	// char is ignored by collator (spaces, hyphens)
+	public static final char IGNORABLE = 1;
+	// char should be compared only by collator
+	public static final char COMPLEX = 2;
+
+	// base letters are taken from latin, greek, cyrillic and armenian blocks
+	private static final char MAX_BASE_CHAR = 0x0530;
+
+	private final java.text.Collator collator;
+	private final Locale locale;
+	private final boolean lowerCaseByChars;
+	private final char[] baseFolds = new char[MAX_BASE_CHAR];
+	private final char[] folds = new char[Character.MAX_VALUE + 1];
+
+	public CollatorFolding(java.text.Collator collator, Locale locale) {
+		this.collator = collator;
+		this.locale = locale;
+		// String.toLowerCase has context and language specific rules only for these languages
+		String lang = locale.getLanguage();
+		this.lowerCaseByChars = !lang.equals("tr") && !lang.equals("az") && !lang.equals("lt");
+		initBaseFolds();
+	}
+
+	// base letters equal for collator get same fold (first letter of sorted group)
+	private void initBaseFolds() {
+		List<String> base = new ArrayList<String>();
+		for (char c = 0; c < MAX_BASE_CHAR; c++) {
+			if (Character.isLetterOrDigit(c) && Character.toLowerCase(c) == c) {
+				String s = String.valueOf(c);
+				if (Normalizer.normalize(s, Normalizer.Form.NFD).equals(s) && isSingleCollationElement(s)) {
+					base.add(s);
+				}
+			}
+		}
+		Collections.sort(base, new Comparator<String>() {
+			@Override
+			public int compare(String o1, String o2) {
+				int c = collator.compare(o1, o2);
+				return c != 0 ? c : o1.compareTo(o2);
+			}
+		});
+		char fold = 0;
+		for (int i = 0; i < base.size(); i++) {
+			char c = base.get(i).charAt(0);
+			if (i == 0 || !collator.equals(base.get(i - 1), base.get(i))) {
+				fold = c;
+			}
+			baseFolds[c] = fold;
+		}
+	}
+
+	// expansions (like 'ß' = "ss") can't be compared char by char
+	private boolean isSingleCollationElement(String s) {
+		if (!(collator instanceof RuleBasedCollator)) {
+			return false;
+		}
+		CollationElementIterator it = ((RuleBasedCollator) collator).getCollationElementIterator(s);
+		int primary = 0;
+		int e;
+		while ((e = it.next()) != CollationElementIterator.NULLORDER) {
+			if (CollationElementIterator.primaryOrder(e) != 0) {
+				primary++;
+			}
+		}
+		return primary == 1;
+	}
+
+	public Locale getLocale() {
+		return locale;
+	}
+
+	/**
+	 * @return true if String.toLowerCase for locale could be replaced by Character.toLowerCase of each char
+	 */
+	public boolean isLowerCaseByChars() {
+		return lowerCaseByChars;
+	}
+
+	public char fold(char c) {
+		char f = folds[c];
+		if (f == NOT_CALCULATED) {
+			f = calculateFold(c);
+			folds[c] = f;
+		}
+		return f;
+	}
+
+	private char calculateFold(char c) {
+		if (Character.isSurrogate(c)) {
+			return COMPLEX;
+		}
+		String s = String.valueOf(c);
+		if (collator.equals(s, "")) {
+			return IGNORABLE;
+		}
+		char l = Character.toLowerCase(c);
+		if (l >= MAX_BASE_CHAR || baseFolds[l] == 0) {
+			// letter with diacritics
+			String d = Normalizer.normalize(String.valueOf(l), Normalizer.Form.NFD);
+			for (int i = 1; i < d.length(); i++) {
+				if (Character.getType(d.charAt(i)) != Character.NON_SPACING_MARK) {
+					return COMPLEX;
+				}
+			}
+			l = Character.toLowerCase(d.charAt(0));
+			if (l >= MAX_BASE_CHAR || baseFolds[l] == 0) {
+				return COMPLEX;
+			}
+		}
+		char f = baseFolds[l];
+		if (!isSingleCollationElement(s) || !collator.equals(s, String.valueOf(f))) {
+			return COMPLEX;
+		}
+		return f;
+	}
+}
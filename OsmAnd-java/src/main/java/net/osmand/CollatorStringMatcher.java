@@ -1,5 +1,6 @@
 package net.osmand;
 
+import java.util.Arrays;
 import java.util.Locale;
 
 
@@ -15,6 +16,8 @@ public class CollatorStringMatcher implements StringMatcher {
 	private final Collator collator;
 	private final StringMatcherMode mode;
 	private final String part;
+	// folded part for comparison without collator, null if part should be compared by collator
+	private final FoldedText foldedPart;
 	
 	public static enum StringMatcherMode {
 		// tests only first word as base starts with part
@@ -44,7 +47,15 @@ public class CollatorStringMatcher implements StringMatcher {
 		}
 		this.part = part;
 		this.mode = mode;
-		
+		CollatorFolding folding = OsmAndCollator.getFolding(collator);
+		FoldedText fp = null;
+		if (folding != null) {
+			fp = new FoldedText();
+			if (!fp.fold(folding, part, false, true)) {
+				fp = null;
+			}
+		}
+		this.foldedPart = fp;
 	}
 
 	public Collator getCollator() {
@@ -53,6 +64,12 @@ public class CollatorStringMatcher implements StringMatcher {
 	
 	@Override
 	public boolean matches(String name) {
+		if (foldedPart != null && mode != StringMatcherMode.CHECK_CONTAINS) {
+			Boolean r = cstartsWithFolded(collator, name, foldedPart, mode);
+			if (r != null) {
+				return r;
+			}
+		}
 		return cmatches(collator, name, part, mode);
 	}
 	
@@ -85,6 +102,13 @@ public class CollatorStringMatcher implements StringMatcher {
 	 * @return true if part is contained in base
 	 */
 	public static boolean ccontains(Collator collator, String base, String part) {
+		CollatorFolding folding = OsmAndCollator.getFolding(collator);
+		if (folding != null) {
+			FoldingBuffers b = BUFFERS.get();
+			if (b.text.fold(folding, base, false, false) && b.part.fold(folding, part, false, false)) {
+				return ccontainsFolded(b.text, b.part);
+			}
+		}
 //		int pos = 0;
 //		if (part.length() > 3) {
 //			// improve searching by searching first 3 characters
@@ -133,6 +157,13 @@ public class CollatorStringMatcher implements StringMatcher {
 	 */
 	public static boolean cstartsWith(Collator collator, String fullTextP, String theStart, 
 			boolean checkBeginning, boolean checkSpaces, boolean equals) {
+		CollatorFolding folding = OsmAndCollator.getFolding(collator);
+		if (folding != null) {
+			FoldingBuffers b = BUFFERS.get();
+			if (b.part.fold(folding, theStart, false, true) && b.text.fold(folding, fullTextP, true, true)) {
+				return cstartsWithFolded(b.text, b.part, checkBeginning, checkSpaces, equals);
+			}
+		}
 		// FUTURE: This is not effective code, it runs on each comparison
 		// It would be more efficient to normalize all strings in file and normalize search string before collator  
 		theStart = alignChars(theStart);
@@ -198,5 +229,187 @@ public class CollatorStringMatcher implements StringMatcher {
 	private static boolean isSpace(char c){
 		return !Character.isLetter(c) && !Character.isDigit(c);
 	}
-	
+
+	private static Boolean cstartsWithFolded(Collator collator, String fullText, FoldedText part, StringMatcherMode mode) {
+		FoldingBuffers b = BUFFERS.get();
+		if (!b.text.fold(OsmAndCollator.getFolding(collator), fullText, true, true)) {
+			return null;
+		}
+		switch (mode) {
+		case CHECK_EQUALS_FROM_SPACE:
+			return cstartsWithFolded(b.text, part, true, true, true);
+		case CHECK_STARTS_FROM_SPACE:
+			return cstartsWithFolded(b.text, part, true, true, false);
+		case CHECK_STARTS_FROM_SPACE_NOT_BEGINNING:
+			return cstartsWithFolded(b.text, part, false, true, false);
+		case CHECK_ONLY_STARTS_WITH:
+			return cstartsWithFolded(b.text, part, true, false, false);
+		case CHECK_EQUALS:
+			return cstartsWithFolded(b.text, part, false, false, true);
+		default:
+			return null;
+		}
+	}
+
+	// same as cstartsWith where collator comparison of substrings is replaced by comparison of folds
+	private static boolean cstartsWithFolded(FoldedText searchIn, FoldedText theStart,
+			boolean checkBeginning, boolean checkSpaces, boolean equals) {
+		int searchInLength = searchIn.length;
+		int startLength = theStart.length;
+		if (startLength == 0) {
+			return true;
+		}
+		if (startLength > searchInLength) {
+			return false;
+		}
+		if (checkBeginning) {
+			if (searchIn.equalsFolded(0, startLength, theStart)) {
+				if (equals) {
+					if (startLength == searchInLength || isSpace(searchIn.chars[startLength])) {
+						return true;
+					}
+				} else {
+					return true;
+				}
+			}
+		}
+		if (checkSpaces) {
+			for (int i = 1; i <= searchInLength - startLength; i++) {
+				if (isSpace(searchIn.chars[i - 1]) && !isSpace(searchIn.chars[i])) {
+					if (searchIn.equalsFolded(i, startLength, theStart)) {
+						if (equals) {
+							if (i + startLength == searchInLength || isSpace(searchIn.chars[i + startLength])) {
+								return true;
+							}
+						} else {
+							return true;
+						}
+					}
+				}
+			}
+		}
+		if (!checkBeginning && !checkSpaces && equals) {
+			return searchIn.equalsFolded(0, searchInLength, theStart);
+		}
+		return false;
+	}
+
+	// same as ccontains: some substring of base starting at pos with length up to part length * 2 equals part
+	private static boolean ccontainsFolded(FoldedText base, FoldedText part) {
+		if (base.length <= part.length) {
+			return base.equalsFolded(0, base.length, part);
+		}
+		int first = part.nextFolded(0);
+		if (first == part.length) {
+			return true;
+		}
+		for (int pos = 0; pos <= base.length - part.length + 1; pos++) {
+			int end = Math.min(pos + part.length * 2, base.length);
+			int k = first;
+			for (int j = pos; j < end; j++) {
+				char f = base.folds[j];
+				if (f == CollatorFolding.IGNORABLE) {
+					continue;
+				}
+				if (f != part.folds[k]) {
+					break;
+				}
+				k = part.nextFolded(k + 1);
+				if (k == part.length) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static final ThreadLocal<FoldingBuffers> BUFFERS = new ThreadLocal<FoldingBuffers>() {
+		@Override
+		protected FoldingBuffers initialValue() {
+			return new FoldingBuffers();
+		}
+	};
+
+	private static class FoldingBuffers {
+		final FoldedText text = new FoldedText();
+		final FoldedText part = new FoldedText();
+	}
+
+	/**
+	 * Chars of string (lower cased and aligned same way as in cstartsWith) with their folds,
+	 * buffers are reused for next strings.
+	 */
+	private static class FoldedText {
+		char[] chars = new char[32];
+		char[] folds = new char[32];
+		int length;
+
+		/**
+		 * @return false if string should be compared by collator
+		 */
+		boolean fold(CollatorFolding folding, String s, boolean lowerCase, boolean align) {
+			length = 0;
+			if (lowerCase && (!folding.isLowerCaseByChars() || !folding.getLocale().equals(Locale.getDefault()))) {
+				return false;
+			}
+			for (int i = 0; i < s.length(); i++) {
+				char c = s.charAt(i);
+				if (lowerCase) {
+					// these chars are lower cased depending on context or to several chars
+					if (c == '\u0130' || c == '\u03A3') {
+						return false;
+					}
+					c = Character.toLowerCase(c);
+				}
+				if (align && c == '\u00DF') {
+					if (!add(folding, 's') || !add(folding, 's')) {
+						return false;
+					}
+				} else if (!add(folding, c)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private boolean add(CollatorFolding folding, char c) {
+			char f = folding.fold(c);
+			if (f == CollatorFolding.COMPLEX) {
+				return false;
+			}
+			if (length == chars.length) {
+				chars = Arrays.copyOf(chars, length * 2);
+				folds = Arrays.copyOf(folds, length * 2);
+			}
+			chars[length] = c;
+			folds[length] = f;
+			length++;
+			return true;
+		}
+
+		int nextFolded(int k) {
+			while (k < length && folds[k] == CollatorFolding.IGNORABLE) {
+				k++;
+			}
+			return k;
+		}
+
+		// equivalent of collator.equals(substring(start, start + len), part): ignorable chars are skipped
+		boolean equalsFolded(int start, int len, FoldedText part) {
+			int k = 0;
+			for (int i = start; i < start + len; i++) {
+				char f = folds[i];
+				if (f == CollatorFolding.IGNORABLE) {
+					continue;
+				}
+				k = part.nextFolded(k);
+				if (k == part.length || part.folds[k] != f) {
+					return false;
+				}
+				k++;
+			}
+			return part.nextFolded(k) == part.length;
+		}
+	}
+
 }
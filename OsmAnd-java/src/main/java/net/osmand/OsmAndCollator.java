@@ -1,9 +1,13 @@
 package net.osmand;
 
 import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class OsmAndCollator {
 
+	// folding tables are shared by all primary collators of the same default locale
+	private static final ConcurrentHashMap<Locale, CollatorFolding> foldings = new ConcurrentHashMap<Locale, CollatorFolding>();
+
 	public static net.osmand.Collator primaryCollator() {
 		// romanian locale encounters diacritics as different symbols
 		final java.text.Collator instance = Locale.getDefault().getLanguage().equals("ro")  ||
@@ -11,9 +15,28 @@ public class OsmAndCollator {
 				Locale.getDefault().getLanguage().equals("sk")? java.text.Collator.getInstance(Locale.US)
 				: java.text.Collator.getInstance();
 		instance.setStrength(java.text.Collator.PRIMARY);
-		return wrapCollator(instance);
+		Locale locale = Locale.getDefault();
+		CollatorFolding folding = foldings.get(locale);
+		if (folding == null) {
+			folding = new CollatorFolding((java.text.Collator) instance.clone(), locale);
+			CollatorFolding existing = foldings.putIfAbsent(locale, folding);
+			if (existing != null) {
+				folding = existing;
+			}
+		}
+		return new FoldingCollator(instance, folding);
+	}
+
+	/**
+	 * @return folding of primary collator or null if collator is not created by {@link #primaryCollator()}
+	 */
+	public static CollatorFolding getFolding(net.osmand.Collator collator) {
+		if (collator instanceof FoldingCollator) {
+			return ((FoldingCollator) collator).folding;
+		}
+		return null;
 	}
-	
+
 	public static net.osmand.Collator wrapCollator(final java.text.Collator instance) {
 		return new net.osmand.Collator() {
 			
@@ -38,5 +61,46 @@ public class OsmAndCollator {
 			}
 		};
 	}
-	
+
+	private static class FoldingCollator implements net.osmand.Collator {
+		private final java.text.Collator instance;
+		private final CollatorFolding folding;
+
+		public FoldingCollator(java.text.Collator instance, CollatorFolding folding) {
+			this.instance = instance;
+			this.folding = folding;
+		}
+
+		@Override
+		public int compare(Object o1, Object o2) {
+			return instance.compare(o1, o2);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj == null || getClass() != obj.getClass()) {
+				return false;
+			}
+			return instance.equals(((FoldingCollator) obj).instance);
+		}
+
+		@Override
+		public int hashCode() {
+			return instance.hashCode();
+		}
+
+		@Override
+		public boolean equals(String source, String target) {
+			return instance.equals(source, target);
+		}
+
+		@Override
+		public int compare(String source, String target) {
+			return instance.compare(source, target);
+		}
+	}
+
 }
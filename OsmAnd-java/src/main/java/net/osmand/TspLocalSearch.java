@@ -0,0 +1,288 @@
+package net.osmand;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import net.osmand.data.LatLon;
+import net.osmand.router.HHRouteDataStructure.HHRoutingConfig;
+import net.osmand.router.HHRouteDataStructure.NetworkDBPoint;
+import net.osmand.router.HHRoutePlanner;
+import net.osmand.util.MapUtils;
+
+/**
+ * Ordering of intermediate points by local search: randomized nearest neighbour tours improved with
+ * 2-opt (segment reversal) and Or-opt (moving chains of 1-3 points) moves until no move improves the tour.
+ * Costs could be asymmetric (e.g. routing times, see {@link #readGraph(HHRoutePlanner, List, LatLon, LatLon, HHRoutingConfig)}).
+ * Several restarts are done and they run concurrently if pool is provided.
+ * Result has same format as {@link TspAnt#solve()}: tour starts with start point 0 and ends with end point
+ * (if end point is kept), intermediates are numbered from 1.
+ */
+public class TspLocalSearch {
+
+	// number of restarts from different initial tours
+	public int RESTARTS = 8;
+	// restarts are run concurrently only for bigger number of points
+	public int PARALLEL_MIN_POINTS = 16;
+	// longest chain moved by Or-opt
+	public int OR_OPT_MAX_CHAIN = 3;
+
+	private double[][] graph;
+	private int n;
+	private boolean keepEndPoint;
+
+	public double bestTourLength;
+
+	public TspLocalSearch readGraph(List<LatLon> intermediates, LatLon start, LatLon end) {
+		List<LatLon> l = points(intermediates, start, end);
+		double[][] costs = new double[l.size()][l.size()];
+		for (int i = 0; i < l.size(); i++) {
+			for (int j = 0; j < l.size(); j++) {
+				costs[i][j] = i == j ? 0 : MapUtils.getDistance(l.get(i), l.get(j));
+			}
+		}
+		return readGraph(costs, end != null);
+	}
+
+	/**
+	 * Fills costs with routing times calculated by one many-to-many pass
+	 * ({@link HHRoutePlanner#runRoutingMatrix(List, List, HHRoutingConfig)}).
+	 */
+	public TspLocalSearch readGraph(HHRoutePlanner<? extends NetworkDBPoint> planner, List<LatLon> intermediates,
+			LatLon start, LatLon end, HHRoutingConfig config) throws SQLException, IOException, InterruptedException {
+		List<LatLon> l = points(intermediates, start, end);
+		double[][] costs = planner.runRoutingMatrix(l, l, config);
+		// unreachable pairs are possible only if there is no other way
+		double max = 0;
+		for (double[] row : costs) {
+			for (double c : row) {
+				if (!Double.isInfinite(c)) {
+					max = Math.max(max, c);
+				}
+			}
+		}
+		double penalty = (max + 1) * l.size();
+		for (int i = 0; i < l.size(); i++) {
+			costs[i][i] = 0;
+			for (int j = 0; j < l.size(); j++) {
+				if (Double.isInfinite(costs[i][j])) {
+					costs[i][j] = penalty;
+				}
+			}
+		}
+		return readGraph(costs, end != null);
+	}
+
+	/**
+	 * @param costs [from][to] costs, point 0 is start, last point is end if keepEndPoint
+	 */
+	public TspLocalSearch readGraph(double[][] costs, boolean keepEndPoint) {
+		this.graph = costs;
+		this.n = costs.length;
+		this.keepEndPoint = keepEndPoint;
+		return this;
+	}
+
+	private static List<LatLon> points(List<LatLon> intermediates, LatLon start, LatLon end) {
+		List<LatLon> l = new ArrayList<LatLon>();
+		if (start != null) {
+			l.add(start);
+		}
+		l.addAll(intermediates);
+		if (end != null) {
+			l.add(end);
+		}
+		return l;
+	}
+
+	public int[] solve() {
+		try {
+			return solve(null);
+		} catch (InterruptedException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public int[] solve(ForkJoinPool pool) throws InterruptedException {
+		int[] best = null;
+		// start with 2 other points still has 2 tours when end point isn't fixed
+		if (n <= 2 || (keepEndPoint && n <= 3)) {
+			best = new int[n];
+			for (int i = 0; i < n; i++) {
+				best[i] = i;
+			}
+			bestTourLength = tourLength(best);
+			return best;
+		}
+		List<Callable<int[]>> tasks = new ArrayList<Callable<int[]>>();
+		for (int i = 0; i < RESTARTS; i++) {
+			final long seed = i;
+			tasks.add(new Callable<int[]>() {
+				@Override
+				public int[] call() {
+					int[] tour = initialTour(new Random(seed), seed == 0);
+					improve(tour);
+					return tour;
+				}
+			});
+		}
+		List<int[]> tours = new ArrayList<int[]>();
+		if (pool != null && n >= PARALLEL_MIN_POINTS) {
+			try {
+				for (Future<int[]> f : pool.invokeAll(tasks)) {
+					tours.add(f.get());
+				}
+			} catch (ExecutionException e) {
+				throw new IllegalStateException(e.getCause());
+			}
+		} else {
+			for (Callable<int[]> t : tasks) {
+				try {
+					tours.add(t.call());
+				} catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		}
+		bestTourLength = Double.POSITIVE_INFINITY;
+		for (int[] tour : tours) {
+			double len = tourLength(tour);
+			if (len < bestTourLength) {
+				bestTourLength = len;
+				best = tour;
+			}
+		}
+		return best;
+	}
+
+	public double tourLength(int[] tour) {
+		double len = 0;
+		for (int k = 0; k < tour.length - 1; k++) {
+			len += graph[tour[k]][tour[k + 1]];
+		}
+		return len;
+	}
+
+	// nearest neighbour tour, randomized tours choose one of 3 nearest points
+	private int[] initialTour(Random rnd, boolean greedy) {
+		int last = keepEndPoint ? n - 1 : n;
+		int[] tour = new int[n];
+		boolean[] visited = new boolean[n];
+		visited[0] = true;
+		if (keepEndPoint) {
+			visited[n - 1] = true;
+			tour[n - 1] = n - 1;
+		}
+		int[] nearest = new int[3];
+		for (int k = 1; k < last; k++) {
+			int from = tour[k - 1];
+			int cnt = 0;
+			for (int j = 0; j < n; j++) {
+				if (visited[j]) {
+					continue;
+				}
+				int pos = Math.min(cnt, nearest.length - 1);
+				if (cnt >= nearest.length && graph[from][j] >= graph[from][nearest[pos]]) {
+					continue;
+				}
+				while (pos > 0 && graph[from][j] < graph[from][nearest[pos - 1]]) {
+					nearest[pos] = nearest[pos - 1];
+					pos--;
+				}
+				nearest[pos] = j;
+				cnt++;
+			}
+			int next = nearest[greedy ? 0 : rnd.nextInt(Math.min(cnt, nearest.length))];
+			tour[k] = next;
+			visited[next] = true;
+		}
+		return tour;
+	}
+
+	// applies 2-opt and Or-opt moves while they make tour shorter
+	void improve(int[] tour) {
+		boolean improved = true;
+		while (improved) {
+			improved = twoOpt(tour) || orOpt(tour);
+		}
+	}
+
+	// movable positions are [1, last]
+	private int lastMovable() {
+		return keepEndPoint ? n - 2 : n - 1;
+	}
+
+	private boolean twoOpt(int[] tour) {
+		int last = lastMovable();
+		// prefix sums of forward and backward costs to evaluate reversal with asymmetric costs
+		double[] fwd = new double[n];
+		double[] bwd = new double[n];
+		for (int k = 1; k < n; k++) {
+			fwd[k] = fwd[k - 1] + graph[tour[k - 1]][tour[k]];
+			bwd[k] = bwd[k - 1] + graph[tour[k]][tour[k - 1]];
+		}
+		for (int i = 1; i < last; i++) {
+			int a = tour[i - 1];
+			for (int j = i + 1; j <= last; j++) {
+				boolean hasNext = j + 1 < n;
+				double before = graph[a][tour[i]] + (fwd[j] - fwd[i]) + (hasNext ? graph[tour[j]][tour[j + 1]] : 0);
+				double after = graph[a][tour[j]] + (bwd[j] - bwd[i]) + (hasNext ? graph[tour[i]][tour[j + 1]] : 0);
+				if (after < before - 1e-9) {
+					for (int l = i, r = j; l < r; l++, r--) {
+						int t = tour[l];
+						tour[l] = tour[r];
+						tour[r] = t;
+					}
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private boolean orOpt(int[] tour) {
+		int last = lastMovable();
+		for (int len = 1; len <= OR_OPT_MAX_CHAIN; len++) {
+			for (int i = 1; i + len - 1 <= last; i++) {
+				int e = i + len - 1;
+				int p = tour[i - 1];
+				int s = tour[i];
+				int t = tour[e];
+				boolean hasNext = e + 1 < n;
+				double removeGain = graph[p][s] + (hasNext ? graph[t][tour[e + 1]] - graph[p][tour[e + 1]] : 0);
+				// insert chain between tour[k] and tour[k + 1]
+				for (int k = 0; k < n - 1 || (!keepEndPoint && k == n - 1); k++) {
+					if (k >= i - 1 && k <= e) {
+						continue;
+					}
+					boolean insertHasNext = k + 1 < n;
+					double insertCost = graph[tour[k]][s] + (insertHasNext ? graph[t][tour[k + 1]] - graph[tour[k]][tour[k + 1]] : 0);
+					if (insertCost < removeGain - 1e-9) {
+						moveChain(tour, i, e, k);
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	private static void moveChain(int[] tour, int i, int e, int k) {
+		int len = e - i + 1;
+		int[] chain = new int[len];
+		System.arraycopy(tour, i, chain, 0, len);
+		if (k > e) {
+			System.arraycopy(tour, e + 1, tour, i, k - e);
+			System.arraycopy(chain, 0, tour, k - len + 1, len);
+		} else {
+			System.arraycopy(tour, k + 1, tour, k + 1 + len, i - k - 1);
+			System.arraycopy(chain, 0, tour, k + 1, len);
+		}
+	}
+}
@@ -10,6 +10,8 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.RandomAccessFile;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -20,6 +22,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -60,6 +66,8 @@ import net.osmand.binary.BinaryMapPoiReaderAdapter.PoiRegion;
 import net.osmand.binary.BinaryMapPoiReaderAdapter.PoiSubType;
 import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
 import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.NameIndexCache.NameIndexTable;
+import net.osmand.binary.NameIndexCache.NameIndexTableBuilder;
 import net.osmand.binary.BinaryMapTransportReaderAdapter.TransportIndex;
 import net.osmand.binary.OsmandOdb.MapDataBlock;
 import net.osmand.binary.OsmandOdb.OsmAndMapIndex.MapDataBox;
@@ -105,6 +113,10 @@ public class BinaryMapIndexReader {
 	
 	
 	private final RandomAccessFile raf;
+	// not null if file is memory mapped, buffer is shared between all readers of the same file
+	private final ByteBuffer mappedFile;
+	// raf is owned by another reader and shouldn't be closed
+	private final boolean sharedFile;
 	protected final File file;
 	/*private*/ int version;
 	/*private*/ long dateCreated;
@@ -121,6 +133,8 @@ public class BinaryMapIndexReader {
 	TLongObjectHashMap<IncompleteTransportRoute> incompleteTransportRoutes = null;
 	
 	protected CodedInputStream codedIS;
+	// not null if name index tables are cached in sidecar file
+	NameIndexCache nameIndexCache;
 
 	private final BinaryMapTransportReaderAdapter transportAdapter;
 	private final BinaryMapPoiReaderAdapter poiAdapter;
@@ -132,22 +146,24 @@ public class BinaryMapIndexReader {
 
 
 	public BinaryMapIndexReader(final RandomAccessFile raf, File file) throws IOException {
-		this.raf = raf;
-		this.file = file;
-		codedIS = CodedInputStream.newInstance(raf);
-		codedIS.setSizeLimit(Integer.MAX_VALUE); // 2048 MB
-		transportAdapter = new BinaryMapTransportReaderAdapter(this);
-		addressAdapter = new BinaryMapAddressReaderAdapter(this);
-		poiAdapter = new BinaryMapPoiReaderAdapter(this);
-		routeAdapter = new BinaryMapRouteReaderAdapter(this);
-		hhAdapter = new BinaryHHRouteReaderAdapter(this);
-		init();
+		this(raf, file, true, false);
 	}
 
 	public BinaryMapIndexReader(final RandomAccessFile raf, File file, boolean init) throws IOException {
+		this(raf, file, init, false);
+	}
+
+	/**
+	 * @param memoryMapped read file through memory mapped buffer, such reader could be copied
+	 *                     with {@link #BinaryMapIndexReader(BinaryMapIndexReader)} for each thread
+	 *                     without opening the file again
+	 */
+	public BinaryMapIndexReader(final RandomAccessFile raf, File file, boolean init, boolean memoryMapped) throws IOException {
 		this.raf = raf;
 		this.file = file;
-		codedIS = CodedInputStream.newInstance(raf);
+		this.mappedFile = memoryMapped ? mapFile(raf) : null;
+		this.sharedFile = false;
+		codedIS = mappedFile != null ? CodedInputStream.newInstance(mappedFile) : CodedInputStream.newInstance(raf);
 		codedIS.setSizeLimit(Integer.MAX_VALUE); // 2048 MB
 		transportAdapter = new BinaryMapTransportReaderAdapter(this);
 		addressAdapter = new BinaryMapAddressReaderAdapter(this);
@@ -160,12 +176,29 @@ public class BinaryMapIndexReader {
 	}
 
 	public BinaryMapIndexReader(final RandomAccessFile raf, BinaryMapIndexReader referenceToSameFile) throws IOException {
+		this(raf, null, false, referenceToSameFile);
+	}
+
+	/**
+	 * Creates cheap reader over the memory mapped file of reference reader. Reader has its own
+	 * read position, so it could be used by another thread concurrently with the reference reader.
+	 * File stays open till the reference reader is closed.
+	 */
+	public BinaryMapIndexReader(BinaryMapIndexReader mappedReference) throws IOException {
+		this(mappedReference.raf, getMappedFile(mappedReference), true, mappedReference);
+	}
+
+	private BinaryMapIndexReader(final RandomAccessFile raf, ByteBuffer mappedFile, boolean sharedFile,
+								 BinaryMapIndexReader referenceToSameFile) throws IOException {
 		this.raf = raf;
 		this.file = referenceToSameFile.file;
-		codedIS = CodedInputStream.newInstance(raf);
+		this.mappedFile = mappedFile;
+		this.sharedFile = sharedFile;
+		codedIS = mappedFile != null ? CodedInputStream.newInstance(mappedFile) : CodedInputStream.newInstance(raf);
 		codedIS.setSizeLimit(Integer.MAX_VALUE); // 2048 MB
 		version = referenceToSameFile.version;
 		dateCreated = referenceToSameFile.dateCreated;
+		nameIndexCache = referenceToSameFile.nameIndexCache;
 		transportAdapter = new BinaryMapTransportReaderAdapter(this);
 		addressAdapter = new BinaryMapAddressReaderAdapter(this);
 		poiAdapter = new BinaryMapPoiReaderAdapter(this);
@@ -182,6 +215,24 @@ public class BinaryMapIndexReader {
 		calculateCenterPointForRegions();
 	}
 
+	private static ByteBuffer mapFile(RandomAccessFile raf) throws IOException {
+		long length = raf.length();
+		if (length > Integer.MAX_VALUE) {
+			throw new IOException("File is too big to be memory mapped: " + length);
+		}
+		return raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+	}
+
+	private static ByteBuffer getMappedFile(BinaryMapIndexReader reader) {
+		if (reader.mappedFile == null) {
+			throw new IllegalArgumentException("Reader " + reader.file + " is not memory mapped");
+		}
+		return reader.mappedFile;
+	}
+
+	public boolean isMemoryMapped() {
+		return mappedFile != null;
+	}
 
 	public long getDateCreated() {
 		return dateCreated;
@@ -436,6 +487,10 @@ public class BinaryMapIndexReader {
 		return file;
 	}
 
+	public void setNameIndexCache(NameIndexCache nameIndexCache) {
+		this.nameIndexCache = nameIndexCache;
+	}
+
 	public String getCountryName() {
 		List<String> rg = getRegionNames();
 		if(rg.size() > 0) {
@@ -962,12 +1017,7 @@ public class BinaryMapIndexReader {
 						codedIS.popLimit(oldLimit);
 					}
 
-					Collections.sort(foundSubtrees, new Comparator<MapTree>() {
-						@Override
-						public int compare(MapTree o1, MapTree o2) {
-							return o1.mapDataBlock < o2.mapDataBlock ? -1 : (o1.mapDataBlock == o2.mapDataBlock ? 0 : 1);
-						}
-					});
+					Collections.sort(foundSubtrees, MAP_DATA_BLOCK_COMPARATOR);
 					for (MapTree tree : foundSubtrees) {
 						if (!req.isCancelled()) {
 							codedIS.seek(tree.mapDataBlock);
@@ -991,6 +1041,174 @@ public class BinaryMapIndexReader {
 
 	
 
+	/**
+	 * Parallel version of {@link #searchMapIndex(SearchRequest, MapIndex)}: subtrees bounds search and data blocks
+	 * decoding are split between threads of the pool, each task reads through its own copy of the memory mapped reader.
+	 * Objects are published to request on the calling thread in the same order as sequential search does,
+	 * so result matcher doesn't need to be thread safe (search filter does).
+	 * Falls back to sequential search if reader is not memory mapped.
+	 */
+	public List<BinaryMapDataObject> searchMapIndex(SearchRequest<BinaryMapDataObject> req, MapIndex filterMapIndex,
+	                                                ForkJoinPool pool) throws IOException {
+		if (mappedFile == null || pool == null) {
+			return searchMapIndex(req, filterMapIndex);
+		}
+		req.numberOfVisitedObjects = 0;
+		req.numberOfAcceptedObjects = 0;
+		req.numberOfAcceptedSubtrees = 0;
+		req.numberOfReadSubtrees = 0;
+		for (final MapIndex mapIndex : mapIndexes) {
+			if (filterMapIndex != null && mapIndex != filterMapIndex) {
+				continue;
+			}
+			// lazy initializing rules
+			if (mapIndex.encodingRules.isEmpty()) {
+				codedIS.seek(mapIndex.filePointer);
+				int oldLimit = codedIS.pushLimit(mapIndex.length);
+				readMapIndex(mapIndex, true);
+				codedIS.popLimit(oldLimit);
+			}
+			for (final MapRoot index : mapIndex.getRoots()) {
+				if (index.minZoom <= req.zoom && index.maxZoom >= req.zoom) {
+					if (index.right < req.left || index.left > req.right || index.top > req.bottom || index.bottom < req.top) {
+						continue;
+					}
+					// lazy initializing trees
+					if (index.trees == null) {
+						index.trees = new ArrayList<MapTree>();
+						codedIS.seek(index.filePointer);
+						int oldLimit = codedIS.pushLimit(index.length);
+						readMapLevel(index);
+						codedIS.popLimit(oldLimit);
+					}
+
+					List<Callable<MapSearchWorkerRequest>> boundsTasks = new ArrayList<Callable<MapSearchWorkerRequest>>();
+					for (final MapTree tree : index.trees) {
+						if (tree.right < req.left || tree.left > req.right || tree.top > req.bottom || tree.bottom < req.top) {
+							continue;
+						}
+						final MapSearchWorkerRequest wreq = new MapSearchWorkerRequest(req);
+						boundsTasks.add(new Callable<MapSearchWorkerRequest>() {
+							@Override
+							public MapSearchWorkerRequest call() throws Exception {
+								BinaryMapIndexReader reader = new BinaryMapIndexReader(BinaryMapIndexReader.this);
+								reader.codedIS.seek(tree.filePointer);
+								int oldLimit = reader.codedIS.pushLimit(tree.length);
+								reader.searchMapTreeBounds(tree, index, wreq, wreq.foundSubtrees);
+								reader.codedIS.popLimit(oldLimit);
+								return wreq;
+							}
+						});
+					}
+					List<MapTree> foundSubtrees = new ArrayList<MapTree>();
+					for (MapSearchWorkerRequest wreq : invokeAll(pool, boundsTasks)) {
+						foundSubtrees.addAll(wreq.foundSubtrees);
+						wreq.mergeStatistics();
+					}
+					Collections.sort(foundSubtrees, MAP_DATA_BLOCK_COMPARATOR);
+
+					List<Callable<MapSearchWorkerRequest>> blockTasks = new ArrayList<Callable<MapSearchWorkerRequest>>();
+					int chunk = Math.max(1, foundSubtrees.size() / (pool.getParallelism() * 4));
+					for (int i = 0; i < foundSubtrees.size(); i += chunk) {
+						final List<MapTree> trees = foundSubtrees.subList(i, Math.min(i + chunk, foundSubtrees.size()));
+						final MapSearchWorkerRequest wreq = new MapSearchWorkerRequest(req);
+						blockTasks.add(new Callable<MapSearchWorkerRequest>() {
+							@Override
+							public MapSearchWorkerRequest call() throws Exception {
+								BinaryMapIndexReader reader = new BinaryMapIndexReader(BinaryMapIndexReader.this);
+								for (MapTree tree : trees) {
+									if (!wreq.isCancelled()) {
+										reader.codedIS.seek(tree.mapDataBlock);
+										int length = reader.codedIS.readRawVarint32();
+										int oldLimit = reader.codedIS.pushLimit(length);
+										reader.readMapDataBlocks(wreq, tree, mapIndex);
+										reader.codedIS.popLimit(oldLimit);
+									}
+								}
+								return wreq;
+							}
+						});
+					}
+					for (MapSearchWorkerRequest wreq : invokeAll(pool, blockTasks)) {
+						wreq.mergeStatistics();
+						for (BinaryMapDataObject obj : wreq.getSearchResults()) {
+							if (req.isCancelled()) {
+								break;
+							}
+							req.publish(obj);
+						}
+					}
+				}
+			}
+		}
+		if (req.numberOfVisitedObjects > 0 && req.log) {
+			log.info("Search is done. Visit " + req.numberOfVisitedObjects + " objects. Read " + req.numberOfAcceptedObjects + " objects."); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			log.info("Read " + req.numberOfReadSubtrees + " subtrees. Go through " + req.numberOfAcceptedSubtrees + " subtrees.");   //$NON-NLS-1$//$NON-NLS-2$//$NON-NLS-3$
+		}
+		return req.getSearchResults();
+	}
+
+	private static <T> List<T> invokeAll(ForkJoinPool pool, List<Callable<T>> tasks) throws IOException {
+		List<T> results = new ArrayList<T>(tasks.size());
+		try {
+			for (Future<T> f : pool.invokeAll(tasks)) {
+				results.add(f.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+		return results;
+	}
+
+	private static final Comparator<MapTree> MAP_DATA_BLOCK_COMPARATOR = new Comparator<MapTree>() {
+		@Override
+		public int compare(MapTree o1, MapTree o2) {
+			return o1.mapDataBlock < o2.mapDataBlock ? -1 : (o1.mapDataBlock == o2.mapDataBlock ? 0 : 1);
+		}
+	};
+
+	// request of parallel search task: own caches and statistics, no result matcher
+	private static class MapSearchWorkerRequest extends SearchRequest<BinaryMapDataObject> {
+		private final SearchRequest<BinaryMapDataObject> parent;
+		private final List<MapTree> foundSubtrees = new ArrayList<MapTree>();
+
+		MapSearchWorkerRequest(SearchRequest<BinaryMapDataObject> parent) {
+			this.parent = parent;
+			left = parent.left;
+			right = parent.right;
+			top = parent.top;
+			bottom = parent.bottom;
+			zoom = parent.zoom;
+			searchFilter = parent.searchFilter;
+			log = false;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return parent.isCancelled();
+		}
+
+		void mergeStatistics() {
+			parent.numberOfVisitedObjects += numberOfVisitedObjects;
+			parent.numberOfAcceptedObjects += numberOfAcceptedObjects;
+			parent.numberOfReadSubtrees += numberOfReadSubtrees;
+			parent.numberOfAcceptedSubtrees += numberOfAcceptedSubtrees;
+			parent.stat.add(stat);
+			if (isOcean()) {
+				parent.publishOceanTile(true);
+			}
+			if (isLand()) {
+				parent.publishOceanTile(false);
+			}
+		}
+	}
+
 	protected void readMapDataBlocks(SearchRequest<BinaryMapDataObject> req, MapTree tree, MapIndex root) throws IOException {
 		List<BinaryMapDataObject> tempResults = null;
 		long baseId = 0;
@@ -1667,7 +1885,9 @@ public class BinaryMapIndexReader {
 
 	public void close() throws IOException {
 		if (codedIS != null) {
-			raf.close();
+			if (!sharedFile) {
+				raf.close();
+			}
 			codedIS = null;
 			mapIndexes.clear();
 			addressIndexes.clear();
@@ -1713,6 +1933,19 @@ public class BinaryMapIndexReader {
 							CodedOutputStream.computeRawVarint32Size(sizeL);
 		}
 
+		public void add(MapObjectStat stat) {
+			lastStringNamesSize += stat.lastStringNamesSize;
+			lastObjectIdSize += stat.lastObjectIdSize;
+			lastObjectHeaderInfo += stat.lastObjectHeaderInfo;
+			lastObjectAdditionalTypes += stat.lastObjectAdditionalTypes;
+			lastObjectTypes += stat.lastObjectTypes;
+			lastObjectCoordinates += stat.lastObjectCoordinates;
+			lastObjectLabelCoordinates += stat.lastObjectLabelCoordinates;
+			lastObjectSize += stat.lastObjectSize;
+			lastBlockStringTableSize += stat.lastBlockStringTableSize;
+			lastBlockHeaderInfo += stat.lastBlockHeaderInfo;
+		}
+
 		public void clearObjectStats() {
 			lastStringNamesSize = 0;
 			lastObjectIdSize = 0;
@@ -2445,6 +2678,65 @@ public class BinaryMapIndexReader {
 
 	}
 
+	/**
+	 * Reads name index table at current position till the limit, table is taken from {@link NameIndexCache}
+	 * if it's set for the reader.
+	 */
+	void readIndexedStringTable(Collator instance, List<String> queries, List<TIntArrayList> listOffsets, TIntArrayList matchedCharacters) throws IOException {
+		if (nameIndexCache == null) {
+			readIndexedStringTable(instance, queries, "", listOffsets, matchedCharacters);
+			return;
+		}
+		int tableOffset = codedIS.getTotalBytesRead();
+		NameIndexTable table = nameIndexCache.getTable(tableOffset);
+		if (table == null) {
+			NameIndexTableBuilder builder = new NameIndexTableBuilder();
+			readIndexedStringTable(builder, "");
+			table = builder.build();
+			nameIndexCache.putTable(tableOffset, table);
+		} else {
+			codedIS.skipRawBytes(codedIS.getBytesUntilLimit());
+		}
+		table.search(instance, queries, listOffsets, matchedCharacters);
+	}
+
+	private void readIndexedStringTable(NameIndexTableBuilder builder, String prefix) throws IOException {
+		int entry = -1;
+		String key = null;
+		while (true) {
+			int t = codedIS.readTag();
+			int tag = WireFormat.getTagFieldNumber(t);
+			switch (tag) {
+			case 0:
+				return;
+			case OsmandOdb.IndexedStringTable.KEY_FIELD_NUMBER :
+				key = prefix + codedIS.readString();
+				entry = builder.addKey(key);
+				break;
+			case OsmandOdb.IndexedStringTable.VAL_FIELD_NUMBER :
+				int val = readInt();
+				if (entry >= 0) {
+					builder.addValue(val);
+				}
+				break;
+			case OsmandOdb.IndexedStringTable.SUBTABLES_FIELD_NUMBER :
+				int len = codedIS.readRawVarint32();
+				int oldLim = codedIS.pushLimit(len);
+				if (key != null) {
+					readIndexedStringTable(builder, key);
+					builder.endSubtree(entry);
+				} else {
+					codedIS.skipRawBytes(codedIS.getBytesUntilLimit());
+				}
+				codedIS.popLimit(oldLim);
+				break;
+			default:
+				skipUnknownField(t);
+				break;
+			}
+		}
+	}
+
 	void readIndexedStringTable(Collator instance, List<String> queries, String prefix, List<TIntArrayList> listOffsets, TIntArrayList matchedCharacters) throws IOException {
 		String key = null;
 		boolean[] matched = new boolean[matchedCharacters.size()];
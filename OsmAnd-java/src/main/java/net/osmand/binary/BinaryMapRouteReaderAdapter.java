@@ -28,6 +28,7 @@ import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TimeZone;
 
 import gnu.trove.iterator.TLongObjectIterator;
 import gnu.trove.list.array.TIntArrayList;
@@ -42,6 +43,8 @@ public class BinaryMapRouteReaderAdapter {
 	private static class RouteTypeCondition implements StringExternalizable<RouteDataBundle> {
 		String condition = "";
 		OpeningHoursParser.OpeningHours hours = null;
+		// minutes of week when condition is active, null if condition isn't weekly (see OpeningHours.getWeeklyMinutes)
+		long[] weeklyMinutes;
 		String value;
 		int ruleid;
 
@@ -187,17 +190,43 @@ public class BinaryMapRouteReaderAdapter {
 
 		public int conditionalValue(long time) {
 			if (conditional()) {
-				Calendar i = Calendar.getInstance();
-				i.setTimeInMillis(time);
+				int minute = -1;
+				Calendar i = null;
 				for (RouteTypeCondition c : conditions) {
-					if (c.hours != null && c.hours.isOpenedForTime(i)) {
-						return c.ruleid;
+					if (c.weeklyMinutes != null) {
+						if (minute < 0) {
+							minute = minuteOfWeek(time);
+						}
+						if ((c.weeklyMinutes[minute >> 6] & (1L << (minute & 63))) != 0) {
+							return c.ruleid;
+						}
+					} else if (c.hours != null) {
+						if (i == null) {
+							i = Calendar.getInstance();
+							i.setTimeInMillis(time);
+						}
+						if (c.hours.isOpenedForTime(i)) {
+							return c.ruleid;
+						}
 					}
 				}
 			}
 			return 0;
 		}
 
+		// minute of week in default time zone, 0 is Monday 00:00
+		private static int minuteOfWeek(long time) {
+			// default time zone could be changed, same as for Calendar.getInstance()
+			long local = time + TimeZone.getDefault().getOffset(time);
+			long minutes = local / 60000;
+			if (local % 60000 < 0) {
+				minutes--;
+			}
+			// 1 January 1970 is Thursday
+			long m = (minutes + 3 * 24 * 60) % (7 * 24 * 60);
+			return (int) (m < 0 ? m + 7 * 24 * 60 : m);
+		}
+
 		public float maxSpeed(int profile) {
 			if (type == (MAXSPEED + profile)) {
 				return floatValue;
@@ -256,6 +285,7 @@ public class BinaryMapRouteReaderAdapter {
 							cond.condition = cond.condition.substring(0, cond.condition.length() - 1).trim();
 						}
 						cond.hours = OpeningHoursParser.parseOpenedHours(cond.condition);
+						cond.weeklyMinutes = cond.hours == null ? null : cond.hours.getWeeklyMinutes();
 						conditions.add(cond);
 					}
 				}
@@ -337,7 +367,8 @@ public class BinaryMapRouteReaderAdapter {
 			return OsmandOdb.OsmAndStructure.ROUTINGINDEX_FIELD_NUMBER;
 		}
 		
-		public int searchRouteEncodingRule(String tag, String value) {
+		// route regions are shared by routing contexts of concurrent calculations (copies of readers)
+		public synchronized int searchRouteEncodingRule(String tag, String value) {
 			if(decodingRules == null) {
 				decodingRules = new LinkedHashMap<String, Integer>();
 				for(int i = 1; i < routeEncodingRules.size(); i++) {
@@ -365,7 +396,7 @@ public class BinaryMapRouteReaderAdapter {
 			return routeEncodingRules.get(id);
 		}
 
-		public void initRouteEncodingRule(int id, String tags, String val) {
+		public synchronized void initRouteEncodingRule(int id, String tags, String val) {
 			decodingRules = null;
 			while (routeEncodingRules.size() <= id) {
 				routeEncodingRules.add(null);
@@ -478,10 +509,12 @@ public class BinaryMapRouteReaderAdapter {
 				return o;
 			}
 
-			if (routeEncodingRules.isEmpty()) {
-				routeEncodingRules.addAll(o.region.routeEncodingRules);
-				referenceRouteRegion = o.region;
-				return o;
+			synchronized (this) {
+				if (routeEncodingRules.isEmpty()) {
+					routeEncodingRules.addAll(o.region.routeEncodingRules);
+					referenceRouteRegion = o.region;
+					return o;
+				}
 			}
 			RouteDataObject rdo = new RouteDataObject(this);
 			rdo.pointsX = o.pointsX;
@@ -505,14 +538,7 @@ public class BinaryMapRouteReaderAdapter {
 						rdo.pointTypes[i] = new int[o.pointTypes[i].length];
 						for (int j = 0; j < o.pointTypes[i].length; j++) {
 							RouteTypeRule tp = o.region.routeEncodingRules.get(o.pointTypes[i][j]);
-							int ruleId = searchRouteEncodingRule(tp.getTag(), tp.getValue());
-							if(ruleId != -1) {
-								rdo.pointTypes[i][j] = ruleId;
-							} else {
-								ruleId = routeEncodingRules.size() ;
-								initRouteEncodingRule(ruleId, tp.getTag(), tp.getValue());
-								rdo.pointTypes[i][j] = ruleId;
-							}
+							rdo.pointTypes[i][j] = findOrCreateRouteType(tp.getTag(), tp.getValue());
 						}
 					}
 				}
@@ -522,14 +548,8 @@ public class BinaryMapRouteReaderAdapter {
 				rdo.names = new TIntObjectHashMap<>();
 				for (int i = 0; i < o.nameIds.length; i++) {
 					RouteTypeRule tp = o.region.routeEncodingRules.get(o.nameIds[i]);
-					int ruleId = searchRouteEncodingRule(tp.getTag(), null);
-					if(ruleId != -1) {
-						rdo.nameIds[i] = ruleId;
-					} else {
-						ruleId = routeEncodingRules.size() ;
-						initRouteEncodingRule(ruleId, tp.getTag(), null);
-						rdo.nameIds[i] = ruleId;
-					}
+					int ruleId = findOrCreateRouteType(tp.getTag(), null);
+					rdo.nameIds[i] = ruleId;
 					rdo.names.put(ruleId, o.names.get(o.nameIds[i]));
 				}
 			}
@@ -543,14 +563,15 @@ public class BinaryMapRouteReaderAdapter {
 						// rdo.pointNames[i] = new String[o.pointNameTypes[i].length];
 						for (int j = 0; j < o.pointNameTypes[i].length; j++) {
 							RouteTypeRule tp = o.region.routeEncodingRules.get(o.pointNameTypes[i][j]);
-							int ruleId = searchRouteEncodingRule(tp.getTag(), null);
-							if(ruleId != -1) {
-								rdo.pointNameTypes[i][j] = ruleId;
-							} else {
-								ruleId = routeEncodingRules.size() ;
-								initRouteEncodingRule(ruleId, tp.getTag(), tp.getValue());
-								rdo.pointNameTypes[i][j] = ruleId;
+							int ruleId;
+							synchronized (this) {
+								ruleId = searchRouteEncodingRule(tp.getTag(), null);
+								if (ruleId == -1) {
+									ruleId = routeEncodingRules.size();
+									initRouteEncodingRule(ruleId, tp.getTag(), tp.getValue());
+								}
 							}
+							rdo.pointNameTypes[i][j] = ruleId;
 							// rdo.pointNames[i][j] = o.pointNames[i][j];
 						}
 					}
@@ -560,7 +581,7 @@ public class BinaryMapRouteReaderAdapter {
 		}
 
 
-		public int findOrCreateRouteType(String tag, String value) {
+		public synchronized int findOrCreateRouteType(String tag, String value) {
 			int ruleId = searchRouteEncodingRule(tag, value);
 			if(ruleId == -1) {
 				ruleId = routeEncodingRules.size() ;
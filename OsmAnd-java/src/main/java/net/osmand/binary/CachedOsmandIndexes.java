@@ -38,6 +38,8 @@ public class CachedOsmandIndexes {
 	private OsmAndStoredIndex.Builder storedIndexBuilder;
 	private Log log = PlatformUtil.getLog(CachedOsmandIndexes.class);
 	private boolean hasChanged = false;
+	// directory of name index sidecar files (see NameIndexCache), not used if null
+	private File nameIndexDir;
 	public static final String INDEXES_DEFAULT_FILENAME = "indexes.cache";
 
 	public static final int VERSION = 3;
@@ -210,9 +212,19 @@ public class CachedOsmandIndexes {
 		} else {
 			reader = initReaderFromFileIndex(found, mf, f);
 		}
+		if (nameIndexDir != null) {
+			reader.setNameIndexCache(new NameIndexCache(nameIndexDir, f));
+		}
 		return reader;
 	}
 
+	/**
+	 * Enables caching of address and poi name index tables in files of directory (usually directory of indexes cache).
+	 */
+	public void setNameIndexDir(File nameIndexDir) {
+		this.nameIndexDir = nameIndexDir;
+	}
+
 
 	public FileIndex getFileIndex(File f, boolean init) throws IOException {
 		FileIndex found = null;
@@ -0,0 +1,486 @@
+package net.osmand.binary;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.commons.logging.Log;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import net.osmand.Collator;
+import net.osmand.CollatorFolding;
+import net.osmand.CollatorStringMatcher;
+import net.osmand.CollatorStringMatcher.StringMatcherMode;
+import net.osmand.OsmAndCollator;
+import net.osmand.PlatformUtil;
+
+/**
+ * Sidecar cache of name index tables (OsmandOdb.IndexedStringTable) of one obf file: address and poi name
+ * prefixes with offsets of their atoms. Tables are read from obf once, kept in memory and stored in file
+ * next to {@link CachedOsmandIndexes#INDEXES_DEFAULT_FILENAME}, so search by name doesn't decode the prefix tree
+ * from obf for every query. Cache file is ignored if obf file was changed.
+ * New tables are written in background, tables put before the write are saved by one write.
+ * Only tables of {@link #MAX_LOADED_FILES} last used files are kept in memory, others are read from file again.
+ */
+public class NameIndexCache {
+
+	public static final String NAME_INDEX_EXT = ".names.cache";
+	public static final int VERSION = 1;
+	static final int MAX_LOADED_FILES = 16;
+
+	private static final Log log = PlatformUtil.getLog(NameIndexCache.class);
+
+	private static final ExecutorService writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "Name index cache writer");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	// caches with loaded tables in order of access
+	private static final Map<NameIndexCache, Boolean> loadedCaches = new LinkedHashMap<NameIndexCache, Boolean>(16, 0.75f, true);
+
+	private final File cacheFile;
+	private final long obfSize;
+	private final long obfModified;
+	private TIntObjectHashMap<NameIndexTable> tables;
+	// version of tables, increased by every put
+	private int version;
+	private int savedVersion;
+	private boolean writeScheduled;
+	private final Object writeLock = new Object();
+	private int writtenVersion;
+
+	public NameIndexCache(File cacheDir, File obf) {
+		this.cacheFile = new File(cacheDir, obf.getName() + NAME_INDEX_EXT);
+		this.obfSize = obf.length();
+		this.obfModified = obf.lastModified();
+	}
+
+	/**
+	 * Prefix tree flattened in order of reading: key is full (with prefixes of parent keys),
+	 * subtree of entry i is [i + 1, subtreeEnd[i]).
+	 */
+	static class NameIndexTable {
+		// levels with less keys are searched without index
+		static final int MIN_INDEXED_LEVEL_SIZE = 8;
+
+		final String[] keys;
+		final int[] subtreeEnd;
+		// values of entry i are vals[valStart[i]..valStart[i + 1])
+		final int[] valStart;
+		final int[] vals;
+		// prefix indexes of levels created on first search, level of root keys is 0 and level of children of entry i is i + 1
+		private final AtomicReferenceArray<LevelIndex> levels;
+
+		NameIndexTable(String[] keys, int[] subtreeEnd, int[] valStart, int[] vals) {
+			this.keys = keys;
+			this.subtreeEnd = subtreeEnd;
+			this.valStart = valStart;
+			this.vals = vals;
+			this.levels = new AtomicReferenceArray<LevelIndex>(keys.length + 1);
+		}
+
+		/**
+		 * Same result as {@link BinaryMapIndexReader#readIndexedStringTable(Collator, List, String, List, TIntArrayList)}:
+		 * subtrees are visited only for matched keys.
+		 */
+		void search(Collator instance, List<String> queries, List<TIntArrayList> listOffsets, TIntArrayList matchedCharacters) {
+			CollatorFolding folding = OsmAndCollator.getFolding(instance);
+			for (int i = 0; i < queries.size(); i++) {
+				String query = queries.get(i);
+				if (query != null) {
+					String foldedQuery = folding == null ? null : fold(folding, query);
+					search(instance, folding, query, foldedQuery, i, -1, listOffsets.get(i), matchedCharacters);
+				}
+			}
+		}
+
+		// searches children of parent entry (-1 for root keys)
+		private void search(Collator instance, CollatorFolding folding, String query, String foldedQuery, int q,
+				int parent, TIntArrayList offsets, TIntArrayList matchedCharacters) {
+			int from = parent + 1;
+			int to = parent < 0 ? keys.length : subtreeEnd[parent];
+			LevelIndex index = null;
+			if (foldedQuery != null && levelSize(from, to) >= MIN_INDEXED_LEVEL_SIZE) {
+				index = levels.get(from);
+				if (index == null || index.folding != folding) {
+					index = new LevelIndex(this, folding, from, to);
+					levels.set(from, index);
+				}
+			}
+			if (index == null) {
+				for (int e = from; e < to; e = subtreeEnd[e]) {
+					searchEntry(instance, folding, query, foldedQuery, q, e, offsets, matchedCharacters);
+				}
+			} else {
+				// entries are visited in the same order as without index
+				int[] candidates = index.getCandidates(foldedQuery);
+				for (int e : candidates) {
+					searchEntry(instance, folding, query, foldedQuery, q, e, offsets, matchedCharacters);
+				}
+			}
+		}
+
+		private int levelSize(int from, int to) {
+			int size = 0;
+			for (int e = from; e < to && size < MIN_INDEXED_LEVEL_SIZE; e = subtreeEnd[e]) {
+				size++;
+			}
+			return size;
+		}
+
+		private void searchEntry(Collator instance, CollatorFolding folding, String query, String foldedQuery, int q,
+				int e, TIntArrayList offsets, TIntArrayList matchedCharacters) {
+			String key = keys[e];
+			int charMatches = matchedCharacters.get(q);
+			boolean matched = false;
+			// check query is part of key (the best matching)
+			if (CollatorStringMatcher.cmatches(instance, key, query, StringMatcherMode.CHECK_ONLY_STARTS_WITH)) {
+				if (query.length() >= charMatches) {
+					if (query.length() > charMatches) {
+						matchedCharacters.set(q, query.length());
+						offsets.clear();
+					}
+					matched = true;
+				}
+				// check key is part of query
+			} else if (CollatorStringMatcher.cmatches(instance, query, key, StringMatcherMode.CHECK_ONLY_STARTS_WITH)) {
+				if (key.length() >= charMatches) {
+					if (key.length() > charMatches) {
+						matchedCharacters.set(q, key.length());
+						offsets.clear();
+					}
+					matched = true;
+				}
+			}
+			if (matched) {
+				offsets.add(vals, valStart[e], valStart[e + 1] - valStart[e]);
+				search(instance, folding, query, foldedQuery, q, e, offsets, matchedCharacters);
+			}
+		}
+	}
+
+	/**
+	 * Keys of one level sorted by folds of chars (see {@link CollatorFolding}), keys matching query by collator have
+	 * folded query as prefix or they're prefix of folded query. Keys which can't be folded are always checked.
+	 */
+	static class LevelIndex {
+		final CollatorFolding folding;
+		final String[] foldedKeys;
+		final int[] entries;
+		final int[] notFolded;
+
+		LevelIndex(NameIndexTable table, CollatorFolding folding, int from, int to) {
+			this.folding = folding;
+			final List<String> folded = new ArrayList<String>();
+			List<Integer> foldedEntries = new ArrayList<Integer>();
+			TIntArrayList other = new TIntArrayList();
+			for (int e = from; e < to; e = table.subtreeEnd[e]) {
+				String f = fold(folding, table.keys[e]);
+				if (f == null) {
+					other.add(e);
+				} else {
+					folded.add(f);
+					foldedEntries.add(e);
+				}
+			}
+			Integer[] order = new Integer[folded.size()];
+			for (int i = 0; i < order.length; i++) {
+				order[i] = i;
+			}
+			Arrays.sort(order, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer o1, Integer o2) {
+					return folded.get(o1).compareTo(folded.get(o2));
+				}
+			});
+			foldedKeys = new String[order.length];
+			entries = new int[order.length];
+			for (int i = 0; i < order.length; i++) {
+				foldedKeys[i] = folded.get(order[i]);
+				entries[i] = foldedEntries.get(order[i]);
+			}
+			notFolded = other.toArray();
+		}
+
+		// entries which could match query in ascending order
+		int[] getCandidates(String foldedQuery) {
+			TIntArrayList res = new TIntArrayList(notFolded);
+			// keys starting with query
+			for (int i = lowerBound(foldedQuery); i < foldedKeys.length && foldedKeys[i].startsWith(foldedQuery); i++) {
+				res.add(entries[i]);
+			}
+			// keys which are shorter prefixes of query
+			for (int l = 0; l < foldedQuery.length(); l++) {
+				String prefix = foldedQuery.substring(0, l);
+				for (int i = lowerBound(prefix); i < foldedKeys.length && foldedKeys[i].equals(prefix); i++) {
+					res.add(entries[i]);
+				}
+			}
+			res.sort();
+			return res.toArray();
+		}
+
+		private int lowerBound(String key) {
+			int lo = 0;
+			int hi = foldedKeys.length;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (foldedKeys[mid].compareTo(key) < 0) {
+					lo = mid + 1;
+				} else {
+					hi = mid;
+				}
+			}
+			return lo;
+		}
+	}
+
+	/**
+	 * @return folds of chars without ignorable chars or null if string has chars which should be compared by collator
+	 */
+	static String fold(CollatorFolding folding, String s) {
+		StringBuilder sb = new StringBuilder(s.length());
+		for (int i = 0; i < s.length(); i++) {
+			char f = folding.fold(s.charAt(i));
+			if (f == CollatorFolding.COMPLEX) {
+				return null;
+			} else if (f != CollatorFolding.IGNORABLE) {
+				sb.append(f);
+			}
+		}
+		return sb.toString();
+	}
+
+	static class NameIndexTableBuilder {
+		private final List<String> keys = new ArrayList<String>();
+		private final TIntArrayList subtreeEnd = new TIntArrayList();
+		private final TIntArrayList valStart = new TIntArrayList();
+		private final TIntArrayList vals = new TIntArrayList();
+
+		int addKey(String key) {
+			keys.add(key);
+			subtreeEnd.add(keys.size());
+			valStart.add(vals.size());
+			return keys.size() - 1;
+		}
+
+		void addValue(int val) {
+			vals.add(val);
+		}
+
+		void endSubtree(int entry) {
+			subtreeEnd.set(entry, keys.size());
+		}
+
+		NameIndexTable build() {
+			valStart.add(vals.size());
+			return new NameIndexTable(keys.toArray(new String[keys.size()]), subtreeEnd.toArray(),
+					valStart.toArray(), vals.toArray());
+		}
+	}
+
+	/**
+	 * @param tableOffset file pointer of table in obf
+	 */
+	public NameIndexTable getTable(int tableOffset) {
+		touch();
+		synchronized (this) {
+			return loadTables().get(tableOffset);
+		}
+	}
+
+	/**
+	 * Puts table to memory, tables are saved to file in background (see {@link #flush()}).
+	 */
+	public void putTable(int tableOffset, NameIndexTable table) {
+		touch();
+		synchronized (this) {
+			loadTables().put(tableOffset, table);
+			version++;
+			if (!writeScheduled) {
+				writeScheduled = true;
+				writer.execute(new Runnable() {
+					@Override
+					public void run() {
+						flush();
+					}
+				});
+			}
+		}
+	}
+
+	/**
+	 * Saves tables which were put after previous save, it's done on calling thread.
+	 */
+	public void flush() {
+		TIntObjectHashMap<NameIndexTable> snapshot;
+		int snapshotVersion;
+		synchronized (this) {
+			writeScheduled = false;
+			if (version == savedVersion || tables == null) {
+				return;
+			}
+			snapshot = new TIntObjectHashMap<NameIndexTable>(tables);
+			snapshotVersion = version;
+			savedVersion = version;
+		}
+		synchronized (writeLock) {
+			// snapshot could be taken before snapshot of other thread which was written earlier
+			if (snapshotVersion <= writtenVersion) {
+				return;
+			}
+			try {
+				writeToFile(snapshot);
+				writtenVersion = snapshotVersion;
+			} catch (IOException e) {
+				log.warn("Name index cache " + cacheFile.getName() + " is not saved: " + e.getMessage());
+			}
+		}
+	}
+
+	synchronized boolean isLoaded() {
+		return tables != null;
+	}
+
+	private TIntObjectHashMap<NameIndexTable> loadTables() {
+		if (tables == null) {
+			tables = new TIntObjectHashMap<NameIndexTable>();
+			if (cacheFile.exists()) {
+				try {
+					readFromFile();
+				} catch (IOException e) {
+					log.warn("Name index cache " + cacheFile.getName() + " is ignored: " + e.getMessage());
+					tables.clear();
+				}
+			}
+		}
+		return tables;
+	}
+
+	// marks cache as last used and releases tables of least recently used caches
+	private void touch() {
+		List<NameIndexCache> released = null;
+		synchronized (loadedCaches) {
+			loadedCaches.put(this, Boolean.TRUE);
+			Iterator<NameIndexCache> it = loadedCaches.keySet().iterator();
+			while (loadedCaches.size() > MAX_LOADED_FILES) {
+				if (released == null) {
+					released = new ArrayList<NameIndexCache>();
+				}
+				released.add(it.next());
+				it.remove();
+			}
+		}
+		if (released != null) {
+			for (final NameIndexCache c : released) {
+				// not saved tables are released after write
+				writer.execute(new Runnable() {
+					@Override
+					public void run() {
+						c.flush();
+						c.release();
+					}
+				});
+			}
+		}
+	}
+
+	private void release() {
+		synchronized (loadedCaches) {
+			if (loadedCaches.containsKey(this)) {
+				// used again
+				return;
+			}
+			synchronized (this) {
+				if (version == savedVersion) {
+					tables = null;
+				}
+			}
+		}
+	}
+
+	private void readFromFile() throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+		try {
+			if (in.readInt() != VERSION || in.readLong() != obfSize || in.readLong() != obfModified) {
+				return;
+			}
+			int tablesCount = in.readInt();
+			for (int t = 0; t < tablesCount; t++) {
+				int tableOffset = in.readInt();
+				int size = in.readInt();
+				String[] keys = new String[size];
+				int[] subtreeEnd = new int[size];
+				int[] valStart = new int[size + 1];
+				for (int i = 0; i < size; i++) {
+					keys[i] = in.readUTF();
+					subtreeEnd[i] = in.readInt();
+					valStart[i] = in.readInt();
+				}
+				valStart[size] = in.readInt();
+				int[] vals = new int[valStart[size]];
+				for (int i = 0; i < vals.length; i++) {
+					vals[i] = in.readInt();
+				}
+				tables.put(tableOffset, new NameIndexTable(keys, subtreeEnd, valStart, vals));
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	private void writeToFile(TIntObjectHashMap<NameIndexTable> tables) throws IOException {
+		File tmp = new File(cacheFile.getParentFile(), cacheFile.getName() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+		try {
+			out.writeInt(VERSION);
+			out.writeLong(obfSize);
+			out.writeLong(obfModified);
+			out.writeInt(tables.size());
+			for (int tableOffset : tables.keys()) {
+				NameIndexTable table = tables.get(tableOffset);
+				out.writeInt(tableOffset);
+				out.writeInt(table.keys.length);
+				for (int i = 0; i < table.keys.length; i++) {
+					out.writeUTF(table.keys[i]);
+					out.writeInt(table.subtreeEnd[i]);
+					out.writeInt(table.valStart[i]);
+				}
+				out.writeInt(table.valStart[table.keys.length]);
+				for (int v : table.vals) {
+					out.writeInt(v);
+				}
+			}
+		} finally {
+			out.close();
+		}
+		if (!tmp.renameTo(cacheFile)) {
+			cacheFile.delete();
+			if (!tmp.renameTo(cacheFile)) {
+				tmp.delete();
+				throw new IOException("Can't rename " + tmp.getName());
+			}
+		}
+	}
+}
@@ -179,7 +179,8 @@ public class RouteDataObject {
 			return heightDistanceArray;
 		}
 
-		heightDistanceArray = new float[2 * getPointsLength()];
+		// fill local array and publish it when it's complete, road could be shared by routing threads
+		float[] heightDistanceArray = new float[2 * getPointsLength()];
 		double plon = 0;
 		double plat = 0;
 		float prevHeight = startHeight;
@@ -242,6 +243,7 @@ public class RouteDataObject {
 				prevDistance = MapUtils.getDistance(currentLocation, plat, plon);
 			}
 		}
+		this.heightDistanceArray = heightDistanceArray;
 		return heightDistanceArray;
 	}
 
@@ -0,0 +1,635 @@
+package net.osmand.gpx;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.commons.logging.Log;
+
+import net.osmand.PlatformUtil;
+import net.osmand.gpx.GPXUtilities.Author;
+import net.osmand.gpx.GPXUtilities.Bounds;
+import net.osmand.gpx.GPXUtilities.Copyright;
+import net.osmand.gpx.GPXUtilities.GPXExtensions;
+import net.osmand.gpx.GPXUtilities.Metadata;
+import net.osmand.gpx.GPXUtilities.PointsGroup;
+import net.osmand.gpx.GPXUtilities.Route;
+import net.osmand.gpx.GPXUtilities.RouteSegment;
+import net.osmand.gpx.GPXUtilities.RouteType;
+import net.osmand.gpx.GPXUtilities.Track;
+import net.osmand.gpx.GPXUtilities.TrkSegment;
+import net.osmand.gpx.GPXUtilities.WptPt;
+
+/**
+ * Compact binary copy of loaded gpx file stored next to it ({@link #CACHE_EXT}), so the file could be opened
+ * again without xml parsing. Cache is valid while size and modification time of gpx file are the same.
+ * Coordinates and times are delta encoded varints, all strings (names, extensions keys and values)
+ * are stored once and referenced by index.
+ */
+public class GPXBinaryCache {
+
+	private static final Log log = PlatformUtil.getLog(GPXBinaryCache.class);
+
+	public static final String CACHE_EXT = ".cache";
+	public static final int VERSION = 1;
+
+	private static final double COORDINATES_PRECISION = 1e7;
+
+	// point fields which are written only if they are set
+	private static final int ELE = 1;
+	private static final int SPEED = 1 << 1;
+	private static final int HDOP = 1 << 2;
+	private static final int HEADING = 1 << 3;
+	private static final int BEARING = 1 << 4;
+	private static final int NAME = 1 << 5;
+	private static final int LINK = 1 << 6;
+	private static final int CATEGORY = 1 << 7;
+	private static final int DESC = 1 << 8;
+	private static final int COMMENT = 1 << 9;
+	private static final int EXTENSIONS = 1 << 10;
+
+	// points list flags
+	private static final int INT_COORDINATES = 1;
+	private static final int FLOAT_VALUES = 1 << 1;
+
+	public static File getCacheFile(File gpx) {
+		return new File(gpx.getParentFile(), gpx.getName() + CACHE_EXT);
+	}
+
+	/**
+	 * @return gpx file without general track or null if cache doesn't exist or it's outdated
+	 */
+	public static GPXFile read(File gpx) {
+		File cache = getCacheFile(gpx);
+		if (!cache.exists()) {
+			return null;
+		}
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cache)));
+			try {
+				if (in.readInt() != VERSION || in.readLong() != gpx.length() || in.readLong() != gpx.lastModified()) {
+					return null;
+				}
+				return new Reader(in).readGpx();
+			} finally {
+				in.close();
+			}
+		} catch (IOException | RuntimeException e) {
+			log.warn("Gpx cache " + cache.getName() + " is ignored: " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * @param length       length of gpx file before it was parsed
+	 * @param lastModified modification time of gpx file before it was parsed, so cache of file
+	 *                     changed during parsing is not valid
+	 */
+	public static void write(File gpx, GPXFile gpxFile, long length, long lastModified) {
+		File cache = getCacheFile(gpx);
+		File tmp = new File(cache.getParentFile(), cache.getName() + ".tmp");
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+			try {
+				out.writeInt(VERSION);
+				out.writeLong(length);
+				out.writeLong(lastModified);
+				new Writer(out).writeGpx(gpxFile);
+			} finally {
+				out.close();
+			}
+			if (!tmp.renameTo(cache)) {
+				cache.delete();
+				if (!tmp.renameTo(cache)) {
+					throw new IOException("Can't rename " + tmp.getName());
+				}
+			}
+		} catch (IOException e) {
+			tmp.delete();
+			log.warn("Gpx cache " + cache.getName() + " is not saved: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * @return false if xml of gpx file has extensions written by custom writers, which are not stored in cache
+	 */
+	public static boolean isCacheable(GPXFile gpxFile) {
+		if (gpxFile.getExtensionsWriter() != null || !isCacheable(gpxFile.getPoints())) {
+			return false;
+		}
+		for (Track t : gpxFile.tracks) {
+			for (TrkSegment s : t.segments) {
+				if (!s.generalSegment && !isCacheable(s.points)) {
+					return false;
+				}
+			}
+		}
+		for (Route r : gpxFile.routes) {
+			if (!isCacheable(r.points)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isCacheable(List<WptPt> points) {
+		for (WptPt p : points) {
+			if (p.getExtensionsWriter() != null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public static void delete(File gpx) {
+		File cache = getCacheFile(gpx);
+		if (cache.exists()) {
+			cache.delete();
+		}
+	}
+
+	private static class Writer {
+		private final DataOutputStream out;
+		private final Map<String, Integer> strings = new HashMap<>();
+
+		Writer(DataOutputStream out) {
+			this.out = out;
+		}
+
+		void writeGpx(GPXFile gpx) throws IOException {
+			writeString(gpx.author);
+			writeExtensions(gpx);
+			writeMetadata(gpx.metadata);
+			List<Track> tracks = new ArrayList<>();
+			for (Track t : gpx.tracks) {
+				if (!t.generalTrack) {
+					tracks.add(t);
+				}
+			}
+			writeVarint(tracks.size());
+			for (Track t : tracks) {
+				writeString(t.name);
+				writeString(t.desc);
+				writeExtensions(t);
+				writeVarint(t.segments.size());
+				for (TrkSegment s : t.segments) {
+					writeString(s.name);
+					writeExtensions(s);
+					writePoints(s.points);
+					writeVarint(s.routeSegments.size());
+					for (RouteSegment rs : s.routeSegments) {
+						writeRouteSegment(rs);
+					}
+					writeVarint(s.routeTypes.size());
+					for (RouteType rt : s.routeTypes) {
+						writeString(rt.tag);
+						writeString(rt.value);
+					}
+				}
+			}
+			writeVarint(gpx.routes.size());
+			for (Route r : gpx.routes) {
+				writeString(r.name);
+				writeString(r.desc);
+				writeExtensions(r);
+				writePoints(r.points);
+			}
+			writePoints(gpx.points);
+			// groups are merged with points again when they are read
+			writeVarint(gpx.pointsGroups.size());
+			for (PointsGroup g : gpx.pointsGroups.values()) {
+				writeString(g.name);
+				writeString(g.iconName);
+				writeString(g.backgroundType);
+				out.writeInt(g.color);
+			}
+			writeMap(gpx.getRouteKeyTags());
+		}
+
+		private void writeMetadata(Metadata m) throws IOException {
+			writeString(m.name);
+			writeString(m.desc);
+			writeString(m.link);
+			writeString(m.keywords);
+			out.writeLong(m.time);
+			writeExtensions(m);
+			out.writeBoolean(m.author != null);
+			if (m.author != null) {
+				writeString(m.author.name);
+				writeString(m.author.email);
+				writeString(m.author.link);
+				writeExtensions(m.author);
+			}
+			out.writeBoolean(m.copyright != null);
+			if (m.copyright != null) {
+				writeString(m.copyright.author);
+				writeString(m.copyright.year);
+				writeString(m.copyright.license);
+				writeExtensions(m.copyright);
+			}
+			out.writeBoolean(m.bounds != null);
+			if (m.bounds != null) {
+				out.writeDouble(m.bounds.minlat);
+				out.writeDouble(m.bounds.minlon);
+				out.writeDouble(m.bounds.maxlat);
+				out.writeDouble(m.bounds.maxlon);
+				writeExtensions(m.bounds);
+			}
+		}
+
+		private void writeRouteSegment(RouteSegment rs) throws IOException {
+			writeString(rs.id);
+			writeString(rs.length);
+			writeString(rs.startTrackPointIndex);
+			writeString(rs.segmentTime);
+			writeString(rs.speed);
+			writeString(rs.turnType);
+			writeString(rs.turnLanes);
+			writeString(rs.turnAngle);
+			writeString(rs.skipTurn);
+			writeString(rs.types);
+			writeString(rs.pointTypes);
+			writeString(rs.names);
+		}
+
+		private void writePoints(List<WptPt> points) throws IOException {
+			int flags = INT_COORDINATES | FLOAT_VALUES;
+			for (WptPt p : points) {
+				if (!isIntCoordinate(p.lat) || !isIntCoordinate(p.lon)) {
+					flags &= ~INT_COORDINATES;
+				}
+				if (!isFloat(p.ele) || !isFloat(p.speed) || !isFloat(p.hdop)) {
+					flags &= ~FLOAT_VALUES;
+				}
+			}
+			writeVarint(points.size());
+			writeVarint(flags);
+			long pLat = 0;
+			long pLon = 0;
+			long pTime = 0;
+			for (WptPt p : points) {
+				int mask = 0;
+				mask |= Double.isNaN(p.ele) ? 0 : ELE;
+				mask |= p.speed == 0 ? 0 : SPEED;
+				mask |= Double.isNaN(p.hdop) ? 0 : HDOP;
+				mask |= Float.isNaN(p.heading) ? 0 : HEADING;
+				mask |= Float.isNaN(p.bearing) ? 0 : BEARING;
+				mask |= p.name == null ? 0 : NAME;
+				mask |= p.link == null ? 0 : LINK;
+				mask |= p.category == null ? 0 : CATEGORY;
+				mask |= p.desc == null ? 0 : DESC;
+				mask |= p.comment == null ? 0 : COMMENT;
+				mask |= p.getExtensionsToRead().isEmpty() ? 0 : EXTENSIONS;
+				writeVarint(mask);
+				if ((flags & INT_COORDINATES) != 0) {
+					long lat = Math.round(p.lat * COORDINATES_PRECISION);
+					long lon = Math.round(p.lon * COORDINATES_PRECISION);
+					writeSignedVarint(lat - pLat);
+					writeSignedVarint(lon - pLon);
+					pLat = lat;
+					pLon = lon;
+				} else {
+					out.writeDouble(p.lat);
+					out.writeDouble(p.lon);
+				}
+				writeSignedVarint(p.time - pTime);
+				pTime = p.time;
+				if ((mask & ELE) != 0) {
+					writeValue(p.ele, flags);
+				}
+				if ((mask & SPEED) != 0) {
+					writeValue(p.speed, flags);
+				}
+				if ((mask & HDOP) != 0) {
+					writeValue(p.hdop, flags);
+				}
+				if ((mask & HEADING) != 0) {
+					out.writeFloat(p.heading);
+				}
+				if ((mask & BEARING) != 0) {
+					out.writeFloat(p.bearing);
+				}
+				if ((mask & NAME) != 0) {
+					writeString(p.name);
+				}
+				if ((mask & LINK) != 0) {
+					writeString(p.link);
+				}
+				if ((mask & CATEGORY) != 0) {
+					writeString(p.category);
+				}
+				if ((mask & DESC) != 0) {
+					writeString(p.desc);
+				}
+				if ((mask & COMMENT) != 0) {
+					writeString(p.comment);
+				}
+				if ((mask & EXTENSIONS) != 0) {
+					writeMap(p.getExtensionsToRead());
+				}
+			}
+		}
+
+		private void writeValue(double v, int flags) throws IOException {
+			if ((flags & FLOAT_VALUES) != 0) {
+				out.writeFloat((float) v);
+			} else {
+				out.writeDouble(v);
+			}
+		}
+
+		private void writeExtensions(GPXExtensions e) throws IOException {
+			writeMap(e.getExtensionsToRead());
+		}
+
+		private void writeMap(Map<String, String> map) throws IOException {
+			writeVarint(map.size());
+			for (Entry<String, String> e : map.entrySet()) {
+				writeString(e.getKey());
+				writeString(e.getValue());
+			}
+		}
+
+		// 0 - null, 1 - new string, otherwise index of written string + 2
+		private void writeString(String s) throws IOException {
+			if (s == null) {
+				writeVarint(0);
+				return;
+			}
+			Integer ind = strings.get(s);
+			if (ind != null) {
+				writeVarint(ind + 2);
+			} else {
+				strings.put(s, strings.size());
+				writeVarint(1);
+				byte[] bytes = s.getBytes("UTF-8");
+				writeVarint(bytes.length);
+				out.write(bytes);
+			}
+		}
+
+		private void writeSignedVarint(long v) throws IOException {
+			writeVarint((v << 1) ^ (v >> 63));
+		}
+
+		private void writeVarint(long v) throws IOException {
+			while ((v & ~0x7FL) != 0) {
+				out.writeByte((int) ((v & 0x7F) | 0x80));
+				v >>>= 7;
+			}
+			out.writeByte((int) v);
+		}
+
+		private static boolean isIntCoordinate(double v) {
+			return Math.round(v * COORDINATES_PRECISION) / COORDINATES_PRECISION == v;
+		}
+
+		private static boolean isFloat(double v) {
+			return Double.isNaN(v) || (float) v == v;
+		}
+	}
+
+	private static class Reader {
+		private final DataInputStream in;
+		private final List<String> strings = new ArrayList<>();
+
+		Reader(DataInputStream in) {
+			this.in = in;
+		}
+
+		GPXFile readGpx() throws IOException {
+			GPXFile gpx = new GPXFile(null);
+			gpx.author = readString();
+			readExtensions(gpx);
+			readMetadata(gpx.metadata);
+			int tracks = readInt();
+			for (int i = 0; i < tracks; i++) {
+				Track t = new Track();
+				t.name = readString();
+				t.desc = readString();
+				readExtensions(t);
+				int segments = readInt();
+				for (int j = 0; j < segments; j++) {
+					TrkSegment s = new TrkSegment();
+					s.name = readString();
+					readExtensions(s);
+					readPoints(s.points);
+					int routeSegments = readInt();
+					for (int k = 0; k < routeSegments; k++) {
+						s.routeSegments.add(readRouteSegment());
+					}
+					int routeTypes = readInt();
+					for (int k = 0; k < routeTypes; k++) {
+						RouteType rt = new RouteType();
+						rt.tag = readString();
+						rt.value = readString();
+						s.routeTypes.add(rt);
+					}
+					t.segments.add(s);
+				}
+				gpx.tracks.add(t);
+			}
+			int routes = readInt();
+			for (int i = 0; i < routes; i++) {
+				Route r = new Route();
+				r.name = readString();
+				r.desc = readString();
+				readExtensions(r);
+				readPoints(r.points);
+				gpx.routes.add(r);
+			}
+			readPoints(gpx.points);
+			int groupsCount = readInt();
+			List<PointsGroup> groups = new ArrayList<>(groupsCount);
+			for (int i = 0; i < groupsCount; i++) {
+				String name = readString();
+				String iconName = readString();
+				String backgroundType = readString();
+				groups.add(new PointsGroup(name, iconName, backgroundType, in.readInt()));
+			}
+			if (!groups.isEmpty() || !gpx.points.isEmpty()) {
+				gpx.pointsGroups.putAll(GPXUtilities.mergePointsGroups(groups, gpx.points));
+			}
+			Map<String, String> routeKeyTags = readMap();
+			if (!routeKeyTags.isEmpty()) {
+				gpx.addRouteKeyTags(routeKeyTags);
+			}
+			return gpx;
+		}
+
+		private void readMetadata(Metadata m) throws IOException {
+			m.name = readString();
+			m.desc = readString();
+			m.link = readString();
+			m.keywords = readString();
+			m.time = in.readLong();
+			readExtensions(m);
+			if (in.readBoolean()) {
+				m.author = new Author();
+				m.author.name = readString();
+				m.author.email = readString();
+				m.author.link = readString();
+				readExtensions(m.author);
+			}
+			if (in.readBoolean()) {
+				m.copyright = new Copyright();
+				m.copyright.author = readString();
+				m.copyright.year = readString();
+				m.copyright.license = readString();
+				readExtensions(m.copyright);
+			}
+			if (in.readBoolean()) {
+				m.bounds = new Bounds();
+				m.bounds.minlat = in.readDouble();
+				m.bounds.minlon = in.readDouble();
+				m.bounds.maxlat = in.readDouble();
+				m.bounds.maxlon = in.readDouble();
+				readExtensions(m.bounds);
+			}
+		}
+
+		private RouteSegment readRouteSegment() throws IOException {
+			RouteSegment rs = new RouteSegment();
+			rs.id = readString();
+			rs.length = readString();
+			rs.startTrackPointIndex = readString();
+			rs.segmentTime = readString();
+			rs.speed = readString();
+			rs.turnType = readString();
+			rs.turnLanes = readString();
+			rs.turnAngle = readString();
+			rs.skipTurn = readString();
+			rs.types = readString();
+			rs.pointTypes = readString();
+			rs.names = readString();
+			return rs;
+		}
+
+		private void readPoints(List<WptPt> points) throws IOException {
+			int size = readInt();
+			int flags = readInt();
+			if (points instanceof ArrayList) {
+				((ArrayList<WptPt>) points).ensureCapacity(size);
+			}
+			long pLat = 0;
+			long pLon = 0;
+			long pTime = 0;
+			for (int i = 0; i < size; i++) {
+				WptPt p = new WptPt();
+				int mask = readInt();
+				if ((flags & INT_COORDINATES) != 0) {
+					pLat += readSignedVarint();
+					pLon += readSignedVarint();
+					p.lat = pLat / COORDINATES_PRECISION;
+					p.lon = pLon / COORDINATES_PRECISION;
+				} else {
+					p.lat = in.readDouble();
+					p.lon = in.readDouble();
+				}
+				pTime += readSignedVarint();
+				p.time = pTime;
+				if ((mask & ELE) != 0) {
+					p.ele = readValue(flags);
+				}
+				if ((mask & SPEED) != 0) {
+					p.speed = readValue(flags);
+				}
+				if ((mask & HDOP) != 0) {
+					p.hdop = readValue(flags);
+				}
+				if ((mask & HEADING) != 0) {
+					p.heading = in.readFloat();
+				}
+				if ((mask & BEARING) != 0) {
+					p.bearing = in.readFloat();
+				}
+				if ((mask & NAME) != 0) {
+					p.name = readString();
+				}
+				if ((mask & LINK) != 0) {
+					p.link = readString();
+				}
+				if ((mask & CATEGORY) != 0) {
+					p.category = readString();
+				}
+				if ((mask & DESC) != 0) {
+					p.desc = readString();
+				}
+				if ((mask & COMMENT) != 0) {
+					p.comment = readString();
+				}
+				if ((mask & EXTENSIONS) != 0) {
+					p.getExtensionsToWrite().putAll(readMap());
+				}
+				points.add(p);
+			}
+		}
+
+		private double readValue(int flags) throws IOException {
+			return (flags & FLOAT_VALUES) != 0 ? in.readFloat() : in.readDouble();
+		}
+
+		private void readExtensions(GPXExtensions e) throws IOException {
+			Map<String, String> map = readMap();
+			if (!map.isEmpty()) {
+				e.getExtensionsToWrite().putAll(map);
+			}
+		}
+
+		private Map<String, String> readMap() throws IOException {
+			int size = readInt();
+			Map<String, String> map = new LinkedHashMap<>();
+			for (int i = 0; i < size; i++) {
+				String key = readString();
+				map.put(key, readString());
+			}
+			return map;
+		}
+
+		private String readString() throws IOException {
+			int ind = readInt();
+			if (ind == 0) {
+				return null;
+			} else if (ind > 1) {
+				return strings.get(ind - 2);
+			}
+			byte[] bytes = new byte[readInt()];
+			in.readFully(bytes);
+			String s = new String(bytes, "UTF-8");
+			strings.add(s);
+			return s;
+		}
+
+		private int readInt() throws IOException {
+			return (int) readVarint();
+		}
+
+		private long readSignedVarint() throws IOException {
+			long v = readVarint();
+			return (v >>> 1) ^ -(v & 1);
+		}
+
+		private long readVarint() throws IOException {
+			long v = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				int b = in.readByte();
+				v |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return v;
+				}
+			}
+			throw new IOException("Malformed varint");
+		}
+	}
+}
@@ -0,0 +1,181 @@
+package net.osmand.gpx;
+
+/**
+ * Parser and formatter of ISO-8601 times used in gpx files ("2020-05-14T10:23:05Z",
+ * "2020-05-14T10:23:05.120+02:00"). It works on chars without {@link java.text.SimpleDateFormat},
+ * so it's thread safe and doesn't allocate while parsing. Only years 1900 - 9999 are handled,
+ * other values (and not strict formats) should be processed by SimpleDateFormat (see {@link GPXUtilities#parseTime(String)}).
+ */
+public class GPXTimeFormat {
+
+	public static final long NOT_PARSED = Long.MIN_VALUE;
+
+	private static final int MIN_YEAR = 1900;
+	private static final int MAX_YEAR = 9999;
+	private static final long MILLIS_IN_DAY = 24 * 60 * 60 * 1000L;
+	private static final long MIN_TIME = toDays(MIN_YEAR, 1, 1) * MILLIS_IN_DAY;
+	private static final long MAX_TIME = toDays(MAX_YEAR + 1, 1, 1) * MILLIS_IN_DAY - 1;
+	private static final int[] DAYS_IN_MONTH = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+	/**
+	 * Parses yyyy-MM-dd'T'HH:mm:ss[.SSS][Z|+HH:mm|-HH:mm], time without zone is UTC time.
+	 *
+	 * @return time in milliseconds or {@link #NOT_PARSED}
+	 */
+	public static long parse(CharSequence s) {
+		return parse(s, true);
+	}
+
+	/**
+	 * @param parseOffset false to return {@link #NOT_PARSED} for times with +HH:mm / -HH:mm offset
+	 */
+	public static long parse(CharSequence s, boolean parseOffset) {
+		if (s == null) {
+			return NOT_PARSED;
+		}
+		int len = s.length();
+		if (len < 19 || s.charAt(4) != '-' || s.charAt(7) != '-' || s.charAt(10) != 'T'
+				|| s.charAt(13) != ':' || s.charAt(16) != ':') {
+			return NOT_PARSED;
+		}
+		int year = digits(s, 0, 4);
+		int month = digits(s, 5, 2);
+		int day = digits(s, 8, 2);
+		int hour = digits(s, 11, 2);
+		int minute = digits(s, 14, 2);
+		int second = digits(s, 17, 2);
+		if (year < MIN_YEAR || year > MAX_YEAR || month < 1 || month > 12 || day < 1
+				|| day > daysInMonth(year, month) || hour < 0 || hour > 23 || minute < 0 || minute > 59
+				|| second < 0 || second > 59) {
+			return NOT_PARSED;
+		}
+		int pos = 19;
+		int millis = 0;
+		if (pos < len && s.charAt(pos) == '.') {
+			// only 3 digits are milliseconds for SimpleDateFormat, other fractions are left to it
+			millis = digits(s, pos + 1, 3);
+			pos += 4;
+			if (millis < 0 || pos >= len || isDigit(s.charAt(pos))) {
+				return NOT_PARSED;
+			}
+		}
+		int offset = 0;
+		if (pos < len) {
+			char c = s.charAt(pos);
+			if (c == 'Z' && pos + 1 == len) {
+				offset = 0;
+			} else if (parseOffset && (c == '+' || c == '-') && pos + 6 == len && s.charAt(pos + 3) == ':') {
+				int offsetHours = digits(s, pos + 1, 2);
+				int offsetMinutes = digits(s, pos + 4, 2);
+				if (offsetHours < 0 || offsetHours > 23 || offsetMinutes < 0 || offsetMinutes > 59) {
+					return NOT_PARSED;
+				}
+				offset = (offsetHours * 60 + offsetMinutes) * 60 * 1000;
+				if (c == '-') {
+					offset = -offset;
+				}
+			} else {
+				return NOT_PARSED;
+			}
+		}
+		long time = toDays(year, month, day) * MILLIS_IN_DAY
+				+ ((hour * 60 + minute) * 60 + second) * 1000L + millis;
+		return time - offset;
+	}
+
+	/**
+	 * Appends UTC time as yyyy-MM-dd'T'HH:mm:ss[.SSS]'Z'.
+	 *
+	 * @return false if time is out of supported years, nothing is appended then
+	 */
+	public static boolean append(StringBuilder sb, long time, boolean millis) {
+		if (time < MIN_TIME || time > MAX_TIME) {
+			return false;
+		}
+		long days = time / MILLIS_IN_DAY;
+		int dayMillis = (int) (time % MILLIS_IN_DAY);
+		if (dayMillis < 0) {
+			days--;
+			dayMillis += MILLIS_IN_DAY;
+		}
+		// civil date from days since 1970-01-01, era starts at 0000-03-01
+		long z = days + 719468;
+		long era = (z >= 0 ? z : z - 146096) / 146097;
+		int doe = (int) (z - era * 146097);
+		int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+		int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+		int mp = (5 * doy + 2) / 153;
+		int day = doy - (153 * mp + 2) / 5 + 1;
+		int month = mp < 10 ? mp + 3 : mp - 9;
+		int year = (int) (yoe + era * 400 + (month <= 2 ? 1 : 0));
+
+		appendDigits(sb, year, 4);
+		sb.append('-');
+		appendDigits(sb, month, 2);
+		sb.append('-');
+		appendDigits(sb, day, 2);
+		sb.append('T');
+		appendDigits(sb, dayMillis / 3600000, 2);
+		sb.append(':');
+		appendDigits(sb, dayMillis / 60000 % 60, 2);
+		sb.append(':');
+		appendDigits(sb, dayMillis / 1000 % 60, 2);
+		if (millis) {
+			sb.append('.');
+			appendDigits(sb, dayMillis % 1000, 3);
+		}
+		sb.append('Z');
+		return true;
+	}
+
+	/**
+	 * @return UTC time as yyyy-MM-dd'T'HH:mm:ss[.SSS]'Z' or null if time is out of supported years
+	 */
+	public static String format(long time, boolean millis) {
+		StringBuilder sb = new StringBuilder(24);
+		return append(sb, time, millis) ? sb.toString() : null;
+	}
+
+	// days since 1970-01-01
+	private static long toDays(int year, int month, int day) {
+		int y = month <= 2 ? year - 1 : year;
+		int era = (y >= 0 ? y : y - 399) / 400;
+		int yoe = y - era * 400;
+		int doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+		return era * 146097L + doe - 719468;
+	}
+
+	private static int daysInMonth(int year, int month) {
+		if (month == 2 && year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) {
+			return 29;
+		}
+		return DAYS_IN_MONTH[month - 1];
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	// returns -1 if there are not enough digits
+	private static int digits(CharSequence s, int start, int count) {
+		if (start + count > s.length()) {
+			return -1;
+		}
+		int v = 0;
+		for (int i = start; i < start + count; i++) {
+			char c = s.charAt(i);
+			if (!isDigit(c)) {
+				return -1;
+			}
+			v = v * 10 + (c - '0');
+		}
+		return v;
+	}
+
+	private static void appendDigits(StringBuilder sb, int v, int count) {
+		for (int d = count == 4 ? 1000 : count == 3 ? 100 : 10; d > 0; d /= 10) {
+			sb.append((char) ('0' + v / d % 10));
+		}
+	}
+}
@@ -15,6 +15,8 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
 
 public class GPXTrackAnalysis {
 
@@ -161,22 +163,33 @@ public class GPXTrackAnalysis {
 			metricEnd += s.metricEnd;
 			secondaryMetricEnd += s.secondaryMetricEnd;
 			points += numberOfPoints;
+			double prevLat = 0;
+			double prevLon = 0;
+			long prevTime = 0;
 			for (int j = 0; j < numberOfPoints; j++) {
-				WptPt point = s.get(j);
+				// points stored in columns are not materialized if they are not needed
+				TrackPointsColumns columns = s.getColumns(j);
+				int ci = s.getColumnIndex(j);
+				WptPt point = columns == null || pointsAnalyser != null ? s.get(j) : null;
+				double lat = point != null ? point.lat : columns.getLat(ci);
+				double lon = point != null ? point.lon : columns.getLon(ci);
+				long time = point != null ? point.time : columns.getTime(ci);
+				double ele = point != null ? point.ele : columns.getEle(ci);
+				boolean pointFirst = point != null ? point.firstPoint : columns.isFirstPoint(ci);
+				boolean pointLast = point != null ? point.lastPoint : columns.isLastPoint(ci);
 				if (j == 0 && locationStart == null) {
-					locationStart = point;
-					latLonStart = new LatLon(point.lat, point.lon);
+					locationStart = point != null ? point : s.get(j);
+					latLonStart = new LatLon(lat, lon);
 				}
 				if (j == numberOfPoints - 1) {
-					locationEnd = point;
+					locationEnd = point != null ? point : s.get(j);
 				}
-				long time = point.time;
 				if (time != 0) {
 					if (s.metricEnd == 0) {
 						if (s.segment.generalSegment) {
-							if (point.firstPoint) {
+							if (pointFirst) {
 								startTimeOfSingleSegment = time;
-							} else if (point.lastPoint) {
+							} else if (pointLast) {
 								endTimeOfSingleSegment = time;
 							}
 							if (startTimeOfSingleSegment != 0 && endTimeOfSingleSegment != 0) {
@@ -189,16 +202,15 @@ public class GPXTrackAnalysis {
 					startTime = Math.min(startTime, time);
 					endTime = Math.max(endTime, time);
 				}
-				updateBounds(point);
+				updateBounds(lat, lon);
 
-				float speed = (float) point.speed;
+				float speed = (float) (point != null ? point.speed : columns.getSpeed(ci));
 				if (speed > 0) {
 					hasSpeedInTrack = true;
 				}
-				updateHdop(point);
+				updateHdop(point != null ? point.hdop : columns.getHdop(ci));
 
 				if (j > 0) {
-					WptPt prev = s.get(j - 1);
 
 					// Old complete summation approach for elevation gain/loss
 					//if (!Double.isNaN(point.ele) && !Double.isNaN(prev.ele)) {
@@ -213,13 +225,17 @@ public class GPXTrackAnalysis {
 					// totalDistance += MapUtils.getDistance(prev.lat, prev.lon, point.lat, point.lon);
 					// using ellipsoidal 'distanceBetween' instead of spherical haversine (MapUtils.getDistance) is
 					// a little more exact, also seems slightly faster:
-					net.osmand.Location.distanceBetween(prev.lat, prev.lon, point.lat, point.lon, calculations);
+					net.osmand.Location.distanceBetween(prevLat, prevLon, lat, lon, calculations);
 					totalDistance += calculations[0];
 					segmentDistance += calculations[0];
-					point.distance = segmentDistance;
+					if (point != null) {
+						point.distance = segmentDistance;
+					} else {
+						columns.setDistance(ci, segmentDistance);
+					}
 
 					// In case points are reversed and => time is decreasing
-					timeDiffMillis = Math.max(0, point.time - prev.time);
+					timeDiffMillis = Math.max(0, time - prevTime);
 					timeDiff = (int) ((timeDiffMillis) / 1000);
 
 					//Last resort: Derive speed values from displacement if track does not originally contain speed
@@ -230,11 +246,11 @@ public class GPXTrackAnalysis {
 					// Motion detection:
 					//   speed > 0  uses GPS chipset's motion detection
 					//   calculations[0] > minDisplacment * time  is heuristic needed because tracks may be filtered at recording time, so points at rest may not be present in file at all
-					boolean timeSpecified = point.time != 0 && prev.time != 0;
+					boolean timeSpecified = time != 0 && prevTime != 0;
 					if (speed > 0 && timeSpecified && calculations[0] > timeDiffMillis / 10000f) {
 						timeMoving = timeMoving + timeDiffMillis;
 						totalDistanceMoving += calculations[0];
-						if (s.segment.generalSegment && !point.firstPoint) {
+						if (s.segment.generalSegment && !pointFirst) {
 							timeMovingOfSingleSegment += timeDiffMillis;
 							distanceMovingOfSingleSegment += calculations[0];
 						}
@@ -252,26 +268,26 @@ public class GPXTrackAnalysis {
 					maxSpeed = Math.max(speed, maxSpeed);
 					speedCount++;
 				}
-				boolean isNaN = Double.isNaN(point.ele);
-				float elevation = isNaN ? Float.NaN : (float) point.ele;
+				boolean isNaN = Double.isNaN(ele);
+				float elevation = isNaN ? Float.NaN : (float) ele;
 				if (!isNaN) {
-					totalElevation += point.ele;
+					totalElevation += ele;
 					elevationPoints++;
-					minElevation = Math.min(point.ele, minElevation);
-					maxElevation = Math.max(point.ele, maxElevation);
+					minElevation = Math.min(ele, minElevation);
+					maxElevation = Math.max(ele, maxElevation);
 				}
 
 				boolean firstPoint = false;
 				boolean lastPoint = false;
 				if (s.segment.generalSegment) {
 					distanceOfSingleSegment += calculations[0];
-					if (point.firstPoint) {
+					if (pointFirst) {
 						firstPoint = j > 0;
 						distanceOfSingleSegment = 0;
 						timeMovingOfSingleSegment = 0;
 						distanceMovingOfSingleSegment = 0;
 					}
-					if (point.lastPoint) {
+					if (pointLast) {
 						lastPoint = j < numberOfPoints - 1;
 						totalDistanceWithoutGaps += distanceOfSingleSegment;
 						timeMovingWithoutGaps += timeMovingOfSingleSegment;
@@ -283,6 +299,9 @@ public class GPXTrackAnalysis {
 				attribute.speed = speed;
 				attribute.elevation = elevation;
 				addWptAttribute(point, attribute, pointsAnalyser);
+				prevLat = lat;
+				prevLon = lon;
+				prevTime = time;
 			}
 			processElevationDiff(s);
 		}
@@ -292,6 +311,102 @@ public class GPXTrackAnalysis {
 		return this;
 	}
 
+	/**
+	 * Analysis of whole segments without points analyser, points are analysed in chunks
+	 * which run concurrently if pool is provided.
+	 */
+	public static GPXTrackAnalysis prepareInformation(long fileTimeStamp, List<TrkSegment> segments,
+	                                                  ForkJoinPool pool) throws InterruptedException {
+		List<TrackAnalysisSummary> summaries = TrackAnalysisSummary.summarize(segments, pool);
+		return new GPXTrackAnalysis().prepareInformation(fileTimeStamp, segments, summaries, pool);
+	}
+
+	/**
+	 * Same as {@link #prepareInformation(long, TrackPointsAnalyser, SplitSegment...)} for whole segments,
+	 * but statistics are taken from summaries of segments (summary could be kept and updated with appended points).
+	 * Only elevation diffs and point distances are calculated from points.
+	 */
+	public GPXTrackAnalysis prepareInformation(long fileTimeStamp, List<TrkSegment> segments,
+	                                           List<TrackAnalysisSummary> summaries, ForkJoinPool pool) throws InterruptedException {
+		TrackAnalysisSummary.SpeedStats speedStats = new TrackAnalysisSummary.SpeedStats();
+		float totalElevation = 0;
+		int elevationPoints = 0;
+		points = 0;
+		pointAttributes = new ArrayList<>();
+		availableAttributes = new HashSet<>();
+		for (int i = 0; i < segments.size(); i++) {
+			TrkSegment segment = segments.get(i);
+			TrackAnalysisSummary summary = summaries.get(i);
+			int numberOfPoints = segment.points.size();
+			if (numberOfPoints != summary.getPointsCount()) {
+				throw new IllegalArgumentException("Summary doesn't match segment " + i);
+			}
+			if (numberOfPoints == 0) {
+				continue;
+			}
+			if (locationStart == null) {
+				locationStart = segment.points.get(0);
+				latLonStart = new LatLon(locationStart.lat, locationStart.lon);
+			}
+			locationEnd = segment.points.get(numberOfPoints - 1);
+			int firstAttribute = pointAttributes.size();
+			float distance = totalDistance;
+			summary.addTo(this, hasSpeedInTrack, speedStats);
+			totalElevation += summary.totalElevation;
+			elevationPoints += summary.elevationPoints;
+
+			TrackPointsColumns columns = segment.getColumns();
+			float segmentDistance = 0f;
+			for (int j = 0; j < numberOfPoints; j++) {
+				PointAttributes attribute = pointAttributes.get(firstAttribute + j);
+				if (j > 0) {
+					distance += attribute.distance;
+					segmentDistance += attribute.distance;
+					if (columns != null) {
+						columns.setDistance(j, segmentDistance);
+					} else {
+						segment.points.get(j).distance = segmentDistance;
+					}
+				}
+				if (!hasSpeedData() && attribute.speed > 0 && distance > 0) {
+					setHasData(POINT_SPEED, true);
+				}
+				if (!hasElevationData() && !Float.isNaN(attribute.elevation) && distance > 0) {
+					setHasData(POINT_ELEVATION, true);
+				}
+			}
+		}
+		minSpeed = speedStats.minSpeed;
+		maxSpeed = speedStats.maxSpeed;
+		timeMoving = speedStats.timeMoving;
+		totalDistanceMoving = speedStats.distanceMoving;
+		processElevationDiffs(segments, pool);
+		checkUnspecifiedValues(fileTimeStamp);
+		processAverageValues(totalElevation, elevationPoints, speedStats.speedSum, speedStats.speedCount);
+		return this;
+	}
+
+	private void processElevationDiffs(List<TrkSegment> segments, ForkJoinPool pool) throws InterruptedException {
+		List<Callable<double[]>> tasks = new ArrayList<>();
+		for (final TrkSegment segment : segments) {
+			if (segment.points.size() > 0) {
+				tasks.add(new Callable<double[]>() {
+					@Override
+					public double[] call() {
+						GPXTrackAnalysis a = new GPXTrackAnalysis();
+						a.processElevationDiff(new SplitSegment(segment));
+						return new double[] {a.diffElevationUp, a.diffElevationDown};
+					}
+				});
+			}
+		}
+		List<double[]> diffs = TrackAnalysisSummary.invokeAll(pool, tasks);
+		for (double[] diff : diffs) {
+			diffElevationUp += diff[0];
+			diffElevationDown += diff[1];
+		}
+	}
+
 	private void addWptAttribute(WptPt point, PointAttributes attribute, TrackPointsAnalyser pointsAnalyser) {
 		if (!hasSpeedData() && attribute.speed > 0 && totalDistance > 0) {
 			setHasData(POINT_SPEED, true);
@@ -305,22 +420,21 @@ public class GPXTrackAnalysis {
 		pointAttributes.add(attribute);
 	}
 
-	private void updateBounds(WptPt point) {
+	private void updateBounds(double lat, double lon) {
 		if (left == 0 && right == 0) {
-			left = point.getLongitude();
-			right = point.getLongitude();
-			top = point.getLatitude();
-			bottom = point.getLatitude();
+			left = lon;
+			right = lon;
+			top = lat;
+			bottom = lat;
 		} else {
-			left = Math.min(left, point.getLongitude());
-			right = Math.max(right, point.getLongitude());
-			top = Math.max(top, point.getLatitude());
-			bottom = Math.min(bottom, point.getLatitude());
+			left = Math.min(left, lon);
+			right = Math.max(right, lon);
+			top = Math.max(top, lat);
+			bottom = Math.min(bottom, lat);
 		}
 	}
 
-	private void updateHdop(WptPt point) {
-		double hdop = point.hdop;
+	private void updateHdop(double hdop) {
 		if (hdop > 0) {
 			if (Double.isNaN(minHdop) || hdop < minHdop) {
 				minHdop = hdop;
@@ -378,17 +492,17 @@ public class GPXTrackAnalysis {
 		return new ElevationApproximator() {
 			@Override
 			public double getPointLatitude(int index) {
-				return segment.get(index).lat;
+				return segment.getLat(index);
 			}
 
 			@Override
 			public double getPointLongitude(int index) {
-				return segment.get(index).lon;
+				return segment.getLon(index);
 			}
 
 			@Override
 			public double getPointElevation(int index) {
-				return segment.get(index).ele;
+				return segment.getEle(index);
 			}
 
 			@Override
@@ -0,0 +1,296 @@
+package net.osmand.gpx;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import net.osmand.PlatformUtil;
+import net.osmand.data.QuadRect;
+import net.osmand.util.Algorithms;
+
+/**
+ * Streaming reader of track points (trk / trkseg / trkpt, rpt and csvattributes) of gpx file. Points are not
+ * materialized as {@link GPXUtilities.WptPt}, they are passed to listener in columnar chunks which are reused,
+ * so memory doesn't depend on size of file. Tracks and segments are numbered as in
+ * {@link GPXUtilities#loadGPXFile(InputStream)} without general track: points outside of trkseg go to the last
+ * segment of track and rpt of routepointextension go to the extra last track (only these points are kept
+ * in memory till the end of file). Waypoints, routes and extensions (except speed) are skipped,
+ * use {@link GPXUtilities#loadGPXFile(InputStream)} to read them.
+ */
+public class GPXTrackPointsReader {
+
+	private static final Log log = PlatformUtil.getLog(GPXTrackPointsReader.class);
+
+	public static final int DEFAULT_CHUNK_SIZE = 4096;
+
+	public interface TrackPointsListener {
+
+		void segmentStarted(int trackIndex, int segmentIndex);
+
+		/**
+		 * Chunk and its arrays are reused for next points, so they shouldn't be kept.
+		 */
+		void pointsRead(TrackPointsChunk chunk);
+
+		void segmentFinished(int trackIndex, int segmentIndex);
+	}
+
+	/**
+	 * Points of one segment, values are same as in {@link GPXUtilities.WptPt} (NaN for missing ele and hdop,
+	 * 0 for missing time and speed).
+	 */
+	public static class TrackPointsChunk {
+		public int trackIndex;
+		public int segmentIndex;
+		// index of the first point of chunk in segment
+		public int startIndex;
+		public int size;
+		public double[] lat;
+		public double[] lon;
+		public double[] ele;
+		public long[] time;
+		public float[] speed;
+		public float[] hdop;
+
+		public TrackPointsChunk(int capacity) {
+			lat = new double[capacity];
+			lon = new double[capacity];
+			ele = new double[capacity];
+			time = new long[capacity];
+			speed = new float[capacity];
+			hdop = new float[capacity];
+		}
+
+		public int capacity() {
+			return lat.length;
+		}
+
+		public void updateBounds(QuadRect bounds) {
+			for (int i = 0; i < size; i++) {
+				bounds.right = Math.max(bounds.right, lon[i]);
+				bounds.left = Math.min(bounds.left, lon[i]);
+				bounds.top = Math.max(bounds.top, lat[i]);
+				bounds.bottom = Math.min(bounds.bottom, lat[i]);
+			}
+		}
+
+		private void clear() {
+			startIndex += size;
+			size = 0;
+		}
+
+		private void addPoint(double pLat, double pLon) {
+			lat[size] = pLat;
+			lon[size] = pLon;
+			ele[size] = Double.NaN;
+			time[size] = 0;
+			speed[size] = 0;
+			hdop[size] = Float.NaN;
+			size++;
+		}
+	}
+
+	private final int chunkSize;
+
+	public GPXTrackPointsReader() {
+		this(DEFAULT_CHUNK_SIZE);
+	}
+
+	public GPXTrackPointsReader(int chunkSize) {
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * @return number of read points
+	 */
+	public int read(InputStream stream, TrackPointsListener listener) throws IOException {
+		try {
+			XmlPullParser parser = PlatformUtil.newXMLPullParser();
+			parser.setInput(GPXUtilities.getUTF8Reader(stream));
+			return read(parser, listener);
+		} catch (XmlPullParserException e) {
+			throw new IOException(e);
+		}
+	}
+
+	private int read(XmlPullParser parser, TrackPointsListener listener) throws XmlPullParserException, IOException {
+		TrackPointsChunk chunk = new TrackPointsChunk(chunkSize);
+		// rpt of routepointextension are added to separate track after all tracks like in GPXUtilities.loadGPXFile
+		List<TrackPointsChunk> routeChunks = new ArrayList<TrackPointsChunk>();
+		int trackIndex = -1;
+		// last segment of track, it stays open till next trkseg or end of track
+		int segmentIndex = -1;
+		boolean inTrack = false;
+		boolean inSegment = false;
+		String pointTag = null;
+		boolean inExtensions = false;
+		boolean routePointExtension = false;
+		int points = 0;
+		int tok;
+		while ((tok = parser.next()) != XmlPullParser.END_DOCUMENT) {
+			if (tok == XmlPullParser.START_TAG) {
+				String tag = parser.getName();
+				if (pointTag != null) {
+					int i = chunk.size - 1;
+					if (tag.equals("extensions")) {
+						inExtensions = true;
+					} else if (tag.equals(GPXUtilities.POINT_SPEED)) {
+						chunk.speed[i] = parseFloat(GPXUtilities.readText(parser, tag), chunk.speed[i]);
+					} else if (inExtensions) {
+						// other extensions are skipped
+					} else if (tag.equals(GPXUtilities.POINT_ELEVATION)) {
+						chunk.ele[i] = parseFloat(GPXUtilities.readText(parser, tag), Float.NaN);
+					} else if (tag.equals("time")) {
+						chunk.time[i] = GPXUtilities.parseTime(GPXUtilities.readText(parser, tag));
+					} else if (tag.equals("hdop")) {
+						chunk.hdop[i] = parseFloat(GPXUtilities.readText(parser, tag), Float.NaN);
+					}
+				} else if (tag.equalsIgnoreCase("routepointextension")) {
+					routePointExtension = true;
+				} else if (routePointExtension) {
+					if (tag.equals("rpt")) {
+						TrackPointsChunk routeChunk = routeChunks.isEmpty() ? null : routeChunks.get(routeChunks.size() - 1);
+						if (routeChunk == null || routeChunk.size == routeChunk.capacity()) {
+							routeChunk = new TrackPointsChunk(chunkSize);
+							routeChunk.startIndex = routeChunks.size() * chunkSize;
+							routeChunks.add(routeChunk);
+						}
+						routeChunk.addPoint(parseDouble(parser.getAttributeValue("", "lat")),
+								parseDouble(parser.getAttributeValue("", "lon")));
+						points++;
+					}
+				} else if (tag.equals("trk")) {
+					inTrack = true;
+					trackIndex++;
+					segmentIndex = -1;
+				} else if (inTrack && tag.equals("trkseg")) {
+					if (segmentIndex >= 0) {
+						finishSegment(chunk, listener);
+					}
+					segmentIndex++;
+					inSegment = true;
+					startSegment(chunk, trackIndex, segmentIndex, listener);
+				} else if (inTrack && (tag.equals("trkpt") || tag.equals("rpt"))) {
+					if (segmentIndex < 0) {
+						// points without trkseg are added to the last segment of track like in GPXUtilities.loadGPXFile
+						segmentIndex++;
+						startSegment(chunk, trackIndex, segmentIndex, listener);
+					}
+					addPoint(chunk, parseDouble(parser.getAttributeValue("", "lat")),
+							parseDouble(parser.getAttributeValue("", "lon")), listener);
+					pointTag = tag;
+					points++;
+				} else if (inSegment && tag.equals("csvattributes")) {
+					points += readCsvAttributes(GPXUtilities.readText(parser, tag), chunk, listener);
+				}
+			} else if (tok == XmlPullParser.END_TAG) {
+				String tag = parser.getName();
+				if (pointTag != null) {
+					if (tag.equals("extensions")) {
+						inExtensions = false;
+					} else if (tag.equals(pointTag)) {
+						pointTag = null;
+						inExtensions = false;
+					}
+				} else if (tag.equalsIgnoreCase("routepointextension")) {
+					routePointExtension = false;
+				} else if (tag.equals("trkseg")) {
+					inSegment = false;
+				} else if (inTrack && tag.equals("trk")) {
+					if (segmentIndex >= 0) {
+						finishSegment(chunk, listener);
+					}
+					inTrack = false;
+				}
+			}
+		}
+		if (!routeChunks.isEmpty()) {
+			trackIndex++;
+			listener.segmentStarted(trackIndex, 0);
+			for (TrackPointsChunk routeChunk : routeChunks) {
+				routeChunk.trackIndex = trackIndex;
+				listener.pointsRead(routeChunk);
+			}
+			listener.segmentFinished(trackIndex, 0);
+		}
+		return points;
+	}
+
+	private static void startSegment(TrackPointsChunk chunk, int trackIndex, int segmentIndex,
+	                                 TrackPointsListener listener) {
+		chunk.trackIndex = trackIndex;
+		chunk.segmentIndex = segmentIndex;
+		chunk.startIndex = 0;
+		chunk.size = 0;
+		listener.segmentStarted(trackIndex, segmentIndex);
+	}
+
+	private static void finishSegment(TrackPointsChunk chunk, TrackPointsListener listener) {
+		if (chunk.size > 0) {
+			listener.pointsRead(chunk);
+			chunk.clear();
+		}
+		listener.segmentFinished(chunk.trackIndex, chunk.segmentIndex);
+	}
+
+	private static void addPoint(TrackPointsChunk chunk, double lat, double lon, TrackPointsListener listener) {
+		if (chunk.size == chunk.capacity()) {
+			listener.pointsRead(chunk);
+			chunk.clear();
+		}
+		chunk.addPoint(lat, lon);
+	}
+
+	// lines of "lon,lat[,ele]", points are added with same conditions as in GPXUtilities.loadGPXFile
+	private static int readCsvAttributes(String text, TrackPointsChunk chunk, TrackPointsListener listener) {
+		if (text == null) {
+			return 0;
+		}
+		String[] lines = text.split("\n");
+		if (lines.length <= 1) {
+			return 0;
+		}
+		int points = 0;
+		for (String line : lines) {
+			String[] attrs = line.split(",");
+			try {
+				if (attrs.length > 1) {
+					double lon = Double.parseDouble(attrs[0]);
+					double lat = Double.parseDouble(attrs[1]);
+					addPoint(chunk, lat, lon, listener);
+					points++;
+					if (lines.length > 2 && attrs.length > 2) {
+						chunk.ele[chunk.size - 1] = Double.parseDouble(attrs[2]);
+					}
+				}
+			} catch (NumberFormatException e) {
+				// skipped
+			}
+		}
+		return points;
+	}
+
+	private static double parseDouble(String value) {
+		try {
+			return Double.parseDouble(value);
+		} catch (NumberFormatException | NullPointerException e) {
+			return 0;
+		}
+	}
+
+	private static float parseFloat(String value, float def) {
+		if (!Algorithms.isEmpty(value)) {
+			try {
+				return Float.parseFloat(value);
+			} catch (NumberFormatException e) {
+				log.debug(e.getMessage(), e);
+			}
+		}
+		return def;
+	}
+}
@@ -82,6 +82,9 @@ public class GPXUtilities {
 	public static final int TRAVEL_GPX_CONVERT_MULT_2 = 5;
 
 	public static boolean GPX_TIME_OLD_FORMAT = false;
+	// loaded and saved files are stored in binary cache next to them (see GPXBinaryCache), only for big enough files
+	public static boolean GPX_BINARY_CACHE = false;
+	public static long GPX_BINARY_CACHE_MIN_SIZE = 256 * 1024;
 	private static final String GPX_TIME_PATTERN = "yyyy-MM-dd'T'HH:mm:ss'Z'";
 	private static final String GPX_TIME_NO_TIMEZONE_PATTERN = "yyyy-MM-dd'T'HH:mm:ss";
 	private static final String GPX_TIME_PATTERN_TZ = "yyyy-MM-dd'T'HH:mm:ssXXX";
@@ -543,6 +546,17 @@ public class GPXUtilities {
 		public List<RouteSegment> routeSegments = new ArrayList<>();
 		public List<RouteType> routeTypes = new ArrayList<>();
 
+		/**
+		 * @return columns if points are stored in {@link TrackPointsColumns}, otherwise null
+		 */
+		public TrackPointsColumns getColumns() {
+			return points instanceof TrackPointsColumns.PointsView ? ((TrackPointsColumns.PointsView) points).getColumns() : null;
+		}
+
+		public void setColumns(TrackPointsColumns columns) {
+			points = columns.asPoints();
+		}
+
 		public boolean hasRoute() {
 			return !routeSegments.isEmpty() && !routeTypes.isEmpty();
 		}
@@ -850,7 +864,12 @@ public class GPXUtilities {
 		boolean updated = false;
 		for (TrkSegment segment : segments) {
 			if (segment.points.size() > 0) {
-				updateBounds(trackBounds, segment.points, 0);
+				TrackPointsColumns columns = segment.getColumns();
+				if (columns != null) {
+					columns.updateBounds(trackBounds);
+				} else {
+					updateBounds(trackBounds, segment.points, 0);
+				}
 				updated = true;
 			}
 		}
@@ -902,11 +921,20 @@ public class GPXUtilities {
 			if (fout.getParentFile() != null) {
 				fout.getParentFile().mkdirs();
 			}
+			GPXBinaryCache.delete(fout);
+			// checked before writing, as writer assigns its own extensions writers
+			boolean cache = GPX_BINARY_CACHE && GPXBinaryCache.isCacheable(file);
 			output = new OutputStreamWriter(new FileOutputStream(fout), "UTF-8"); //$NON-NLS-1$
 			if (Algorithms.isEmpty(file.path)) {
 				file.path = fout.getAbsolutePath();
 			}
-			return writeGpx(output, file, null);
+			Exception error = writeGpx(output, file, null);
+			output.close();
+			// other files are cached on next load
+			if (cache && error == null && fout.length() >= GPX_BINARY_CACHE_MIN_SIZE) {
+				GPXBinaryCache.write(fout, file, fout.length(), fout.lastModified());
+			}
+			return error;
 		} catch (Exception e) {
 			log.error("Error saving gpx", e); //$NON-NLS-1$
 			return e;
@@ -1290,11 +1318,20 @@ public class GPXUtilities {
 	}
 
 	public static String formatTime(long time) {
+		String text = GPXTimeFormat.format(time, false);
+		if (text != null) {
+			return text;
+		}
 		SimpleDateFormat format = getTimeFormatter();
 		return format.format(new Date(time));
 	}
 
 	public static long parseTime(String text) {
+		// old format ignores offset of time (and its milliseconds), such times are parsed as before
+		long time = GPXTimeFormat.parse(text, !GPX_TIME_OLD_FORMAT);
+		if (time != GPXTimeFormat.NOT_PARSED) {
+			return time;
+		}
 		if (GPX_TIME_OLD_FORMAT) {
 			return parseTime(text, getTimeFormatter(), getTimeFormatterMills());
 		} else {
@@ -1370,13 +1407,31 @@ public class GPXUtilities {
 	}
 
 	public static GPXFile loadGPXFile(File file, GPXExtensionsReader extensionsReader, boolean addGeneralTrack) {
+		boolean useCache = GPX_BINARY_CACHE && extensionsReader == null && file.length() >= GPX_BINARY_CACHE_MIN_SIZE;
+		if (useCache) {
+			GPXFile gpxFile = GPXBinaryCache.read(file);
+			if (gpxFile != null) {
+				if (addGeneralTrack) {
+					gpxFile.addGeneralTrack();
+				}
+				gpxFile.path = file.getAbsolutePath();
+				gpxFile.modifiedTime = file.lastModified();
+				gpxFile.pointsModifiedTime = gpxFile.modifiedTime;
+				return gpxFile;
+			}
+		}
 		FileInputStream fis = null;
 		try {
+			long length = file.length();
+			long lastModified = file.lastModified();
 			fis = new FileInputStream(file);
 			GPXFile gpxFile = loadGPXFile(fis, extensionsReader, addGeneralTrack);
 			gpxFile.path = file.getAbsolutePath();
-			gpxFile.modifiedTime = file.lastModified();
+			gpxFile.modifiedTime = lastModified;
 			gpxFile.pointsModifiedTime = gpxFile.modifiedTime;
+			if (useCache && gpxFile.error == null) {
+				GPXBinaryCache.write(file, gpxFile, length, lastModified);
+			}
 
 			Algorithms.closeStream(fis);
 			return gpxFile;
@@ -1794,7 +1849,7 @@ public class GPXUtilities {
 		return networkRouteKeyTags;
 	}
 
-	private static Map<String, PointsGroup> mergePointsGroups(List<PointsGroup> groups, List<WptPt> points) {
+	static Map<String, PointsGroup> mergePointsGroups(List<PointsGroup> groups, List<WptPt> points) {
 		Map<String, PointsGroup> pointsGroups = new LinkedHashMap<>();
 		for (PointsGroup category : groups) {
 			pointsGroups.put(category.name, category);
@@ -1825,7 +1880,7 @@ public class GPXUtilities {
 		return pointsGroups;
 	}
 
-	private static Reader getUTF8Reader(InputStream f) throws IOException {
+	static Reader getUTF8Reader(InputStream f) throws IOException {
 		BufferedInputStream bis = new BufferedInputStream(f);
 		assert bis.markSupported();
 		bis.mark(3);
@@ -56,6 +56,36 @@ class SplitSegment {
 		return segment.points.get(ind);
 	}
 
+	/**
+	 * @return columns of segment if point j is stored there (not approximated), otherwise null
+	 */
+	TrackPointsColumns getColumns(int j) {
+		TrackPointsColumns columns = segment.getColumns();
+		if (columns == null || (j == 0 && startCoeff != 0) || (j == getNumberOfPoints() - 1 && j != 0 && endCoeff != 1)) {
+			return null;
+		}
+		return columns;
+	}
+
+	int getColumnIndex(int j) {
+		return j + startPointInd;
+	}
+
+	double getLat(int j) {
+		TrackPointsColumns columns = getColumns(j);
+		return columns != null ? columns.getLat(getColumnIndex(j)) : get(j).lat;
+	}
+
+	double getLon(int j) {
+		TrackPointsColumns columns = getColumns(j);
+		return columns != null ? columns.getLon(getColumnIndex(j)) : get(j).lon;
+	}
+
+	double getEle(int j) {
+		TrackPointsColumns columns = getColumns(j);
+		return columns != null ? columns.getEle(getColumnIndex(j)) : get(j).ele;
+	}
+
 	private WptPt approx(WptPt w1, WptPt w2, double cf) {
 		long time = value(w1.time, w2.time, 0, cf);
 		double speed = value(w1.speed, w2.speed, 0, cf);
@@ -0,0 +1,404 @@
+package net.osmand.gpx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import net.osmand.Location;
+import net.osmand.gpx.GPXUtilities.TrkSegment;
+import net.osmand.gpx.GPXUtilities.WptPt;
+
+/**
+ * Statistics of consecutive points of one track segment, same values as collected by
+ * {@link GPXTrackAnalysis#prepareInformation(long, GPXTrackAnalysis.TrackPointsAnalyser, SplitSegment...)}
+ * except elevation diffs. Summaries of neighbour ranges are merged with {@link #add(TrackAnalysisSummary)},
+ * so they could be calculated concurrently or updated when points are appended.
+ * <p>
+ * Speed of points depends on speed of previous points of analysis (it's derived from displacement only
+ * till the first point with speed), so stats of points before the first point with speed (prefix)
+ * are kept separately and resolved when summaries are joined to analysis.
+ */
+public class TrackAnalysisSummary {
+
+	public static final int CHUNK_SIZE = 8192;
+
+	static class SpeedStats {
+		float minSpeed = Float.MAX_VALUE;
+		float maxSpeed = 0;
+		double speedSum = 0;
+		int speedCount = 0;
+		long timeMoving = 0;
+		float distanceMoving = 0;
+
+		void addSpeed(float speed) {
+			minSpeed = Math.min(speed, minSpeed);
+			if (speed > 0) {
+				speedSum += speed;
+				maxSpeed = Math.max(speed, maxSpeed);
+				speedCount++;
+			}
+		}
+
+		void addMoving(long timeDiffMillis, float distance) {
+			timeMoving += timeDiffMillis;
+			distanceMoving += distance;
+		}
+
+		void add(SpeedStats s) {
+			minSpeed = Math.min(minSpeed, s.minSpeed);
+			maxSpeed = Math.max(maxSpeed, s.maxSpeed);
+			speedSum += s.speedSum;
+			speedCount += s.speedCount;
+			timeMoving += s.timeMoving;
+			distanceMoving += s.distanceMoving;
+		}
+	}
+
+	int points;
+	// first point: its distance and speed are known only with previous point
+	double firstLat;
+	double firstLon;
+	double firstEle;
+	long firstTime;
+	float firstSpeed;
+	double lastLat;
+	double lastLon;
+	long lastTime;
+	// there is point with speed
+	boolean hasSpeed;
+
+	float totalDistance;
+	long startTime = Long.MAX_VALUE;
+	long endTime = Long.MIN_VALUE;
+	double left;
+	double right;
+	double top;
+	double bottom;
+	double minHdop = Double.NaN;
+	double maxHdop = Double.NaN;
+	float totalElevation;
+	int elevationPoints;
+	double minElevation = 99999;
+	double maxElevation = -100;
+
+	// points after the first point with speed
+	final SpeedStats speedStats = new SpeedStats();
+	// points before the first point with speed (except the first point), speed is derived from displacement
+	SpeedStats prefixStats = new SpeedStats();
+	int prefixPoints;
+
+	// attribute of the first point is replaced when previous point is known
+	List<PointAttributes> attributes = new ArrayList<>();
+
+	private final float[] calculations = new float[1];
+
+	public static TrackAnalysisSummary of(TrkSegment segment, int from, int to) {
+		TrackAnalysisSummary s = new TrackAnalysisSummary();
+		s.append(segment, from, to);
+		return s;
+	}
+
+	/**
+	 * @return summaries of segments, points of segment are summarized in chunks of {@link #CHUNK_SIZE}
+	 * which run concurrently if pool is provided
+	 */
+	public static List<TrackAnalysisSummary> summarize(List<TrkSegment> segments, ForkJoinPool pool) throws InterruptedException {
+		List<Callable<TrackAnalysisSummary>> tasks = new ArrayList<>();
+		int[] chunks = new int[segments.size()];
+		for (int i = 0; i < segments.size(); i++) {
+			final TrkSegment segment = segments.get(i);
+			final int size = segment.points.size();
+			for (int from = 0; from < size || from == 0; from += CHUNK_SIZE) {
+				final int start = from;
+				tasks.add(new Callable<TrackAnalysisSummary>() {
+					@Override
+					public TrackAnalysisSummary call() {
+						return of(segment, start, Math.min(start + CHUNK_SIZE, size));
+					}
+				});
+				chunks[i]++;
+			}
+		}
+		List<TrackAnalysisSummary> results = invokeAll(pool, tasks);
+		List<TrackAnalysisSummary> summaries = new ArrayList<>();
+		int k = 0;
+		for (int chunk : chunks) {
+			TrackAnalysisSummary summary = results.get(k++);
+			for (int j = 1; j < chunk; j++) {
+				summary.add(results.get(k++));
+			}
+			summaries.add(summary);
+		}
+		return summaries;
+	}
+
+	static <T> List<T> invokeAll(ForkJoinPool pool, List<Callable<T>> tasks) throws InterruptedException {
+		List<T> results = new ArrayList<>();
+		if (pool != null && tasks.size() > 1) {
+			try {
+				for (Future<T> f : pool.invokeAll(tasks)) {
+					results.add(f.get());
+				}
+			} catch (ExecutionException e) {
+				throw new IllegalStateException(e.getCause());
+			}
+		} else {
+			for (Callable<T> t : tasks) {
+				try {
+					results.add(t.call());
+				} catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		}
+		return results;
+	}
+
+	public int getPointsCount() {
+		return points;
+	}
+
+	public void append(TrkSegment segment, int from, int to) {
+		TrackPointsColumns columns = segment.getColumns();
+		for (int i = from; i < to; i++) {
+			if (columns != null) {
+				append(columns.getLat(i), columns.getLon(i), columns.getTime(i), columns.getEle(i),
+						(float) columns.getSpeed(i), columns.getHdop(i));
+			} else {
+				WptPt p = segment.points.get(i);
+				append(p.lat, p.lon, p.time, p.ele, (float) p.speed, p.hdop);
+			}
+		}
+	}
+
+	public void append(double lat, double lon, long time, double ele, float speed, double hdop) {
+		if (time != 0) {
+			startTime = Math.min(startTime, time);
+			endTime = Math.max(endTime, time);
+		}
+		updateBounds(lat, lon);
+		if (hdop > 0) {
+			minHdop = Double.isNaN(minHdop) ? hdop : Math.min(minHdop, hdop);
+			maxHdop = Double.isNaN(maxHdop) ? hdop : Math.max(maxHdop, hdop);
+		}
+		boolean isNaN = Double.isNaN(ele);
+		if (!isNaN) {
+			totalElevation += ele;
+			elevationPoints++;
+			minElevation = Math.min(ele, minElevation);
+			maxElevation = Math.max(ele, maxElevation);
+		}
+		float elevation = isNaN ? Float.NaN : (float) ele;
+		if (points == 0) {
+			firstLat = lat;
+			firstLon = lon;
+			firstEle = ele;
+			firstTime = time;
+			firstSpeed = speed;
+			hasSpeed = speed > 0;
+			attributes.add(attribute(0, 0, speed, elevation));
+		} else {
+			Location.distanceBetween(lastLat, lastLon, lat, lon, calculations);
+			float distance = calculations[0];
+			totalDistance += distance;
+			boolean speedSet = hasSpeed || speed > 0;
+			hasSpeed = speedSet;
+			attributes.add(addPoint(distance, time - lastTime, lastTime != 0 && time != 0, speed, elevation,
+					speedSet ? speedStats : prefixStats, speedSet));
+			if (!speedSet) {
+				prefixPoints++;
+			}
+		}
+		points++;
+		lastLat = lat;
+		lastLon = lon;
+		lastTime = time;
+	}
+
+	/**
+	 * Appends summary of following points of the same segment, next summary shouldn't be used after that.
+	 */
+	public void add(TrackAnalysisSummary next) {
+		if (next.points == 0) {
+			return;
+		}
+		if (points == 0) {
+			copy(next);
+			return;
+		}
+		totalDistance += next.totalDistance;
+		startTime = Math.min(startTime, next.startTime);
+		endTime = Math.max(endTime, next.endTime);
+		updateBounds(next.top, next.left);
+		updateBounds(next.bottom, next.right);
+		if (!Double.isNaN(next.minHdop)) {
+			minHdop = Double.isNaN(minHdop) ? next.minHdop : Math.min(minHdop, next.minHdop);
+			maxHdop = Double.isNaN(maxHdop) ? next.maxHdop : Math.max(maxHdop, next.maxHdop);
+		}
+		totalElevation += next.totalElevation;
+		elevationPoints += next.elevationPoints;
+		minElevation = Math.min(minElevation, next.minElevation);
+		maxElevation = Math.max(maxElevation, next.maxElevation);
+
+		// first point of next summary follows the last point
+		Location.distanceBetween(lastLat, lastLon, next.firstLat, next.firstLon, calculations);
+		float distance = calculations[0];
+		totalDistance += distance;
+		boolean speedSet = hasSpeed || next.firstSpeed > 0;
+		float elevation = Double.isNaN(next.firstEle) ? Float.NaN : (float) next.firstEle;
+		PointAttributes first = addPoint(distance, next.firstTime - lastTime, lastTime != 0 && next.firstTime != 0,
+				next.firstSpeed, elevation, speedSet ? speedStats : prefixStats, speedSet);
+		int firstInd = attributes.size();
+		attributes.addAll(next.attributes);
+		attributes.set(firstInd, first);
+		if (hasSpeed) {
+			// speed of next prefix points isn't derived
+			if (next.prefixPoints > 0) {
+				speedStats.minSpeed = Math.min(speedStats.minSpeed, 0);
+				for (int i = firstInd + 1; i <= firstInd + next.prefixPoints; i++) {
+					attributes.set(i, withSpeed(attributes.get(i), 0));
+				}
+			}
+		} else if (!speedSet) {
+			prefixPoints++;
+			prefixStats.add(next.prefixStats);
+			prefixPoints += next.prefixPoints;
+		}
+		speedStats.add(next.speedStats);
+		hasSpeed |= next.hasSpeed;
+		points += next.points;
+		lastLat = next.lastLat;
+		lastLon = next.lastLon;
+		lastTime = next.lastTime;
+	}
+
+	private PointAttributes addPoint(float distance, long timeDiffMillis, boolean timeSpecified, float speed,
+			float elevation, SpeedStats stats, boolean speedSet) {
+		// In case points are reversed and => time is decreasing
+		timeDiffMillis = Math.max(0, timeDiffMillis);
+		int timeDiff = (int) (timeDiffMillis / 1000);
+		//Last resort: Derive speed values from displacement if track does not originally contain speed
+		if (!speedSet && speed == 0 && timeDiff > 0) {
+			speed = distance / timeDiff;
+		}
+		if (speed > 0 && timeSpecified && distance > timeDiffMillis / 10000f) {
+			stats.addMoving(timeDiffMillis, distance);
+		}
+		stats.addSpeed(speed);
+		return attribute(distance, timeDiff, speed, elevation);
+	}
+
+	/**
+	 * Adds summary to analysis as following segment.
+	 *
+	 * @param hasSpeedInTrack there is point with speed in previous segments of analysis
+	 */
+	void addTo(GPXTrackAnalysis analysis, boolean hasSpeedInTrack, SpeedStats totalStats) {
+		if (points == 0) {
+			return;
+		}
+		analysis.points += points;
+		analysis.totalDistance += totalDistance;
+		if (startTime != Long.MAX_VALUE) {
+			analysis.startTime = Math.min(analysis.startTime, startTime);
+			analysis.endTime = Math.max(analysis.endTime, endTime);
+		}
+		if (analysis.left == 0 && analysis.right == 0) {
+			analysis.left = left;
+			analysis.right = right;
+			analysis.top = top;
+			analysis.bottom = bottom;
+		} else {
+			analysis.left = Math.min(analysis.left, left);
+			analysis.right = Math.max(analysis.right, right);
+			analysis.top = Math.max(analysis.top, top);
+			analysis.bottom = Math.min(analysis.bottom, bottom);
+		}
+		if (!Double.isNaN(minHdop)) {
+			analysis.minHdop = Double.isNaN(analysis.minHdop) ? minHdop : Math.min(analysis.minHdop, minHdop);
+			analysis.maxHdop = Double.isNaN(analysis.maxHdop) ? maxHdop : Math.max(analysis.maxHdop, maxHdop);
+		}
+		analysis.minElevation = Math.min(analysis.minElevation, minElevation);
+		analysis.maxElevation = Math.max(analysis.maxElevation, maxElevation);
+
+		// first point has no previous point in segment, time diff is kept from previous segment
+		totalStats.addSpeed(firstSpeed);
+		PointAttributes first = attributes.get(0);
+		List<PointAttributes> analysisAttributes = analysis.pointAttributes;
+		if (!analysisAttributes.isEmpty()) {
+			PointAttributes prev = analysisAttributes.get(analysisAttributes.size() - 1);
+			first = attribute(first.distance, (int) prev.timeDiff, first.speed, first.elevation);
+		}
+		analysisAttributes.add(first);
+		if (hasSpeedInTrack && prefixPoints > 0) {
+			totalStats.minSpeed = Math.min(totalStats.minSpeed, 0);
+			for (int i = 1; i <= prefixPoints; i++) {
+				analysisAttributes.add(withSpeed(attributes.get(i), 0));
+			}
+		} else {
+			totalStats.add(prefixStats);
+			analysisAttributes.addAll(attributes.subList(1, prefixPoints + 1));
+		}
+		analysisAttributes.addAll(attributes.subList(prefixPoints + 1, attributes.size()));
+		totalStats.add(speedStats);
+		analysis.hasSpeedInTrack |= hasSpeed;
+	}
+
+	private void updateBounds(double lat, double lon) {
+		if (points == 0) {
+			left = lon;
+			right = lon;
+			top = lat;
+			bottom = lat;
+		} else {
+			left = Math.min(left, lon);
+			right = Math.max(right, lon);
+			top = Math.max(top, lat);
+			bottom = Math.min(bottom, lat);
+		}
+	}
+
+	private void copy(TrackAnalysisSummary s) {
+		points = s.points;
+		firstLat = s.firstLat;
+		firstLon = s.firstLon;
+		firstEle = s.firstEle;
+		firstTime = s.firstTime;
+		firstSpeed = s.firstSpeed;
+		lastLat = s.lastLat;
+		lastLon = s.lastLon;
+		lastTime = s.lastTime;
+		hasSpeed = s.hasSpeed;
+		totalDistance = s.totalDistance;
+		startTime = s.startTime;
+		endTime = s.endTime;
+		left = s.left;
+		right = s.right;
+		top = s.top;
+		bottom = s.bottom;
+		minHdop = s.minHdop;
+		maxHdop = s.maxHdop;
+		totalElevation = s.totalElevation;
+		elevationPoints = s.elevationPoints;
+		minElevation = s.minElevation;
+		maxElevation = s.maxElevation;
+		speedStats.add(s.speedStats);
+		prefixStats = s.prefixStats;
+		prefixPoints = s.prefixPoints;
+		attributes = s.attributes;
+	}
+
+	private static PointAttributes attribute(float distance, int timeDiff, float speed, float elevation) {
+		PointAttributes attribute = new PointAttributes(distance, timeDiff, false, false);
+		attribute.speed = speed;
+		attribute.elevation = elevation;
+		return attribute;
+	}
+
+	private static PointAttributes withSpeed(PointAttributes a, float speed) {
+		return attribute(a.distance, (int) a.timeDiff, speed, a.elevation);
+	}
+}
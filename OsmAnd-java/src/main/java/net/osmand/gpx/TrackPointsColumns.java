@@ -0,0 +1,322 @@
+package net.osmand.gpx;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import net.osmand.data.QuadRect;
+import net.osmand.gpx.GPXTrackPointsReader.TrackPointsChunk;
+import net.osmand.gpx.GPXUtilities.WptPt;
+
+/**
+ * Columnar store of track segment points: coordinates, elevation, time, speed, hdop and distance are kept
+ * in parallel arrays. {@link WptPt} is created only when caller asks for it (see {@link #asPoints()}),
+ * after that values of materialized point are used, so changes of point fields are visible in columns.
+ * Points could be read (and materialized) from several threads, changes of size are not thread safe.
+ */
+public class TrackPointsColumns {
+
+	private int size;
+	private double[] lat;
+	private double[] lon;
+	private double[] ele;
+	private double[] distance;
+	private long[] time;
+	private float[] speed;
+	private float[] hdop;
+	// created lazily with the first materialized point, the same point is returned to all threads
+	private volatile AtomicReferenceArray<WptPt> points;
+
+	public TrackPointsColumns() {
+		this(16);
+	}
+
+	public TrackPointsColumns(int capacity) {
+		capacity = Math.max(capacity, 1);
+		lat = new double[capacity];
+		lon = new double[capacity];
+		ele = new double[capacity];
+		distance = new double[capacity];
+		time = new long[capacity];
+		speed = new float[capacity];
+		hdop = new float[capacity];
+	}
+
+	public static TrackPointsColumns fromPoints(List<WptPt> pts) {
+		TrackPointsColumns columns = new TrackPointsColumns(pts.size());
+		for (WptPt pt : pts) {
+			columns.add(pt.lat, pt.lon, pt.ele, pt.time, (float) pt.speed, (float) pt.hdop);
+			columns.distance[columns.size - 1] = pt.distance;
+		}
+		return columns;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void add(double pLat, double pLon, double pEle, long pTime, float pSpeed, float pHdop) {
+		insert(size, pLat, pLon, pEle, pTime, pSpeed, pHdop);
+	}
+
+	public void addChunk(TrackPointsChunk chunk) {
+		ensureCapacity(size + chunk.size);
+		System.arraycopy(chunk.lat, 0, lat, size, chunk.size);
+		System.arraycopy(chunk.lon, 0, lon, size, chunk.size);
+		System.arraycopy(chunk.ele, 0, ele, size, chunk.size);
+		System.arraycopy(chunk.time, 0, time, size, chunk.size);
+		System.arraycopy(chunk.speed, 0, speed, size, chunk.size);
+		System.arraycopy(chunk.hdop, 0, hdop, size, chunk.size);
+		Arrays.fill(distance, size, size + chunk.size, 0);
+		size += chunk.size;
+	}
+
+	public double getLat(int i) {
+		WptPt p = materialized(i);
+		return p != null ? p.lat : lat[i];
+	}
+
+	public double getLon(int i) {
+		WptPt p = materialized(i);
+		return p != null ? p.lon : lon[i];
+	}
+
+	public double getEle(int i) {
+		WptPt p = materialized(i);
+		return p != null ? p.ele : ele[i];
+	}
+
+	public long getTime(int i) {
+		WptPt p = materialized(i);
+		return p != null ? p.time : time[i];
+	}
+
+	public double getSpeed(int i) {
+		WptPt p = materialized(i);
+		return p != null ? p.speed : speed[i];
+	}
+
+	public double getHdop(int i) {
+		WptPt p = materialized(i);
+		return p != null ? p.hdop : hdop[i];
+	}
+
+	public double getDistance(int i) {
+		WptPt p = materialized(i);
+		return p != null ? p.distance : distance[i];
+	}
+
+	public void setDistance(int i, double d) {
+		distance[i] = d;
+		WptPt p = materialized(i);
+		if (p != null) {
+			p.distance = d;
+		}
+	}
+
+	// only materialized points could be marked as first / last points of general segment
+	public boolean isFirstPoint(int i) {
+		WptPt p = materialized(i);
+		return p != null && p.firstPoint;
+	}
+
+	public boolean isLastPoint(int i) {
+		WptPt p = materialized(i);
+		return p != null && p.lastPoint;
+	}
+
+	public WptPt getPoint(int i) {
+		checkIndex(i);
+		WptPt p = materialized(i);
+		if (p == null) {
+			WptPt created = new WptPt(lat[i], lon[i], time[i], ele[i], speed[i], hdop[i]);
+			created.distance = distance[i];
+			AtomicReferenceArray<WptPt> pts = getPointsArray();
+			p = pts.compareAndSet(i, null, created) ? created : pts.get(i);
+		}
+		return p;
+	}
+
+	public void updateBounds(QuadRect bounds) {
+		for (int i = 0; i < size; i++) {
+			double pLat = getLat(i);
+			double pLon = getLon(i);
+			bounds.right = Math.max(bounds.right, pLon);
+			bounds.left = Math.min(bounds.left, pLon);
+			bounds.top = Math.max(bounds.top, pLat);
+			bounds.bottom = Math.min(bounds.bottom, pLat);
+		}
+	}
+
+	/**
+	 * @return list view of points which creates {@link WptPt} on access, changes of list are stored in columns
+	 */
+	public List<WptPt> asPoints() {
+		return new PointsView(this);
+	}
+
+	private WptPt materialized(int i) {
+		AtomicReferenceArray<WptPt> pts = points;
+		return pts == null ? null : pts.get(i);
+	}
+
+	private AtomicReferenceArray<WptPt> getPointsArray() {
+		AtomicReferenceArray<WptPt> pts = points;
+		if (pts == null) {
+			synchronized (this) {
+				pts = points;
+				if (pts == null) {
+					pts = new AtomicReferenceArray<WptPt>(lat.length);
+					points = pts;
+				}
+			}
+		}
+		return pts;
+	}
+
+	private void checkIndex(int i) {
+		if (i < 0 || i >= size) {
+			throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+		}
+	}
+
+	private void insert(int i, double pLat, double pLon, double pEle, long pTime, float pSpeed, float pHdop) {
+		ensureCapacity(size + 1);
+		if (i < size) {
+			shift(i, i + 1, size - i);
+		}
+		lat[i] = pLat;
+		lon[i] = pLon;
+		ele[i] = pEle;
+		time[i] = pTime;
+		speed[i] = pSpeed;
+		hdop[i] = pHdop;
+		distance[i] = 0;
+		AtomicReferenceArray<WptPt> pts = points;
+		if (pts != null) {
+			pts.set(i, null);
+		}
+		size++;
+	}
+
+	private void set(int i, WptPt p) {
+		lat[i] = p.lat;
+		lon[i] = p.lon;
+		ele[i] = p.ele;
+		time[i] = p.time;
+		speed[i] = (float) p.speed;
+		hdop[i] = (float) p.hdop;
+		distance[i] = p.distance;
+		getPointsArray().set(i, p);
+	}
+
+	private void removeRange(int from, int to) {
+		shift(to, from, size - to);
+		AtomicReferenceArray<WptPt> pts = points;
+		if (pts != null) {
+			for (int i = size - (to - from); i < size; i++) {
+				pts.set(i, null);
+			}
+		}
+		size -= to - from;
+	}
+
+	private void shift(int from, int to, int length) {
+		System.arraycopy(lat, from, lat, to, length);
+		System.arraycopy(lon, from, lon, to, length);
+		System.arraycopy(ele, from, ele, to, length);
+		System.arraycopy(distance, from, distance, to, length);
+		System.arraycopy(time, from, time, to, length);
+		System.arraycopy(speed, from, speed, to, length);
+		System.arraycopy(hdop, from, hdop, to, length);
+		AtomicReferenceArray<WptPt> pts = points;
+		if (pts != null) {
+			if (from < to) {
+				for (int i = length - 1; i >= 0; i--) {
+					pts.set(to + i, pts.get(from + i));
+				}
+			} else {
+				for (int i = 0; i < length; i++) {
+					pts.set(to + i, pts.get(from + i));
+				}
+			}
+		}
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > lat.length) {
+			int c = Math.max(capacity, lat.length * 3 / 2 + 1);
+			lat = Arrays.copyOf(lat, c);
+			lon = Arrays.copyOf(lon, c);
+			ele = Arrays.copyOf(ele, c);
+			distance = Arrays.copyOf(distance, c);
+			time = Arrays.copyOf(time, c);
+			speed = Arrays.copyOf(speed, c);
+			hdop = Arrays.copyOf(hdop, c);
+			AtomicReferenceArray<WptPt> pts = points;
+			if (pts != null) {
+				AtomicReferenceArray<WptPt> copy = new AtomicReferenceArray<WptPt>(c);
+				for (int i = 0; i < size; i++) {
+					copy.set(i, pts.get(i));
+				}
+				points = copy;
+			}
+		}
+	}
+
+	static class PointsView extends AbstractList<WptPt> implements RandomAccess {
+
+		private final TrackPointsColumns columns;
+
+		PointsView(TrackPointsColumns columns) {
+			this.columns = columns;
+		}
+
+		TrackPointsColumns getColumns() {
+			return columns;
+		}
+
+		@Override
+		public WptPt get(int index) {
+			return columns.getPoint(index);
+		}
+
+		@Override
+		public int size() {
+			return columns.size;
+		}
+
+		@Override
+		public WptPt set(int index, WptPt element) {
+			WptPt old = columns.getPoint(index);
+			columns.set(index, element);
+			return old;
+		}
+
+		@Override
+		public void add(int index, WptPt element) {
+			if (index < 0 || index > columns.size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + columns.size);
+			}
+			columns.insert(index, 0, 0, 0, 0, 0, 0);
+			columns.set(index, element);
+			modCount++;
+		}
+
+		@Override
+		public WptPt remove(int index) {
+			WptPt old = columns.getPoint(index);
+			columns.removeRange(index, index + 1);
+			modCount++;
+			return old;
+		}
+
+		@Override
+		protected void removeRange(int fromIndex, int toIndex) {
+			columns.removeRange(fromIndex, toIndex);
+			modCount++;
+		}
+	}
+}
@@ -6,10 +6,13 @@ import gnu.trove.map.hash.TLongObjectHashMap;
 import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
-import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import net.osmand.PlatformUtil;
 import net.osmand.binary.RouteDataObject;
@@ -31,6 +34,16 @@ public class BinaryRoutePlanner {
 	protected static final Log log = PlatformUtil.getLog(BinaryRoutePlanner.class);
 
 	private static final int ROUTE_POINTS = 11;
+
+	// reverse frontiers of parallel bidirectional search, threads are reused by next searches
+	private static final ExecutorService REVERSE_SEARCH_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "Reverse route search");
+			t.setDaemon(true);
+			return t;
+		}
+	});
 	static boolean ASSERT_CHECKS = true;
 	static boolean TRACE_ROUTING = false;
 	static int TEST_ID = 194349150;
@@ -48,30 +61,12 @@ public class BinaryRoutePlanner {
 	}
 
 
-	private static class SegmentsComparator implements Comparator<RouteSegmentCost> {
-		@Override
-		public int compare(RouteSegmentCost o1, RouteSegmentCost o2) {
-			return Double.compare(o1.cost, o2.cost);
-		}
-	}
-	
 	private static float cost(float distanceFromStart, float distanceToEnd, RoutingContext ctx) {
 		return ctx.config.heuristicCoefficient * distanceToEnd + distanceFromStart;
 	}
 
-	private static class RouteSegmentCost {
-		float cost;
-		RouteSegment segment;
-		
-		public RouteSegmentCost(RouteSegment segment, RoutingContext ctx) {
-			this.cost = cost(segment.distanceFromStart, segment.distanceToEnd, ctx);
-			this.segment = segment;
-		}
-
-		@Override
-		public String toString() {
-			return String.format("%.2f %s", cost, segment);
-		}
+	private static float cost(RouteSegment segment, RoutingContext ctx) {
+		return cost(segment.distanceFromStart, segment.distanceToEnd, ctx);
 	}
 
 	/**
@@ -80,15 +75,35 @@ public class BinaryRoutePlanner {
 	 */
 	FinalRouteSegment searchRouteInternal(final RoutingContext ctx, RouteSegmentPoint start, RouteSegmentPoint end, 
 			TLongObjectMap<RouteSegment> boundaries) throws InterruptedException, IOException {
+		return searchRouteInternal(ctx, start, end, boundaries, new TLongObjectHashMap<RouteSegment>());
+	}
+
+	/**
+	 * @param visitedDirectSegments filled with visited segments of forward search
+	 */
+	FinalRouteSegment searchRouteInternal(final RoutingContext ctx, RouteSegmentPoint start, RouteSegmentPoint end,
+			TLongObjectMap<RouteSegment> boundaries, TLongObjectMap<RouteSegment> visitedDirectSegments)
+			throws InterruptedException, IOException {
+		return searchRouteInternal(ctx, start, end, boundaries, visitedDirectSegments, null);
+	}
+
+	/**
+	 * @param reverseTree reverse search to the same end kept from previous calculation, it's continued from new start
+	 * (only forward search state of context segments should be cleared). Empty tree is filled by this search.
+	 */
+	FinalRouteSegment searchRouteInternal(final RoutingContext ctx, RouteSegmentPoint start, RouteSegmentPoint end,
+			TLongObjectMap<RouteSegment> boundaries, TLongObjectMap<RouteSegment> visitedDirectSegments,
+			ReverseSearchTree reverseTree) throws InterruptedException, IOException {
 		// measure time
 		ctx.memoryOverhead = 1000;
 		// Initializing priority queue to visit way segments 
-		PriorityQueue<RouteSegmentCost> graphDirectSegments = new PriorityQueue<>(50, new SegmentsComparator());
-		PriorityQueue<RouteSegmentCost> graphReverseSegments = new PriorityQueue<>(50, new SegmentsComparator());
+		RouteSegmentHeap graphDirectSegments = new RouteSegmentHeap(50);
+		RouteSegmentHeap graphReverseSegments = reverseTree != null ? reverseTree.graphSegments : new RouteSegmentHeap(50);
 		// Set to not visit one segment twice (stores road.id << X + segmentStart)
-		TLongObjectHashMap<RouteSegment> visitedDirectSegments = new TLongObjectHashMap<RouteSegment>();
-		TLongObjectHashMap<RouteSegment> visitedOppositeSegments = new TLongObjectHashMap<RouteSegment>();
-		initQueuesWithStartEnd(ctx, start, end, graphDirectSegments, graphReverseSegments);
+		TLongObjectMap<RouteSegment> visitedOppositeSegments = reverseTree != null ? reverseTree.visitedSegments
+				: new TLongObjectHashMap<RouteSegment>();
+		boolean resumeReverseSearch = reverseTree != null && reverseTree.calculated;
+		initQueuesWithStartEnd(ctx, start, end, graphDirectSegments, resumeReverseSearch ? null : graphReverseSegments);
 
 		boolean onlyBackward = ctx.getPlanRoadDirection() < 0;
 		boolean onlyForward = ctx.getPlanRoadDirection() > 0;
@@ -104,11 +119,20 @@ public class BinaryRoutePlanner {
 			end.others = null;
 			forwardSearch = false;
 		}
-		PriorityQueue<RouteSegmentCost> graphSegments = forwardSearch ?  graphDirectSegments : graphReverseSegments;
+		if (resumeReverseSearch) {
+			resumeReverseSearch(ctx, reverseTree);
+		} else if (reverseTree != null) {
+			reverseTree.calculated = true;
+		}
+		if (ctx.dijkstraMode == 0 && ctx.planRouteIn2Directions() && ctx.config.parallelBidirectionalSearch) {
+			return searchRouteInParallel(ctx, start, end, boundaries, graphDirectSegments, graphReverseSegments,
+					visitedDirectSegments, visitedOppositeSegments, reverseTree);
+		}
+		RouteSegmentHeap graphSegments = forwardSearch ?  graphDirectSegments : graphReverseSegments;
 		float[] minCost = new float[] { Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
 		while (!graphSegments.isEmpty()) {
-			RouteSegmentCost cst = graphSegments.poll();
-			RouteSegment segment = cst.segment;
+			float segmentCost = graphSegments.peekCost();
+			RouteSegment segment = graphSegments.poll();
 			int visitedCnt = (start != null ? visitedDirectSegments.size() : 0) + (end != null ? visitedOppositeSegments.size() : 0);
 			// use accumulative approach
 			ctx.memoryOverhead = visitedCnt * STANDARD_ROAD_VISITED_OVERHEAD +
@@ -122,6 +146,10 @@ public class BinaryRoutePlanner {
 				}
 				break;
 			}
+			if (ctx.config.MAX_COST > 0 && segmentCost > ctx.config.MAX_COST) {
+				// dijkstra queue is ordered by cost, so all segments within cost are visited
+				break;
+			}
 			boolean skipSegment = false;
 			if (segment instanceof FinalRouteSegment) {
 				if (RoutingContext.SHOW_GC_SIZE) {
@@ -160,22 +188,22 @@ public class BinaryRoutePlanner {
 					println("  " + segment.segEnd + ">> Already visited by minimum");
 				}
 				skipSegment = true;
-			} else if (cst.cost + 0.1 < minCost[forwardSearch ? 1 : 0] && ASSERT_CHECKS && ctx.calculationMode != RouteCalculationMode.COMPLEX) {
+			} else if (segmentCost + 0.1 < minCost[forwardSearch ? 1 : 0] && ASSERT_CHECKS && ctx.calculationMode != RouteCalculationMode.COMPLEX) {
 				if (ctx.config.heuristicCoefficient <= 1) {
-					throw new IllegalStateException(cst.cost + " < ???  " + minCost[forwardSearch ? 1 : 0]);
+					throw new IllegalStateException(segmentCost + " < ???  " + minCost[forwardSearch ? 1 : 0]);
 				}
 			} else {
-				minCost[forwardSearch ? 1 : 0] = cst.cost;
+				minCost[forwardSearch ? 1 : 0] = segmentCost;
 			}
 			if (!skipSegment) {
 				if (forwardSearch) {
 					boolean doNotAddIntersections = onlyBackward;
 					processRouteSegment(ctx, false, graphDirectSegments, visitedDirectSegments, segment,
-							visitedOppositeSegments, boundaries, doNotAddIntersections);
+							visitedOppositeSegments, boundaries, doNotAddIntersections, null);
 				} else {
 					boolean doNotAddIntersections = onlyForward;
 					processRouteSegment(ctx, true, graphReverseSegments, visitedOppositeSegments, segment,
-							visitedDirectSegments, boundaries, doNotAddIntersections);
+							visitedDirectSegments, boundaries, doNotAddIntersections, reverseTree);
 				}
 			}
 			updateCalculationProgress(ctx, graphDirectSegments, graphReverseSegments);
@@ -193,8 +221,8 @@ public class BinaryRoutePlanner {
 					// can't proceed - so no route
 					break;
 				} else {
-					RouteSegment fw = graphDirectSegments.peek().segment;
-					RouteSegment bw = graphReverseSegments.peek().segment;
+					RouteSegment fw = graphDirectSegments.peek();
+					RouteSegment bw = graphReverseSegments.peek();
 					forwardSearch = Double.compare(cost(fw.distanceFromStart, fw.distanceToEnd, ctx), 
 							cost(bw.distanceFromStart, bw.distanceToEnd,ctx)) <= 0;
 				}
@@ -215,7 +243,7 @@ public class BinaryRoutePlanner {
 				graphSegments = graphReverseSegments;
 			}
 			// check if interrupted
-			if (ctx.calculationProgress != null && ctx.calculationProgress.isCancelled) {
+			if (ctx.calculationProgress != null && ctx.calculationProgress.isCancelled()) {
 				throw new InterruptedException("Route calculation interrupted");
 			}
 		}
@@ -228,8 +256,200 @@ public class BinaryRoutePlanner {
 		return finalSegment;
 	}
 
+	/**
+	 * Bidirectional search where forward frontier is expanded on the calling thread and reverse frontier on
+	 * {@link #REVERSE_SEARCH_EXECUTOR} thread.
+	 * Searches meet through visited segments of each other (see checkIfOppositeSegmentWasVisited), the cheapest final
+	 * segment is taken when the other frontier can't find a cheaper one.
+	 */
+	private FinalRouteSegment searchRouteInParallel(final RoutingContext ctx, RouteSegmentPoint start, RouteSegmentPoint end,
+			TLongObjectMap<RouteSegment> boundaries, RouteSegmentHeap graphDirectSegments, RouteSegmentHeap graphReverseSegments,
+			TLongObjectMap<RouteSegment> visitedDirectSegments, TLongObjectMap<RouteSegment> visitedOppositeSegments,
+			ReverseSearchTree reverseTree) throws InterruptedException {
+		ParallelSearchState state = new ParallelSearchState();
+		SearchFrontier forward = new SearchFrontier(ctx, state, false, start, graphDirectSegments, visitedDirectSegments,
+				graphReverseSegments, visitedOppositeSegments, boundaries, null);
+		SearchFrontier reverse = new SearchFrontier(ctx, state, true, end, graphReverseSegments, visitedOppositeSegments,
+				graphDirectSegments, visitedDirectSegments, boundaries, reverseTree);
+		Future<?> reverseSearch = REVERSE_SEARCH_EXECUTOR.submit(reverse);
+		forward.run();
+		if (state.finalSegment == null) {
+			// forward search failed or route doesn't exist
+			state.stop();
+		}
+		// reverse search changes segments of the final chain till it's finished, so wait for it in any case
+		boolean interrupted = false;
+		while (true) {
+			try {
+				reverseSearch.get();
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+				state.stop();
+			} catch (ExecutionException e) {
+				state.fail(e.getCause());
+				break;
+			}
+		}
+		if (interrupted) {
+			throw new InterruptedException("Route calculation interrupted");
+		}
+		if (ctx.calculationProgress != null) {
+			ctx.calculationProgress.visitedDirectSegments += visitedDirectSegments.size();
+			ctx.calculationProgress.visitedOppositeSegments += visitedOppositeSegments.size();
+			ctx.calculationProgress.directQueueSize += graphDirectSegments.size();
+			ctx.calculationProgress.oppositeQueueSize += graphReverseSegments.size();
+		}
+		Throwable error = state.error;
+		if (error instanceof InterruptedException) {
+			throw (InterruptedException) error;
+		} else if (error instanceof RuntimeException) {
+			throw (RuntimeException) error;
+		} else if (error instanceof Error) {
+			throw (Error) error;
+		} else if (error != null) {
+			throw new IllegalStateException(error);
+		}
+		return state.finalSegment;
+	}
+
+	private static class ParallelSearchState {
+		volatile boolean stopped;
+		volatile FinalRouteSegment finalSegment;
+		volatile float finalCost = Float.POSITIVE_INFINITY;
+		Throwable error;
+
+		synchronized void offerFinalSegment(FinalRouteSegment segment, float cost) {
+			if (cost < finalCost) {
+				finalSegment = segment;
+				finalCost = cost;
+			}
+		}
+
+		synchronized void fail(Throwable e) {
+			if (error == null) {
+				error = e;
+			}
+			stopped = true;
+		}
+
+		void stop() {
+			stopped = true;
+		}
+	}
+
+	private class SearchFrontier implements Runnable {
+		private final RoutingContext ctx;
+		private final ParallelSearchState state;
+		private final boolean reverseWaySearch;
+		private final RouteSegmentPoint pnt;
+		private final RouteSegmentHeap graphSegments;
+		private final TLongObjectMap<RouteSegment> visitedSegments;
+		private final RouteSegmentHeap oppositeGraphSegments;
+		private final TLongObjectMap<RouteSegment> oppositeSegments;
+		private final TLongObjectMap<RouteSegment> boundaries;
+		private final ReverseSearchTree reverseTree;
+
+		SearchFrontier(RoutingContext ctx, ParallelSearchState state, boolean reverseWaySearch, RouteSegmentPoint pnt,
+				RouteSegmentHeap graphSegments, TLongObjectMap<RouteSegment> visitedSegments,
+				RouteSegmentHeap oppositeGraphSegments, TLongObjectMap<RouteSegment> oppositeSegments,
+				TLongObjectMap<RouteSegment> boundaries, ReverseSearchTree reverseTree) {
+			this.ctx = ctx;
+			this.state = state;
+			this.reverseWaySearch = reverseWaySearch;
+			this.pnt = pnt;
+			this.graphSegments = graphSegments;
+			this.visitedSegments = visitedSegments;
+			this.oppositeGraphSegments = oppositeGraphSegments;
+			this.oppositeSegments = oppositeSegments;
+			this.boundaries = boundaries;
+			this.reverseTree = reverseTree;
+		}
+
+		@Override
+		public void run() {
+			try {
+				search();
+			} catch (Throwable e) {
+				state.fail(e);
+			}
+		}
+
+		private void search() throws InterruptedException {
+			float minCost = Float.NEGATIVE_INFINITY;
+			while (!state.stopped) {
+				if (graphSegments.isEmpty()) {
+					if (state.finalSegment != null) {
+						break;
+					}
+					String msg = reverseWaySearch ? "Route is not found to selected target point." :
+							"Route is not found from selected start point.";
+					if (!checkIfGraphIsEmpty(ctx, true, reverseWaySearch, graphSegments, pnt, visitedSegments, msg)) {
+						// can't proceed - so no route
+						state.stop();
+						break;
+					}
+					minCost = Float.NEGATIVE_INFINITY;
+					continue;
+				}
+				float segmentCost = graphSegments.peekCost();
+				if (segmentCost >= state.finalCost) {
+					// final segment is found and this frontier can't improve it
+					break;
+				}
+				RouteSegment segment = graphSegments.poll();
+				int oppositeVisited;
+				synchronized (oppositeSegments) {
+					oppositeVisited = oppositeSegments.size();
+				}
+				int visitedCnt = visitedSegments.size() + oppositeVisited;
+				ctx.memoryOverhead = visitedCnt * STANDARD_ROAD_VISITED_OVERHEAD +
+						(graphSegments.size() + oppositeGraphSegments.size()) * STANDARD_ROAD_IN_QUEUE_OVERHEAD;
+				if (TRACE_ROUTING) {
+					printRoad(">", segment, reverseWaySearch);
+				}
+				if (ctx.config.MAX_VISITED > 0 && visitedCnt > ctx.config.MAX_VISITED) {
+					state.stop();
+					break;
+				}
+				if (segment instanceof FinalRouteSegment) {
+					if (TRACE_ROUTING) {
+						println(" >>FINAL segment: " + segment);
+					}
+					state.offerFinalSegment((FinalRouteSegment) segment, segmentCost);
+					break;
+				}
+				if (ctx.memoryOverhead > ctx.config.memoryLimitation * 0.95) {
+					throw new IllegalStateException("There is not enough memory " + ctx.config.memoryLimitation / (1 << 20) + " Mb");
+				}
+				if (ctx.calculationProgress != null) {
+					ctx.calculationProgress.visitedSegments++;
+				}
+				if (visitedSegments.containsKey(calculateRoutePointId(segment))) {
+					if (TRACE_ROUTING) {
+						println("  " + segment.segEnd + ">> Already visited by minimum");
+					}
+				} else {
+					if (segmentCost + 0.1 < minCost && ASSERT_CHECKS && ctx.calculationMode != RouteCalculationMode.COMPLEX) {
+						if (ctx.config.heuristicCoefficient <= 1) {
+							throw new IllegalStateException(segmentCost + " < ???  " + minCost);
+						}
+					} else {
+						minCost = segmentCost;
+					}
+					processRouteSegment(ctx, reverseWaySearch, graphSegments, visitedSegments, segment,
+							oppositeSegments, boundaries, false, reverseTree);
+				}
+				updateCalculationProgress(ctx, graphSegments, reverseWaySearch);
+				if (ctx.calculationProgress != null && ctx.calculationProgress.isCancelled()) {
+					throw new InterruptedException("Route calculation interrupted");
+				}
+			}
+		}
+	}
+
 	protected boolean checkIfGraphIsEmpty(final RoutingContext ctx, boolean allowDirection,
-			boolean reverseWaySearch, PriorityQueue<RouteSegmentCost> graphSegments, RouteSegmentPoint pnt, TLongObjectMap<RouteSegment> visited,
+			boolean reverseWaySearch, RouteSegmentHeap graphSegments, RouteSegmentPoint pnt, TLongObjectMap<RouteSegment> visited,
 			String msg) {
 		if (allowDirection && graphSegments.isEmpty()) {
 			if (pnt.others != null) {
@@ -244,7 +464,7 @@ public class BinaryRoutePlanner {
 						pos.setParentRoute(null);
 						pos.distanceFromStart = 0;
 						pos.distanceToEnd = estimatedDistance;
-						graphSegments.add(new RouteSegmentCost(pos, ctx));
+						graphSegments.add(pos, cost(pos, ctx));
 					}
 					RouteSegment neg = next.initRouteSegment(false);
 					if (neg != null && !visited.containsKey(calculateRoutePointId(neg)) && 
@@ -252,7 +472,7 @@ public class BinaryRoutePlanner {
 						neg.setParentRoute(null);
 						neg.distanceFromStart = 0;
 						neg.distanceToEnd = estimatedDistance;
-						graphSegments.add(new RouteSegmentCost(neg, ctx));
+						graphSegments.add(neg, cost(neg, ctx));
 					}
 					if (!graphSegments.isEmpty()) {
 						println("Reiterate point with new " + (!reverseWaySearch ? "start " : "destination ")
@@ -268,7 +488,7 @@ public class BinaryRoutePlanner {
 		return false;
 	}
 
-	public RouteSegment initEdgeSegment(final RoutingContext ctx, RouteSegmentPoint pnt, boolean originalDir, PriorityQueue<RouteSegmentCost> graphSegments, boolean reverseSearchWay) {
+	public RouteSegment initEdgeSegment(final RoutingContext ctx, RouteSegmentPoint pnt, boolean originalDir, RouteSegmentHeap graphSegments, boolean reverseSearchWay) {
 		if (pnt == null) {
 			return null;
 		}
@@ -312,7 +532,7 @@ public class BinaryRoutePlanner {
 		}
 		if (checkMovementAllowed(ctx, reverseSearchWay, seg)) {
 			seg.distanceToEnd = estimatedDistance(seg, reverseSearchWay, ctx);
-			graphSegments.add(new RouteSegmentCost(seg, ctx));
+			graphSegments.add(seg, cost(seg, ctx));
 			return seg;
 		}
 		return null;
@@ -329,7 +549,7 @@ public class BinaryRoutePlanner {
 	
 
 	private void initQueuesWithStartEnd(final RoutingContext ctx, RouteSegmentPoint start, RouteSegmentPoint end,
-			PriorityQueue<RouteSegmentCost> graphDirectSegments, PriorityQueue<RouteSegmentCost> graphReverseSegments) {
+			RouteSegmentHeap graphDirectSegments, RouteSegmentHeap graphReverseSegments) {
 		if (start != null) {
 			ctx.startX = start.preciseX;
 			ctx.startY = start.preciseY;
@@ -340,8 +560,9 @@ public class BinaryRoutePlanner {
 		}
 		RouteSegment startPos = initEdgeSegment(ctx, start, true, graphDirectSegments, false);
 		RouteSegment startNeg = initEdgeSegment(ctx, start, false, graphDirectSegments, false);
-		RouteSegment endPos = initEdgeSegment(ctx, end, true, graphReverseSegments, true);
-		RouteSegment endNeg = initEdgeSegment(ctx, end, false, graphReverseSegments, true);
+		// reverse queue is null when reverse search is continued
+		RouteSegment endPos = graphReverseSegments == null ? null : initEdgeSegment(ctx, end, true, graphReverseSegments, true);
+		RouteSegment endNeg = graphReverseSegments == null ? null : initEdgeSegment(ctx, end, false, graphReverseSegments, true);
 		if (TRACE_ROUTING) {
 			printRoad("Initial segment start positive: ", startPos, false);
 			printRoad("Initial segment start negative: ", startNeg, false);
@@ -351,6 +572,36 @@ public class BinaryRoutePlanner {
 	}
 
 
+	/**
+	 * Continues reverse search of previous calculation from new start: final segments of previous calculation
+	 * are dropped, segments where previous search was met by forward search are expanded
+	 * and queue is ordered by estimates to new start.
+	 */
+	private void resumeReverseSearch(final RoutingContext ctx, ReverseSearchTree tree) {
+		RouteSegmentHeap graphSegments = tree.graphSegments;
+		List<RouteSegment> queued = new ArrayList<RouteSegment>(graphSegments.size());
+		while (!graphSegments.isEmpty()) {
+			RouteSegment s = graphSegments.poll();
+			if (!(s instanceof FinalRouteSegment)) {
+				queued.add(s);
+			}
+		}
+		for (RouteSegment s : tree.notExpandedSegments) {
+			if (tree.visitedSegments.get(calculateRoutePointId(s)) == s) {
+				RouteSegment next = processIntersections(ctx, graphSegments, tree.visitedSegments, s, true, false);
+				if (next != null) {
+					queued.add(next);
+				}
+			}
+		}
+		tree.notExpandedSegments.clear();
+		for (RouteSegment s : queued) {
+			// not visited segment estimates time from its start point
+			s.distanceToEnd = h(ctx, s.getStartPointX(), s.getStartPointY(), ctx.startX, ctx.startY);
+			graphSegments.add(s, cost(s, ctx));
+		}
+	}
+
 	private void printMemoryConsumption(String string) {
 		long h1 = RoutingContext.runGCUsedMemory();
 		float mb = (1 << 20);
@@ -358,22 +609,30 @@ public class BinaryRoutePlanner {
 	}
 
 
-	private void updateCalculationProgress(final RoutingContext ctx, PriorityQueue<RouteSegmentCost> graphDirectSegments,
-			PriorityQueue<RouteSegmentCost> graphReverseSegments) {
+	private void updateCalculationProgress(final RoutingContext ctx, RouteSegmentHeap graphDirectSegments,
+			RouteSegmentHeap graphReverseSegments) {
+		updateCalculationProgress(ctx, graphReverseSegments, true);
+		updateCalculationProgress(ctx, graphDirectSegments, false);
+	}
+
+	private void updateCalculationProgress(final RoutingContext ctx, RouteSegmentHeap graphSegments, boolean reverseWaySearch) {
 		if (ctx.calculationProgress != null) {
-			ctx.calculationProgress.reverseSegmentQueueSize = graphReverseSegments.size();
-			ctx.calculationProgress.directSegmentQueueSize = graphDirectSegments.size();
-			if (!graphDirectSegments.isEmpty() && ctx.getPlanRoadDirection() >= 0) {
-				RouteSegment peek = graphDirectSegments.peek().segment;
-				ctx.calculationProgress.distanceFromBegin = Math.max(peek.distanceFromStart,
-						ctx.calculationProgress.distanceFromBegin);
-				ctx.calculationProgress.directDistance = peek.distanceFromStart + peek.distanceToEnd;
-			}
-			if (!graphReverseSegments.isEmpty() && ctx.getPlanRoadDirection() <= 0) {
-				RouteSegment peek = graphReverseSegments.peek().segment;
-				ctx.calculationProgress.distanceFromEnd = Math.max(peek.distanceFromStart + peek.distanceToEnd,
+			if (!reverseWaySearch) {
+				ctx.calculationProgress.directSegmentQueueSize = graphSegments.size();
+				RouteSegment peek = graphSegments.peek();
+				if (peek != null && ctx.getPlanRoadDirection() >= 0) {
+					ctx.calculationProgress.distanceFromBegin = Math.max(peek.distanceFromStart,
+							ctx.calculationProgress.distanceFromBegin);
+					ctx.calculationProgress.directDistance = peek.distanceFromStart + peek.distanceToEnd;
+				}
+			} else {
+				ctx.calculationProgress.reverseSegmentQueueSize = graphSegments.size();
+				RouteSegment peek = graphSegments.peek();
+				if (peek != null && ctx.getPlanRoadDirection() <= 0) {
+					ctx.calculationProgress.distanceFromEnd = Math.max(peek.distanceFromStart + peek.distanceToEnd,
 							ctx.calculationProgress.distanceFromEnd);
-				ctx.calculationProgress.reverseDistance = peek.distanceFromStart + peek.distanceToEnd;
+					ctx.calculationProgress.reverseDistance = peek.distanceFromStart + peek.distanceToEnd;
+				}
 			}
 		}
 	}
@@ -465,9 +724,9 @@ public class BinaryRoutePlanner {
 	}
 
 	private void processRouteSegment(final RoutingContext ctx, boolean reverseWaySearch,
-			PriorityQueue<RouteSegmentCost> graphSegments, TLongObjectMap<RouteSegment> visitedSegments,
+			RouteSegmentHeap graphSegments, TLongObjectMap<RouteSegment> visitedSegments,
 			RouteSegment startSegment, TLongObjectMap<RouteSegment> oppositeSegments,
-			TLongObjectMap<RouteSegment> boundaries, boolean doNotAddIntersections) {
+			TLongObjectMap<RouteSegment> boundaries, boolean doNotAddIntersections, ReverseSearchTree reverseTree) {
 		if (ASSERT_CHECKS && !checkMovementAllowed(ctx, reverseWaySearch, startSegment)) {
 			throw new IllegalStateException();
 		}
@@ -499,32 +758,39 @@ public class BinaryRoutePlanner {
 					currentSegment, oppositeSegments, boundaries);
  			
 			// 3. upload segment itself to visited segments
-			long nextPntId = calculateRoutePointId(currentSegment);
-			RouteSegment existingSegment = visitedSegments.put(nextPntId, currentSegment);
-			if (existingSegment != null) {
-				if (distFromStartPlusSegmentTime > existingSegment.distanceFromStart) {
-					// insert back original segment (test case with large area way)
-					visitedSegments.put(nextPntId, existingSegment);
-					if (TRACE_ROUTING) {
-						println("  " + currentSegment.segEnd + ">> Already visited");
-					}
-					break;
-				} else {
-					if (ctx.config.heuristicCoefficient <= 1) {
-						if (RoutingContext.PRINT_ROUTING_ALERTS) {
-							System.err.println("! ALERT slower segment was visited earlier " + distFromStartPlusSegmentTime + " > "
-								+ existingSegment.distanceFromStart + ": " + currentSegment + " - " + existingSegment);
-						} else {
-							ctx.alertSlowerSegmentedWasVisitedEarlier++;
+			// (visited segments are checked by opposite search which could run on another thread)
+			synchronized (visitedSegments) {
+				long nextPntId = calculateRoutePointId(currentSegment);
+				RouteSegment existingSegment = visitedSegments.put(nextPntId, currentSegment);
+				if (existingSegment != null) {
+					if (distFromStartPlusSegmentTime > existingSegment.distanceFromStart) {
+						// insert back original segment (test case with large area way)
+						visitedSegments.put(nextPntId, existingSegment);
+						if (TRACE_ROUTING) {
+							println("  " + currentSegment.segEnd + ">> Already visited");
+						}
+						break;
+					} else {
+						if (ctx.config.heuristicCoefficient <= 1) {
+							if (RoutingContext.PRINT_ROUTING_ALERTS) {
+								System.err.println("! ALERT slower segment was visited earlier " + distFromStartPlusSegmentTime + " > "
+									+ existingSegment.distanceFromStart + ": " + currentSegment + " - " + existingSegment);
+							} else {
+								ctx.alertSlowerSegmentedWasVisitedEarlier++;
+							}
 						}
 					}
 				}
-			}
 						
-			// reassign @distanceFromStart to make it correct for visited segment
-			currentSegment.distanceFromStart = distFromStartPlusSegmentTime;
-			
+				// reassign @distanceFromStart to make it correct for visited segment
+				currentSegment.distanceFromStart = distFromStartPlusSegmentTime;
+			}
+
 			if (bothDirVisited) {
+				if (reverseWaySearch && reverseTree != null) {
+					// reverse search could be continued from other start
+					reverseTree.notExpandedSegments.add(currentSegment);
+				}
  				// We stop here for shortcut creation (we can't improve the neighbors if they're already visited cause the opposite is min - prove by contradiction) 
 				if (TRACE_ROUTING) {
 					println("  " + currentSegment.segEnd + ">> 2 dir visited");
@@ -539,7 +805,7 @@ public class BinaryRoutePlanner {
 			// a) final segment is always in queue & double checked b) using osm segment almost always is shorter routing than other connected
 			if (DEBUG_BREAK_EACH_SEGMENT && nextCurrentSegment != null) {
 				if (!doNotAddIntersections) {
-					graphSegments.add(new RouteSegmentCost(nextCurrentSegment, ctx));
+					graphSegments.add(nextCurrentSegment, cost(nextCurrentSegment, ctx));
 				}
 				break;
 			}
@@ -609,7 +875,7 @@ public class BinaryRoutePlanner {
 	}
 
 	private boolean checkIfOppositeSegmentWasVisited(RoutingContext ctx, boolean reverseWaySearch,
-			PriorityQueue<RouteSegmentCost> graphSegments, RouteSegment currentSegment,
+			RouteSegmentHeap graphSegments, RouteSegment currentSegment,
 			TLongObjectMap<RouteSegment> oppositeSegments, TLongObjectMap<RouteSegment> boundaries) {
 		// check inverse direction for opposite
 		long currPoint = calculateRoutePointInternalId(currentSegment.getRoad(), 
@@ -624,10 +890,20 @@ public class BinaryRoutePlanner {
 				oppositeSegments = boundaries;
 			}
 		}
-		if (oppositeSegments.containsKey(currPoint)) {
-			RouteSegment opposite = oppositeSegments.get(currPoint);
+		boolean oppositeVisited;
+		RouteSegment opposite;
+		float oppTime;
+		RouteSegment oppParent;
+		// opposite search could run on another thread, it changes parents and distances of its segments
+		// under monitor of its visited segments (see processOneRoadIntersection)
+		synchronized (oppositeSegments) {
+			oppositeVisited = oppositeSegments.containsKey(currPoint);
+			opposite = oppositeVisited ? oppositeSegments.get(currPoint) : null;
+			oppTime = opposite == null ? 0 : opposite.distanceFromStart;
+			oppParent = getParentDiffId(opposite);
+		}
+		if (oppositeVisited) {
 			RouteSegment curParent = getParentDiffId(currentSegment);
-			RouteSegment oppParent = getParentDiffId(opposite);
 			RouteSegment to = reverseWaySearch ? curParent : oppParent;
 			RouteSegment from = !reverseWaySearch ? curParent : oppParent;
 			if (checkViaRestrictions(from, to)) {
@@ -635,7 +911,6 @@ public class BinaryRoutePlanner {
 						currentSegment.getSegmentStart(), currentSegment.getSegmentEnd());
 				frs.setParentRoute(currentSegment.getParentRoute());
 				frs.reverseWaySearch = reverseWaySearch;
-				float oppTime = opposite == null ? 0 : opposite.distanceFromStart;
 				frs.distanceFromStart = oppTime + currentSegment.distanceFromStart;
 				frs.distanceToEnd = 0;
 				frs.opposite = opposite;
@@ -643,7 +918,7 @@ public class BinaryRoutePlanner {
 					// impossible route (when start/point on same segment but different dir) don't add to queue
 					return true;
 				}
-				graphSegments.add(new RouteSegmentCost(frs, ctx));
+				graphSegments.add(frs, cost(frs, ctx));
 				if (TRACE_ROUTING) {
 					printRoad("  " + currentSegment.segEnd + ">> Final segment : ", frs, reverseWaySearch);
 				}
@@ -683,8 +958,8 @@ public class BinaryRoutePlanner {
 				(parent == null || parent.getRoad().getRestrictionLength() == 0)) {
 			return false;
 		}
-		ctx.segmentsToVisitPrescripted.clear();
-		ctx.segmentsToVisitNotForbidden.clear();
+		getSegmentsToVisitPrescripted(ctx, reverseWay).clear();
+		getSegmentsToVisitNotForbidden(ctx, reverseWay).clear();
 		processRestriction(ctx, inputNext, reverseWay, 0, road);
 		if (parent != null) {
 			processRestriction(ctx, inputNext, reverseWay, road.id, parent.getRoad());
@@ -696,6 +971,8 @@ public class BinaryRoutePlanner {
 	protected void processRestriction(RoutingContext ctx, RouteSegment inputNext, boolean reverseWay, long viaId,
 			RouteDataObject road) {
 		boolean via = viaId != 0;
+		List<RouteSegment> segmentsToVisitPrescripted = getSegmentsToVisitPrescripted(ctx, reverseWay);
+		List<RouteSegment> segmentsToVisitNotForbidden = getSegmentsToVisitNotForbidden(ctx, reverseWay);
 		RouteSegment next = inputNext;
 		boolean exclusiveRestriction = false;
 		while (next != null) {
@@ -757,11 +1034,11 @@ public class BinaryRoutePlanner {
 					|| type == MapRenderingTypes.RESTRICTION_NO_STRAIGHT_ON || type == MapRenderingTypes.RESTRICTION_NO_U_TURN) {
 				// next = next.next; continue;
 				if (via) {
-					ctx.segmentsToVisitPrescripted.remove(next);
+					segmentsToVisitPrescripted.remove(next);
 				}
 			} else if (type == -1) {
 				// case no restriction
-				ctx.segmentsToVisitNotForbidden.add(next);
+				segmentsToVisitNotForbidden.add(next);
 			} else {
 				if (!via) {
 					// case exclusive restriction (only_right, only_straight, ...)
@@ -770,21 +1047,30 @@ public class BinaryRoutePlanner {
 					// 2. in case we are going forward we have one "in" and many "out"
 					if (!reverseWay) {
 						exclusiveRestriction = true;
-						ctx.segmentsToVisitNotForbidden.clear();
-						ctx.segmentsToVisitPrescripted.add(next);
+						segmentsToVisitNotForbidden.clear();
+						segmentsToVisitPrescripted.add(next);
 					} else {
-						ctx.segmentsToVisitNotForbidden.add(next);
+						segmentsToVisitNotForbidden.add(next);
 					}
 				}
 			}
 			next = next.next;
 		}
 		if (!via) {
-			ctx.segmentsToVisitPrescripted.addAll(ctx.segmentsToVisitNotForbidden);
+			segmentsToVisitPrescripted.addAll(segmentsToVisitNotForbidden);
 		}
 	}
 
-	private RouteSegment processIntersections(RoutingContext ctx, PriorityQueue<RouteSegmentCost> graphSegments,
+	// reverse search uses own lists, it could run on another thread
+	private static List<RouteSegment> getSegmentsToVisitPrescripted(RoutingContext ctx, boolean reverseWay) {
+		return reverseWay ? ctx.reverseSegmentsToVisitPrescripted : ctx.segmentsToVisitPrescripted;
+	}
+
+	private static List<RouteSegment> getSegmentsToVisitNotForbidden(RoutingContext ctx, boolean reverseWay) {
+		return reverseWay ? ctx.reverseSegmentsToVisitNotForbidden : ctx.segmentsToVisitNotForbidden;
+	}
+
+	private RouteSegment processIntersections(RoutingContext ctx, RouteSegmentHeap graphSegments,
 			TLongObjectMap<RouteSegment> visitedSegments,  RouteSegment currentSegment,
 			boolean reverseWaySearch, boolean doNotAddIntersections) {
 		RouteSegment nextCurrentSegment = null;
@@ -839,7 +1125,7 @@ public class BinaryRoutePlanner {
 		Iterator<RouteSegment> nextIterator = null;
 		boolean thereAreRestrictions = proccessRestrictions(ctx, currentSegment, connectedNextSegment, reverseWaySearch);
 		if (thereAreRestrictions) {
-			nextIterator = ctx.segmentsToVisitPrescripted.iterator();
+			nextIterator = getSegmentsToVisitPrescripted(ctx, reverseWaySearch).iterator();
 			if (TRACE_ROUTING) {
 				println("  " + currentSegment.segEnd + ">> There are restrictions ");
 			}
@@ -891,7 +1177,7 @@ public class BinaryRoutePlanner {
 		return nextCurrentSegment;
 	}
 
-	private boolean processOneRoadIntersection(RoutingContext ctx, boolean reverseWaySearch, PriorityQueue<RouteSegmentCost> graphSegments,
+	private boolean processOneRoadIntersection(RoutingContext ctx, boolean reverseWaySearch, RouteSegmentHeap graphSegments,
 			TLongObjectMap<RouteSegment> visitedSegments, RouteSegment segment, RouteSegment next) {
 		if (next != null) {
 			if (!checkMovementAllowed(ctx, reverseWaySearch, next)) {
@@ -938,7 +1224,9 @@ public class BinaryRoutePlanner {
 								ctx.alertFasterRoadToVisitedSegments++;
 							}
 						}
-						visitedSegments.remove(calculateRoutePointId(next));
+						synchronized (visitedSegments) {
+							visitedSegments.remove(calculateRoutePointId(next));
+						}
 					} else {
 						return false;
 					}
@@ -948,15 +1236,18 @@ public class BinaryRoutePlanner {
 			}
 			if (!next.isSegmentAttachedToStart() || cost(next.distanceFromStart, next.distanceToEnd,
 					ctx) > cost(distFromStart, segment.distanceToEnd, ctx)) {
-				next.distanceFromStart = distFromStart;
-				next.distanceToEnd = segment.distanceToEnd;
+				// next could be parent of visited segments which are read by opposite search
+				synchronized (visitedSegments) {
+					next.distanceFromStart = distFromStart;
+					next.distanceToEnd = segment.distanceToEnd;
+					// put additional information to recover whole route after
+					next.setParentRoute(segment);
+				}
 				if (TRACE_ROUTING) {
 					printRoad(" " + (next.isSegmentAttachedToStart() ? "*" : "") + segment.getSegmentEnd() + ">>", next, null);
 				}
-				// put additional information to recover whole route after
-				next.setParentRoute(segment);
 				if (graphSegments != null) {
-					graphSegments.add(new RouteSegmentCost(next, ctx));
+					graphSegments.add(next, cost(next, ctx));
 				}
 				return true;
 			}
@@ -1051,6 +1342,8 @@ public class BinaryRoutePlanner {
 		// NON-VISITED: Approximated (h(x)) time from @segStart of @this route segment to End [Start for reverse A*] 
 		// VISITED: Approximated (h(x)) time from @segEnd of @this route segment to End [Start for reverse A*]
 		float distanceToEnd = 0;
+		// position in A* queue (see RouteSegmentHeap), -1 if segment is not queued
+		int heapIndex = -1;
 
 		public RouteSegment(RouteDataObject road, int segmentStart, int segmentEnd) {
 			this.road = road;
@@ -1137,6 +1430,14 @@ public class BinaryRoutePlanner {
 			this.distanceFromStart = distanceFromStart;
 		}
 		
+		// clears state left by previous search, so segment of loaded tile could be used by next search
+		void clearSearchState() {
+			parentRoute = null;
+			distanceFromStart = 0;
+			distanceToEnd = 0;
+			heapIndex = -1;
+		}
+
 		public int getDepth() {
 			if (parentRoute == null) {
 				return 0;
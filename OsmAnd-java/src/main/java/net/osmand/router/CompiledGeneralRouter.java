@@ -0,0 +1,371 @@
+package net.osmand.router;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import gnu.trove.list.array.TIntArrayList;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteTypeRule;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.GeneralRouter.RouteDataObjectAttribute;
+
+/**
+ * General router compiled to flat decision tables.
+ * On compile rules are analyzed for tags and tag values they refer to, so every region type is classified once
+ * as relevant or irrelevant for the profile. All attributes (access, oneway, speed, priorities, obstacles) are evaluated
+ * together for a distinct set of relevant types and stored as a row:
+ * roads and points with 1 relevant type (most of them) read the row from table indexed by region type id,
+ * other combinations are looked up in open addressing table without allocation.
+ * Rows are computed by {@link GeneralRouter} itself, so results are the same as for original router.
+ */
+public class CompiledGeneralRouter extends GeneralRouter {
+
+	private static final int ACCESS = 0;
+	private static final int ONEWAY = 1;
+	private static final int PENALTY_TRANSITION = 2;
+	private static final int ROAD_SPEED = 3;
+	private static final int ROAD_PRIORITY = 4;
+	private static final int DESTINATION_PRIORITY = 5;
+	private static final int ROAD_ROW_SIZE = 6;
+
+	private static final int OBSTACLE_FORWARD = 0;
+	private static final int OBSTACLE_BACKWARD = 1;
+	private static final int ROUTING_OBSTACLE_FORWARD = 2;
+	private static final int ROUTING_OBSTACLE_BACKWARD = 3;
+	private static final int POINT_ROW_SIZE = 4;
+
+	private final Set<String> roadTagValues = new HashSet<String>();
+	private final Set<String> roadTags = new HashSet<String>();
+	private final Set<String> pointTagValues = new HashSet<String>();
+	private final Set<String> pointTags = new HashSet<String>();
+
+	private final Map<RouteRegion, RegionTables> regions = new ConcurrentHashMap<RouteRegion, RegionTables>();
+
+	public CompiledGeneralRouter(GeneralRouter router) {
+		super(router, router.getParameterValues());
+		long[] impassable = router.getImpassableRoadIds();
+		if (impassable.length > 0) {
+			Set<Long> ids = new HashSet<Long>();
+			for (long id : impassable) {
+				ids.add(id);
+			}
+			setImpassableRoads(ids);
+		}
+		RouteDataObjectAttribute[] roadAttributes = new RouteDataObjectAttribute[] { RouteDataObjectAttribute.ACCESS,
+				RouteDataObjectAttribute.ONEWAY, RouteDataObjectAttribute.PENALTY_TRANSITION,
+				RouteDataObjectAttribute.ROAD_SPEED, RouteDataObjectAttribute.ROAD_PRIORITIES,
+				RouteDataObjectAttribute.DESTINATION_PRIORITIES };
+		for (RouteDataObjectAttribute a : roadAttributes) {
+			collectRuleReferences(a, roadTagValues, roadTags);
+		}
+		collectRuleReferences(RouteDataObjectAttribute.OBSTACLES, pointTagValues, pointTags);
+		collectRuleReferences(RouteDataObjectAttribute.ROUTING_OBSTACLES, pointTagValues, pointTags);
+	}
+
+	@Override
+	public CompiledGeneralRouter build(Map<String, String> params) {
+		return new CompiledGeneralRouter(super.build(params));
+	}
+
+	@Override
+	public CompiledGeneralRouter compile() {
+		return this;
+	}
+
+	@Override
+	public boolean acceptLine(RouteDataObject way) {
+		return getRoadRow(way)[ACCESS] >= 0 && !isImpassableRoad(way);
+	}
+
+	@Override
+	public int isOneWay(RouteDataObject road) {
+		return (int) getRoadRow(road)[ONEWAY];
+	}
+
+	@Override
+	public float getPenaltyTransition(RouteDataObject road) {
+		return getRoadRow(road)[PENALTY_TRANSITION];
+	}
+
+	@Override
+	public float defineRoutingSpeed(RouteDataObject road, boolean dir) {
+		// not implemented direction usage
+		return getRoadRow(road)[ROAD_SPEED];
+	}
+
+	@Override
+	public float defineSpeedPriority(RouteDataObject road, boolean dir) {
+		// not implemented direction usage
+		return getRoadRow(road)[ROAD_PRIORITY];
+	}
+
+	@Override
+	public float defineDestinationPriority(RouteDataObject road) {
+		return getRoadRow(road)[DESTINATION_PRIORITY];
+	}
+
+	@Override
+	public float defineObstacle(RouteDataObject road, int point, boolean dir) {
+		float[] row = getPointRow(road, point);
+		if (row == null) {
+			return 0;
+		}
+		return row[dir ? OBSTACLE_FORWARD : OBSTACLE_BACKWARD];
+	}
+
+	@Override
+	public float defineRoutingObstacle(RouteDataObject road, int point, boolean dir) {
+		float[] row = getPointRow(road, point);
+		if (row == null) {
+			return 0;
+		}
+		return row[dir ? ROUTING_OBSTACLE_FORWARD : ROUTING_OBSTACLE_BACKWARD];
+	}
+
+	private float[] getRoadRow(RouteDataObject road) {
+		TypeTable table = getRegionTables(road.region).roads;
+		float[] row = table.get(road.types);
+		if (row == null) {
+			row = new float[ROAD_ROW_SIZE];
+			// access is kept without impassable roads, they are checked by road id
+			row[ACCESS] = getObjContext(RouteDataObjectAttribute.ACCESS).evaluateInt(road, 0);
+			row[ONEWAY] = super.isOneWay(road);
+			row[PENALTY_TRANSITION] = super.getPenaltyTransition(road);
+			row[ROAD_SPEED] = super.defineRoutingSpeed(road, true);
+			row[ROAD_PRIORITY] = super.defineSpeedPriority(road, true);
+			row[DESTINATION_PRIORITY] = super.defineDestinationPriority(road);
+			table.put(road.types, row);
+		}
+		return row;
+	}
+
+	private float[] getPointRow(RouteDataObject road, int point) {
+		int[] pointTypes = road.getPointTypes(point);
+		if (pointTypes == null) {
+			return null;
+		}
+		TypeTable table = getRegionTables(road.region).points;
+		float[] row = table.get(pointTypes);
+		if (row == null) {
+			row = new float[POINT_ROW_SIZE];
+			row[OBSTACLE_FORWARD] = super.defineObstacle(road, point, true);
+			row[OBSTACLE_BACKWARD] = super.defineObstacle(road, point, false);
+			row[ROUTING_OBSTACLE_FORWARD] = super.defineRoutingObstacle(road, point, true);
+			row[ROUTING_OBSTACLE_BACKWARD] = super.defineRoutingObstacle(road, point, false);
+			table.put(pointTypes, row);
+		}
+		return row;
+	}
+
+	private RegionTables getRegionTables(RouteRegion region) {
+		RegionTables tables = regions.get(region);
+		if (tables == null) {
+			synchronized (regions) {
+				tables = regions.get(region);
+				if (tables == null) {
+					tables = new RegionTables(region);
+					regions.put(region, tables);
+				}
+			}
+		}
+		return tables;
+	}
+
+	private class RegionTables {
+		final TypeTable roads;
+		final TypeTable points;
+
+		RegionTables(RouteRegion region) {
+			roads = new TypeTable(region, roadTagValues, roadTags, new int[0]);
+			// direction types are filtering point types, so they always change result
+			points = new TypeTable(region, pointTagValues, pointTags, new int[] { region.directionForward,
+					region.directionBackward, region.directionTrafficSignalsForward,
+					region.directionTrafficSignalsBackward, region.maxheightForward, region.maxheightBackward });
+		}
+	}
+
+	/**
+	 * Rows of evaluated attributes of region types. Reads are lock free, all arrays are replaced on change.
+	 */
+	private static class TypeTable {
+		private static final byte UNKNOWN = 0;
+		private static final byte IRRELEVANT = 1;
+		private static final byte RELEVANT = 2;
+
+		private final RouteRegion region;
+		private final Set<String> tagValues;
+		private final Set<String> tags;
+		private final int[] alwaysRelevant;
+
+		private volatile byte[] relevance = new byte[0];
+		private volatile float[][] singleRows = new float[0][];
+		private volatile float[] emptyRow;
+		private volatile AtomicReferenceArray<CombinationRow> combinations = new AtomicReferenceArray<CombinationRow>(64);
+		private int combinationsSize;
+
+		TypeTable(RouteRegion region, Set<String> tagValues, Set<String> tags, int[] alwaysRelevant) {
+			this.region = region;
+			this.tagValues = tagValues;
+			this.tags = tags;
+			this.alwaysRelevant = alwaysRelevant;
+		}
+
+		public float[] get(int[] types) {
+			byte[] rel = relevance;
+			int count = 0;
+			int single = -1;
+			int hash = 1;
+			for (int t : types) {
+				if (t >= rel.length || rel[t] == UNKNOWN) {
+					return null;
+				}
+				if (rel[t] == RELEVANT) {
+					count++;
+					single = t;
+					hash = 31 * hash + t;
+				}
+			}
+			if (count == 0) {
+				return emptyRow;
+			} else if (count == 1) {
+				float[][] rows = singleRows;
+				return single < rows.length ? rows[single] : null;
+			}
+			AtomicReferenceArray<CombinationRow> t = combinations;
+			int mask = t.length() - 1;
+			for (int i = spread(hash) & mask; ; i = (i + 1) & mask) {
+				CombinationRow r = t.get(i);
+				if (r == null) {
+					return null;
+				}
+				if (r.hash == hash && r.matches(types, rel)) {
+					return r.row;
+				}
+			}
+		}
+
+		public synchronized void put(int[] types, float[] row) {
+			byte[] rel = classify(types);
+			TIntArrayList relevantTypes = new TIntArrayList(types.length);
+			for (int t : types) {
+				if (rel[t] == RELEVANT) {
+					relevantTypes.add(t);
+				}
+			}
+			if (relevantTypes.size() == 0) {
+				emptyRow = row;
+			} else if (relevantTypes.size() == 1) {
+				int single = relevantTypes.get(0);
+				float[][] rows = singleRows;
+				if (single >= rows.length) {
+					rows = Arrays.copyOf(rows, Math.max(single + 1, rows.length * 2));
+				} else {
+					rows = rows.clone();
+				}
+				rows[single] = row;
+				singleRows = rows;
+			} else {
+				int[] key = relevantTypes.toArray();
+				if ((combinationsSize + 1) * 2 > combinations.length()) {
+					AtomicReferenceArray<CombinationRow> old = combinations;
+					AtomicReferenceArray<CombinationRow> nt = new AtomicReferenceArray<CombinationRow>(old.length() * 2);
+					for (int i = 0; i < old.length(); i++) {
+						CombinationRow r = old.get(i);
+						if (r != null) {
+							insert(nt, r);
+						}
+					}
+					combinations = nt;
+				}
+				if (insert(combinations, new CombinationRow(Arrays.hashCode(key), key, row))) {
+					combinationsSize++;
+				}
+			}
+		}
+
+		private byte[] classify(int[] types) {
+			byte[] rel = relevance;
+			boolean copied = false;
+			for (int t : types) {
+				if (t < rel.length && rel[t] != UNKNOWN) {
+					continue;
+				}
+				if (!copied) {
+					int max = rel.length;
+					for (int k : types) {
+						max = Math.max(max, k + 1);
+					}
+					rel = Arrays.copyOf(rel, max);
+					copied = true;
+				}
+				rel[t] = isRelevant(t) ? RELEVANT : IRRELEVANT;
+			}
+			if (copied) {
+				relevance = rel;
+			}
+			return rel;
+		}
+
+		private boolean isRelevant(int type) {
+			for (int t : alwaysRelevant) {
+				if (t == type) {
+					return true;
+				}
+			}
+			RouteTypeRule r = region.quickGetEncodingRule(type);
+			if (r == null) {
+				return true;
+			}
+			return tags.contains(r.getTag()) || tagValues.contains(r.getTag() + "$" + r.getValue());
+		}
+
+		private static boolean insert(AtomicReferenceArray<CombinationRow> t, CombinationRow r) {
+			int mask = t.length() - 1;
+			for (int i = spread(r.hash) & mask; ; i = (i + 1) & mask) {
+				CombinationRow o = t.get(i);
+				if (o == null) {
+					t.set(i, r);
+					return true;
+				}
+				if (o.hash == r.hash && Arrays.equals(o.types, r.types)) {
+					t.set(i, r);
+					return false;
+				}
+			}
+		}
+
+		private static int spread(int h) {
+			return h ^ (h >>> 16);
+		}
+	}
+
+	private static class CombinationRow {
+		final int hash;
+		// relevant types in order of appearance
+		final int[] types;
+		final float[] row;
+
+		CombinationRow(int hash, int[] types, float[] row) {
+			this.hash = hash;
+			this.types = types;
+			this.row = row;
+		}
+
+		boolean matches(int[] allTypes, byte[] relevance) {
+			int k = 0;
+			for (int t : allTypes) {
+				if (relevance[t] == TypeTable.RELEVANT) {
+					if (k >= types.length || types[k] != t) {
+						return false;
+					}
+					k++;
+				}
+			}
+			return k == types.length;
+		}
+	}
+}
@@ -11,7 +11,6 @@ import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -19,6 +18,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.set.hash.TLongHashSet;
@@ -68,7 +69,8 @@ public class GeneralRouter implements VehicleRouter {
 	private String filename = null;
 	private String profileName = "";
 
-	private Map<RouteRegion, Map<Integer, Integer>> regionConvert = new LinkedHashMap<RouteRegion, Map<Integer,Integer>>();
+	// region type -> universal rule id + 1 (copy on write arrays)
+	private final Map<RouteRegion, int[]> regionConvert = new ConcurrentHashMap<RouteRegion, int[]>();
 	
 	// cached values
 	private boolean restrictionsAware = true;
@@ -88,7 +90,7 @@ public class GeneralRouter implements VehicleRouter {
 	
 	private GeneralRouterProfile profile;
 	
-	Map<RouteRegion, Map<IntHolder, Float>>[] evalCache;
+	private final EvalCache evalCache = new EvalCache();
 		
 	
 	public enum RouteDataObjectAttribute {
@@ -181,7 +183,6 @@ public class GeneralRouter implements VehicleRouter {
 				maxSpeed = Math.min(CAR_SHORTEST_DEFAULT_SPEED, maxSpeed);
 			}
 		}
-		initCaches();
 	}
 	
 	public GeneralRouter(GeneralRouterProfile profile, Map<String, String> attributes) {
@@ -199,21 +200,9 @@ public class GeneralRouter implements VehicleRouter {
 		}
 		universalRules = new LinkedHashMap<String, Integer>();
 		universalRulesById = new ArrayList<String>();
-		tagRuleMask = new LinkedHashMap<String, BitSet>();
+		tagRuleMask = new ConcurrentHashMap<String, BitSet>();
 		ruleToValue = new ArrayList<Object>();
 		parameters = new LinkedHashMap<String, GeneralRouter.RoutingParameter>();
-		
-		initCaches();
-
-	}
-
-	@SuppressWarnings("unchecked")
-	private void initCaches() {
-		int l = RouteDataObjectAttribute.values().length;
-		evalCache = new Map[l];
-		for (int i = 0; i < l; i++) {
-			evalCache[i] = new HashMap<>();
-		}
 	}
 
 	public String getFilename() {
@@ -319,12 +308,16 @@ public class GeneralRouter implements VehicleRouter {
 			res = (float) getObjContext(RouteDataObjectAttribute.ACCESS).evaluateInt(way, 0);
 			putCache(RouteDataObjectAttribute.ACCESS, way, res);
 		}
-		if (impassableRoads != null && impassableRoads.contains(way.id >> IMPASSABLE_ROAD_SHIFT)) {
+		if (isImpassableRoad(way)) {
 			return false;
 		}
 		return res >= 0;
 	}
 
+	boolean isImpassableRoad(RouteDataObject way) {
+		return impassableRoads != null && impassableRoads.contains(way.id >> IMPASSABLE_ROAD_SHIFT);
+	}
+
 	public boolean isAllowPrivate() {
 		return allowPrivate;
 	}
@@ -338,17 +331,42 @@ public class GeneralRouter implements VehicleRouter {
 	
 	public int registerTagValueAttribute(String tag, String value) {
 		String key = tag +"$"+value;
-		if(universalRules.containsKey(key)) {
-			return universalRules.get(key);
+		synchronized (universalRules) {
+			if (universalRules.containsKey(key)) {
+				return universalRules.get(key);
+			}
+			int id = universalRules.size();
+			universalRulesById.add(key);
+			universalRules.put(key, id);
+			// masks are read without lock during evaluation, so they are replaced instead of modifying
+			BitSet mask = tagRuleMask.get(tag);
+			mask = mask == null ? new BitSet() : (BitSet) mask.clone();
+			mask.set(id);
+			tagRuleMask.put(tag, mask);
+			return id;
 		}
-		int id = universalRules.size();
-		universalRulesById.add(key);
-		universalRules.put(key, id);
-		if(!tagRuleMask.containsKey(tag)) {
-			tagRuleMask.put(tag, new BitSet());
+	}
+
+	private int[] registerRegionType(RouteRegion reg, int type) {
+		synchronized (universalRules) {
+			int[] map = regionConvert.get(reg);
+			if (map != null && type < map.length && map[type] > 0) {
+				return map;
+			}
+			// map is grown only for types out of its range
+			int size = map == null ? 64 : map.length;
+			if (type >= size) {
+				size = Math.max(type + 1, size * 2);
+			}
+			int[] nmap = new int[size];
+			if (map != null) {
+				System.arraycopy(map, 0, nmap, 0, map.length);
+			}
+			RouteTypeRule r = reg.quickGetEncodingRule(type);
+			nmap[type] = registerTagValueAttribute(r.getTag(), r.getValue()) + 1;
+			regionConvert.put(reg, nmap);
+			return nmap;
 		}
-		tagRuleMask.get(tag).set(id);
-		return id;
 	}
 	
 	
@@ -375,30 +393,79 @@ public class GeneralRouter implements VehicleRouter {
 	}
 	
 	private Object parseValueFromTag(int id, String type) {
-		while (ruleToValue.size() <= id) {
-			ruleToValue.add(null);
-		}
-		Object res = ruleToValue.get(id);
-		if (res == null) {
-			String v = universalRulesById.get(id);
-			String value = v.substring(v.indexOf('$') + 1);
-			res = parseValue(value, type);
+		Object res;
+		synchronized (ruleToValue) {
+			while (ruleToValue.size() <= id) {
+				ruleToValue.add(null);
+			}
+			res = ruleToValue.get(id);
 			if (res == null) {
-				res = "";
+				String v;
+				synchronized (universalRules) {
+					v = universalRulesById.get(id);
+				}
+				String value = v.substring(v.indexOf('$') + 1);
+				res = parseValue(value, type);
+				if (res == null) {
+					res = "";
+				}
+				ruleToValue.set(id, res);
 			}
-			ruleToValue.set(id, res);
 		}
 		if ("".equals(res)) {
 			return null;
 		}
 		return res;
 	}
+
+	// first rule id of tag mask present in types
+	private static int findFirstCommonBit(BitSet mask, BitSet types) {
+		for (int i = mask.nextSetBit(0); i >= 0; i = mask.nextSetBit(i + 1)) {
+			if (types.get(i)) {
+				return i;
+			}
+		}
+		return -1;
+	}
 	
 	@Override
 	public GeneralRouter build(Map<String, String> params) {
 		return new GeneralRouter(this, params);
 	}
 
+	/**
+	 * Router with the same rules and parameters which evaluates roads and points through
+	 * precomputed tables indexed by region type id (see {@link CompiledGeneralRouter}).
+	 */
+	public CompiledGeneralRouter compile() {
+		return new CompiledGeneralRouter(this);
+	}
+
+	// tag$value keys and tags which could change result of attribute evaluation
+	void collectRuleReferences(RouteDataObjectAttribute attr, Set<String> tagValues, Set<String> tags) {
+		for (RouteAttributeEvalRule r : getObjContext(attr).rules) {
+			synchronized (universalRules) {
+				for (int i = r.filterTypes.nextSetBit(0); i >= 0; i = r.filterTypes.nextSetBit(i + 1)) {
+					tagValues.add(universalRulesById.get(i));
+				}
+				for (int i = r.filterNotTypes.nextSetBit(0); i >= 0; i = r.filterNotTypes.nextSetBit(i + 1)) {
+					tagValues.add(universalRulesById.get(i));
+				}
+			}
+			tags.addAll(r.onlyTags);
+			tags.addAll(r.onlyNotTags);
+			if (r.selectValue instanceof String && ((String) r.selectValue).startsWith("$")) {
+				tags.add(((String) r.selectValue).substring(1));
+			}
+			if (r.selectExpression != null) {
+				r.selectExpression.collectTags(tags);
+			}
+			for (RouteAttributeExpression e : r.conditionExpressions) {
+				e.collectTags(tags);
+			}
+		}
+	}
+
 	@Override
 	public boolean restrictionsAware() {
 		return restrictionsAware;
@@ -482,6 +549,8 @@ public class GeneralRouter implements VehicleRouter {
 		double sum = 0;
 		int knext;
 		RouteAttributeContext objContext = getObjContext(RouteDataObjectAttribute.OBSTACLE_SRTM_ALT_SPEED);
+		// own parameter context to keep evaluation re-entrant
+		ParameterContext inclineContext = objContext.createParameterContext();
 		for(int k = startIndex; k != endIndex; k = knext) {
 			knext = startIndex < endIndex ? k + 1 : k - 1;
 			double dist = startIndex < endIndex ? heightArray[2 * knext] : heightArray[2 * k]  ;
@@ -491,8 +560,8 @@ public class GeneralRouter implements VehicleRouter {
 				int percentIncl = (int) (incl * 100);
 				percentIncl = (percentIncl + 2)/ 3 * 3 - 2; // 1, 4, 7, 10, .   
 				if(percentIncl >= 1) {
-					objContext.paramContext.incline = diff > 0 ? percentIncl : -percentIncl;
-					sum += objContext.evaluateFloat(road, 0) * (diff > 0? diff : -diff );
+					inclineContext.incline = diff > 0 ? percentIncl : -percentIncl;
+					sum += objContext.evaluateFloat(road, inclineContext, 0) * (diff > 0? diff : -diff );
 				}
 			}
 		}
@@ -585,46 +654,8 @@ public class GeneralRouter implements VehicleRouter {
 	}
 	
 	private void putCache(RouteDataObjectAttribute attr, RouteRegion reg, int[] types, Float val, boolean extra) {
-//		TIMER -= System.nanoTime();
-		Map<RouteRegion, Map<IntHolder, Float>> ch = evalCache[attr.ordinal()];
 		if (USE_CACHE) {
-			Map<IntHolder, Float> rM = ch.get(reg);
-			if (rM == null) {
-				rM = new HashMap<IntHolder, Float>();
-				ch.put(reg, rM);
-			}
-			rM.put(new IntHolder(types, extra), val);
-		}
-//		TIMER += System.nanoTime();
-	}
-	
-	class IntHolder {
-		private final int[] array;
-		private final boolean extra;
-
-		IntHolder(int[] ts, boolean extra) {
-			array = ts;
-			this.extra = extra;
-		}
-
-		@Override
-		public int hashCode() {
-			return Arrays.hashCode(array) + (extra ? 1 : 0);
-		}
-
-		@Override
-		public boolean equals(Object other) {
-			if (array == other) {
-				return true;
-			}
-			if (!(other instanceof IntHolder)) {
-				return false;
-			}
-			if (((IntHolder) other).extra != this.extra) {
-				return false;
-			}
-			// noinspection unchecked
-			return Arrays.equals(array, ((IntHolder) other).array);
+			evalCache.put(attr.ordinal(), reg, types, extra, val);
 		}
 	}
 
@@ -637,20 +668,100 @@ public class GeneralRouter implements VehicleRouter {
 	}
 	
 	private Float getCache(RouteDataObjectAttribute attr, RouteRegion reg, int[] types, boolean extra) {
-		Map<RouteRegion, Map<IntHolder, Float>> ch = evalCache[attr.ordinal()];
-//		TIMER -= System.nanoTime();
 		if (USE_CACHE) {
-			Map<IntHolder, Float> rM = ch.get(reg);
-			if (rM == null) {
-				return null;
+			return evalCache.get(attr.ordinal(), reg, types, extra);
+		}
+		return null;
+	}
+
+	/**
+	 * Open addressing table of evaluated attributes keyed by (attribute, region, types, extra).
+	 * Lookups are lock free and don't allocate: entries are immutable and table is replaced on resize.
+	 */
+	private static class EvalCache {
+		private static final int INITIAL_CAPACITY = 1 << 10;
+
+		private volatile AtomicReferenceArray<EvalCacheEntry> table = new AtomicReferenceArray<EvalCacheEntry>(INITIAL_CAPACITY);
+		private int size = 0;
+
+		public Float get(int attr, RouteRegion reg, int[] types, boolean extra) {
+			AtomicReferenceArray<EvalCacheEntry> t = table;
+			int mask = t.length() - 1;
+			int hash = hash(attr, reg, types, extra);
+			for (int i = hash & mask; ; i = (i + 1) & mask) {
+				EvalCacheEntry e = t.get(i);
+				if (e == null) {
+					return null;
+				}
+				if (e.hash == hash && e.matches(attr, reg, types, extra)) {
+					return e.value;
+				}
+			}
+		}
+
+		public synchronized void put(int attr, RouteRegion reg, int[] types, boolean extra, Float value) {
+			if ((size + 1) * 2 > table.length()) {
+				AtomicReferenceArray<EvalCacheEntry> old = table;
+				AtomicReferenceArray<EvalCacheEntry> nt = new AtomicReferenceArray<EvalCacheEntry>(old.length() * 2);
+				for (int i = 0; i < old.length(); i++) {
+					EvalCacheEntry e = old.get(i);
+					if (e != null) {
+						insert(nt, e);
+					}
+				}
+				table = nt;
 			}
-			Float vl = rM.get(new IntHolder(types, extra));
-			if(vl != null) {
-//				TIMER += System.nanoTime();
-				return vl;
+			// types arrays could be modified by conditional tags so key keeps own copy
+			EvalCacheEntry e = new EvalCacheEntry(hash(attr, reg, types, extra), attr, reg, types.clone(), extra, value);
+			if (insert(table, e)) {
+				size++;
 			}
 		}
-		return null;
+
+		private static boolean insert(AtomicReferenceArray<EvalCacheEntry> t, EvalCacheEntry e) {
+			int mask = t.length() - 1;
+			for (int i = e.hash & mask; ; i = (i + 1) & mask) {
+				EvalCacheEntry o = t.get(i);
+				if (o == null) {
+					t.set(i, e);
+					return true;
+				}
+				if (o.hash == e.hash && o.matches(e.attr, e.region, e.types, e.extra)) {
+					t.set(i, e);
+					return false;
+				}
+			}
+		}
+
+		private static int hash(int attr, RouteRegion reg, int[] types, boolean extra) {
+			int h = System.identityHashCode(reg);
+			h = 31 * h + Arrays.hashCode(types);
+			h = 31 * h + (attr << 1) + (extra ? 1 : 0);
+			// spread bits for power of 2 table
+			return h ^ (h >>> 16);
+		}
+	}
+
+	private static class EvalCacheEntry {
+		final int hash;
+		final int attr;
+		final RouteRegion region;
+		final int[] types;
+		final boolean extra;
+		final Float value;
+
+		EvalCacheEntry(int hash, int attr, RouteRegion region, int[] types, boolean extra, Float value) {
+			this.hash = hash;
+			this.attr = attr;
+			this.region = region;
+			this.types = types;
+			this.extra = extra;
+			this.value = value;
+		}
+
+		boolean matches(int attr, RouteRegion reg, int[] types, boolean extra) {
+			return this.attr == attr && this.extra == extra && this.region == reg && Arrays.equals(this.types, types);
+		}
 	}
 
 	@Override
@@ -848,6 +959,12 @@ public class GeneralRouter implements VehicleRouter {
 			return evaluate(convert(ro.region, ro.types));
 		}
 
+		private ParameterContext createParameterContext() {
+			ParameterContext ctx = new ParameterContext();
+			ctx.vars = paramContext != null ? paramContext.vars : new LinkedHashMap<String, String>();
+			return ctx;
+		}
+
 		public void printRules(PrintStream out) {
 			for(RouteAttributeEvalRule r : rules) {
 				r.printRule(out);
@@ -865,7 +982,12 @@ public class GeneralRouter implements VehicleRouter {
 			return rules.get(rules.size() - 1);
 		}
 
-		private synchronized Object evaluate(BitSet types) {
+		private Object evaluate(BitSet types) {
+			return evaluate(types, paramContext);
+		}
+
+		// re-entrant: rules don't keep state of evaluation
+		private Object evaluate(BitSet types, ParameterContext paramContext) {
 			for (int k = 0; k < rules.size(); k++) {
 				RouteAttributeEvalRule r = rules.get(k);
 				Object o = r.eval(types, paramContext);
@@ -926,6 +1048,14 @@ public class GeneralRouter implements VehicleRouter {
 			}
 			return ((Number)o).floatValue();
 		}
+
+		private float evaluateFloat(RouteDataObject ro, ParameterContext paramContext, float defValue) {
+			Object o = evaluate(convert(ro.region, ro.types), paramContext);
+			if(!(o instanceof Number)) {
+				return defValue;
+			}
+			return ((Number)o).floatValue();
+		}
 		
 		public float evaluateFloat(RouteRegion region, int[] types, float defValue) {
 			Object o = evaluate(convert(region, types));
@@ -945,19 +1075,13 @@ public class GeneralRouter implements VehicleRouter {
 		
 		private BitSet convert(RouteRegion reg, int[] types) {
 			BitSet b = new BitSet(universalRules.size());
-			Map<Integer, Integer> map = regionConvert.get(reg);
-			if(map == null){
-				map = new HashMap<Integer, Integer>();
-				regionConvert.put(reg, map);
-			}
-			for(int k = 0; k < types.length; k++) {
-				Integer nid = map.get(types[k]);
-				if (nid == null) {
-					RouteTypeRule r = reg.quickGetEncodingRule(types[k]);
-					nid = registerTagValueAttribute(r.getTag(), r.getValue());
-					map.put(types[k], nid);
+			int[] map = regionConvert.get(reg);
+			for (int k = 0; k < types.length; k++) {
+				int type = types[k];
+				if (map == null || type >= map.length || map[type] == 0) {
+					map = registerRegionType(reg, type);
 				}
-				b.set(nid);
+				b.set(map[type] - 1);
 			}
 			return b;
 		}
@@ -1010,6 +1134,14 @@ public class GeneralRouter implements VehicleRouter {
 			return false;
 		}
 
+		private void collectTags(Set<String> tags) {
+			for (String v : values) {
+				if (v != null && v.startsWith("$")) {
+					tags.add(v.substring(1));
+				}
+			}
+		}
+
 		private Double calculateExprValue(BitSet types, ParameterContext paramContext) {
 			double f1 = calculateExprValue(0, types, paramContext);
 			double f2 = calculateExprValue(1, types, paramContext);
@@ -1034,11 +1166,7 @@ public class GeneralRouter implements VehicleRouter {
 			if (value != null && value.startsWith("$")) {
 				BitSet mask = tagRuleMask.get(value.substring(1));
 				if (mask != null && mask.intersects(types)) {
-					BitSet findBit = new BitSet(mask.length());
-					findBit.or(mask);
-					findBit.and(types);
-					int v = findBit.nextSetBit(0);
-					o = parseValueFromTag(v, valueType);
+					o = parseValueFromTag(findFirstCommonBit(mask, types), valueType);
 				}
 			} else if (value != null && value.equals(":incline")) {
 				return paramContext.incline;
@@ -1070,7 +1198,6 @@ public class GeneralRouter implements VehicleRouter {
 		protected RouteAttributeExpression selectExpression = null;
 		protected BitSet filterTypes = new BitSet();
 		protected BitSet filterNotTypes = new BitSet();
-		protected BitSet evalFilterTypes = new BitSet();
 		
 		protected Set<String> onlyTags = new LinkedHashSet<String>();
 		protected Set<String> onlyNotTags = new LinkedHashSet<String>();
@@ -1209,20 +1336,17 @@ public class GeneralRouter implements VehicleRouter {
 
 		protected Object calcSelectValue(BitSet types, ParameterContext paramContext) {
 			if (selectExpression != null) {
-				selectValue = selectExpression.calculateExprValue(types, paramContext);
+				// don't store result in selectValue, rule could be evaluated concurrently
+				return selectExpression.calculateExprValue(types, paramContext);
 			} else if (selectValue instanceof String && selectValue.toString().startsWith("$")) {
 				BitSet mask = tagRuleMask.get(selectValue.toString().substring(1));
 				if (mask != null && mask.intersects(types)) {
-					BitSet findBit = new BitSet(mask.length());
-					findBit.or(mask);
-					findBit.and(types);
-					int value = findBit.nextSetBit(0);
-					return parseValueFromTag(value, selectType);
+					return parseValueFromTag(findFirstCommonBit(mask, types), selectType);
 				}
 			} else if (selectValue instanceof String && selectValue.toString().startsWith(":")) {
 				String p = ((String) selectValue).substring(1);
 				if (paramContext != null && paramContext.vars.containsKey(p)) {
-					selectValue = parseValue(paramContext.vars.get(p), selectType);
+					return parseValue(paramContext.vars.get(p), selectType);
 				} else {
 					return null;
 				}
@@ -1286,14 +1410,11 @@ public class GeneralRouter implements VehicleRouter {
 		}
 
 		private boolean checkAllTypesShouldBePresent(BitSet types) {
-			// Bitset method subset is missing "filterTypes.isSubset(types)"    
-			// reset previous evaluation
-			// evalFilterTypes.clear(); // not needed same as or()
-			evalFilterTypes.or(filterTypes);
-			// evaluate bit intersection and check if filterTypes contained as set in types
-			evalFilterTypes.and(types);
-			if(!evalFilterTypes.equals(filterTypes)) {
-				return false;
+			// Bitset method subset is missing "filterTypes.isSubset(types)"
+			for (int i = filterTypes.nextSetBit(0); i >= 0; i = filterTypes.nextSetBit(i + 1)) {
+				if (!types.get(i)) {
+					return false;
+				}
 			}
 			return true;
 		}
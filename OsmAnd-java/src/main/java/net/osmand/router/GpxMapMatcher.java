@@ -0,0 +1,295 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+import net.osmand.router.RoutePlannerFrontEnd.GpxPoint;
+import net.osmand.router.RoutePlannerFrontEnd.GpxRouteApproximation;
+import net.osmand.util.MapUtils;
+
+/**
+ * Hidden Markov model map matching (Newson, Krumm): every sample has candidate projections to nearby roads,
+ * emission probability depends on distance to projection, transition probability on difference between
+ * route distance (bounded local Dijkstra over loaded roads) and distance between samples.
+ * Most probable sequence of candidates is found with Viterbi algorithm, when sequence is broken
+ * (no candidates or no connection) matching starts again from the next sample.
+ * Result is set to {@link GpxPoint#routeToTarget} of samples same way as step routing approximation does.
+ * Parameters are mapMatching* fields of {@link RoutingConfiguration}.
+ */
+class GpxMapMatcher {
+
+	private final RoutePlannerFrontEnd frontEnd;
+
+	GpxMapMatcher(RoutePlannerFrontEnd frontEnd) {
+		this.frontEnd = frontEnd;
+	}
+
+	private static class Candidate {
+		final GpxPoint sample;
+		final RouteSegmentPoint pnt;
+		final double emission;
+		double score = Double.NEGATIVE_INFINITY;
+		Candidate prev;
+		List<RouteSegmentResult> routeFromPrev;
+
+		Candidate(GpxPoint sample, RouteSegmentPoint pnt, double emission) {
+			this.sample = sample;
+			this.pnt = pnt;
+			this.emission = emission;
+		}
+	}
+
+	// road vertex reached by local search
+	private static class Node implements Comparable<Node> {
+		final int x;
+		final int y;
+		final double dist;
+		final Node parent;
+		// piece of road from parent
+		final RouteDataObject road;
+		final int fromInd;
+		final int toInd;
+
+		Node(int x, int y, double dist, Node parent, RouteDataObject road, int fromInd, int toInd) {
+			this.x = x;
+			this.y = y;
+			this.dist = dist;
+			this.parent = parent;
+			this.road = road;
+			this.fromInd = fromInd;
+			this.toInd = toInd;
+		}
+
+		@Override
+		public int compareTo(Node o) {
+			return Double.compare(dist, o.dist);
+		}
+	}
+
+	public void match(GpxRouteApproximation gctx, List<GpxPoint> gpxPoints) throws IOException {
+		RoutingContext ctx = gctx.ctx;
+		List<Candidate> layer = null;
+		GpxPoint lastSample = null;
+		for (GpxPoint p : gpxPoints) {
+			if (ctx.calculationProgress.isCancelled()) {
+				return;
+			}
+			boolean last = p == gpxPoints.get(gpxPoints.size() - 1);
+			if (lastSample != null && !last
+					&& MapUtils.getDistance(lastSample.loc, p.loc) < ctx.config.mapMatchingMinSampleDistance) {
+				continue;
+			}
+			ctx.calculationProgress.approximatedDistance = (float) p.cumDist;
+			List<Candidate> candidates = findCandidates(gctx, p);
+			if (candidates.isEmpty()) {
+				continue;
+			}
+			boolean connected = false;
+			if (layer != null) {
+				double sampleDist = MapUtils.getDistance(lastSample.loc, p.loc);
+				for (Candidate from : layer) {
+					connected |= transition(gctx, from, candidates, sampleDist);
+				}
+			}
+			if (!connected) {
+				if (layer != null) {
+					applySequence(gctx, layer);
+				}
+				for (Candidate c : candidates) {
+					c.score = c.emission;
+				}
+			} else {
+				List<Candidate> reachable = new ArrayList<Candidate>();
+				for (Candidate c : candidates) {
+					if (c.prev != null) {
+						c.score += c.emission;
+						reachable.add(c);
+					}
+				}
+				candidates = reachable;
+			}
+			layer = candidates;
+			lastSample = p;
+		}
+		if (layer != null) {
+			applySequence(gctx, layer);
+		}
+	}
+
+	private List<Candidate> findCandidates(GpxRouteApproximation gctx, GpxPoint p) throws IOException {
+		gctx.routePointsSearched++;
+		List<Candidate> res = new ArrayList<Candidate>();
+		RouteSegmentPoint best = frontEnd.findRouteSegment(p.loc.getLatitude(), p.loc.getLongitude(), gctx.ctx, null, false);
+		if (best == null) {
+			return res;
+		}
+		List<RouteSegmentPoint> all = new ArrayList<RouteSegmentPoint>();
+		all.add(best);
+		if (best.others != null) {
+			all.addAll(best.others);
+		}
+		RoutingConfiguration config = gctx.ctx.config;
+		double radius = config.minPointApproximation;
+		double sigma = config.mapMatchingSigma;
+		for (RouteSegmentPoint rsp : all) {
+			double d = MapUtils.getDistance(rsp.getPreciseLatLon(), p.loc);
+			if (d <= radius && res.size() < config.mapMatchingMaxCandidates) {
+				res.add(new Candidate(p, rsp, -0.5 * (d / sigma) * (d / sigma)));
+			}
+		}
+		return res;
+	}
+
+	private boolean transition(GpxRouteApproximation gctx, Candidate from, List<Candidate> targets, double sampleDist) {
+		RoutingContext ctx = gctx.ctx;
+		VehicleRouter router = ctx.getRouter();
+		double maxDist = sampleDist * ctx.config.mapMatchingMaxRouteDistanceFactor + 2 * ctx.config.minPointApproximation;
+		gctx.routeCalculations++;
+		gctx.routeDistCalculations += sampleDist;
+
+		RouteSegmentPoint s = from.pnt;
+		RouteDataObject road = s.getRoad();
+		int oneway = router.isOneWay(road);
+		TLongObjectHashMap<Node> visited = new TLongObjectHashMap<Node>();
+		PriorityQueue<Node> queue = new PriorityQueue<Node>();
+		if (oneway >= 0) {
+			queue.add(node(road, s.getSegmentEnd(), distToPoint(s, road, s.getSegmentEnd()), null, s.getSegmentStart()));
+		}
+		if (oneway <= 0) {
+			queue.add(node(road, s.getSegmentStart(), distToPoint(s, road, s.getSegmentStart()), null, s.getSegmentEnd()));
+		}
+		while (!queue.isEmpty()) {
+			Node n = queue.poll();
+			if (n.dist > maxDist) {
+				break;
+			}
+			long key = (((long) n.x) << 31) + n.y;
+			if (visited.containsKey(key)) {
+				continue;
+			}
+			visited.put(key, n);
+			RouteSegment seg = ctx.loadRouteSegment(n.x, n.y, ctx.config.memoryLimitation - ctx.memoryOverhead);
+			for (; seg != null; seg = seg.getNext()) {
+				RouteDataObject r = seg.getRoad();
+				if (!router.acceptLine(r)) {
+					continue;
+				}
+				int ind = seg.getSegmentStart();
+				int ow = router.isOneWay(r);
+				if (ow >= 0 && ind + 1 < r.getPointsLength()) {
+					queue.add(node(r, ind + 1, n.dist + segmentLength(r, ind, ind + 1), n, ind));
+				}
+				if (ow <= 0 && ind > 0) {
+					queue.add(node(r, ind - 1, n.dist + segmentLength(r, ind, ind - 1), n, ind));
+				}
+			}
+		}
+		boolean connected = false;
+		for (Candidate t : targets) {
+			RouteSegmentPoint e = t.pnt;
+			RouteDataObject er = e.getRoad();
+			int eow = router.isOneWay(er);
+			double dist = Double.POSITIVE_INFINITY;
+			Node entry = null;
+			int entryInd = -1;
+			int exitInd = -1;
+			if (er.getId() == road.getId() && e.getSegmentStart() == s.getSegmentStart()) {
+				// same segment: move along it without leaving
+				double ds = distToPoint(s, road, s.getSegmentStart());
+				double de = distToPoint(e, road, s.getSegmentStart());
+				if ((de >= ds && eow >= 0) || (de <= ds && eow <= 0)) {
+					dist = Math.abs(de - ds);
+					entryInd = de >= ds ? s.getSegmentStart() : s.getSegmentEnd();
+					exitInd = de >= ds ? s.getSegmentEnd() : s.getSegmentStart();
+				}
+			}
+			if (eow >= 0) {
+				Node n = visited.get(key(er, e.getSegmentStart()));
+				if (n != null && n.dist + distToPoint(e, er, e.getSegmentStart()) < dist) {
+					dist = n.dist + distToPoint(e, er, e.getSegmentStart());
+					entry = n;
+					entryInd = e.getSegmentStart();
+					exitInd = e.getSegmentEnd();
+				}
+			}
+			if (eow <= 0) {
+				Node n = visited.get(key(er, e.getSegmentEnd()));
+				if (n != null && n.dist + distToPoint(e, er, e.getSegmentEnd()) < dist) {
+					dist = n.dist + distToPoint(e, er, e.getSegmentEnd());
+					entry = n;
+					entryInd = e.getSegmentEnd();
+					exitInd = e.getSegmentStart();
+				}
+			}
+			if (Double.isInfinite(dist)) {
+				continue;
+			}
+			connected = true;
+			double score = from.score - Math.abs(dist - sampleDist) / ctx.config.mapMatchingBeta;
+			if (score > t.score) {
+				t.score = score;
+				t.prev = from;
+				t.routeFromPrev = buildRoute(entry, er, entryInd, exitInd);
+			}
+		}
+		return connected;
+	}
+
+	private List<RouteSegmentResult> buildRoute(Node entry, RouteDataObject lastRoad, int lastFrom, int lastTo) {
+		List<RouteSegmentResult> res = new ArrayList<RouteSegmentResult>();
+		res.add(new RouteSegmentResult(lastRoad, lastFrom, lastTo));
+		for (Node n = entry; n != null; n = n.parent) {
+			RouteSegmentResult first = res.get(res.size() - 1);
+			boolean sameDirection = (n.toInd > n.fromInd) == (first.getEndPointIndex() > first.getStartPointIndex());
+			if (first.getObject().getId() == n.road.getId() && sameDirection && first.getStartPointIndex() == n.toInd) {
+				first.setStartPointIndex(n.fromInd);
+			} else {
+				res.add(new RouteSegmentResult(n.road, n.fromInd, n.toInd));
+			}
+		}
+		Collections.reverse(res);
+		return res;
+	}
+
+	private void applySequence(GpxRouteApproximation gctx, List<Candidate> layer) throws IOException {
+		Candidate best = null;
+		for (Candidate c : layer) {
+			if (best == null || c.score > best.score) {
+				best = c;
+			}
+		}
+		RouteResultPreparation preparation = new RouteResultPreparation();
+		for (Candidate c = best; c != null && c.prev != null; c = c.prev) {
+			GpxPoint start = c.prev.sample;
+			start.pnt = c.prev.pnt;
+			start.routeToTarget = c.routeFromPrev;
+			start.targetInd = c.sample.ind;
+			c.sample.pnt = c.pnt;
+			preparation.prepareResult(gctx.ctx, start.routeToTarget);
+		}
+	}
+
+	private static Node node(RouteDataObject road, int ind, double dist, Node parent, int fromInd) {
+		return new Node(road.getPoint31XTile(ind), road.getPoint31YTile(ind), dist, parent, road, fromInd, ind);
+	}
+
+	private static long key(RouteDataObject road, int ind) {
+		return (((long) road.getPoint31XTile(ind)) << 31) + road.getPoint31YTile(ind);
+	}
+
+	private static double distToPoint(RouteSegmentPoint p, RouteDataObject road, int ind) {
+		return MapUtils.squareRootDist31(p.preciseX, p.preciseY, road.getPoint31XTile(ind), road.getPoint31YTile(ind));
+	}
+
+	private static double segmentLength(RouteDataObject road, int from, int to) {
+		return MapUtils.squareRootDist31(road.getPoint31XTile(from), road.getPoint31YTile(from),
+				road.getPoint31XTile(to), road.getPoint31YTile(to));
+	}
+}
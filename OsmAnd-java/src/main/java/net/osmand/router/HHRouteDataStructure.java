@@ -208,6 +208,7 @@ public class HHRouteDataStructure {
 
 		DataTileManager<T> pointsRect = new DataTileManager<>(11); // 20km tile
 		TLongObjectHashMap<RouteSegment> boundaries;
+		HHRoutingGraphSnapshot snapshot; // points and segments are loaded from snapshot when set
 		boolean initialized = false;
 		
 		// Route specific details
@@ -298,6 +299,9 @@ public class HHRouteDataStructure {
 		}
 
 		public TLongObjectHashMap<T> loadNetworkPoints(Class<T> pointClass) throws SQLException, IOException {
+			if (snapshot != null) {
+				return snapshot.loadNetworkPoints(pointClass);
+			}
 			TLongObjectHashMap<T> points = new TLongObjectHashMap<>();
 			for (HHRouteRegionPointsCtx<T> r : regions) {
 				if (r.networkDB != null) {
@@ -312,6 +316,13 @@ public class HHRouteDataStructure {
 
 		public int loadNetworkSegments(Collection<T> valueCollection) throws SQLException {
 			int loaded = 0;
+			if (snapshot != null) {
+				for (T p : valueCollection) {
+					loaded += snapshot.loadNetworkSegmentPoint(this, p, false);
+					loaded += snapshot.loadNetworkSegmentPoint(this, p, true);
+				}
+				return loaded;
+			}
 			for (HHRouteRegionPointsCtx<T> r : regions) {
 				if (r.networkDB != null) {
 					loaded += r.networkDB.loadNetworkSegments(valueCollection, r.routingProfile);
@@ -337,6 +348,9 @@ public class HHRouteDataStructure {
 		}
 
 		public int loadNetworkSegmentPoint(T point, boolean reverse) throws SQLException, IOException {
+			if (snapshot != null) {
+				return snapshot.loadNetworkSegmentPoint(this, point, reverse);
+			}
 			short mapId = point.mapId;
 			HHRouteRegionPointsCtx<T> r = regions.get(mapId);
 			if (r.networkDB != null) {
@@ -348,6 +362,26 @@ public class HHRouteDataStructure {
 			throw new UnsupportedOperationException();
 		}
 
+		/**
+		 * Key contains snapshot format version and name, length, modification time of every routing file,
+		 * so snapshot is not used after any file is updated.
+		 */
+		public String getGraphSnapshotKey() {
+			StringBuilder b = new StringBuilder();
+			b.append("v").append(HHRoutingGraphSnapshot.VERSION);
+			for (HHRouteRegionPointsCtx<T> r : regions) {
+				b.append(", ");
+				if (r.networkDB != null) {
+					b.append(String.format("%s %d", HHRoutingGraphSnapshot.getFileKey(r.networkDB.getFile()),
+							r.routingProfile));
+				} else if (r.fileRegion != null) {
+					b.append(String.format("%s %d %s %d", HHRoutingGraphSnapshot.getFileKey(r.file.getFile()),
+							r.fileRegion.edition, r.fileRegion.profile, r.routingProfile));
+				}
+			}
+			return b.toString();
+		}
+
 		public String getRoutingInfo() {
 			StringBuilder b = new StringBuilder();
 			for (HHRouteRegionPointsCtx<T> r : regions) {
@@ -2,6 +2,7 @@ package net.osmand.router;
 
 
 
+import java.io.File;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -34,6 +35,7 @@ import net.osmand.router.HHRouteDataStructure.HHRouteRegionPointsCtx;
 import net.osmand.router.HHRouteDataStructure.HHRoutingConfig;
 import net.osmand.router.HHRouteDataStructure.HHRoutingContext;
 import net.osmand.router.HHRouteDataStructure.NetworkDBPoint;
+import net.osmand.router.HHRouteDataStructure.NetworkDBPointCh;
 import net.osmand.router.HHRouteDataStructure.NetworkDBPointCost;
 import net.osmand.router.HHRouteDataStructure.NetworkDBSegment;
 import net.osmand.router.HHRouteDataStructure.RoutingStats;
@@ -55,6 +57,7 @@ public class HHRoutePlanner<T extends NetworkDBPoint> {
 	private static boolean ASSERT_AND_CORRECT_DIST_SMALLER = true;
 	HHRoutingContext<T> cacheHctx;
 	private final Class<T> pointClass;
+	private HHRoutingGraphSnapshot graphSnapshot;
 	
 	
 	public static HHRoutePlanner<NetworkDBPoint> create(RoutingContext ctx, HHRoutingDB networkDB) {
@@ -94,6 +97,23 @@ public class HHRoutePlanner<T extends NetworkDBPoint> {
 	public void close() throws SQLException {
 		initNewContext(cacheHctx.rctx, null);
 	}
+
+	/**
+	 * Snapshot is used instead of routing files when its key matches selected files and profile
+	 */
+	public void setGraphSnapshot(HHRoutingGraphSnapshot graphSnapshot) {
+		this.graphSnapshot = graphSnapshot;
+	}
+
+	public void writeGraphSnapshot(File file, LatLon start, LatLon end) throws SQLException, IOException {
+		HHRoutingContext<T> hctx = initHCtx(new HHRoutingConfig(), start, end);
+		if (hctx == null) {
+			throw new IllegalStateException("Files for hh routing were not initialized.");
+		}
+		long time = System.nanoTime();
+		HHRoutingGraphSnapshot.write(hctx, file);
+		System.out.printf("Graph snapshot %s - %.2fms\n", file.getName(), (System.nanoTime() - time) / 1e6);
+	}
 	
 	public static double squareRootDist31(int x1, int y1, int x2, int y2) {
 //		return MapUtils.measuredDist31(x1, y1, x2, y2);
@@ -228,6 +248,157 @@ public class HHRoutePlanner<T extends NetworkDBPoint> {
 		return route;
 	}
 
+	/**
+	 * Calculates routing times between all origins and destinations with bucket based many-to-many search:
+	 * reverse Dijkstra from every destination stores (destination, cost) in buckets of settled network points,
+	 * forward Dijkstra from every origin scans buckets of points it settles.
+	 * Network points and loaded segments are shared by all searches.
+	 * Searches are done over contraction hierarchy (only to points with higher ch index), so buckets store
+	 * only upward search spaces of destinations. Other configs are accepted only with MAX_COST limit,
+	 * otherwise every reverse search would settle the whole graph.
+	 * @return matrix [origins.size()][destinations.size()] of costs, Double.POSITIVE_INFINITY if destination is not reachable
+	 */
+	public double[][] runRoutingMatrix(List<LatLon> origins, List<LatLon> destinations, HHRoutingConfig config)
+			throws SQLException, IOException, InterruptedException {
+		long startTime = System.nanoTime();
+		double[][] res = new double[origins.size()][destinations.size()];
+		for (double[] row : res) {
+			Arrays.fill(row, Double.POSITIVE_INFINITY);
+		}
+		if (origins.isEmpty() || destinations.isEmpty()) {
+			return res;
+		}
+		if (config == null) {
+			config = HHRoutingConfig.ch();
+			config.ROUTE_LAST_MILE = true;
+		}
+		if (config.HEURISTIC_COEFFICIENT != 0) {
+			throw new IllegalArgumentException("Matrix could be calculated only with Dijkstra (heuristic coefficient 0)");
+		}
+		boolean ch = config.USE_CH && NetworkDBPointCh.class.isAssignableFrom(pointClass);
+		if (!ch && config.MAX_COST <= 0) {
+			throw new IllegalArgumentException("Matrix could be calculated only with contraction hierarchy points or limited by MAX_COST");
+		}
+		HHRoutingContext<T> hctx = initHCtx(config, origins.get(0), destinations.get(0));
+		if (hctx == null) {
+			throw new IllegalStateException("Files for hh routing were not initialized. Matrix couldn't be calculated.");
+		}
+		TIntObjectHashMap<MatrixBucket> buckets = new TIntObjectHashMap<>();
+		for (int j = 0; j < destinations.size(); j++) {
+			TLongObjectHashMap<T> endPoints = initMatrixPoint(hctx, destinations.get(j), true);
+			if (endPoints.isEmpty()) {
+				continue;
+			}
+			initQueue(hctx, endPoints, true);
+			T point;
+			while ((point = pollMatrixPoint(hctx, true)) != null) {
+				MatrixBucket b = buckets.get(point.index);
+				if (b == null) {
+					b = new MatrixBucket();
+					buckets.put(point.index, b);
+				}
+				b.add(j, point.rt(true).rtDistanceFromStart);
+			}
+			hctx.clearVisited();
+		}
+		for (int i = 0; i < origins.size(); i++) {
+			TLongObjectHashMap<T> stPoints = initMatrixPoint(hctx, origins.get(i), false);
+			if (stPoints.isEmpty()) {
+				continue;
+			}
+			double[] row = res[i];
+			double maxCost = Double.POSITIVE_INFINITY;
+			initQueue(hctx, stPoints, false);
+			T point;
+			while ((point = pollMatrixPoint(hctx, false)) != null) {
+				double dist = point.rt(false).rtDistanceFromStart;
+				if (dist > maxCost) {
+					// every further meeting point only increases costs
+					break;
+				}
+				MatrixBucket b = buckets.get(point.index);
+				if (b == null) {
+					continue;
+				}
+				boolean improved = false;
+				for (int k = 0; k < b.size; k++) {
+					int j = b.destinations[k];
+					if (dist + b.costs[k] < row[j]) {
+						row[j] = dist + b.costs[k];
+						improved = true;
+					}
+				}
+				if (improved) {
+					maxCost = 0;
+					for (double c : row) {
+						maxCost = Math.max(maxCost, c);
+					}
+				}
+			}
+			hctx.clearVisited();
+		}
+		hctx.stats.routingTime = (System.nanoTime() - startTime) / 1e6;
+		System.out.printf("Matrix %d x %d finished %.1f ms: last mile %.1f ms, load data %.1f ms (%,d edges), visited %,d (%,d unique), %,d buckets\n",
+				origins.size(), destinations.size(), hctx.stats.routingTime, hctx.stats.searchPointsTime,
+				hctx.stats.loadEdgesTime + hctx.stats.loadPointsTime, hctx.stats.loadEdgesCnt,
+				hctx.stats.visitedVertices, hctx.stats.uniqueVisitedVertices, buckets.size());
+		return res;
+	}
+
+	private TLongObjectHashMap<T> initMatrixPoint(HHRoutingContext<T> hctx, LatLon latLon, boolean reverse)
+			throws IOException, InterruptedException {
+		long time = System.nanoTime();
+		TLongObjectHashMap<T> pnts = new TLongObjectHashMap<>();
+		hctx.setStartEnd(reverse ? null : latLon, reverse ? latLon : null);
+		RouteSegmentPoint s = null;
+		if (hctx.config.ROUTE_LAST_MILE) {
+			s = new RoutePlannerFrontEnd().findRouteSegment(latLon.getLatitude(), latLon.getLongitude(), hctx.rctx, null);
+		}
+		if (s != null || !hctx.config.ROUTE_LAST_MILE) {
+			initStart(hctx, s, reverse, pnts);
+		}
+		// network points only, boundaries contain no start / end so there is no direct route
+		T shortRoute = pnts.remove(PNT_SHORT_ROUTE_START_END);
+		if (shortRoute != null) {
+			shortRoute.clearRouting();
+		}
+		hctx.stats.searchPointsTime += (System.nanoTime() - time) / 1e6;
+		return pnts;
+	}
+
+	private void initQueue(HHRoutingContext<T> hctx, TLongObjectHashMap<T> pnts, boolean reverse) {
+		for (T p : pnts.valueCollection()) {
+			double cost = p.rt(reverse).rtDistanceFromStart;
+			addPointToQueue(hctx, hctx.queue(reverse), reverse, p, null, cost, cost <= 0 ? MINIMAL_COST : cost);
+		}
+	}
+
+	private T pollMatrixPoint(HHRoutingContext<T> hctx, boolean reverse) throws SQLException, IOException {
+		Queue<NetworkDBPointCost<T>> queue = hctx.queue(reverse);
+		while (!queue.isEmpty()) {
+			long tm = System.nanoTime();
+			T point = queue.poll().point;
+			hctx.stats.pollQueueTime += (System.nanoTime() - tm) / 1e6;
+			hctx.stats.visitedVertices++;
+			if (point.rt(reverse).rtVisited) {
+				continue;
+			}
+			hctx.stats.uniqueVisitedVertices++;
+			point.markVisited(reverse);
+			List<T> visited = reverse ? hctx.visitedRev : hctx.visited;
+			visited.add(point);
+			if (hctx.config.MAX_COST > 0 && point.rt(reverse).rtDistanceFromStart > hctx.config.MAX_COST) {
+				return null;
+			}
+			if (hctx.config.MAX_SETTLE_POINTS > 0 && visited.size() > hctx.config.MAX_SETTLE_POINTS) {
+				return null;
+			}
+			addConnectedToQueue(hctx, queue, point, reverse);
+			return point;
+		}
+		return null;
+	}
+
 	private void findFirstLastSegments(HHRoutingContext<T> hctx, LatLon start, LatLon end, 
 			 TLongObjectHashMap<T> stPoints, TLongObjectHashMap<T> endPoints) throws IOException, InterruptedException {
 		long time = System.nanoTime();
@@ -460,6 +631,13 @@ public class HHRoutePlanner<T extends NetworkDBPoint> {
 			return hctx;
 		}
 		
+		if (graphSnapshot != null) {
+			if (graphSnapshot.getKey().equals(hctx.getGraphSnapshotKey())) {
+				hctx.snapshot = graphSnapshot;
+			} else {
+				System.out.println("Graph snapshot is outdated: " + graphSnapshot.getFile().getName());
+			}
+		}
 		long time = System.nanoTime();
 		System.out.print("Loading points... ");
 		hctx.pointsById = hctx.loadNetworkPoints(pointClass);
@@ -497,6 +675,22 @@ public class HHRoutePlanner<T extends NetworkDBPoint> {
 		return hctx;
 	}
 
+	private static class MatrixBucket {
+		int[] destinations = new int[2];
+		double[] costs = new double[2];
+		int size;
+
+		void add(int destination, double cost) {
+			if (size == destinations.length) {
+				destinations = Arrays.copyOf(destinations, size * 2);
+				costs = Arrays.copyOf(costs, size * 2);
+			}
+			destinations[size] = destination;
+			costs[size] = cost;
+			size++;
+		}
+	}
+
 	private static class HHRouteRegionsGroup<T extends NetworkDBPoint> {
 		List<HHRouteRegion> regions = new ArrayList<>();
 		List<BinaryMapIndexReader> readers = new ArrayList<>();
@@ -0,0 +1,331 @@
+package net.osmand.router;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.osmand.router.HHRouteDataStructure.HHRoutingContext;
+import net.osmand.router.HHRouteDataStructure.NetworkDBPoint;
+import net.osmand.router.HHRouteDataStructure.NetworkDBPointCh;
+import net.osmand.router.HHRouteDataStructure.NetworkDBSegment;
+
+/**
+ * Read-only snapshot of HH network graph which is memory mapped and used by {@link HHRoutingContext}
+ * instead of db / obf to load network points and segments.
+ * Points are stored as primitive columns sorted by point index, segments as CSR adjacency
+ * (offsets per point + target, cost, shortcut columns) separately for outgoing and incoming segments.
+ * Point objects are created for all points on load (same as loading from db), segment objects
+ * are created only for points visited by routing, so it saves db / obf reading time and heap of segments.
+ */
+public class HHRoutingGraphSnapshot {
+
+	public static final String EXT = ".hhgraph";
+	private static final int MAGIC = 0x48484752; // HHGR
+	static final int VERSION = 1;
+
+	private final File file;
+	private final RandomAccessFile raf;
+	private final String key;
+	private final int pointsCount;
+
+	private final IntBuffer index;
+	private final IntBuffer dualIndex;
+	private final IntBuffer clusterId;
+	private final IntBuffer fileId;
+	private final ShortBuffer mapId;
+	private final IntBuffer chInd;
+	private final LongBuffer roadId;
+	private final ShortBuffer start;
+	private final ShortBuffer end;
+	private final IntBuffer startX;
+	private final IntBuffer startY;
+	private final IntBuffer endX;
+	private final IntBuffer endY;
+	private final Adjacency out;
+	private final Adjacency in;
+
+	private static class Adjacency {
+		IntBuffer offsets;
+		IntBuffer targets;
+		DoubleBuffer dist;
+		ByteBuffer shortcut;
+	}
+
+	private HHRoutingGraphSnapshot(File file) throws IOException {
+		this.file = file;
+		this.raf = new RandomAccessFile(file, "r");
+		boolean ok = false;
+		try {
+			long length = raf.length();
+			if (length > Integer.MAX_VALUE) {
+				throw new IOException("Graph snapshot is too big " + file.getName());
+			}
+			MappedByteBuffer bb = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+			if (bb.getInt() != MAGIC || bb.getInt() != VERSION) {
+				throw new IOException("Unsupported graph snapshot " + file.getName());
+			}
+			byte[] k = new byte[bb.getInt()];
+			bb.get(k);
+			key = new String(k, "UTF-8");
+			int n = pointsCount = bb.getInt();
+			index = slice(bb, n * 4).asIntBuffer();
+			dualIndex = slice(bb, n * 4).asIntBuffer();
+			clusterId = slice(bb, n * 4).asIntBuffer();
+			fileId = slice(bb, n * 4).asIntBuffer();
+			mapId = slice(bb, n * 2).asShortBuffer();
+			chInd = slice(bb, n * 4).asIntBuffer();
+			roadId = slice(bb, n * 8).asLongBuffer();
+			start = slice(bb, n * 2).asShortBuffer();
+			end = slice(bb, n * 2).asShortBuffer();
+			startX = slice(bb, n * 4).asIntBuffer();
+			startY = slice(bb, n * 4).asIntBuffer();
+			endX = slice(bb, n * 4).asIntBuffer();
+			endY = slice(bb, n * 4).asIntBuffer();
+			out = readAdjacency(bb, n);
+			in = readAdjacency(bb, n);
+			ok = true;
+		} finally {
+			if (!ok) {
+				raf.close();
+			}
+		}
+	}
+
+	public static HHRoutingGraphSnapshot open(File file) throws IOException {
+		return new HHRoutingGraphSnapshot(file);
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Key of routing files / profile snapshot was created for, see {@link HHRoutingContext#getGraphSnapshotKey()}
+	 */
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * @return part of snapshot key identifying version of routing file
+	 */
+	public static String getFileKey(File f) {
+		return String.format("%s %d %d", f.getName(), f.length(), f.lastModified());
+	}
+
+	public int getPointsCount() {
+		return pointsCount;
+	}
+
+	public int getSegmentsCount() {
+		return out.targets.limit() + in.targets.limit();
+	}
+
+	public void close() throws IOException {
+		raf.close();
+	}
+
+	public <T extends NetworkDBPoint> TLongObjectHashMap<T> loadNetworkPoints(Class<T> cl) {
+		TLongObjectHashMap<T> mp = new TLongObjectHashMap<>();
+		for (int i = 0; i < pointsCount; i++) {
+			T pnt;
+			try {
+				pnt = cl.getDeclaredConstructor().newInstance();
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+			pnt.index = index.get(i);
+			pnt.clusterId = clusterId.get(i);
+			pnt.fileId = fileId.get(i);
+			pnt.mapId = mapId.get(i);
+			if (pnt instanceof NetworkDBPointCh) {
+				((NetworkDBPointCh) pnt).chInd = chInd.get(i);
+			}
+			pnt.roadId = roadId.get(i);
+			pnt.start = start.get(i);
+			pnt.end = end.get(i);
+			pnt.startX = startX.get(i);
+			pnt.startY = startY.get(i);
+			pnt.endX = endX.get(i);
+			pnt.endY = endY.get(i);
+			pnt.markSegmentsNotLoaded();
+			mp.put(pnt.index, pnt);
+		}
+		for (int i = 0; i < pointsCount; i++) {
+			mp.get(index.get(i)).dualPoint = mp.get(dualIndex.get(i));
+		}
+		return mp;
+	}
+
+	public <T extends NetworkDBPoint> int loadNetworkSegmentPoint(HHRoutingContext<T> ctx, T point, boolean reverse) {
+		if (point.connected(reverse) != null) {
+			return 0;
+		}
+		int pos = binarySearch(point.index);
+		if (pos < 0) {
+			point.connectedSet(reverse, new ArrayList<NetworkDBSegment>());
+			return 0;
+		}
+		Adjacency a = reverse ? in : out;
+		int from = a.offsets.get(pos);
+		int to = a.offsets.get(pos + 1);
+		List<NetworkDBSegment> l = new ArrayList<>(to - from);
+		for (int k = from; k < to; k++) {
+			NetworkDBPoint target = ctx.pointsById.get(a.targets.get(k));
+			NetworkDBPoint st = reverse ? target : point;
+			NetworkDBPoint en = reverse ? point : target;
+			l.add(new NetworkDBSegment(st, en, a.dist.get(k), !reverse, a.shortcut.get(k) != 0));
+		}
+		point.connectedSet(reverse, l);
+		return l.size();
+	}
+
+	private int binarySearch(int ind) {
+		int lo = 0;
+		int hi = pointsCount - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			int v = index.get(mid);
+			if (v < ind) {
+				lo = mid + 1;
+			} else if (v > ind) {
+				hi = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	private static ByteBuffer slice(ByteBuffer bb, int length) {
+		ByteBuffer s = bb.slice();
+		s.limit(length);
+		bb.position(bb.position() + length);
+		return s;
+	}
+
+	private static Adjacency readAdjacency(ByteBuffer bb, int n) {
+		Adjacency a = new Adjacency();
+		int cnt = bb.getInt();
+		a.offsets = slice(bb, (n + 1) * 4).asIntBuffer();
+		a.targets = slice(bb, cnt * 4).asIntBuffer();
+		a.dist = slice(bb, cnt * 8).asDoubleBuffer();
+		a.shortcut = slice(bb, cnt);
+		return a;
+	}
+
+	/**
+	 * Writes all points of initialized context with their segments (segments are loaded if needed).
+	 */
+	public static <T extends NetworkDBPoint> void write(HHRoutingContext<T> ctx, File file) throws IOException, SQLException {
+		List<T> points = new ArrayList<>(ctx.pointsById.valueCollection());
+		Collections.sort(points, HHRoutingDB.indexComparator);
+		for (T p : points) {
+			if (p.connected(false) == null) {
+				ctx.loadNetworkSegmentPoint(p, false);
+			}
+			if (p.connected(true) == null) {
+				ctx.loadNetworkSegmentPoint(p, true);
+			}
+		}
+		int n = points.size();
+		DataOutputStream dout = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		try {
+			dout.writeInt(MAGIC);
+			dout.writeInt(VERSION);
+			byte[] k = ctx.getGraphSnapshotKey().getBytes("UTF-8");
+			dout.writeInt(k.length);
+			dout.write(k);
+			dout.writeInt(n);
+			for (T p : points) {
+				dout.writeInt(p.index);
+			}
+			for (T p : points) {
+				dout.writeInt(p.dualPoint == null ? -1 : p.dualPoint.index);
+			}
+			for (T p : points) {
+				dout.writeInt(p.clusterId);
+			}
+			for (T p : points) {
+				dout.writeInt(p.fileId);
+			}
+			for (T p : points) {
+				dout.writeShort(p.mapId);
+			}
+			for (T p : points) {
+				dout.writeInt(p.chInd());
+			}
+			for (T p : points) {
+				dout.writeLong(p.roadId);
+			}
+			for (T p : points) {
+				dout.writeShort(p.start);
+			}
+			for (T p : points) {
+				dout.writeShort(p.end);
+			}
+			for (T p : points) {
+				dout.writeInt(p.startX);
+			}
+			for (T p : points) {
+				dout.writeInt(p.startY);
+			}
+			for (T p : points) {
+				dout.writeInt(p.endX);
+			}
+			for (T p : points) {
+				dout.writeInt(p.endY);
+			}
+			writeAdjacency(dout, points, false);
+			writeAdjacency(dout, points, true);
+		} finally {
+			dout.close();
+		}
+	}
+
+	private static <T extends NetworkDBPoint> void writeAdjacency(DataOutputStream dout, List<T> points, boolean reverse)
+			throws IOException {
+		List<NetworkDBSegment> all = new ArrayList<>();
+		int[] offsets = new int[points.size() + 1];
+		for (int i = 0; i < points.size(); i++) {
+			offsets[i] = all.size();
+			for (NetworkDBSegment s : points.get(i).connected(reverse)) {
+				// segments to points which are not loaded can't be used by routing
+				if (s.start != null && s.end != null) {
+					all.add(s);
+				}
+			}
+		}
+		offsets[points.size()] = all.size();
+		dout.writeInt(all.size());
+		for (int o : offsets) {
+			dout.writeInt(o);
+		}
+		for (NetworkDBSegment s : all) {
+			dout.writeInt(reverse ? s.start.index : s.end.index);
+		}
+		for (NetworkDBSegment s : all) {
+			dout.writeDouble(s.dist);
+		}
+		byte[] shortcuts = new byte[all.size()];
+		for (int i = 0; i < all.size(); i++) {
+			shortcuts[i] = (byte) (all.get(i).shortcut ? 1 : 0);
+		}
+		dout.write(shortcuts);
+	}
+}
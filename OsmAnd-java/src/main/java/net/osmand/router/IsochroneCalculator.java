@@ -0,0 +1,210 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.data.LatLon;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+import net.osmand.util.MapUtils;
+
+/**
+ * Reachability (isochrone) calculation: one-to-all dijkstra search of {@link BinaryRoutePlanner} from origin
+ * which stops when cost exceeds the biggest limit (see {@link RoutingConfiguration#MAX_COST}).
+ * Costs are defined by router of context and tiles are loaded by context same way as for routing.
+ * Limits could be time (seconds) or road distance along the fastest routes (meters), in the second case search
+ * is repeated with doubled cost limit while segments within distance are still reached.
+ */
+public class IsochroneCalculator {
+
+	// number of angular sectors around origin for hull
+	public int HULL_SECTORS = 72;
+
+	private final RoutePlannerFrontEnd frontEnd;
+
+	public IsochroneCalculator(RoutePlannerFrontEnd frontEnd) {
+		this.frontEnd = frontEnd;
+	}
+
+	public static class ReachedSegment {
+		public final RouteDataObject road;
+		public final int startPointIndex;
+		public final int endPointIndex;
+		// time (s) to reach end point
+		public final float cost;
+		// road distance (m) to reach end point
+		public final float distance;
+
+		public ReachedSegment(RouteDataObject road, int startPointIndex, int endPointIndex, float cost, float distance) {
+			this.road = road;
+			this.startPointIndex = startPointIndex;
+			this.endPointIndex = endPointIndex;
+			this.cost = cost;
+			this.distance = distance;
+		}
+
+		public LatLon getEndPoint() {
+			return new LatLon(MapUtils.get31LatitudeY(road.getPoint31YTile(endPointIndex)),
+					MapUtils.get31LongitudeX(road.getPoint31XTile(endPointIndex)));
+		}
+	}
+
+	public static class IsochroneBand {
+		public final float limit;
+		// segments reached within limit but not within previous band limit
+		public final List<ReachedSegment> segments = new ArrayList<ReachedSegment>();
+		// hull of all segments reached within limit (including previous bands), null if not requested
+		public List<LatLon> hull;
+
+		public IsochroneBand(float limit) {
+			this.limit = limit;
+		}
+	}
+
+	/**
+	 * @param limits ascending limits of bands, time in seconds or distance in meters
+	 * @param byDistance limits are road distances
+	 * @param buildHull calculate hull polygon for every band
+	 * @return bands (empty if origin is not located on roads)
+	 */
+	public List<IsochroneBand> calculate(RoutingContext ctx, LatLon origin, float[] limits, boolean byDistance,
+			boolean buildHull) throws IOException, InterruptedException {
+		if (ctx.calculationProgress == null) {
+			ctx.calculationProgress = new RouteCalculationProgress();
+		}
+		List<IsochroneBand> bands = new ArrayList<IsochroneBand>();
+		for (float l : limits) {
+			bands.add(new IsochroneBand(l));
+		}
+		if (limits.length == 0) {
+			return bands;
+		}
+		float maxLimit = limits[limits.length - 1];
+		// search limits are set to own copy of configuration as it could be shared by other contexts
+		RoutingConfiguration config = ctx.config.copy();
+		config.planRoadDirection = 1;
+		RoutingContext sctx = new RoutingContext(ctx, config);
+		List<ReachedSegment> reached;
+		if (!byDistance) {
+			reached = search(sctx, origin, maxLimit);
+		} else {
+			VehicleRouter router = ctx.getRouter();
+			float cost = maxLimit / router.getMaxSpeed();
+			float maxCost = maxLimit / router.getMinSpeed();
+			while (true) {
+				reached = search(sctx, origin, cost);
+				// distances are growing along the routes: if nothing within distance is reached
+				// by the last half of costs, next segments can't be within distance
+				if (reached == null || cost >= maxCost || !isReached(reached, cost / 2, maxLimit)) {
+					break;
+				}
+				cost *= 2;
+			}
+		}
+		if (reached == null) {
+			return bands;
+		}
+		for (ReachedSegment s : reached) {
+			float v = byDistance ? s.distance : s.cost;
+			for (IsochroneBand b : bands) {
+				if (v <= b.limit) {
+					b.segments.add(s);
+					break;
+				}
+			}
+		}
+		if (buildHull) {
+			LatLon[] sectors = new LatLon[HULL_SECTORS];
+			double[] sectorDist = new double[HULL_SECTORS];
+			for (IsochroneBand b : bands) {
+				for (ReachedSegment s : b.segments) {
+					LatLon l = s.getEndPoint();
+					double d = MapUtils.getDistance(origin, l);
+					double angle = Math.atan2(l.getLatitude() - origin.getLatitude(),
+							(l.getLongitude() - origin.getLongitude()) * Math.cos(Math.toRadians(origin.getLatitude())));
+					int sector = (int) ((angle + Math.PI) / (2 * Math.PI) * HULL_SECTORS) % HULL_SECTORS;
+					if (sectors[sector] == null || d > sectorDist[sector]) {
+						sectors[sector] = l;
+						sectorDist[sector] = d;
+					}
+				}
+				b.hull = new ArrayList<LatLon>();
+				for (LatLon l : sectors) {
+					if (l != null) {
+						b.hull.add(l);
+					}
+				}
+				if (!b.hull.isEmpty()) {
+					b.hull.add(b.hull.get(0));
+				}
+			}
+		}
+		return bands;
+	}
+
+	private boolean isReached(List<ReachedSegment> reached, float fromCost, float maxDistance) {
+		for (ReachedSegment s : reached) {
+			if (s.cost > fromCost && s.distance <= maxDistance) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// ctx has own configuration with forward planning direction
+	private List<ReachedSegment> search(RoutingContext ctx, LatLon origin, float maxCost)
+			throws IOException, InterruptedException {
+		ctx.clearSearchState();
+		RouteSegmentPoint start = frontEnd.findRouteSegment(origin.getLatitude(), origin.getLongitude(), ctx, null);
+		if (start == null) {
+			return null;
+		}
+		TLongObjectMap<RouteSegment> visited = new TLongObjectHashMap<RouteSegment>();
+		ctx.config.MAX_COST = maxCost;
+		new BinaryRoutePlanner().searchRouteInternal(ctx, start, null, null, visited);
+		List<ReachedSegment> res = new ArrayList<ReachedSegment>(visited.size());
+		Map<RouteSegment, Float> distances = new IdentityHashMap<RouteSegment, Float>();
+		for (RouteSegment s : visited.valueCollection()) {
+			if (s.getDistanceFromStart() <= maxCost) {
+				res.add(new ReachedSegment(s.getRoad(), s.getSegmentStart(), s.getSegmentEnd(),
+						s.getDistanceFromStart(), distance(s, start, distances)));
+			}
+		}
+		return res;
+	}
+
+	// road distance to the end of segment along parent segments
+	private float distance(RouteSegment s, RouteSegmentPoint start, Map<RouteSegment, Float> distances) {
+		List<RouteSegment> path = new ArrayList<RouteSegment>();
+		float d = 0;
+		for (RouteSegment p = s; p != null; p = p.getParentRoute()) {
+			Float known = distances.get(p);
+			if (known != null) {
+				d = known;
+				break;
+			}
+			path.add(p);
+		}
+		for (int i = path.size() - 1; i >= 0; i--) {
+			RouteSegment p = path.get(i);
+			RouteDataObject r = p.getRoad();
+			int fromX = r.getPoint31XTile(p.getSegmentStart());
+			int fromY = r.getPoint31YTile(p.getSegmentStart());
+			if (p.getParentRoute() == null) {
+				// start segment begins from projection
+				fromX = start.preciseX;
+				fromY = start.preciseY;
+			}
+			d += (float) MapUtils.squareRootDist31(fromX, fromY, r.getPoint31XTile(p.getSegmentEnd()),
+					r.getPoint31YTile(p.getSegmentEnd()));
+			distances.put(p, d);
+		}
+		return d;
+	}
+}
@@ -0,0 +1,164 @@
+package net.osmand.router;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+
+/**
+ * Compact points index of loaded routing tile. Instead of RouteSegment object and hash map entry per road point
+ * it keeps 2 packed sorted arrays: point key (x31 << 31 + y31) and reference to road point (road index << 32 + point index).
+ * RouteSegment objects are created only for points requested by router and kept while tile is loaded,
+ * cause they store state of the search.
+ */
+class PackedRouteSegmentIndex {
+
+	private final List<RouteDataObject> roads = new ArrayList<RouteDataObject>();
+	private long[] keysArray = new long[256];
+	private long[] refsArray = new long[256];
+	private int size = 0;
+	// not null when index is packed
+	private LongBuffer keys;
+	private LongBuffer refs;
+	private final TLongObjectHashMap<RouteSegment> segments = new TLongObjectHashMap<RouteSegment>();
+
+	public void add(RouteDataObject ro) {
+		if (keys != null) {
+			throw new IllegalStateException("Index is already packed");
+		}
+		int roadIndex = roads.size();
+		roads.add(ro);
+		int len = ro.getPointsLength();
+		if (size + len > keysArray.length) {
+			int capacity = Math.max(keysArray.length * 2, size + len);
+			long[] nkeys = new long[capacity];
+			long[] nrefs = new long[capacity];
+			System.arraycopy(keysArray, 0, nkeys, 0, size);
+			System.arraycopy(refsArray, 0, nrefs, 0, size);
+			keysArray = nkeys;
+			refsArray = nrefs;
+		}
+		for (int i = 0; i < len; i++) {
+			keysArray[size] = (((long) ro.getPoint31XTile(i)) << 31) + (long) ro.getPoint31YTile(i);
+			refsArray[size] = (((long) roadIndex) << 32) + i;
+			size++;
+		}
+	}
+
+	public void pack(boolean offHeap) {
+		// refs are growing in order of insertion, so segments of the same point are kept in order of loading
+		sort(keysArray, refsArray, 0, size - 1);
+		if (offHeap) {
+			keys = ByteBuffer.allocateDirect(size * 8).order(ByteOrder.nativeOrder()).asLongBuffer();
+			refs = ByteBuffer.allocateDirect(size * 8).order(ByteOrder.nativeOrder()).asLongBuffer();
+			keys.put(keysArray, 0, size);
+			refs.put(refsArray, 0, size);
+		} else {
+			keys = LongBuffer.wrap(keysArray, 0, size).slice();
+			refs = LongBuffer.wrap(refsArray, 0, size).slice();
+		}
+		keysArray = null;
+		refsArray = null;
+	}
+
+	public List<RouteDataObject> getRoads() {
+		return roads;
+	}
+
+	// segments created for requested points
+	public Collection<RouteSegment> getSegments() {
+		return segments.valueCollection();
+	}
+
+	public int getPointsSize() {
+		return size;
+	}
+
+	public RouteSegment get(long key) {
+		RouteSegment head = segments.get(key);
+		if (head != null || keys == null) {
+			return head;
+		}
+		int lo = 0;
+		int hi = size - 1;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (keys.get(mid) < key) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		RouteSegment last = null;
+		for (int i = lo; i < size && keys.get(i) == key; i++) {
+			long ref = refs.get(i);
+			RouteSegment segment = new RouteSegment(roads.get((int) (ref >> 32)), (int) ref);
+			if (last == null) {
+				head = segment;
+			} else {
+				last.nextLoaded = segment;
+			}
+			last = segment;
+		}
+		if (head != null) {
+			segments.put(key, head);
+		}
+		return head;
+	}
+
+	private static void sort(long[] keys, long[] refs, int lo, int hi) {
+		while (hi - lo > 16) {
+			int mid = (lo + hi) >>> 1;
+			long pk = keys[mid];
+			long pr = refs[mid];
+			int i = lo;
+			int j = hi;
+			while (i <= j) {
+				while (compare(keys[i], refs[i], pk, pr) < 0) {
+					i++;
+				}
+				while (compare(keys[j], refs[j], pk, pr) > 0) {
+					j--;
+				}
+				if (i <= j) {
+					swap(keys, refs, i++, j--);
+				}
+			}
+			// recurse into smaller part to limit stack depth
+			if (j - lo < hi - i) {
+				sort(keys, refs, lo, j);
+				lo = i;
+			} else {
+				sort(keys, refs, i, hi);
+				hi = j;
+			}
+		}
+		for (int i = lo + 1; i <= hi; i++) {
+			for (int j = i; j > lo && compare(keys[j - 1], refs[j - 1], keys[j], refs[j]) > 0; j--) {
+				swap(keys, refs, j, j - 1);
+			}
+		}
+	}
+
+	private static int compare(long k1, long r1, long k2, long r2) {
+		if (k1 != k2) {
+			return k1 < k2 ? -1 : 1;
+		}
+		return r1 < r2 ? -1 : (r1 == r2 ? 0 : 1);
+	}
+
+	private static void swap(long[] keys, long[] refs, int i, int j) {
+		long t = keys[i];
+		keys[i] = keys[j];
+		keys[j] = t;
+		t = refs[i];
+		refs[i] = refs[j];
+		refs[j] = t;
+	}
+}
@@ -0,0 +1,51 @@
+package net.osmand.router;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+
+/**
+ * Reverse (from target) part of bidirectional search of {@link BinaryRoutePlanner} which is kept between
+ * recalculations of the route to the same target (see {@link RoutingContext#reverseSearchTree}).
+ * Visited segments store time to target and queue stores the frontier, so recalculation from new start
+ * runs forward search until it meets the tree and extends the frontier only if it's needed.
+ */
+class ReverseSearchTree {
+
+	final RoutingConfiguration config;
+	final long targetRoadId;
+	final int targetSegmentInd;
+	final int targetX;
+	final int targetY;
+
+	final RouteSegmentHeap graphSegments = new RouteSegmentHeap(50);
+	final TLongObjectMap<RouteSegment> visitedSegments = new TLongObjectHashMap<RouteSegment>();
+	// visited segments which were not expanded cause forward search was met there
+	final List<RouteSegment> notExpandedSegments = new ArrayList<RouteSegment>();
+	// tree is filled by previous calculation
+	boolean calculated;
+
+	ReverseSearchTree(RoutingConfiguration config, RouteSegmentPoint end) {
+		this.config = config;
+		this.targetRoadId = end.getRoad().getId();
+		this.targetSegmentInd = end.getSegmentStart();
+		this.targetX = end.preciseX;
+		this.targetY = end.preciseY;
+	}
+
+	boolean isSameTarget(RoutingConfiguration config, RouteSegmentPoint end) {
+		return this.config == config && targetRoadId == end.getRoad().getId()
+				&& targetSegmentInd == end.getSegmentStart() && targetX == end.preciseX && targetY == end.preciseY;
+	}
+
+	// tree is dropped when it takes half of memory limit, so forward search has enough memory
+	boolean isOverLimit(RoutingContext ctx) {
+		long overhead = (long) visitedSegments.size() * BinaryRoutePlanner.STANDARD_ROAD_VISITED_OVERHEAD
+				+ (long) graphSegments.size() * BinaryRoutePlanner.STANDARD_ROAD_IN_QUEUE_OVERHEAD;
+		return overhead > ctx.config.memoryLimitation / 2;
+	}
+}
@@ -45,8 +45,10 @@ public class RouteCalculationProgress {
 	public int unloadedTiles = 0;
 	public int loadedTiles = 0;
 	
-	public boolean isCancelled;
+	public volatile boolean isCancelled;
 	public boolean requestPrivateAccessRouting;
+	// progress of whole calculation which runs chunks / jobs concurrently with own progresses
+	private RouteCalculationProgress parent;
 
 	public long routeCalculationStartTime;
 	public List<WorldRegion> missingMaps;
@@ -81,6 +83,62 @@ public class RouteCalculationProgress {
 		return p;
 	}
 	
+	/**
+	 * Creates progress of a part of calculation running in another thread, it's cancelled with parent
+	 * (see {@link #isCancelled()}) and should be merged to parent with {@link #add(RouteCalculationProgress)}.
+	 */
+	public static RouteCalculationProgress createChild(RouteCalculationProgress parent) {
+		RouteCalculationProgress p = new RouteCalculationProgress();
+		p.parent = parent;
+		p.isCancelled = parent.isCancelled;
+		return p;
+	}
+
+	public boolean isCancelled() {
+		if (!isCancelled && parent != null && parent.isCancelled()) {
+			isCancelled = true;
+		}
+		return isCancelled;
+	}
+
+	public void addApproximatedDistance(float dist) {
+		approximatedDistance += dist;
+		if (parent != null) {
+			synchronized (parent) {
+				parent.addApproximatedDistance(dist);
+			}
+		}
+	}
+
+	/**
+	 * Adds counters and times of child progress
+	 */
+	public synchronized void add(RouteCalculationProgress cp) {
+		timeNanoToCalcDeviation += cp.timeNanoToCalcDeviation;
+		timeToLoadHeaders += cp.timeToLoadHeaders;
+		timeToFindInitialSegments += cp.timeToFindInitialSegments;
+		timeToLoad += cp.timeToLoad;
+
+		visitedSegments += cp.visitedSegments;
+		visitedDirectSegments += cp.visitedDirectSegments;
+		visitedOppositeSegments += cp.visitedOppositeSegments;
+		directQueueSize = Math.max(directQueueSize, cp.directQueueSize);
+		oppositeQueueSize = Math.max(oppositeQueueSize, cp.oppositeQueueSize);
+		finalSegmentsFound += cp.finalSegmentsFound;
+
+		loadedTiles += cp.loadedTiles;
+		distinctLoadedTiles += cp.distinctLoadedTiles;
+		maxLoadedTiles = Math.max(maxLoadedTiles, cp.maxLoadedTiles);
+		loadedPrevUnloadedTiles += cp.loadedPrevUnloadedTiles;
+		unloadedTiles += cp.unloadedTiles;
+		if (cp.requestPrivateAccessRouting) {
+			requestPrivateAccessRouting = true;
+		}
+		if (cp.segmentNotFound >= 0 && segmentNotFound < 0) {
+			segmentNotFound = cp.segmentNotFound;
+		}
+	}
+
 	public Map<String, Object> getInfo(RouteCalculationProgress firstPhase) {
 		TreeMap<String, Object> map = new TreeMap<String, Object>();
 		TreeMap<String, Object> tiles = new TreeMap<String, Object>();
@@ -5,6 +5,7 @@ import net.osmand.gpx.GPXTrackAnalysis;
 import net.osmand.gpx.GPXUtilities.Track;
 import net.osmand.gpx.GPXUtilities.TrkSegment;
 import net.osmand.gpx.GPXUtilities.WptPt;
+import net.osmand.gpx.TrackPointsColumns;
 import net.osmand.PlatformUtil;
 import net.osmand.osm.edit.Node;
 import net.osmand.osm.edit.OsmMapUtils;
@@ -106,28 +107,41 @@ public class RouteColorize {
             return;
         }
 
-        List<Double> latList = new ArrayList<>();
-        List<Double> lonList = new ArrayList<>();
-        List<Double> valList = new ArrayList<>();
-        int wptIdx = 0;
-
         if (analysis == null) {
             long time = Algorithms.isEmpty(gpxFile.path) ? System.currentTimeMillis() : gpxFile.modifiedTime;
             analysis = gpxFile.getAnalysis(time);
         }
+        int size = 0;
+        for (Track t : gpxFile.tracks) {
+            for (TrkSegment ts : t.segments) {
+                if (!ts.generalSegment && ts.points.size() >= 2) {
+                    size += ts.points.size();
+                }
+            }
+        }
+        latitudes = new double[size];
+        longitudes = new double[size];
+        double[] vals = new double[size];
+        int wptIdx = 0;
         for (Track t : gpxFile.tracks) {
             for (TrkSegment ts : t.segments) {
                 if (ts.generalSegment || ts.points.size() < 2) {
                     continue;
                 }
-
-                for (WptPt p : ts.points) {
-                    latList.add(p.lat);
-                    lonList.add(p.lon);
+                TrackPointsColumns columns = ts.getColumns();
+                for (int i = 0; i < ts.points.size(); i++) {
+                    if (columns != null) {
+                        latitudes[wptIdx] = columns.getLat(i);
+                        longitudes[wptIdx] = columns.getLon(i);
+                    } else {
+                        WptPt p = ts.points.get(i);
+                        latitudes[wptIdx] = p.lat;
+                        longitudes[wptIdx] = p.lon;
+                    }
                     if (type == ColorizationType.SPEED) {
-                        valList.add((double) analysis.pointAttributes.get(wptIdx).speed);
+                        vals[wptIdx] = analysis.pointAttributes.get(wptIdx).speed;
                     } else {
-                        valList.add((double) analysis.pointAttributes.get(wptIdx).elevation);
+                        vals[wptIdx] = analysis.pointAttributes.get(wptIdx).elevation;
                     }
                     wptIdx++;
                 }
@@ -135,13 +149,11 @@ public class RouteColorize {
         }
 
         colorizationType = type;
-        latitudes = listToArray(latList);
-        longitudes = listToArray(lonList);
 
         if (type == ColorizationType.SLOPE) {
-            values = calculateSlopesByElevations(latitudes, longitudes, listToArray(valList), SLOPE_RANGE);
+            values = calculateSlopesByElevations(latitudes, longitudes, vals, SLOPE_RANGE);
         } else {
-            values = listToArray(valList);
+            values = vals;
         }
         calculateMinMaxValue(analysis, maxProfileSpeed);
         checkPalette();
@@ -534,14 +546,6 @@ public class RouteColorize {
         maxValue = getMaxValue(colorizationType, analysis, minValue, maxProfileSpeed);
     }
 
-    private double[] listToArray(List<Double> doubleList) {
-        double[] result = new double[doubleList.size()];
-        for (int i = 0; i < doubleList.size(); i++) {
-            result[i] = doubleList.get(i);
-        }
-        return result;
-    }
-
     private double[][] getDefaultPalette(ColorizationType colorizationType) {
         if (colorizationType == ColorizationType.SLOPE) {
             return SLOPE_PALETTE;
@@ -2,18 +2,25 @@ package net.osmand.router;
 
 
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import org.apache.commons.logging.Log;
 
 import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
 import net.osmand.LocationsHolder;
 import net.osmand.NativeLibrary;
 import net.osmand.PlatformUtil;
@@ -23,6 +30,7 @@ import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
 import net.osmand.binary.RouteDataObject;
 import net.osmand.data.LatLon;
 import net.osmand.data.QuadPointDouble;
+import net.osmand.router.BinaryRoutePlanner.FinalRouteSegment;
 import net.osmand.router.BinaryRoutePlanner.RouteSegment;
 import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
 import net.osmand.router.GeneralRouter.RoutingParameter;
@@ -43,9 +51,14 @@ public class RoutePlannerFrontEnd {
 	private static final HHRoutingConfig DEFAULT_ROUTING_CONFIG = HHRoutingConfig.astar(0).calcDetailed(HHRoutingConfig.CALCULATE_ALL_DETAILED);
 //	private static final HHRoutingConfig DEFAULT_ROUTING_CONFIG = HHRoutingConfig.dijkstra(0).calcDetailed(HHRoutingConfig.CALCULATE_ALL_DETAILED);
 	private boolean useSmartRouteRecalculation = true;
+	private boolean useIncrementalRecalculation = false;
 	private boolean useNativeApproximation = true;
 	private boolean useOnlyHHRouting = false;
 	private HHRoutingConfig hhRoutingConfig = null;
+	// minimal length of parallel approximation chunk in maxStepApproximation steps
+	private static final int GPX_PARALLEL_CHUNK_STEPS = 10;
+	// batch route jobs are grouped by tile of start point at this zoom
+	private static final int BATCH_REGION_ZOOM = 9;
 	
 
 	public RoutePlannerFrontEnd() {
@@ -256,6 +269,20 @@ public class RoutePlannerFrontEnd {
 		return this;
 	}
 	
+	/**
+	 * Keep reverse search from target in routing context, so next calculation with the same context and target
+	 * (recalculation after deviation) continues it instead of searching from scratch.
+	 * Context is not unloaded between such calculations.
+	 */
+	public RoutePlannerFrontEnd setUseIncrementalRecalculation(boolean use) {
+		useIncrementalRecalculation = use;
+		return this;
+	}
+
+	public boolean isUseIncrementalRecalculation() {
+		return useIncrementalRecalculation;
+	}
+
 	public RoutePlannerFrontEnd setHHRoutingConfig(HHRoutingConfig hhRoutingConfig) {
 		// null means don't use hh 
 		this.hhRoutingConfig = hhRoutingConfig;
@@ -284,6 +311,15 @@ public class RoutePlannerFrontEnd {
 	}
 
 	public GpxRouteApproximation searchGpxRoute(GpxRouteApproximation gctx, List<GpxPoint> gpxPoints, ResultMatcher<GpxRouteApproximation> resultMatcher) throws IOException, InterruptedException {
+		return searchGpxRoute(gctx, gpxPoints, resultMatcher, null);
+	}
+
+	/**
+	 * @param pool if not null, long tracks are split at anchor points and chunks are approximated concurrently
+	 *             on own routing contexts (with own copies of readers), seams which don't connect are recalculated
+	 */
+	public GpxRouteApproximation searchGpxRoute(GpxRouteApproximation gctx, List<GpxPoint> gpxPoints, ResultMatcher<GpxRouteApproximation> resultMatcher,
+			ForkJoinPool pool) throws IOException, InterruptedException {
 		long timeToCalculate = System.nanoTime();
 		NativeLibrary nativeLib = gctx.ctx.nativeLib;
 		if (nativeLib != null && useNativeApproximation) {
@@ -293,94 +329,307 @@ public class RoutePlannerFrontEnd {
 			if (gctx.ctx.calculationProgress == null) {
 				gctx.ctx.calculationProgress = new RouteCalculationProgress();
 			}
-			GpxPoint start = null;
-			GpxPoint prev = null;
 			if (gpxPoints.size() > 0) {
 				gctx.ctx.calculationProgress.totalApproximateDistance = (float) gpxPoints.get(gpxPoints.size() - 1).cumDist;
-				start = gpxPoints.get(0);
-			}
-			float minPointApproximation = gctx.ctx.config.minPointApproximation;
-			while (start != null && !gctx.ctx.calculationProgress.isCancelled) {
-				double routeDist = gctx.ctx.config.maxStepApproximation;
-				GpxPoint next = findNextGpxPointWithin(gpxPoints, start, routeDist);
-				boolean routeFound = false;
-				if (next != null && initRoutingPoint(start, gctx, minPointApproximation)) {
-					while (routeDist >= gctx.ctx.config.minStepApproximation && !routeFound) {
-						routeFound = initRoutingPoint(next, gctx, minPointApproximation);
+				gctx.ctx.calculationProgress.approximatedDistance = 0;
+			}
+			if (pool == null || !searchGpxRouteInParallel(gctx, gpxPoints, pool)) {
+				searchGpxSegments(gctx, gpxPoints, true);
+			}
+			if (gctx.ctx.calculationProgress != null) {
+				gctx.ctx.calculationProgress.timeToCalculate = System.nanoTime() - timeToCalculate;
+			}
+			gctx.ctx.deleteNativeRoutingContext();
+			calculateGpxRoute(gctx, gpxPoints);
+			if (!gctx.result.isEmpty() && !gctx.ctx.calculationProgress.isCancelled()) {
+				RouteResultPreparation.printResults(gctx.ctx, gpxPoints.get(0).loc, gpxPoints.get(gpxPoints.size() - 1).loc, gctx.result);
+				log.info(gctx);
+			}
+		}
+		if (resultMatcher != null) {
+			resultMatcher.publish(gctx.ctx.calculationProgress.isCancelled() ? null : gctx);
+		}
+		return gctx;
+	}
+
+	/**
+	 * Approximates track with hidden Markov model map matching (see {@link GpxMapMatcher}) instead of
+	 * routing between points, much faster for dense recorded tracks. Result is prepared the same way as
+	 * {@link #searchGpxRoute(GpxRouteApproximation, List, ResultMatcher)} does.
+	 */
+	public GpxRouteApproximation searchGpxRouteByMapMatching(GpxRouteApproximation gctx, List<GpxPoint> gpxPoints,
+			ResultMatcher<GpxRouteApproximation> resultMatcher) throws IOException {
+		long timeToCalculate = System.nanoTime();
+		if (gctx.ctx.calculationProgress == null) {
+			gctx.ctx.calculationProgress = new RouteCalculationProgress();
+		}
+		if (gpxPoints.size() > 0) {
+			gctx.ctx.calculationProgress.totalApproximateDistance = (float) gpxPoints.get(gpxPoints.size() - 1).cumDist;
+		}
+		new GpxMapMatcher(this).match(gctx, gpxPoints);
+		gctx.ctx.calculationProgress.timeToCalculate = System.nanoTime() - timeToCalculate;
+		calculateGpxRoute(gctx, gpxPoints);
+		if (!gctx.result.isEmpty() && !gctx.ctx.calculationProgress.isCancelled()) {
+			RouteResultPreparation.printResults(gctx.ctx, gpxPoints.get(0).loc, gpxPoints.get(gpxPoints.size() - 1).loc, gctx.result);
+			log.info(gctx);
+		}
+		if (resultMatcher != null) {
+			resultMatcher.publish(gctx.ctx.calculationProgress.isCancelled() ? null : gctx);
+		}
+		return gctx;
+	}
+
+	private void searchGpxSegments(GpxRouteApproximation gctx, List<GpxPoint> gpxPoints, boolean trackProgress)
+			throws IOException, InterruptedException {
+		GpxPoint start = null;
+		GpxPoint prev = null;
+		if (gpxPoints.size() > 0) {
+			start = gpxPoints.get(0);
+		}
+		float minPointApproximation = gctx.ctx.config.minPointApproximation;
+		while (start != null && !gctx.ctx.calculationProgress.isCancelled()) {
+			double routeDist = gctx.ctx.config.maxStepApproximation;
+			GpxPoint next = findNextGpxPointWithin(gpxPoints, start, routeDist);
+			boolean routeFound = false;
+			if (next != null && initRoutingPoint(start, gctx, minPointApproximation)) {
+				while (routeDist >= gctx.ctx.config.minStepApproximation && !routeFound) {
+					routeFound = initRoutingPoint(next, gctx, minPointApproximation);
+					if (routeFound) {
+						routeFound = findGpxRouteSegment(gctx, gpxPoints, start, next, prev != null);
 						if (routeFound) {
-							routeFound = findGpxRouteSegment(gctx, gpxPoints, start, next, prev != null);
-							if (routeFound) {
-								routeFound = isRouteCloseToGpxPoints(minPointApproximation, gpxPoints, start, next);
-								if (!routeFound) {
-									start.routeToTarget = null;
-								}
+							routeFound = isRouteCloseToGpxPoints(minPointApproximation, gpxPoints, start, next);
+							if (!routeFound) {
+								start.routeToTarget = null;
 							}
-							if (routeFound && next.ind < gpxPoints.size() - 1) {
-								// route is found - cut the end of the route and move to next iteration
-								// start.stepBackRoute = new ArrayList<RouteSegmentResult>();
-								// boolean stepBack = true;
-								boolean stepBack = stepBackAndFindPrevPointInRoute(gctx, gpxPoints, start, next);
-								if (!stepBack) {
-									// not supported case (workaround increase routing.xml maxStepApproximation)
-									log.info("Consider to increase routing.xml maxStepApproximation to: " + routeDist * 2);
-									start.routeToTarget = null;
-									routeFound = false;
-								} else {
-									if (gctx.ctx.getVisitor() != null) {
-										gctx.ctx.getVisitor().visitApproximatedSegments(start.routeToTarget, start,
-												next);
-									}
+						}
+						if (routeFound && next.ind < gpxPoints.size() - 1) {
+							// route is found - cut the end of the route and move to next iteration
+							// start.stepBackRoute = new ArrayList<RouteSegmentResult>();
+							// boolean stepBack = true;
+							boolean stepBack = stepBackAndFindPrevPointInRoute(gctx, gpxPoints, start, next);
+							if (!stepBack) {
+								// not supported case (workaround increase routing.xml maxStepApproximation)
+								log.info("Consider to increase routing.xml maxStepApproximation to: " + routeDist * 2);
+								start.routeToTarget = null;
+								routeFound = false;
+							} else {
+								if (gctx.ctx.getVisitor() != null) {
+									gctx.ctx.getVisitor().visitApproximatedSegments(start.routeToTarget, start,
+											next);
 								}
 							}
 						}
-						if (!routeFound) {
-							// route is not found move next point closer to start point (distance / 2)
-							routeDist = routeDist / 2;
-							if (routeDist < gctx.ctx.config.minStepApproximation
-									&& routeDist > gctx.ctx.config.minStepApproximation / 2 + 1) {
-								routeDist = gctx.ctx.config.minStepApproximation;
-							}
-							next = findNextGpxPointWithin(gpxPoints, start, routeDist);
-							if (next != null) {
-								routeDist = Math.min(next.cumDist - start.cumDist, routeDist);
-							}
+					}
+					if (!routeFound) {
+						// route is not found move next point closer to start point (distance / 2)
+						routeDist = routeDist / 2;
+						if (routeDist < gctx.ctx.config.minStepApproximation
+								&& routeDist > gctx.ctx.config.minStepApproximation / 2 + 1) {
+							routeDist = gctx.ctx.config.minStepApproximation;
+						}
+						next = findNextGpxPointWithin(gpxPoints, start, routeDist);
+						if (next != null) {
+							routeDist = Math.min(next.cumDist - start.cumDist, routeDist);
 						}
 					}
 				}
-				// route is not found skip segment and keep it as straight line on display
-				if (!routeFound && next != null) {
-					// route is not found, move start point by
-					next = findNextGpxPointWithin(gpxPoints, start, gctx.ctx.config.minStepApproximation);
-					if (prev != null) {
-						prev.routeToTarget.addAll(prev.stepBackRoute);
-//						makeSegmentPointPrecise(prev.routeToTarget.get(prev.routeToTarget.size() - 1), start.loc, false);
-						if (next != null) {
-							log.warn("NOT found route from: " + start.pnt.getRoad() + " at " + start.pnt.getSegmentStart());
+			}
+			// route is not found skip segment and keep it as straight line on display
+			if (!routeFound && next != null) {
+				// route is not found, move start point by
+				next = findNextGpxPointWithin(gpxPoints, start, gctx.ctx.config.minStepApproximation);
+				if (prev != null) {
+					prev.routeToTarget.addAll(prev.stepBackRoute);
+//					makeSegmentPointPrecise(prev.routeToTarget.get(prev.routeToTarget.size() - 1), start.loc, false);
+					if (next != null) {
+						log.warn("NOT found route from: " + start.pnt.getRoad() + " at " + start.pnt.getSegmentStart());
+					}
+				}
+				prev = null;
+			} else {
+				prev = start;
+			}
+			RouteCalculationProgress progress = gctx.ctx.calculationProgress;
+			if (trackProgress && progress != null && next != null) {
+				// chunks of parallel approximation pass distance to progress of the whole track
+				progress.addApproximatedDistance((float) (next.cumDist - start.cumDist));
+			}
+			start = next;
+		}
+	}
+
+	private boolean searchGpxRouteInParallel(final GpxRouteApproximation gctx, final List<GpxPoint> gpxPoints,
+			ForkJoinPool pool) throws IOException, InterruptedException {
+		TIntArrayList anchors = findGpxAnchorPoints(gctx, gpxPoints, pool.getParallelism());
+		if (anchors.size() <= 2) {
+			return false;
+		}
+		List<Callable<GpxRouteApproximation>> tasks = new ArrayList<Callable<GpxRouteApproximation>>();
+		for (int i = 0; i < anchors.size() - 1; i++) {
+			final int from = anchors.get(i);
+			final int to = anchors.get(i + 1);
+			tasks.add(new Callable<GpxRouteApproximation>() {
+				@Override
+				public GpxRouteApproximation call() throws Exception {
+					List<BinaryMapIndexReader> readers = new ArrayList<BinaryMapIndexReader>();
+					try {
+						GpxRouteApproximation chunk = new GpxRouteApproximation(copyRoutingContext(gctx.ctx, readers));
+						searchGpxChunk(chunk, gpxPoints, from, to, false);
+						return chunk;
+					} finally {
+						for (BinaryMapIndexReader r : readers) {
+							r.close();
 						}
 					}
-					prev = null;
-				} else {
-					prev = start;
 				}
-				start = next;
-				if (gctx.ctx.calculationProgress != null && start != null) {
-					gctx.ctx.calculationProgress.approximatedDistance = (float) start.cumDist;
+			});
+		}
+		try {
+			for (Future<GpxRouteApproximation> f : pool.invokeAll(tasks)) {
+				GpxRouteApproximation chunk = f.get();
+				gctx.ctx.calculationProgress.add(chunk.ctx.calculationProgress);
+				gctx.routeCalculations += chunk.routeCalculations;
+				gctx.routePointsSearched += chunk.routePointsSearched;
+				gctx.routeDistCalculations += chunk.routeDistCalculations;
+			}
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			if (e.getCause() instanceof InterruptedException) {
+				throw (InterruptedException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+		for (int i = 1; i < anchors.size() - 1 && !gctx.ctx.calculationProgress.isCancelled(); i++) {
+			repairGpxSeam(gctx, gpxPoints, anchors.get(i));
+		}
+		return true;
+	}
+
+	private TIntArrayList findGpxAnchorPoints(GpxRouteApproximation gctx, List<GpxPoint> gpxPoints, int parallelism) {
+		TIntArrayList anchors = new TIntArrayList();
+		if (gpxPoints.size() < 2) {
+			return anchors;
+		}
+		double total = gpxPoints.get(gpxPoints.size() - 1).cumDist;
+		double chunkDist = Math.max(GPX_PARALLEL_CHUNK_STEPS * gctx.ctx.config.maxStepApproximation,
+				total / (2 * Math.max(parallelism, 1)));
+		anchors.add(0);
+		int i = 0;
+		while (true) {
+			double target = gpxPoints.get(i).cumDist + chunkDist;
+			if (target + chunkDist / 2 > total) {
+				break;
+			}
+			// anchor is a point of straight movement within next step, so chunks meet away from turns
+			int anchor = -1;
+			double minAngle = Double.MAX_VALUE;
+			for (int k = i + 1; k < gpxPoints.size() - 1; k++) {
+				GpxPoint p = gpxPoints.get(k);
+				if (p.cumDist < target) {
+					continue;
+				}
+				if (p.cumDist > target + gctx.ctx.config.minStepApproximation && anchor != -1) {
+					break;
+				}
+				double angle = Math.abs(MapUtils.alignAngleDifference(direction31(gpxPoints.get(k - 1).loc, p.loc)
+						- direction31(p.loc, gpxPoints.get(k + 1).loc)));
+				if (angle < minAngle) {
+					minAngle = angle;
+					anchor = k;
 				}
 			}
-			if (gctx.ctx.calculationProgress != null) {
-				gctx.ctx.calculationProgress.timeToCalculate = System.nanoTime() - timeToCalculate;
+			if (anchor == -1) {
+				break;
 			}
-			gctx.ctx.deleteNativeRoutingContext();
-			calculateGpxRoute(gctx, gpxPoints);
-			if (!gctx.result.isEmpty() && !gctx.ctx.calculationProgress.isCancelled) {
-				RouteResultPreparation.printResults(gctx.ctx, gpxPoints.get(0).loc, gpxPoints.get(gpxPoints.size() - 1).loc, gctx.result);
-				log.info(gctx);
+			anchors.add(anchor);
+			i = anchor;
+		}
+		anchors.add(gpxPoints.size() - 1);
+		return anchors;
+	}
+
+	private static double direction31(LatLon s, LatLon e) {
+		return Math.atan2(MapUtils.get31TileNumberY(e.getLatitude()) - MapUtils.get31TileNumberY(s.getLatitude()),
+				MapUtils.get31TileNumberX(e.getLongitude()) - MapUtils.get31TileNumberX(s.getLongitude()));
+	}
+
+	private void repairGpxSeam(GpxRouteApproximation gctx, List<GpxPoint> gpxPoints, int anchor)
+			throws IOException, InterruptedException {
+		GpxPoint a = gpxPoints.get(anchor);
+		GpxPoint last = null;
+		for (int k = anchor - 1; k >= 0; k--) {
+			GpxPoint p = gpxPoints.get(k);
+			if (p.routeToTarget != null) {
+				last = p.targetInd == anchor && !p.routeToTarget.isEmpty() ? p : null;
+				break;
 			}
 		}
-		if (resultMatcher != null) {
-			resultMatcher.publish(gctx.ctx.calculationProgress.isCancelled ? null : gctx);
+		if (last == null || a.routeToTarget == null || a.routeToTarget.isEmpty()) {
+			return;
 		}
-		return gctx;
+		RouteSegmentResult end = last.getLastRouteRes();
+		RouteSegmentResult start = a.getFirstRouteRes();
+		if (end.getObject().getId() == start.getObject().getId() && end.getEndPointIndex() == start.getStartPointIndex()
+				&& end.getEndPointX() == start.getStartPointX() && end.getEndPointY() == start.getStartPointY()) {
+			return;
+		}
+		// routes of chunks don't meet at anchor point, recalculate both routes as one sequence
+		// attached to the start of the next route
+		searchGpxChunk(gctx, gpxPoints, last.ind, a.targetInd, true);
+	}
+
+	/**
+	 * @param seam chunk is recalculated between routes of other chunks, it ends at already found route point
+	 *             of the last point and doesn't track progress
+	 */
+	private void searchGpxChunk(GpxRouteApproximation gctx, List<GpxPoint> gpxPoints, int from, int to,
+			boolean seam) throws IOException, InterruptedException {
+		List<GpxPoint> chunk = new ArrayList<GpxPoint>(to - from + 1);
+		for (int k = from; k <= to; k++) {
+			GpxPoint p = new GpxPoint(gpxPoints.get(k));
+			p.ind = k - from;
+			chunk.add(p);
+		}
+		// keep start point of the previous route (step back point)
+		chunk.get(0).pnt = gpxPoints.get(from).pnt;
+		if (seam) {
+			// keep start point of the next route
+			chunk.get(chunk.size() - 1).pnt = gpxPoints.get(to).pnt;
+		}
+		searchGpxSegments(gctx, chunk, !seam);
+		for (int k = from; k <= to; k++) {
+			GpxPoint p = gpxPoints.get(k);
+			GpxPoint c = chunk.get(k - from);
+			if (k == to) {
+				// route from last point belongs to the next chunk, point itself is written by next chunk
+				if (seam || to == gpxPoints.size() - 1) {
+					p.pnt = c.pnt;
+				}
+				break;
+			}
+			p.pnt = c.pnt;
+			p.routeToTarget = c.routeToTarget;
+			p.stepBackRoute = c.stepBackRoute;
+			p.targetInd = c.targetInd < 0 ? -1 : c.targetInd + from;
+		}
+	}
+
+	private RoutingContext copyRoutingContext(RoutingContext ctx, List<BinaryMapIndexReader> readers) throws IOException {
+		for (BinaryMapIndexReader r : ctx.map.keySet()) {
+			if (r.isMemoryMapped()) {
+				readers.add(new BinaryMapIndexReader(r));
+			} else {
+				readers.add(new BinaryMapIndexReader(new RandomAccessFile(r.getFile(), "r"), r));
+			}
+		}
+		// config and progress are modified during calculation, so each context has own copies
+		RoutingContext c = new RoutingContext(ctx.config.copy(), null,
+				readers.toArray(new BinaryMapIndexReader[readers.size()]), ctx.calculationMode);
+		c.leftSideNavigation = ctx.leftSideNavigation;
+		c.calculationProgress = RouteCalculationProgress.createChild(ctx.calculationProgress);
+		return c;
 	}
 
 	private boolean isRouteCloseToGpxPoints(float minPointApproximation, List<GpxPoint> gpxPoints,
@@ -464,7 +713,7 @@ public class RoutePlannerFrontEnd {
 		reg.initRouteEncodingRule(0, "highway", RouteResultPreparation.UNMATCHED_HIGHWAY_TYPE);
 		List<LatLon> lastStraightLine = null;
 		GpxPoint straightPointStart = null;
-		for (int i = 0; i < gpxPoints.size() && !gctx.ctx.calculationProgress.isCancelled; ) {
+		for (int i = 0; i < gpxPoints.size() && !gctx.ctx.calculationProgress.isCancelled(); ) {
 			GpxPoint pnt = gpxPoints.get(i);
 			if (pnt.routeToTarget != null && !pnt.routeToTarget.isEmpty()) {
 				makeSegmentPointPrecise(pnt.getFirstRouteRes(), pnt.loc, true);
@@ -563,7 +812,7 @@ public class RoutePlannerFrontEnd {
 	private void cleanupResultAndAddTurns(GpxRouteApproximation gctx) {
 		// cleanup double joints
 		int LOOK_AHEAD = 4;
-		for(int i = 0; i < gctx.result.size() && !gctx.ctx.calculationProgress.isCancelled; i++) {
+		for(int i = 0; i < gctx.result.size() && !gctx.ctx.calculationProgress.isCancelled(); i++) {
 			RouteSegmentResult s = gctx.result.get(i);
 			for(int j = i + 2; j <= i + LOOK_AHEAD && j < gctx.result.size(); j++) {
 				RouteSegmentResult e = gctx.result.get(j);
@@ -580,7 +829,7 @@ public class RoutePlannerFrontEnd {
 			r.setTurnType(null);
 			r.clearDescription();
 		}
-		if (!gctx.ctx.calculationProgress.isCancelled) {
+		if (!gctx.ctx.calculationProgress.isCancelled()) {
 			preparation.prepareTurnResults(gctx.ctx, gctx.result);
 		}
 		for (RouteSegmentResult r : gctx.result) {
@@ -767,20 +1016,31 @@ public class RoutePlannerFrontEnd {
 	}
 
 	private boolean needRequestPrivateAccessRouting(RoutingContext ctx, List<LatLon> points) throws IOException {
-		boolean res = false;
+		return needRequestPrivateAccessRoutingGroups(ctx, Collections.singletonList(points))[0];
+	}
+
+	/**
+	 * Checks all groups of points at once, so tiles are unloaded only once (before and after check).
+	 * @return for every group of points if there is point on road with private access
+	 */
+	private boolean[] needRequestPrivateAccessRoutingGroups(RoutingContext ctx, List<List<LatLon>> pointsGroups) throws IOException {
+		boolean[] res = new boolean[pointsGroups.size()];
 		if (ctx.nativeLib != null) {
-			int size = points.size();
-			int[] y31Coordinates = new int[size];
-			int[] x31Coordinates = new int[size];
-			for (int i = 0; i < size; i++) {
-				y31Coordinates[i] = MapUtils.get31TileNumberY(points.get(i).getLatitude());
-				x31Coordinates[i] = MapUtils.get31TileNumberX(points.get(i).getLongitude());
-			}
-			res = ctx.nativeLib.needRequestPrivateAccessRouting(ctx, x31Coordinates, y31Coordinates);
+			for (int k = 0; k < pointsGroups.size(); k++) {
+				List<LatLon> points = pointsGroups.get(k);
+				int size = points.size();
+				int[] y31Coordinates = new int[size];
+				int[] x31Coordinates = new int[size];
+				for (int i = 0; i < size; i++) {
+					y31Coordinates[i] = MapUtils.get31TileNumberY(points.get(i).getLatitude());
+					x31Coordinates[i] = MapUtils.get31TileNumberX(points.get(i).getLongitude());
+				}
+				res[k] = ctx.nativeLib.needRequestPrivateAccessRouting(ctx, x31Coordinates, y31Coordinates);
+			}
 		} else {
 			GeneralRouter router = (GeneralRouter) ctx.getRouter();
 			if (router == null) {
-				return false;
+				return res;
 			}
 			Map<String, RoutingParameter> parameters = router.getParameters();
 			String allowPrivateKey = null;
@@ -795,12 +1055,14 @@ public class RoutePlannerFrontEnd {
 				mp.put(allowPrivateKey, "true");
 				mp.put(GeneralRouter.CHECK_ALLOW_PRIVATE_NEEDED, "true");
 				ctx.setRouter(new GeneralRouter(router.getProfile(), mp));
-				for (LatLon latLon : points) {
-					RouteSegmentPoint rp = findRouteSegment(latLon.getLatitude(), latLon.getLongitude(), ctx, null);
-					if (rp != null && rp.road != null) {
-						if (rp.road.hasPrivateAccess(ctx.config.router.getProfile())) {
-							res = true;
-							break;
+				for (int k = 0; k < pointsGroups.size(); k++) {
+					for (LatLon latLon : pointsGroups.get(k)) {
+						RouteSegmentPoint rp = findRouteSegment(latLon.getLatitude(), latLon.getLongitude(), ctx, null);
+						if (rp != null && rp.road != null) {
+							if (rp.road.hasPrivateAccess(ctx.config.router.getProfile())) {
+								res[k] = true;
+								break;
+							}
 						}
 					}
 				}
@@ -811,19 +1073,188 @@ public class RoutePlannerFrontEnd {
 		return res;
 	}
 
-	public RouteCalcResult searchRoute(final RoutingContext ctx, LatLon start, LatLon end, List<LatLon> intermediates,
-	                                            PrecalculatedRouteDirection routeDirection) throws IOException, InterruptedException {
-		long timeToCalculate = System.nanoTime();
+	public static class RouteBatchJob {
+		public final LatLon start;
+		public final LatLon end;
+		public final List<LatLon> intermediates;
+
+		public RouteCalcResult result;
+		public RouteCalculationProgress progress;
+		// checked once for whole batch, see searchRoutes
+		boolean requestPrivateAccessRouting;
+		// time spent for the job including tiles loading (ns)
+		public long timeToCalculate;
+
+		public RouteBatchJob(LatLon start, LatLon end, List<LatLon> intermediates) {
+			this.start = start;
+			this.end = end;
+			this.intermediates = intermediates;
+		}
+
+		public boolean isCalculated() {
+			return result != null;
+		}
+	}
+
+	/**
+	 * Calculates many independent routes for one profile. Jobs are grouped by region of the start point
+	 * and every worker calculates its groups one by one on the same routing context, so subregion tiles
+	 * loaded by previous jobs are reused (they're unloaded only by memory limit).
+	 * @param pool if null, jobs are calculated on ctx, otherwise every worker uses own context with own copies
+	 *             of readers (native library is not used)
+	 * @return jobs with result, progress and time filled (jobs skipped after cancellation have no result)
+	 */
+	public List<RouteBatchJob> searchRoutes(final RoutingContext ctx, List<RouteBatchJob> jobs, ForkJoinPool pool)
+			throws IOException, InterruptedException {
 		if (ctx.calculationProgress == null) {
 			ctx.calculationProgress = new RouteCalculationProgress();
 		}
-		boolean intermediatesEmpty = intermediates == null || intermediates.isEmpty();
+		final RouteCalculationProgress batchProgress = ctx.calculationProgress;
+		// check of private access reloads tiles with other router, so it's done once before jobs
+		List<List<LatLon>> jobsTargets = new ArrayList<List<LatLon>>();
+		for (RouteBatchJob job : jobs) {
+			jobsTargets.add(getTargets(job.end, job.intermediates));
+		}
+		boolean[] privateAccess = needRequestPrivateAccessRoutingGroups(ctx, jobsTargets);
+		for (int i = 0; i < jobs.size(); i++) {
+			jobs.get(i).requestPrivateAccessRouting = privateAccess[i];
+		}
+		int workers = pool == null ? 1 : pool.getParallelism();
+		List<List<RouteBatchJob>> groups = groupRouteBatchJobs(jobs, (jobs.size() + workers - 1) / workers);
+		if (pool == null || groups.size() <= 1) {
+			try {
+				for (List<RouteBatchJob> group : groups) {
+					for (RouteBatchJob job : group) {
+						searchRouteBatchJob(ctx, job, batchProgress);
+					}
+				}
+			} finally {
+				ctx.calculationProgress = batchProgress;
+			}
+			return jobs;
+		}
+		final Iterator<List<RouteBatchJob>> it = groups.iterator();
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int i = 0; i < Math.min(workers, groups.size()); i++) {
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					List<BinaryMapIndexReader> readers = new ArrayList<BinaryMapIndexReader>();
+					try {
+						RoutingContext wctx = copyRoutingContext(ctx, readers);
+						while (true) {
+							List<RouteBatchJob> group;
+							synchronized (it) {
+								group = it.hasNext() ? it.next() : null;
+							}
+							if (group == null) {
+								return null;
+							}
+							for (RouteBatchJob job : group) {
+								searchRouteBatchJob(wctx, job, batchProgress);
+							}
+						}
+					} finally {
+						for (BinaryMapIndexReader r : readers) {
+							r.close();
+						}
+					}
+				}
+			});
+		}
+		try {
+			for (Future<Void> f : pool.invokeAll(tasks)) {
+				f.get();
+			}
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			if (e.getCause() instanceof InterruptedException) {
+				throw (InterruptedException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+		return jobs;
+	}
+
+	private void searchRouteBatchJob(RoutingContext ctx, RouteBatchJob job, RouteCalculationProgress batchProgress)
+			throws IOException, InterruptedException {
+		if (batchProgress.isCancelled()) {
+			return;
+		}
+		// reset state of previous job, loaded tiles are kept
+		ctx.clearSearchState();
+		// job is stopped when batch is cancelled
+		ctx.calculationProgress = RouteCalculationProgress.createChild(batchProgress);
+		ctx.calculationProgress.requestPrivateAccessRouting = job.requestPrivateAccessRouting;
+		ctx.calculationProgressFirstPhase = null;
+		ctx.previouslyCalculatedRoute = null;
+		ctx.precalculatedRouteDirection = null;
+		ctx.finalRouteSegment = null;
+		boolean keepLoadedData = ctx.keepLoadedData;
+		ctx.keepLoadedData = true;
+		long time = System.nanoTime();
+		try {
+			job.result = searchRoute(ctx, job.start, job.end, job.intermediates);
+		} finally {
+			ctx.keepLoadedData = keepLoadedData;
+		}
+		job.timeToCalculate = System.nanoTime() - time;
+		job.progress = ctx.calculationProgress;
+		batchProgress.add(job.progress);
+	}
+
+	private static List<LatLon> getTargets(LatLon end, List<LatLon> intermediates) {
 		List<LatLon> targets = new ArrayList<>();
-		if (!intermediatesEmpty) {
+		if (intermediates != null) {
 			targets.addAll(intermediates);
 		}
 		targets.add(end);
-		if (needRequestPrivateAccessRouting(ctx, targets)) {
+		return targets;
+	}
+
+	private List<List<RouteBatchJob>> groupRouteBatchJobs(List<RouteBatchJob> jobs, int maxGroupSize) {
+		List<RouteBatchJob> sorted = new ArrayList<RouteBatchJob>(jobs);
+		Collections.sort(sorted, new Comparator<RouteBatchJob>() {
+			@Override
+			public int compare(RouteBatchJob o1, RouteBatchJob o2) {
+				int c = Long.compare(batchRegionKey(o1.start), batchRegionKey(o2.start));
+				return c != 0 ? c : Long.compare(batchRegionKey(o1.end), batchRegionKey(o2.end));
+			}
+		});
+		List<List<RouteBatchJob>> groups = new ArrayList<List<RouteBatchJob>>();
+		List<RouteBatchJob> group = null;
+		long key = 0;
+		for (RouteBatchJob job : sorted) {
+			long k = batchRegionKey(job.start);
+			if (group == null || k != key || group.size() >= maxGroupSize) {
+				group = new ArrayList<RouteBatchJob>();
+				groups.add(group);
+				key = k;
+			}
+			group.add(job);
+		}
+		return groups;
+	}
+
+	private static long batchRegionKey(LatLon l) {
+		int shift = 31 - BATCH_REGION_ZOOM;
+		long x = MapUtils.get31TileNumberX(l.getLongitude()) >> shift;
+		long y = MapUtils.get31TileNumberY(l.getLatitude()) >> shift;
+		return (x << 32) + y;
+	}
+
+	public RouteCalcResult searchRoute(final RoutingContext ctx, LatLon start, LatLon end, List<LatLon> intermediates,
+	                                            PrecalculatedRouteDirection routeDirection) throws IOException, InterruptedException {
+		long timeToCalculate = System.nanoTime();
+		if (ctx.calculationProgress == null) {
+			ctx.calculationProgress = new RouteCalculationProgress();
+		}
+		boolean intermediatesEmpty = intermediates == null || intermediates.isEmpty();
+		List<LatLon> targets = getTargets(end, intermediates);
+		// batch jobs are checked before batch (see searchRoutes), so loaded tiles are kept between jobs
+		if (!ctx.keepLoadedData && needRequestPrivateAccessRouting(ctx, targets)) {
 			ctx.calculationProgress.requestPrivateAccessRouting = true;
 		}
 		if (hhRoutingConfig != null) {
@@ -1029,7 +1460,9 @@ public class RoutePlannerFrontEnd {
 
 	private RouteCalcResult searchRouteInternalPrepare(final RoutingContext ctx, RouteSegmentPoint start, RouteSegmentPoint end,
 	                                                            PrecalculatedRouteDirection routeDirection) throws IOException, InterruptedException {
-		RouteSegmentPoint recalculationEnd = getRecalculationEnd(ctx);
+		boolean incremental = useIncrementalRecalculation && ctx.nativeLib == null;
+		// reverse search tree replaces reuse of the end of previous route
+		RouteSegmentPoint recalculationEnd = incremental ? null : getRecalculationEnd(ctx);
 		if (recalculationEnd != null) {
 			ctx.initStartAndTargetPoints(start, recalculationEnd);
 		} else {
@@ -1051,7 +1484,11 @@ public class RoutePlannerFrontEnd {
 		} else {
 			refreshProgressDistance(ctx);
 			// Split into 2 methods to let GC work in between
-			ctx.finalRouteSegment = new BinaryRoutePlanner().searchRouteInternal(ctx, start, recalculationEnd != null ? recalculationEnd : end, null);
+			if (incremental) {
+				ctx.finalRouteSegment = searchRouteIncremental(ctx, start, end);
+			} else {
+				ctx.finalRouteSegment = new BinaryRoutePlanner().searchRouteInternal(ctx, start, recalculationEnd != null ? recalculationEnd : end, null);
+			}
 			RouteResultPreparation rrp = new RouteResultPreparation();
 			// 4. Route is found : collect all segments and prepare result
 			List<RouteSegmentResult> result  = rrp.convertFinalSegmentToResults(ctx, ctx.finalRouteSegment);
@@ -1060,6 +1497,28 @@ public class RoutePlannerFrontEnd {
 		}
 	}
 
+	private FinalRouteSegment searchRouteIncremental(final RoutingContext ctx, RouteSegmentPoint start, RouteSegmentPoint end)
+			throws IOException, InterruptedException {
+		ReverseSearchTree tree = ctx.reverseSearchTree;
+		boolean resume = tree != null && tree.isSameTarget(ctx.config, end) && !tree.isOverLimit(ctx);
+		if (resume) {
+			ctx.clearSearchState(false);
+			FinalRouteSegment res = new BinaryRoutePlanner().searchRouteInternal(ctx, start, end, null,
+					new TLongObjectHashMap<RouteSegment>(), tree);
+			if (res != null) {
+				ctx.reverseSearchTree = tree;
+				return res;
+			}
+			// reverse frontier could be exhausted by previous calculations, search from scratch
+		}
+		ctx.clearSearchState();
+		tree = new ReverseSearchTree(ctx.config, end);
+		FinalRouteSegment res = new BinaryRoutePlanner().searchRouteInternal(ctx, start, end, null,
+				new TLongObjectHashMap<RouteSegment>(), tree);
+		ctx.reverseSearchTree = tree;
+		return res;
+	}
+
 	public RouteSegmentPoint getRecalculationEnd(final RoutingContext ctx) {
 		RouteSegmentPoint recalculationEnd = null;
 		boolean runRecalculation = ctx.previouslyCalculatedRoute != null && !ctx.previouslyCalculatedRoute.isEmpty()
@@ -1215,7 +1674,16 @@ public class RoutePlannerFrontEnd {
 		}
 		RouteCalcResult results = new RouteCalcResult(new ArrayList<RouteSegmentResult>());
 		for (int i = 0; i < points.size() - 1; i++) {
-			RoutingContext local = new RoutingContext(ctx);
+			RoutingContext local;
+			if (ctx.keepLoadedData) {
+				// calculate on the same context to reuse loaded tiles
+				local = ctx;
+				local.clearSearchState();
+				local.precalculatedRouteDirection = null;
+				local.finalRouteSegment = null;
+			} else {
+				local = new RoutingContext(ctx);
+			}
 			if (i == 0 && ctx.nativeLib == null) {
 				if (useSmartRouteRecalculation) {
 					local.previouslyCalculatedRoute = firstPartRecalculatedRoute;
@@ -1224,14 +1692,18 @@ public class RoutePlannerFrontEnd {
 			RouteCalcResult res = searchRouteInternalPrepare(local, points.get(i), points.get(i + 1), routeDirection);
 			makeStartEndPointsPrecise(res, points.get(i).getPreciseLatLon(), points.get(i + 1).getPreciseLatLon(), null);
 			results.detailed.addAll(res.detailed);
-			ctx.routingTime += local.routingTime;
+			if (local != ctx) {
+				ctx.routingTime += local.routingTime;
+			}
 //			local.unloadAllData(ctx);
 			if (restPartRecalculatedRoute != null) {
 				results.detailed.addAll(restPartRecalculatedRoute);
 				break;
 			}
 		}
-		ctx.unloadAllData();
+		if (!ctx.keepLoadedData) {
+			ctx.unloadAllData();
+		}
 		return results;
 
 	}
@@ -0,0 +1,138 @@
+package net.osmand.router;
+
+import java.util.Arrays;
+
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+
+/**
+ * Indexed binary min-heap of route segments for A* queues.
+ * Costs are kept in primitive array parallel to segments, position of segment in heap is stored
+ * in {@link RouteSegment#heapIndex}, so adding segment which is already queued only changes its cost
+ * instead of creating duplicate entry.
+ */
+class RouteSegmentHeap {
+
+	private RouteSegment[] segments;
+	private float[] costs;
+	private int size;
+
+	public RouteSegmentHeap(int initialCapacity) {
+		segments = new RouteSegment[Math.max(initialCapacity, 2)];
+		costs = new float[segments.length];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public boolean contains(RouteSegment segment) {
+		int i = segment.heapIndex;
+		return i >= 0 && i < size && segments[i] == segment;
+	}
+
+	/**
+	 * Adds segment to the heap or updates its cost if it's already queued.
+	 */
+	public void add(RouteSegment segment, float cost) {
+		if (contains(segment)) {
+			int i = segment.heapIndex;
+			float old = costs[i];
+			costs[i] = cost;
+			if (cost < old) {
+				siftUp(i);
+			} else if (cost > old) {
+				siftDown(i);
+			}
+			return;
+		}
+		if (size == segments.length) {
+			int capacity = segments.length + (segments.length >> 1);
+			segments = Arrays.copyOf(segments, capacity);
+			costs = Arrays.copyOf(costs, capacity);
+		}
+		segments[size] = segment;
+		costs[size] = cost;
+		segment.heapIndex = size;
+		siftUp(size++);
+	}
+
+	public RouteSegment peek() {
+		return size == 0 ? null : segments[0];
+	}
+
+	public float peekCost() {
+		return size == 0 ? Float.POSITIVE_INFINITY : costs[0];
+	}
+
+	public RouteSegment poll() {
+		if (size == 0) {
+			return null;
+		}
+		RouteSegment top = segments[0];
+		top.heapIndex = -1;
+		size--;
+		if (size > 0) {
+			segments[0] = segments[size];
+			costs[0] = costs[size];
+			segments[0].heapIndex = 0;
+			siftDown(0);
+		}
+		segments[size] = null;
+		return top;
+	}
+
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			segments[i].heapIndex = -1;
+			segments[i] = null;
+		}
+		size = 0;
+	}
+
+	private void siftUp(int i) {
+		RouteSegment s = segments[i];
+		float c = costs[i];
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (costs[parent] <= c) {
+				break;
+			}
+			move(parent, i);
+			i = parent;
+		}
+		segments[i] = s;
+		costs[i] = c;
+		s.heapIndex = i;
+	}
+
+	private void siftDown(int i) {
+		RouteSegment s = segments[i];
+		float c = costs[i];
+		int half = size >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			int right = child + 1;
+			if (right < size && costs[right] < costs[child]) {
+				child = right;
+			}
+			if (c <= costs[child]) {
+				break;
+			}
+			move(child, i);
+			i = child;
+		}
+		segments[i] = s;
+		costs[i] = c;
+		s.heapIndex = i;
+	}
+
+	private void move(int from, int to) {
+		segments[to] = segments[from];
+		costs[to] = costs[from];
+		segments[to].heapIndex = to;
+	}
+}
@@ -43,10 +43,19 @@ public class RoutingConfiguration {
 	public int ZOOM_TO_LOAD_TILES = 16;
 	public long memoryLimitation;
 	public long nativeMemoryLimitation;
+	// keep loaded tiles in packed points index instead of RouteSegment per point (java routing only)
+	public boolean compactTiles = false;
+	// store packed points index of compact tiles in direct buffers, not counted in memoryLimitation
+	public boolean compactTilesOffHeap = false;
+	// decoded tiles shared between routing contexts (java routing only)
+	public RoutingTileCache tileCache;
 
 	// 1.2 Build A* graph in backward/forward direction (can affect results)
 	// 0 - 2 ways, 1 - direct way, -1 - reverse way
 	public int planRoadDirection = 0;
+	// expand forward and reverse frontiers on 2 threads when planRoadDirection = 0 (java routing only),
+	// RoutingContext.visitor could be called from both threads
+	public boolean parallelBidirectionalSearch = false;
 
 	// 1.3 Router specific coefficients and restrictions
 	// use GeneralRouter and not interface to simplify native access !
@@ -68,6 +77,9 @@ public class RoutingConfiguration {
 	// 1.7 Maximum visited segments
 	public int MAX_VISITED = -1;
 
+	// 1.8 Maximum cost (time in seconds) of segments to visit, for one-to-all search (see IsochroneCalculator)
+	public float MAX_COST = -1;
+
 
 	// extra points to be inserted in ways (quad tree is based on 31 coords)
 	private QuadTree<DirectionPoint> directionPoints;
@@ -86,10 +98,60 @@ public class RoutingConfiguration {
 	// Parameter to smoother the track itself (could be 0 if it's not recorded track)
 	public float smoothenPointsNoRoute = 5;
 
+	// Map matching approximation (see RoutePlannerFrontEnd.searchGpxRouteByMapMatching)
+	// standard deviation of GPS error (m)
+	public float mapMatchingSigma = 10;
+	// scale of difference between route and straight distance between samples (m)
+	public float mapMatchingBeta = 15;
+	// max road candidates per sample
+	public int mapMatchingMaxCandidates = 8;
+	// samples closer to previous sample are skipped (m)
+	public float mapMatchingMinSampleDistance = 25;
+	// search between samples is limited by distance between samples multiplied by factor
+	public float mapMatchingMaxRouteDistanceFactor = 2.5f;
+
 	public QuadTree<DirectionPoint> getDirectionPoints() {
 		return directionPoints;
 	}
 
+	/**
+	 * Copy to be modified by calculation running concurrently with others, router and direction points are shared.
+	 */
+	public RoutingConfiguration copy() {
+		RoutingConfiguration c = new RoutingConfiguration();
+		c.attributes.putAll(attributes);
+		c.heuristicCoefficient = heuristicCoefficient;
+		c.ZOOM_TO_LOAD_TILES = ZOOM_TO_LOAD_TILES;
+		c.memoryLimitation = memoryLimitation;
+		c.nativeMemoryLimitation = nativeMemoryLimitation;
+		c.compactTiles = compactTiles;
+		c.compactTilesOffHeap = compactTilesOffHeap;
+		c.tileCache = tileCache;
+		c.planRoadDirection = planRoadDirection;
+		c.parallelBidirectionalSearch = parallelBidirectionalSearch;
+		c.router = router;
+		c.routerName = routerName;
+		c.initialDirection = initialDirection;
+		c.targetDirection = targetDirection;
+		c.PENALTY_FOR_REVERSE_DIRECTION = PENALTY_FOR_REVERSE_DIRECTION;
+		c.recalculateDistance = recalculateDistance;
+		c.routeCalculationTime = routeCalculationTime;
+		c.MAX_VISITED = MAX_VISITED;
+		c.MAX_COST = MAX_COST;
+		c.directionPoints = directionPoints;
+		c.directionPointsRadius = directionPointsRadius;
+		c.minPointApproximation = minPointApproximation;
+		c.minStepApproximation = minStepApproximation;
+		c.maxStepApproximation = maxStepApproximation;
+		c.smoothenPointsNoRoute = smoothenPointsNoRoute;
+		c.mapMatchingSigma = mapMatchingSigma;
+		c.mapMatchingBeta = mapMatchingBeta;
+		c.mapMatchingMaxCandidates = mapMatchingMaxCandidates;
+		c.mapMatchingMinSampleDistance = mapMatchingMinSampleDistance;
+		c.mapMatchingMaxRouteDistanceFactor = mapMatchingMaxRouteDistanceFactor;
+		return c;
+	}
+
 	public static class DirectionPoint extends Node {
 		private static final long serialVersionUID = -7496599771204656505L;
 		public double distance = Double.MAX_VALUE;
@@ -143,6 +205,9 @@ public class RoutingConfiguration {
 		private Map<String, String> attributes = new LinkedHashMap<>();
 		private Set<Long> impassableRoadLocations = new HashSet<>();
 		private QuadTree<Node> directionPointsBuilder;
+		private RoutingTileCache tileCache;
+		private boolean compileRouter;
+		private boolean parallelBidirectionalSearch;
 
 		public Builder() {
 		}
@@ -204,8 +269,16 @@ public class RoutingConfiguration {
 			i.minStepApproximation = parseSilentFloat(getAttribute(i.router, "minStepApproximation"), i.minStepApproximation);
 			i.maxStepApproximation = parseSilentFloat(getAttribute(i.router, "maxStepApproximation"), i.maxStepApproximation);
 			i.smoothenPointsNoRoute = parseSilentFloat(getAttribute(i.router, "smoothenPointsNoRoute"), i.smoothenPointsNoRoute);
+			i.mapMatchingSigma = parseSilentFloat(getAttribute(i.router, "mapMatchingSigma"), i.mapMatchingSigma);
+			i.mapMatchingBeta = parseSilentFloat(getAttribute(i.router, "mapMatchingBeta"), i.mapMatchingBeta);
+			i.mapMatchingMaxCandidates = parseSilentInt(getAttribute(i.router, "mapMatchingMaxCandidates"), i.mapMatchingMaxCandidates);
+			i.mapMatchingMinSampleDistance = parseSilentFloat(getAttribute(i.router, "mapMatchingMinSampleDistance"), i.mapMatchingMinSampleDistance);
+			i.mapMatchingMaxRouteDistanceFactor = parseSilentFloat(getAttribute(i.router, "mapMatchingMaxRouteDistanceFactor"), i.mapMatchingMaxRouteDistanceFactor);
 
 			i.router.setImpassableRoads(new HashSet<>(impassableRoadLocations));
+			if (compileRouter) {
+				i.router = i.router.compile();
+			}
 			i.ZOOM_TO_LOAD_TILES = parseSilentInt(getAttribute(i.router, "zoomToLoadTiles"), i.ZOOM_TO_LOAD_TILES);
 			int memoryLimitMB = memoryLimits.memoryLimitMb;
 			int desirable = parseSilentInt(getAttribute(i.router, "memoryLimitInMB"), 0);
@@ -235,10 +308,27 @@ public class RoutingConfiguration {
 					i.directionPoints.insert(dp, new QuadRect(x, y, x, y));
 				}
 			}
+			i.tileCache = tileCache;
+			i.parallelBidirectionalSearch = parallelBidirectionalSearch;
 //			i.planRoadDirection = 1;
 			return i;
 		}
 		
+		public Builder setTileCache(RoutingTileCache tileCache) {
+			this.tileCache = tileCache;
+			return this;
+		}
+
+		public Builder setCompileRouter(boolean compileRouter) {
+			this.compileRouter = compileRouter;
+			return this;
+		}
+
+		public Builder setParallelBidirectionalSearch(boolean parallelBidirectionalSearch) {
+			this.parallelBidirectionalSearch = parallelBidirectionalSearch;
+			return this;
+		}
+
 		public Builder setDirectionPoints(QuadTree<Node> directionPoints) {
 			this.directionPointsBuilder = directionPoints;
 			return this;
@@ -3,6 +3,7 @@ package net.osmand.router;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
@@ -57,6 +58,8 @@ public class RoutingContext {
 	// 0. Reference to native routingcontext for multiple routes
 	public long nativeRoutingContext;
 	public boolean keepNativeRoutingContext;
+	// loaded tiles are not unloaded after route calculation (batch of routes on the same context)
+	boolean keepLoadedData;
 	
 	// 1. Initial variables
 	public int startX;
@@ -89,6 +92,8 @@ public class RoutingContext {
 	// 3. Warm object caches
 	ArrayList<RouteSegment> segmentsToVisitPrescripted = new ArrayList<BinaryRoutePlanner.RouteSegment>(5);
 	ArrayList<RouteSegment> segmentsToVisitNotForbidden = new ArrayList<BinaryRoutePlanner.RouteSegment>(5);
+	ArrayList<RouteSegment> reverseSegmentsToVisitPrescripted = new ArrayList<BinaryRoutePlanner.RouteSegment>(5);
+	ArrayList<RouteSegment> reverseSegmentsToVisitNotForbidden = new ArrayList<BinaryRoutePlanner.RouteSegment>(5);
 	
 	
 	// 5. debug information (package accessor)
@@ -105,10 +110,16 @@ public class RoutingContext {
 	
 	// old planner
 	public FinalRouteSegment finalRouteSegment;
+	// reverse search of previous calculation kept for incremental recalculation to the same target
+	ReverseSearchTree reverseSearchTree;
 	
 	
 	RoutingContext(RoutingContext cp) {
-		this.config = cp.config;
+		this(cp, cp.config);
+	}
+
+	RoutingContext(RoutingContext cp, RoutingConfiguration config) {
+		this.config = config;
 		this.map.putAll(cp.map);
 		this.calculationMode = cp.calculationMode;
 		this.leftSideNavigation = cp.leftSideNavigation;
@@ -216,6 +227,28 @@ public class RoutingContext {
 		indexedSubregions.clear();
 	}
 	
+	/**
+	 * Resets search state of segments of loaded tiles, so next search could reuse loaded tiles
+	 * instead of {@link #unloadAllData()}.
+	 */
+	public void clearSearchState() {
+		clearSearchState(true);
+	}
+
+	/**
+	 * @param reverseSearch false to keep state of reverse search segments (see {@link #reverseSearchTree})
+	 */
+	public void clearSearchState(boolean reverseSearch) {
+		if (reverseSearch) {
+			reverseSearchTree = null;
+		}
+		for (RoutingSubregionTile tl : subregionTiles) {
+			if (tl.isLoaded()) {
+				tl.clearSearchState(reverseSearch);
+			}
+		}
+	}
+
 	private int searchSubregionTile(RouteSubregion subregion){
 		RoutingSubregionTile key = new RoutingSubregionTile(subregion);
 		int ind = Collections.binarySearch(subregionTiles, key, new Comparator<RoutingSubregionTile>() {
@@ -245,7 +278,8 @@ public class RoutingContext {
 		return loadRouteSegment(x31, y31, memoryLimit, false);
 	}
 	
-	public RouteSegment loadRouteSegment(int x31, int y31, long memoryLimit, boolean reverseWaySearch) {
+	// synchronized: forward and reverse search could run on different threads (see RoutingConfiguration.parallelBidirectionalSearch)
+	public synchronized RouteSegment loadRouteSegment(int x31, int y31, long memoryLimit, boolean reverseWaySearch) {
 		long tileId = getRoutingTile(x31, y31, memoryLimit);
 		TLongObjectHashMap<RouteDataObject> excludeDuplications = new TLongObjectHashMap<RouteDataObject>();
 		RouteSegment original = null;
@@ -285,8 +319,18 @@ public class RoutingContext {
 
 			try {
 				BinaryMapIndexReader reader = reverseMap.get(ts.subregion.routeReg);
-				ts.setLoadedNonNative();
-				List<RouteDataObject> res = reader.loadRouteIndexData(ts.subregion);
+				if (config.compactTiles) {
+					ts.setLoadedCompact(config.compactTilesOffHeap);
+				} else {
+					ts.setLoadedNonNative();
+				}
+				List<RouteDataObject> res;
+				if (config.tileCache != null) {
+					boolean copyTypes = config.routeCalculationTime != 0 || !points.isEmpty();
+					res = config.tileCache.loadRouteIndexData(reader, ts.subregion, copyTypes, global);
+				} else {
+					res = reader.loadRouteIndexData(ts.subregion);
+				}
 				
 				if (toLoad != null) {
 					toLoad.addAll(res);
@@ -315,6 +359,7 @@ public class RoutingContext {
 						}
 					}
 				}
+				ts.packRoutes();
 			} catch (IOException e) {
 				throw new RuntimeException("Loading data exception", e);
 			}
@@ -732,6 +777,9 @@ public class RoutingContext {
 		private NativeRouteSearchResult searchResult = null;
 		private int isLoaded = 0;
 		private TLongObjectMap<RouteSegment> routes = null;
+		// used instead of routes for compact tiles
+		private PackedRouteSegmentIndex packedRoutes = null;
+		private boolean packedOffHeap = false;
 		private TLongHashSet excludedIds = null;
 
 		public RoutingSubregionTile(RouteSubregion subregion) {
@@ -743,7 +791,14 @@ public class RoutingContext {
 		}
 		
 		public void loadAllObjects(final List<RouteDataObject> toFillIn, RoutingContext ctx, TLongObjectHashMap<RouteDataObject> excludeDuplications) {
-			if(routes != null) {
+			if (packedRoutes != null) {
+				for (RouteDataObject ro : packedRoutes.getRoads()) {
+					if (!excludeDuplications.contains(ro.id)) {
+						excludeDuplications.put(ro.id, ro);
+						toFillIn.add(ro);
+					}
+				}
+			} else if(routes != null) {
 				Iterator<RouteSegment> it = routes.valueCollection().iterator();
 				while(it.hasNext()){
 					RouteSegment rs = it.next();
@@ -773,9 +828,9 @@ public class RoutingContext {
 				TLongObjectHashMap<RouteDataObject> excludeDuplications, RouteSegment original, List<RoutingSubregionTile> subregions, int subregionIndex, 
 				boolean reverseWaySearch) {
 			access++;
-			if (routes != null) {
+			if (routes != null || packedRoutes != null) {
 				long l = (((long) x31) << 31) + (long) y31;
-				RouteSegment segment = routes.get(l);
+				RouteSegment segment = routes != null ? routes.get(l) : packedRoutes.get(l);
 				while (segment != null) {
 					RouteDataObject ro = segment.road;
 					RouteDataObject toCmp = excludeDuplications.get(calcRouteId(ro, segment.getSegmentStart()));
@@ -814,6 +869,31 @@ public class RoutingContext {
 			return false;
 		}
 		
+		void clearSearchState(boolean reverseSearch) {
+			Collection<RouteSegment> heads = packedRoutes != null ? packedRoutes.getSegments()
+					: (routes != null ? routes.valueCollection() : null);
+			if (heads == null) {
+				return;
+			}
+			for (RouteSegment rs : heads) {
+				for (; rs != null; rs = rs.nextLoaded) {
+					clearSearchState(rs);
+					if (reverseSearch) {
+						clearSearchState(rs.reverseSearch);
+					}
+				}
+			}
+		}
+
+		private static void clearSearchState(RouteSegment rs) {
+			if (rs != null) {
+				rs.clearSearchState();
+				if (rs.oppositeDirection != null) {
+					rs.oppositeDirection.clearSearchState();
+				}
+			}
+		}
+
 		public boolean isLoaded() {
 			return isLoaded > 0;
 		}
@@ -837,6 +917,7 @@ public class RoutingContext {
 			}
 			searchResult = null;
 			routes = null;
+			packedRoutes = null;
 			excludedIds = null;
 		}
 		
@@ -846,7 +927,32 @@ public class RoutingContext {
 			tileStatistics = new TileStatistics();
 		}
 		
+		// off heap flag is needed before objects are added to estimate size of tile
+		public void setLoadedCompact(boolean offHeap) {
+			isLoaded = Math.abs(isLoaded) + 1;
+			routes = null;
+			packedRoutes = new PackedRouteSegmentIndex();
+			packedOffHeap = offHeap;
+			tileStatistics = new TileStatistics();
+		}
+
+		// should be called when all objects are added to compact tile
+		public void packRoutes() {
+			if (packedRoutes != null) {
+				packedRoutes.pack(packedOffHeap);
+			}
+		}
+
+		public boolean isCompact() {
+			return packedRoutes != null;
+		}
+
 		public void add(RouteDataObject ro) {
+			if (packedRoutes != null) {
+				tileStatistics.addCompactObject(ro, packedOffHeap);
+				packedRoutes.add(ro);
+				return;
+			}
 			tileStatistics.addObject(ro);
 			for (int i = 0; i < ro.pointsX.length; i++) {
 				int x31 = ro.getPoint31XTile(i);
@@ -884,6 +990,15 @@ public class RoutingContext {
 	}
 	
 	static int getEstimatedSize(RouteDataObject o) {
+		return (int) (getEstimatedRawSize(o) * 3.5);
+	}
+
+	// compact tile doesn't keep RouteSegment and hash map entry per point, only 2 longs of packed index
+	static int getEstimatedCompactSize(RouteDataObject o, boolean offHeapIndex) {
+		return getEstimatedRawSize(o) * 2 + (offHeapIndex ? 0 : 16 * o.getPointsLength());
+	}
+
+	private static int getEstimatedRawSize(RouteDataObject o) {
 		// calculate size
 		int sz = 0;
 		sz += 8 + 4; // overhead
@@ -912,20 +1027,27 @@ public class RoutingContext {
 				}
 			}
 		}
-		// Standard overhead?
-		return  (int) (sz * 3.5);
+		return sz;
 	}
 	
-	protected static class TileStatistics {
+	public static class TileStatistics {
 		public int size = 0;
 		public int allRoutes = 0;
 		public int coordinates = 0;
+		// shared tile cache (RoutingTileCache)
+		public int cacheHits = 0;
+		public int cacheMisses = 0;
+		public int cacheEvictions = 0;
 		
 		@Override
 		public String toString() {
-			return "All routes " + allRoutes + 
+			String s = "All routes " + allRoutes + 
 					" size " + (size / 1024f) + " KB coordinates " + coordinates + " ratio coord " + (((float)size) / coordinates)
 					+ " ratio routes " + (((float)size) / allRoutes);
+			if (cacheHits + cacheMisses > 0) {
+				s += " cache hits " + cacheHits + " misses " + cacheMisses + " evictions " + cacheEvictions;
+			}
+			return s;
 		}
 
 		public void addObject(RouteDataObject o) {
@@ -934,6 +1056,12 @@ public class RoutingContext {
 			size += getEstimatedSize(o);
 		}
 
+		public void addCompactObject(RouteDataObject o, boolean offHeapIndex) {
+			allRoutes++;
+			coordinates += o.getPointsLength() * 2;
+			size += getEstimatedCompactSize(o, offHeapIndex);
+		}
+
 		
 	}
 	
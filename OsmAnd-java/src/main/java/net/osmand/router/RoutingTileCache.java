@@ -0,0 +1,201 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.RoutingContext.TileStatistics;
+
+/**
+ * Process wide cache of decoded routing tiles, it could be shared between many routing contexts
+ * (set with {@link RoutingConfiguration.Builder#setTileCache(RoutingTileCache)}).
+ * Cached objects are never given to routing directly: every context gets own shallow copies,
+ * so conditional tags and direction points could be applied per context. Least recently used tiles are evicted
+ * when estimated size of cache exceeds the limit.
+ */
+public class RoutingTileCache {
+
+	private final long maxSize;
+	private final TileStatistics statistics = new TileStatistics();
+	private final LinkedHashMap<TileKey, CachedTile> tiles = new LinkedHashMap<TileKey, CachedTile>(16, 0.75f, true);
+
+	public RoutingTileCache(long maxSizeBytes) {
+		this.maxSize = maxSizeBytes;
+	}
+
+	/**
+	 * @param copyTypes copy types arrays of returned objects, if they are going to be changed in place
+	 *                  (conditional tags, direction points)
+	 */
+	public List<RouteDataObject> loadRouteIndexData(BinaryMapIndexReader reader, RouteSubregion subregion,
+	                                                boolean copyTypes, TileStatistics contextStatistics) throws IOException {
+		TileKey key = new TileKey(reader.getFile(), subregion);
+		CachedTile tile = get(key, subregion);
+		if (tile != null) {
+			if (contextStatistics != null) {
+				contextStatistics.cacheHits++;
+			}
+		} else {
+			if (contextStatistics != null) {
+				contextStatistics.cacheMisses++;
+			}
+			tile = new CachedTile(subregion, reader.loadRouteIndexData(subregion));
+			int evicted = put(key, tile);
+			if (contextStatistics != null) {
+				contextStatistics.cacheEvictions += evicted;
+			}
+		}
+		List<RouteDataObject> res = new ArrayList<RouteDataObject>(tile.objects.size());
+		for (RouteDataObject o : tile.objects) {
+			res.add(o == null ? null : copy(o, copyTypes));
+		}
+		return res;
+	}
+
+	private synchronized CachedTile get(TileKey key, RouteSubregion subregion) {
+		CachedTile tile = tiles.get(key);
+		// objects are bound to region instance, file could be opened by another reader
+		if (tile != null && tile.region != subregion.routeReg) {
+			return null;
+		}
+		if (tile != null) {
+			statistics.cacheHits++;
+		} else {
+			statistics.cacheMisses++;
+		}
+		return tile;
+	}
+
+	// returns number of evicted tiles
+	private synchronized int put(TileKey key, CachedTile tile) {
+		CachedTile old = tiles.put(key, tile);
+		if (old != null) {
+			remove(old);
+		}
+		statistics.allRoutes += tile.objects.size();
+		statistics.coordinates += tile.coordinates;
+		statistics.size += tile.size;
+		int evicted = 0;
+		Iterator<Entry<TileKey, CachedTile>> it = tiles.entrySet().iterator();
+		while (statistics.size > maxSize && tiles.size() > 1 && it.hasNext()) {
+			CachedTile eldest = it.next().getValue();
+			if (eldest == tile) {
+				continue;
+			}
+			it.remove();
+			remove(eldest);
+			statistics.cacheEvictions++;
+			evicted++;
+		}
+		return evicted;
+	}
+
+	private void remove(CachedTile tile) {
+		statistics.allRoutes -= tile.objects.size();
+		statistics.coordinates -= tile.coordinates;
+		statistics.size -= tile.size;
+	}
+
+	public synchronized int getCachedTiles() {
+		return tiles.size();
+	}
+
+	public synchronized TileStatistics getStatistics() {
+		TileStatistics copy = new TileStatistics();
+		copy.size = statistics.size;
+		copy.allRoutes = statistics.allRoutes;
+		copy.coordinates = statistics.coordinates;
+		copy.cacheHits = statistics.cacheHits;
+		copy.cacheMisses = statistics.cacheMisses;
+		copy.cacheEvictions = statistics.cacheEvictions;
+		return copy;
+	}
+
+	public synchronized void clear() {
+		tiles.clear();
+		statistics.size = 0;
+		statistics.allRoutes = 0;
+		statistics.coordinates = 0;
+	}
+
+	private static RouteDataObject copy(RouteDataObject o, boolean copyTypes) {
+		RouteDataObject c = new RouteDataObject(o);
+		if (copyTypes) {
+			c.types = o.types == null ? null : o.types.clone();
+			if (o.pointTypes != null) {
+				c.pointTypes = new int[o.pointTypes.length][];
+				for (int i = 0; i < o.pointTypes.length; i++) {
+					c.pointTypes[i] = o.pointTypes[i] == null ? null : o.pointTypes[i].clone();
+				}
+			}
+		}
+		return c;
+	}
+
+	private static class CachedTile {
+		final RouteRegion region;
+		final List<RouteDataObject> objects;
+		final int size;
+		final int coordinates;
+
+		CachedTile(RouteSubregion subregion, List<RouteDataObject> objects) {
+			this.region = subregion.routeReg;
+			this.objects = objects;
+			int sz = 0;
+			int coordinates = 0;
+			for (RouteDataObject o : objects) {
+				if (o != null) {
+					sz += RoutingContext.getEstimatedCompactSize(o, true);
+					coordinates += o.getPointsLength() * 2;
+				}
+			}
+			this.size = sz;
+			this.coordinates = coordinates;
+		}
+	}
+
+	private static class TileKey {
+		final File file;
+		final int regionPointer;
+		final int subregionPointer;
+		final int shiftToData;
+
+		TileKey(File file, RouteSubregion subregion) {
+			this.file = file;
+			this.regionPointer = subregion.routeReg.getFilePointer();
+			this.subregionPointer = subregion.filePointer;
+			this.shiftToData = subregion.shiftToData;
+		}
+
+		@Override
+		public int hashCode() {
+			int result = file == null ? 0 : file.hashCode();
+			result = 31 * result + regionPointer;
+			result = 31 * result + subregionPointer;
+			result = 31 * result + shiftToData;
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof TileKey)) {
+				return false;
+			}
+			TileKey other = (TileKey) obj;
+			return regionPointer == other.regionPointer && subregionPointer == other.subregionPointer
+					&& shiftToData == other.shiftToData
+					&& (file == null ? other.file == null : file.equals(other.file));
+		}
+	}
+}
@@ -52,12 +52,18 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 
@@ -232,12 +238,102 @@ public class SearchCoreFactory {
 			return null;
 		}
 
+		/**
+		 * Searches files one by one publishing results while reading. When settings have parallel search pool,
+		 * next files are read concurrently while data of previous file is processed on calling thread, files are
+		 * processed in the same order as without pool, so results are published file by file and same way sorted.
+		 * Not more files than pool parallelism are read ahead and method returns only after all started reads
+		 * are finished (also when search is cancelled or failed).
+		 */
+		protected <T> void searchOfflineFiles(SearchPhrase phrase, SearchResultMatcher resultMatcher,
+				Iterator<BinaryMapIndexReader> files, final OfflineFileSearch<T> search) throws IOException {
+			ForkJoinPool pool = phrase.getSettings().getParallelSearchPool();
+			// exported objects are collected while reading
+			if (pool == null || phrase.getSettings().isExportObjects()) {
+				while (files.hasNext() && !resultMatcher.isCancelled()) {
+					search.search(files.next());
+				}
+				return;
+			}
+			// read ahead only as many files as pool could read at once, data of read files is kept till processed
+			int readAhead = Math.max(1, pool.getParallelism());
+			final AtomicBoolean stopped = new AtomicBoolean();
+			LinkedList<BinaryMapIndexReader> readers = new LinkedList<BinaryMapIndexReader>();
+			LinkedList<Future<T>> futures = new LinkedList<Future<T>>();
+			try {
+				while (!resultMatcher.isCancelled()) {
+					while (futures.size() < readAhead && files.hasNext()) {
+						final BinaryMapIndexReader r = files.next();
+						readers.add(r);
+						futures.add(pool.submit(new Callable<T>() {
+							@Override
+							public T call() throws Exception {
+								return stopped.get() ? null : search.read(r);
+							}
+						}));
+					}
+					if (futures.isEmpty()) {
+						break;
+					}
+					BinaryMapIndexReader r = readers.removeFirst();
+					T data = futures.removeFirst().get();
+					search.process(r, data);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException) {
+					throw (IOException) e.getCause();
+				}
+				throw new IllegalStateException(e.getCause());
+			} finally {
+				// readers are not thread safe, so started reads have to finish before files are used again
+				stopped.set(true);
+				waitAll(futures);
+			}
+		}
+
+		private static void waitAll(List<? extends Future<?>> futures) {
+			boolean interrupted = false;
+			for (Future<?> f : futures) {
+				while (true) {
+					try {
+						f.get();
+						break;
+					} catch (InterruptedException e) {
+						interrupted = true;
+					} catch (ExecutionException e) {
+						// results of not processed files are ignored
+						break;
+					}
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
 		@Override
 		public String toString() {
 			return getClass().getSimpleName();
 		}
 	}
 
+	/**
+	 * Search in one offline file, for parallel search it's split into reading (could run concurrently for
+	 * different files) and processing of read data.
+	 */
+	protected interface OfflineFileSearch<T> {
+
+		// searches file publishing objects while reading (search without pool)
+		void search(BinaryMapIndexReader file) throws IOException;
+
+		// reads only given file, doesn't publish results
+		T read(BinaryMapIndexReader file) throws IOException;
+
+		void process(BinaryMapIndexReader file, T data) throws IOException;
+	}
+
 	public static class SearchRegionByNameAPI extends SearchBaseAPI {
 
 		public SearchRegionByNameAPI() {
@@ -413,7 +509,7 @@ public class SearchCoreFactory {
 			if (phrase.getRadiusLevel() > 1 || phrase.getUnknownWordToSearch().length() > 3 ||
 					phrase.hasMoreThanOneUnknownSearchWord()|| phrase.isSearchTypeAllowed(ObjectType.POSTCODE, true)) {
 				final boolean locSpecified = phrase.getLastTokenLocation() != null;
-				LatLon loc = phrase.getLastTokenLocation();
+				final LatLon loc = phrase.getLastTokenLocation();
 				final List<SearchResult> immediateResults = new ArrayList<>();
 				final QuadRect streetBbox = phrase.getRadiusBBoxToSearch(DEFAULT_ADDRESS_BBOX_RADIUS);
 				final QuadRect postcodeBbox = phrase.getRadiusBBoxToSearch(DEFAULT_ADDRESS_BBOX_RADIUS * 5);
@@ -423,8 +519,9 @@ public class SearchCoreFactory {
 						SEARCH_ADDRESS_BY_NAME_PRIORITY : SEARCH_ADDRESS_BY_NAME_PRIORITY_RADIUS2;
 				final BinaryMapIndexReader[] currentFile = new BinaryMapIndexReader[1];
 
-				ResultMatcher<MapObject> rm = new ResultMatcher<MapObject>() {
-					int limit = 0;
+				final ResultMatcher<MapObject> rm = new ResultMatcher<MapObject>() {
+					// checked by reading threads
+					volatile int limit = 0;
 					@Override
 					public boolean publish(MapObject object) {
 						if (isCancelled()) {
@@ -532,32 +629,76 @@ public class SearchCoreFactory {
 						}
 					};
 				}
+				final ResultMatcher<MapObject> rawData = rawDataCollector;
 
 				Iterator<BinaryMapIndexReader> offlineIterator = phrase.getRadiusOfflineIndexes(DEFAULT_ADDRESS_BBOX_RADIUS * 5,
 						SearchPhraseDataType.ADDRESS);
-				String wordToSearch = phrase.getUnknownWordToSearch();
-				while (offlineIterator.hasNext() && wordToSearch.length() > 0) {
-					BinaryMapIndexReader r = offlineIterator.next();
-					currentFile[0] = r;
-					immediateResults.clear();
-					SearchRequest<MapObject> req = BinaryMapIndexReader.buildAddressByNameRequest(rm, rawDataCollector, wordToSearch.toLowerCase(),
-							phrase.isMainUnknownSearchWordComplete() ? StringMatcherMode.CHECK_EQUALS_FROM_SPACE
-									: StringMatcherMode.CHECK_STARTS_FROM_SPACE);
-					if (locSpecified) {
-						req.setBBoxRadius(loc.getLatitude(), loc.getLongitude(),
-								phrase.getRadiusSearch(DEFAULT_ADDRESS_BBOX_RADIUS * 5));
-					}
-					r.searchAddressDataByName(req);
-					for (SearchResult res : immediateResults) {
-						if (res.objectType == ObjectType.STREET) {
-							subSearchApiOrPublish(phrase, resultMatcher, res, streetsApi);
-						} else {
-							SearchPhrase nphrase = subSearchApiOrPublish(phrase, resultMatcher, res, cityApi);
-							searchPoiInCity(nphrase, res, resultMatcher);
+				final String wordToSearch = phrase.getUnknownWordToSearch();
+				if (wordToSearch.length() == 0) {
+					return;
+				}
+				final StringMatcherMode matcherMode = phrase.isMainUnknownSearchWordComplete() ? StringMatcherMode.CHECK_EQUALS_FROM_SPACE
+						: StringMatcherMode.CHECK_STARTS_FROM_SPACE;
+				searchOfflineFiles(phrase, resultMatcher, offlineIterator, new OfflineFileSearch<List<MapObject>>() {
+
+					@Override
+					public void search(BinaryMapIndexReader r) throws IOException {
+						currentFile[0] = r;
+						immediateResults.clear();
+						r.searchAddressDataByName(buildRequest(rm));
+						processImmediateResults(r);
+					}
+
+					@Override
+					public List<MapObject> read(BinaryMapIndexReader r) throws IOException {
+						final List<MapObject> objects = new ArrayList<>();
+						r.searchAddressDataByName(buildRequest(new ResultMatcher<MapObject>() {
+							@Override
+							public boolean publish(MapObject object) {
+								objects.add(object);
+								return false;
+							}
+
+							@Override
+							public boolean isCancelled() {
+								return rm.isCancelled();
+							}
+						}));
+						return objects;
+					}
+
+					@Override
+					public void process(BinaryMapIndexReader r, List<MapObject> objects) throws IOException {
+						currentFile[0] = r;
+						immediateResults.clear();
+						for (MapObject object : objects) {
+							rm.publish(object);
 						}
+						processImmediateResults(r);
 					}
-					resultMatcher.apiSearchRegionFinished(this, r, phrase);
-				}
+
+					private SearchRequest<MapObject> buildRequest(ResultMatcher<MapObject> matcher) {
+						SearchRequest<MapObject> req = BinaryMapIndexReader.buildAddressByNameRequest(matcher, rawData,
+								wordToSearch.toLowerCase(), matcherMode);
+						if (locSpecified) {
+							req.setBBoxRadius(loc.getLatitude(), loc.getLongitude(),
+									phrase.getRadiusSearch(DEFAULT_ADDRESS_BBOX_RADIUS * 5));
+						}
+						return req;
+					}
+
+					private void processImmediateResults(BinaryMapIndexReader r) throws IOException {
+						for (SearchResult res : immediateResults) {
+							if (res.objectType == ObjectType.STREET) {
+								subSearchApiOrPublish(phrase, resultMatcher, res, streetsApi);
+							} else {
+								SearchPhrase nphrase = subSearchApiOrPublish(phrase, resultMatcher, res, cityApi);
+								searchPoiInCity(nphrase, res, resultMatcher);
+							}
+						}
+						resultMatcher.apiSearchRegionFinished(SearchAddressByNameAPI.this, r, phrase);
+					}
+				});
 			}
 		}
 	}
@@ -588,9 +729,9 @@ public class SearchCoreFactory {
 			final BinaryMapIndexReader[] currentFile = new BinaryMapIndexReader[1];
 			Iterator<BinaryMapIndexReader> offlineIterator = phrase.getRadiusOfflineIndexes(BBOX_RADIUS,
 					SearchPhraseDataType.POI);
-			String searchWord = phrase.getUnknownWordToSearch();
+			final String searchWord = phrase.getUnknownWordToSearch();
 			final NameStringMatcher nm = phrase.getMainUnknownNameStringMatcher();
-			QuadRect bbox = phrase.getFileRequest() != null ? phrase.getRadiusBBoxToSearch(BBOX_RADIUS_POI_IN_CITY) : phrase.getRadiusBBoxToSearch(BBOX_RADIUS_INSIDE);
+			final QuadRect bbox = phrase.getFileRequest() != null ? phrase.getRadiusBBoxToSearch(BBOX_RADIUS_POI_IN_CITY) : phrase.getRadiusBBoxToSearch(BBOX_RADIUS_INSIDE);
 			final Set<String> ids = new HashSet<String>();
 
 			ResultMatcher<Amenity> rawDataCollector = null;
@@ -608,74 +749,110 @@ public class SearchCoreFactory {
 					}
 				};
 			}
-			SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest((int) bbox.centerX(),
-					(int) bbox.centerY(), searchWord, (int) bbox.left, (int) bbox.right, (int) bbox.top,
-					(int) bbox.bottom, new ResultMatcher<Amenity>() {
-						int limit = 0;
+			final ResultMatcher<Amenity> poiMatcher = new ResultMatcher<Amenity>() {
+				// checked by reading threads
+				volatile int limit = 0;
 
-						@Override
-						public boolean publish(Amenity object) {
-							if (phrase.getSettings().isExportObjects()) {
-								resultMatcher.exportObject(phrase, object);
-							}
-							if (limit++ > LIMIT) {
-								return false;
-							}
-							String poiID = object.getType().getKeyName() + "_" + object.getId();
-							if (ids.contains(poiID)) {
-								return false;
-							}
-							SearchResult sr = new SearchResult(phrase);
-							sr.otherNames = object.getOtherNames(true);
-							sr.localeName = object.getName(phrase.getSettings().getLang(),
-									phrase.getSettings().isTransliterate());
-							if (!nm.matches(sr.localeName) && !nm.matches(sr.otherNames)
-									&& !nm.matches(object.getAdditionalInfoValues(false))) {
-								return false;
-							}
-							sr.object = object;
-							sr.preferredZoom = 17;
-							sr.file = currentFile[0];
-							sr.location = object.getLocation();
-							if (object.getSubType().equals("city") || object.getSubType().equals("country")) {
-								sr.priorityDistance = SEARCH_AMENITY_BY_NAME_CITY_PRIORITY_DISTANCE;
-								sr.preferredZoom = object.getSubType().equals("country") ? 7 : 13;
-							} else if (object.getSubType().equals("town")) {
-								sr.priorityDistance = SEARCH_AMENITY_BY_NAME_TOWN_PRIORITY_DISTANCE;
-							} else {
-								sr.priorityDistance = 1;
-							}
-							sr.priority = SEARCH_AMENITY_BY_NAME_PRIORITY;
-							phrase.countUnknownWordsMatchMainResult(sr);
-							sr.objectType = ObjectType.POI;
-							resultMatcher.publish(sr);
-							ids.add(poiID);
-							return false;
-						}
+				@Override
+				public boolean publish(Amenity object) {
+					if (phrase.getSettings().isExportObjects()) {
+						resultMatcher.exportObject(phrase, object);
+					}
+					if (limit++ > LIMIT) {
+						return false;
+					}
+					String poiID = object.getType().getKeyName() + "_" + object.getId();
+					if (ids.contains(poiID)) {
+						return false;
+					}
+					SearchResult sr = new SearchResult(phrase);
+					sr.otherNames = object.getOtherNames(true);
+					sr.localeName = object.getName(phrase.getSettings().getLang(),
+							phrase.getSettings().isTransliterate());
+					if (!nm.matches(sr.localeName) && !nm.matches(sr.otherNames)
+							&& !nm.matches(object.getAdditionalInfoValues(false))) {
+						return false;
+					}
+					sr.object = object;
+					sr.preferredZoom = 17;
+					sr.file = currentFile[0];
+					sr.location = object.getLocation();
+					if (object.getSubType().equals("city") || object.getSubType().equals("country")) {
+						sr.priorityDistance = SEARCH_AMENITY_BY_NAME_CITY_PRIORITY_DISTANCE;
+						sr.preferredZoom = object.getSubType().equals("country") ? 7 : 13;
+					} else if (object.getSubType().equals("town")) {
+						sr.priorityDistance = SEARCH_AMENITY_BY_NAME_TOWN_PRIORITY_DISTANCE;
+					} else {
+						sr.priorityDistance = 1;
+					}
+					sr.priority = SEARCH_AMENITY_BY_NAME_PRIORITY;
+					phrase.countUnknownWordsMatchMainResult(sr);
+					sr.objectType = ObjectType.POI;
+					resultMatcher.publish(sr);
+					ids.add(poiID);
+					return false;
+				}
+
+				@Override
+				public boolean isCancelled() {
+					return resultMatcher.isCancelled() && (limit < LIMIT);
+				}
+			};
+			final ResultMatcher<Amenity> rawData = rawDataCollector;
 
-						@Override
-						public boolean isCancelled() {
-							return resultMatcher.isCancelled() && (limit < LIMIT);
-						}
-					}, rawDataCollector);
-			
 			BinaryMapIndexReader fileRequest = phrase.getFileRequest();
 			if (fileRequest != null) {
-				fileRequest.searchPoiByName(req);
+				currentFile[0] = fileRequest;
+				fileRequest.searchPoiByName(buildSearchPoiRequest(bbox, searchWord, poiMatcher, rawData));
 				resultMatcher.apiSearchRegionFinished(this, fileRequest, phrase);
 			} else {
-				while (offlineIterator.hasNext()) {
-					BinaryMapIndexReader r = offlineIterator.next();
-					currentFile[0] = r;
-					r.searchPoiByName(req);
-					
-					resultMatcher.apiSearchRegionFinished(this, r, phrase);
-				}
+				searchOfflineFiles(phrase, resultMatcher, offlineIterator, new OfflineFileSearch<List<Amenity>>() {
+
+					@Override
+					public void search(BinaryMapIndexReader r) throws IOException {
+						currentFile[0] = r;
+						r.searchPoiByName(buildSearchPoiRequest(bbox, searchWord, poiMatcher, rawData));
+						resultMatcher.apiSearchRegionFinished(SearchAmenityByNameAPI.this, r, phrase);
+					}
+
+					@Override
+					public List<Amenity> read(BinaryMapIndexReader r) throws IOException {
+						final List<Amenity> objects = new ArrayList<>();
+						r.searchPoiByName(buildSearchPoiRequest(bbox, searchWord, new ResultMatcher<Amenity>() {
+							@Override
+							public boolean publish(Amenity object) {
+								objects.add(object);
+								return false;
+							}
+
+							@Override
+							public boolean isCancelled() {
+								return poiMatcher.isCancelled();
+							}
+						}, rawData));
+						return objects;
+					}
+
+					@Override
+					public void process(BinaryMapIndexReader r, List<Amenity> objects) {
+						currentFile[0] = r;
+						for (Amenity object : objects) {
+							poiMatcher.publish(object);
+						}
+						resultMatcher.apiSearchRegionFinished(SearchAmenityByNameAPI.this, r, phrase);
+					}
+				});
 			}
 			
 			return true;
 		}
 
+		private SearchRequest<Amenity> buildSearchPoiRequest(QuadRect bbox, String searchWord,
+				ResultMatcher<Amenity> matcher, ResultMatcher<Amenity> rawDataCollector) {
+			return BinaryMapIndexReader.buildSearchPoiRequest((int) bbox.centerX(), (int) bbox.centerY(), searchWord,
+					(int) bbox.left, (int) bbox.right, (int) bbox.top, (int) bbox.bottom, matcher, rawDataCollector);
+		}
+
 		@Override
 		public int getSearchPriority(SearchPhrase p) {
 			if (p.hasObjectType(ObjectType.POI) ||
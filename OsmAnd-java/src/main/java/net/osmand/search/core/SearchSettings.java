@@ -19,6 +19,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 // immutable object
 public class SearchSettings {
@@ -40,6 +41,7 @@ public class SearchSettings {
 	private QuadRect searchBBox31;
 	private boolean addressSearch;
 	private SearchExportSettings exportSettings; // = new SearchExportSettings(true, true, -1);
+	private ForkJoinPool parallelSearchPool;
 
 	public SearchSettings(SearchSettings s) {
 		if(s != null) {
@@ -57,6 +59,7 @@ public class SearchSettings {
 			this.emptyQueryAllowed = s.emptyQueryAllowed;
 			this.sortByName = s.sortByName;
 			this.exportSettings = s.exportSettings;
+			this.parallelSearchPool = s.parallelSearchPool;
 		}
 	}
 	
@@ -185,6 +188,19 @@ public class SearchSettings {
 		return s;
 	}
 
+	public ForkJoinPool getParallelSearchPool() {
+		return parallelSearchPool;
+	}
+
+	/**
+	 * @param parallelSearchPool pool to read offline files concurrently, null to read them one by one
+	 */
+	public SearchSettings setParallelSearchPool(ForkJoinPool parallelSearchPool) {
+		SearchSettings s = new SearchSettings(this);
+		s.parallelSearchPool = parallelSearchPool;
+		return s;
+	}
+
 	public boolean isExportObjects() {
 		return exportSettings != null;
 	}
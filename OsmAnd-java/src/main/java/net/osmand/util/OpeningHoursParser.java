@@ -36,6 +36,7 @@ public class OpeningHoursParser {
 	private static final int LOW_TIME_LIMIT = 120;
 	private static final int WITHOUT_TIME_LIMIT = -1;
 	private static final int CURRENT_DAY_TIME_LIMIT = -2;
+	private static final int MINUTES_IN_DAY = 24 * 60;
 
 	private static boolean twelveHourFormatting;
 	private static DateFormat twelveHourFormatter;
@@ -346,6 +347,56 @@ public class OpeningHoursParser {
 			return isOpenedForTimeV2(cal, ALL_SEQUENCES);
 		}
 
+		/**
+		 * Bitmap of minutes of week when feature is opened (bit 0 is Monday 00:00, 7 * 24 * 60 bits),
+		 * so check for time doesn't need calendar. Openness changes only at start / end times of rules,
+		 * so it's calculated only for that minutes of every day.
+		 * @return null if rules depend on something except day of week and time (months, dates, holidays)
+		 */
+		public long[] getWeeklyMinutes() {
+			if (rules.isEmpty()) {
+				return null;
+			}
+			TIntArrayList changes = new TIntArrayList();
+			changes.add(0);
+			for (OpeningHoursRule r : rules) {
+				if (!(r instanceof BasicOpeningHourRule) || !((BasicOpeningHourRule) r).isWeeklyRepeated()) {
+					return null;
+				}
+				BasicOpeningHourRule b = (BasicOpeningHourRule) r;
+				for (int i = 0; i < b.startTimes.size(); i++) {
+					changes.add(b.startTimes.get(i) % MINUTES_IN_DAY);
+					if (b.endTimes.get(i) >= 0) {
+						changes.add(b.endTimes.get(i) % MINUTES_IN_DAY);
+						changes.add((b.endTimes.get(i) + 1) % MINUTES_IN_DAY);
+					}
+				}
+			}
+			changes.sort();
+			for (int i = changes.size() - 1; i > 0; i--) {
+				if (changes.get(i) == changes.get(i - 1)) {
+					changes.removeAt(i);
+				}
+			}
+			long[] bitmap = new long[(7 * MINUTES_IN_DAY + 63) / 64];
+			Calendar cal = Calendar.getInstance();
+			for (int day = 0; day < 7; day++) {
+				for (int i = 0; i < changes.size(); i++) {
+					int from = changes.get(i);
+					int to = i + 1 < changes.size() ? changes.get(i + 1) : MINUTES_IN_DAY;
+					cal.clear();
+					// 1 January 2024 is Monday
+					cal.set(2024, Calendar.JANUARY, 1 + day, from / 60, from % 60);
+					if (isOpenedForTime(cal)) {
+						for (int m = day * MINUTES_IN_DAY + from; m < day * MINUTES_IN_DAY + to; m++) {
+							bitmap[m >> 6] |= 1L << (m & 63);
+						}
+					}
+				}
+			}
+			return bitmap;
+		}
+
 		/**
 		 * check if the feature is opened at time "cal"
 		 *
@@ -787,6 +838,21 @@ public class OpeningHoursParser {
 			}
 			return dayMonths[month];
 		}
+		/**
+		 * @return true if rule depends only on day of week and time
+		 */
+		public boolean isWeeklyRepeated() {
+			if (hasYears() || year != 0 || hasDayMonths() || publicHoliday || schoolHoliday || easter) {
+				return false;
+			}
+			for (boolean m : months) {
+				if (!m) {
+					return false;
+				}
+			}
+			return true;
+		}
+
 		public boolean hasDayMonths() {
 			return dayMonths != null;
 		}
@@ -0,0 +1,85 @@
+package net.osmand;
+
+import java.util.Locale;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.osmand.CollatorStringMatcher.StringMatcherMode;
+
+public class CollatorStringMatcherTest {
+
+	private static final String[] NAMES = { "Main Street", "Hauptstraße", "Auhofstrasse", "Straße des 17. Juni",
+			"Champs-Élysées", "Saint-Étienne", "Øresund", "Æbelø", "Ñandú", "İstanbul Caddesi", "Москва", "Ёлкино",
+			"улица Ленина", "Αθήνα", "東京", "Café 24", "O'Connor's", "Jean-Jacques", "ŁÓDŹ", "a", "", "  ",
+			"Rue de l'Église", "St. Pölten" };
+
+	private static final String[] PARTS = { "main", "MAIN ST", "str", "strasse", "straße", "haupt", "champs eli",
+			"champselysees", "elysees", "etienne", "ore", "øre", "æb", "aeb", "nandu", "istanbul", "моск", "елк",
+			"ленин", "αθη", "ath", "東", "cafe 2", "oconnor", "o'c", "jacques", "lodz", "łódź", "a", "", " ",
+			"-", "eglise", "st. p", "polten", "17", "des 17 j" };
+
+	@Test
+	public void testFoldedMatchingIsSameAsCollator() {
+		Locale def = Locale.getDefault();
+		try {
+			for (Locale l : new Locale[] { Locale.US, Locale.GERMANY, new Locale("ru"), new Locale("da"),
+					new Locale("tr"), new Locale("cs") }) {
+				Locale.setDefault(l);
+				checkLocale();
+			}
+		} finally {
+			Locale.setDefault(def);
+		}
+	}
+
+	private void checkLocale() {
+		Collator folding = OsmAndCollator.primaryCollator();
+		Assert.assertNotNull(OsmAndCollator.getFolding(folding));
+		java.text.Collator instance = Locale.getDefault().getLanguage().equals("cs")
+				? java.text.Collator.getInstance(Locale.US) : java.text.Collator.getInstance();
+		instance.setStrength(java.text.Collator.PRIMARY);
+		Collator plain = OsmAndCollator.wrapCollator(instance);
+		for (StringMatcherMode mode : StringMatcherMode.values()) {
+			for (String name : NAMES) {
+				for (String part : PARTS) {
+					String msg = Locale.getDefault() + " " + mode + " '" + name + "' '" + part + "'";
+					Assert.assertEquals(msg, CollatorStringMatcher.cmatches(plain, name, part, mode),
+							CollatorStringMatcher.cmatches(folding, name, part, mode));
+					Assert.assertEquals(msg, new CollatorStringMatcher(part, mode).matches(name),
+							CollatorStringMatcher.cmatches(plain, name, simplify(part, mode), adjust(part, mode)));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testPrimaryCollatorsAreEqual() {
+		Collator c1 = OsmAndCollator.primaryCollator();
+		Collator c2 = OsmAndCollator.primaryCollator();
+		Assert.assertEquals(c1, c2);
+		Assert.assertEquals(c1.hashCode(), c2.hashCode());
+		Assert.assertNotEquals(c1, null);
+		Assert.assertNotEquals(c1, OsmAndCollator.wrapCollator(java.text.Collator.getInstance()));
+	}
+
+	// same preparation of part as in matcher constructor
+	private static String simplify(String part, StringMatcherMode mode) {
+		part = part.toLowerCase(Locale.getDefault()).replace("ß", "ss");
+		if (part.length() > 0 && part.charAt(part.length() - 1) == '.') {
+			part = part.substring(0, part.length() - 1);
+		}
+		return part;
+	}
+
+	private static StringMatcherMode adjust(String part, StringMatcherMode mode) {
+		if (part.length() > 0 && part.charAt(part.length() - 1) == '.') {
+			if (mode == StringMatcherMode.CHECK_EQUALS_FROM_SPACE) {
+				return StringMatcherMode.CHECK_STARTS_FROM_SPACE;
+			} else if (mode == StringMatcherMode.CHECK_EQUALS) {
+				return StringMatcherMode.CHECK_ONLY_STARTS_WITH;
+			}
+		}
+		return mode;
+	}
+}
@@ -0,0 +1,158 @@
+package net.osmand;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.osmand.data.LatLon;
+
+public class TspLocalSearchTest {
+
+	private static final double EPS = 1e-6;
+
+	@Test
+	public void testImproveNeverMakesTourLonger() {
+		Random r = new Random(5);
+		for (int test = 0; test < 200; test++) {
+			int n = 4 + r.nextInt(20);
+			boolean keepEndPoint = r.nextBoolean();
+			TspLocalSearch tsp = new TspLocalSearch().readGraph(randomCosts(r, n, r.nextBoolean()), keepEndPoint);
+			int[] tour = randomTour(r, n, keepEndPoint);
+			double before = tsp.tourLength(tour);
+			tsp.improve(tour);
+			assertTour(tour, n, keepEndPoint);
+			Assert.assertTrue(tsp.tourLength(tour) <= before + EPS);
+		}
+	}
+
+	@Test
+	public void testSolveKeepsStartAndEnd() throws InterruptedException {
+		Random r = new Random(7);
+		for (int test = 0; test < 50; test++) {
+			int n = 2 + r.nextInt(7);
+			boolean keepEndPoint = r.nextBoolean();
+			double[][] costs = randomCosts(r, n, r.nextBoolean());
+			TspLocalSearch tsp = new TspLocalSearch().readGraph(costs, keepEndPoint);
+			int[] tour = tsp.solve();
+			assertTour(tour, n, keepEndPoint);
+			Assert.assertEquals(tsp.tourLength(tour), tsp.bestTourLength, EPS);
+			// tour is not shorter than the optimal one
+			Assert.assertTrue(tsp.bestTourLength >= bruteForce(costs, keepEndPoint) - EPS);
+		}
+	}
+
+	@Test
+	public void testSolveOrdersTwoIntermediatesWithoutEnd() throws InterruptedException {
+		// 0 -> 2 -> 1 is shorter than 0 -> 1 -> 2
+		double[][] costs = { { 0, 10, 1 }, { 10, 0, 10 }, { 10, 1, 0 } };
+		TspLocalSearch tsp = new TspLocalSearch().readGraph(costs, false);
+		Assert.assertArrayEquals(new int[] { 0, 2, 1 }, tsp.solve());
+		Assert.assertEquals(2, tsp.bestTourLength, EPS);
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			Assert.assertArrayEquals(new int[] { 0, 2, 1 }, new TspLocalSearch().readGraph(costs, false).solve(pool));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testSolveWithPoolEqualsSequential() throws InterruptedException {
+		Random r = new Random(11);
+		List<LatLon> intermediates = new ArrayList<LatLon>();
+		for (int i = 0; i < 30; i++) {
+			intermediates.add(new LatLon(52 + r.nextDouble(), 4 + r.nextDouble()));
+		}
+		LatLon start = new LatLon(52.5, 4.5);
+		LatLon end = new LatLon(53, 5);
+		TspLocalSearch sequential = new TspLocalSearch().readGraph(intermediates, start, end);
+		int[] tour = sequential.solve();
+		assertTour(tour, intermediates.size() + 2, true);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			TspLocalSearch parallel = new TspLocalSearch().readGraph(intermediates, start, end);
+			Assert.assertArrayEquals(tour, parallel.solve(pool));
+			Assert.assertEquals(sequential.bestTourLength, parallel.bestTourLength, EPS);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private static void assertTour(int[] tour, int n, boolean keepEndPoint) {
+		Assert.assertEquals(n, tour.length);
+		Assert.assertEquals(0, tour[0]);
+		if (keepEndPoint) {
+			Assert.assertEquals(n - 1, tour[n - 1]);
+		}
+		boolean[] visited = new boolean[n];
+		for (int p : tour) {
+			Assert.assertFalse(visited[p]);
+			visited[p] = true;
+		}
+	}
+
+	private static double[][] randomCosts(Random r, int n, boolean symmetric) {
+		double[][] costs = new double[n][n];
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				if (i != j) {
+					costs[i][j] = symmetric && j < i ? costs[j][i] : 1 + r.nextInt(1000);
+				}
+			}
+		}
+		return costs;
+	}
+
+	private static int[] randomTour(Random r, int n, boolean keepEndPoint) {
+		List<Integer> middle = new ArrayList<Integer>();
+		for (int i = 1; i < (keepEndPoint ? n - 1 : n); i++) {
+			middle.add(i);
+		}
+		Collections.shuffle(middle, r);
+		int[] tour = new int[n];
+		for (int i = 0; i < middle.size(); i++) {
+			tour[i + 1] = middle.get(i);
+		}
+		if (keepEndPoint) {
+			tour[n - 1] = n - 1;
+		}
+		return tour;
+	}
+
+	private static double bruteForce(double[][] costs, boolean keepEndPoint) {
+		int n = costs.length;
+		int[] tour = new int[n];
+		boolean[] used = new boolean[n];
+		used[0] = true;
+		if (keepEndPoint && n > 1) {
+			used[n - 1] = true;
+			tour[n - 1] = n - 1;
+		}
+		return bruteForce(costs, tour, used, 1, keepEndPoint ? n - 1 : n);
+	}
+
+	private static double bruteForce(double[][] costs, int[] tour, boolean[] used, int k, int last) {
+		if (k >= last) {
+			double len = 0;
+			for (int i = 0; i < tour.length - 1; i++) {
+				len += costs[tour[i]][tour[i + 1]];
+			}
+			return len;
+		}
+		double best = Double.POSITIVE_INFINITY;
+		for (int p = 0; p < tour.length; p++) {
+			if (!used[p]) {
+				used[p] = true;
+				tour[k] = p;
+				best = Math.min(best, bruteForce(costs, tour, used, k + 1, last));
+				used[p] = false;
+			}
+		}
+		return best;
+	}
+}
@@ -0,0 +1,159 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.osmand.binary.BinaryMapIndexReader.MapObjectStat;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+
+public class BinaryMapIndexReaderTest {
+
+	private static final String TEST_FILE = "src/test/resources/routing/Routing_test_archive.obf";
+
+	private BinaryMapIndexReader reader;
+
+	@Before
+	public void setUp() throws IOException {
+		reader = new BinaryMapIndexReader(new RandomAccessFile(TEST_FILE, "r"), new File(TEST_FILE), true, true);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		reader.close();
+	}
+
+	@Test
+	public void testParallelMapSearchEqualsSequential() throws IOException {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for (int zoom : new int[] { 8, 12, 15 }) {
+				SearchRequest<BinaryMapDataObject> expected = createMapRequest(zoom);
+				reader.searchMapIndex(expected, null);
+				SearchRequest<BinaryMapDataObject> actual = createMapRequest(zoom);
+				reader.searchMapIndex(actual, null, pool);
+				assertObjects(expected.getSearchResults(), actual.getSearchResults());
+				Assert.assertEquals(expected.numberOfVisitedObjects, actual.numberOfVisitedObjects);
+				Assert.assertEquals(expected.numberOfAcceptedObjects, actual.numberOfAcceptedObjects);
+				Assert.assertEquals(expected.numberOfReadSubtrees, actual.numberOfReadSubtrees);
+				Assert.assertEquals(expected.numberOfAcceptedSubtrees, actual.numberOfAcceptedSubtrees);
+				Assert.assertEquals(expected.isOcean(), actual.isOcean());
+				Assert.assertEquals(expected.isLand(), actual.isLand());
+				assertStat(expected.stat, actual.stat);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testConcurrentReaderCopiesEqualSingleReader() throws Exception {
+		final List<RouteSubregion> subregions = new ArrayList<>();
+		for (RouteRegion region : reader.getRoutingIndexes()) {
+			subregions.addAll(reader.searchRouteIndexTree(createMapRequest(15), region.getSubregions()));
+		}
+		Assert.assertFalse(subregions.isEmpty());
+		List<List<RouteDataObject>> expected = new ArrayList<>();
+		for (RouteSubregion s : subregions) {
+			expected.add(reader.loadRouteIndexData(s));
+		}
+
+		final int threads = 4;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			// subregions keep loaded data until it is taken, so each one is read by a single thread
+			List<Future<List<List<RouteDataObject>>>> futures = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				final int thread = t;
+				futures.add(executor.submit(new Callable<List<List<RouteDataObject>>>() {
+					@Override
+					public List<List<RouteDataObject>> call() throws IOException {
+						BinaryMapIndexReader copy = new BinaryMapIndexReader(reader);
+						List<List<RouteDataObject>> res = new ArrayList<>();
+						for (int i = thread; i < subregions.size(); i += threads) {
+							res.add(copy.loadRouteIndexData(subregions.get(i)));
+						}
+						return res;
+					}
+				}));
+			}
+			for (int t = 0; t < threads; t++) {
+				List<List<RouteDataObject>> actual = getResult(futures.get(t));
+				for (int i = t, k = 0; i < subregions.size(); i += threads, k++) {
+					assertRoutes(expected.get(i), actual.get(k));
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static <T> T getResult(Future<T> future) throws Exception {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	private static void assertRoutes(List<RouteDataObject> expected, List<RouteDataObject> actual) {
+		Assert.assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			RouteDataObject e = expected.get(i);
+			RouteDataObject a = actual.get(i);
+			Assert.assertEquals(e.getId(), a.getId());
+			Assert.assertArrayEquals(e.getTypes(), a.getTypes());
+			Assert.assertArrayEquals(e.pointsX, a.pointsX);
+			Assert.assertArrayEquals(e.pointsY, a.pointsY);
+		}
+	}
+
+	private static SearchRequest<BinaryMapDataObject> createMapRequest(int zoom) {
+		return BinaryMapIndexReader.buildSearchRequest(0, Integer.MAX_VALUE, 0, Integer.MAX_VALUE, zoom, null);
+	}
+
+	private static void assertObjects(List<BinaryMapDataObject> expected, List<BinaryMapDataObject> actual) {
+		Assert.assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			BinaryMapDataObject e = expected.get(i);
+			BinaryMapDataObject a = actual.get(i);
+			Assert.assertEquals(e.getId(), a.getId());
+			Assert.assertEquals(e.getPointsLength(), a.getPointsLength());
+			for (int k = 0; k < e.getPointsLength(); k++) {
+				Assert.assertEquals(e.getPoint31XTile(k), a.getPoint31XTile(k));
+				Assert.assertEquals(e.getPoint31YTile(k), a.getPoint31YTile(k));
+			}
+		}
+	}
+
+	private static void assertStat(MapObjectStat expected, MapObjectStat actual) {
+		Assert.assertEquals(expected.lastStringNamesSize, actual.lastStringNamesSize);
+		Assert.assertEquals(expected.lastObjectIdSize, actual.lastObjectIdSize);
+		Assert.assertEquals(expected.lastObjectHeaderInfo, actual.lastObjectHeaderInfo);
+		Assert.assertEquals(expected.lastObjectAdditionalTypes, actual.lastObjectAdditionalTypes);
+		Assert.assertEquals(expected.lastObjectTypes, actual.lastObjectTypes);
+		Assert.assertEquals(expected.lastObjectCoordinates, actual.lastObjectCoordinates);
+		Assert.assertEquals(expected.lastObjectLabelCoordinates, actual.lastObjectLabelCoordinates);
+		Assert.assertEquals(expected.lastObjectSize, actual.lastObjectSize);
+		Assert.assertEquals(expected.lastBlockStringTableSize, actual.lastBlockStringTableSize);
+		Assert.assertEquals(expected.lastBlockHeaderInfo, actual.lastBlockHeaderInfo);
+	}
+}
@@ -0,0 +1,183 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import gnu.trove.list.array.TIntArrayList;
+import net.osmand.Collator;
+import net.osmand.OsmAndCollator;
+import net.osmand.binary.NameIndexCache.NameIndexTable;
+import net.osmand.binary.NameIndexCache.NameIndexTableBuilder;
+
+public class NameIndexCacheTest {
+
+	private static final String[] PARTS = { "a", "b", "s", "st", "ä", "Ä", "é", "e", "ss", "ß", "-", " ", "o", "ö",
+			"и", "й", "ё", "е", "東", "1", "ł", "l" };
+
+	private File dir;
+
+	@Before
+	public void setUp() throws IOException {
+		dir = File.createTempFile("names", "");
+		dir.delete();
+		dir.mkdirs();
+	}
+
+	@After
+	public void tearDown() {
+		for (File f : dir.listFiles()) {
+			f.delete();
+		}
+		dir.delete();
+	}
+
+	@Test
+	public void testIndexedSearchEqualsSearchByCollator() {
+		Locale def = Locale.getDefault();
+		try {
+			for (Locale l : new Locale[] { Locale.US, Locale.GERMANY, new Locale("ru"), new Locale("da") }) {
+				Locale.setDefault(l);
+				Collator folded = OsmAndCollator.primaryCollator();
+				java.text.Collator c = java.text.Collator.getInstance();
+				c.setStrength(java.text.Collator.PRIMARY);
+				Collator plain = OsmAndCollator.wrapCollator(c);
+				Random r = new Random(3);
+				for (int test = 0; test < 30; test++) {
+					NameIndexTable table = createTable(r);
+					List<String> queries = new ArrayList<String>();
+					for (int i = 0; i < 4; i++) {
+						queries.add(i == 0 ? null : randomString(r, 1 + r.nextInt(4)));
+					}
+					Assert.assertEquals(l + " " + queries, search(table, plain, queries), search(table, folded, queries));
+				}
+			}
+		} finally {
+			Locale.setDefault(def);
+		}
+	}
+
+	@Test
+	public void testTablesAreReadFromFile() throws IOException {
+		File obf = createObf("hit.obf");
+		NameIndexCache cache = new NameIndexCache(dir, obf);
+		NameIndexTable table = createTable(new Random(1));
+		Assert.assertNull(cache.getTable(10));
+		cache.putTable(10, table);
+		Assert.assertSame(table, cache.getTable(10));
+		cache.flush();
+
+		NameIndexCache read = new NameIndexCache(dir, obf);
+		assertTable(table, read.getTable(10));
+		Assert.assertNull(read.getTable(11));
+	}
+
+	@Test
+	public void testCacheIsIgnoredForChangedObf() throws IOException {
+		File obf = createObf("changed.obf");
+		NameIndexCache cache = new NameIndexCache(dir, obf);
+		cache.putTable(10, createTable(new Random(1)));
+		cache.flush();
+		Assert.assertNotNull(new NameIndexCache(dir, obf).getTable(10));
+
+		Assert.assertTrue(obf.setLastModified(obf.lastModified() - 10000));
+		Assert.assertNull(new NameIndexCache(dir, obf).getTable(10));
+
+		cache = new NameIndexCache(dir, obf);
+		cache.putTable(10, createTable(new Random(1)));
+		cache.flush();
+		FileOutputStream out = new FileOutputStream(obf, true);
+		out.write(new byte[] { 4, 5 });
+		out.close();
+		Assert.assertNull(new NameIndexCache(dir, obf).getTable(10));
+	}
+
+	@Test
+	public void testLeastRecentlyUsedFilesAreReleased() throws Exception {
+		NameIndexTable table = createTable(new Random(1));
+		List<NameIndexCache> caches = new ArrayList<NameIndexCache>();
+		for (int i = 0; i <= NameIndexCache.MAX_LOADED_FILES; i++) {
+			NameIndexCache cache = new NameIndexCache(dir, createObf("lru" + i + ".obf"));
+			cache.putTable(10, table);
+			caches.add(cache);
+		}
+		NameIndexCache first = caches.get(0);
+		// released in background after write
+		for (int i = 0; i < 100 && first.isLoaded(); i++) {
+			Thread.sleep(50);
+		}
+		Assert.assertFalse(first.isLoaded());
+		Assert.assertTrue(caches.get(caches.size() - 1).isLoaded());
+		assertTable(table, first.getTable(10));
+	}
+
+	private File createObf(String name) throws IOException {
+		File f = new File(dir, name);
+		FileOutputStream out = new FileOutputStream(f);
+		out.write(new byte[] { 1, 2, 3 });
+		out.close();
+		return f;
+	}
+
+	private static List<TIntArrayList> search(NameIndexTable table, Collator collator, List<String> queries) {
+		List<TIntArrayList> offsets = new ArrayList<TIntArrayList>();
+		TIntArrayList matched = new TIntArrayList();
+		for (int i = 0; i < queries.size(); i++) {
+			offsets.add(new TIntArrayList());
+			matched.add(0);
+		}
+		table.search(collator, queries, offsets, matched);
+		return offsets;
+	}
+
+	private static void assertTable(NameIndexTable expected, NameIndexTable actual) {
+		Assert.assertNotNull(actual);
+		Assert.assertArrayEquals(expected.keys, actual.keys);
+		Assert.assertArrayEquals(expected.subtreeEnd, actual.subtreeEnd);
+		Assert.assertArrayEquals(expected.valStart, actual.valStart);
+		Assert.assertArrayEquals(expected.vals, actual.vals);
+	}
+
+	// prefix tree with big root level and small sub levels as in obf
+	private static NameIndexTable createTable(Random r) {
+		NameIndexTableBuilder builder = new NameIndexTableBuilder();
+		addKeys(builder, r, "", 40 + r.nextInt(40), 0);
+		return builder.build();
+	}
+
+	private static void addKeys(NameIndexTableBuilder builder, Random r, String prefix, int count, int depth) {
+		List<String> added = new ArrayList<String>();
+		for (int i = 0; i < count; i++) {
+			String key = prefix + randomString(r, 1 + r.nextInt(3));
+			if (added.contains(key)) {
+				continue;
+			}
+			added.add(key);
+			int entry = builder.addKey(key);
+			for (int v = r.nextInt(3); v >= 0; v--) {
+				builder.addValue(r.nextInt(100000));
+			}
+			if (depth < 2 && r.nextInt(3) == 0) {
+				addKeys(builder, r, key, 2 + r.nextInt(depth == 0 ? 12 : 4), depth + 1);
+				builder.endSubtree(entry);
+			}
+		}
+	}
+
+	private static String randomString(Random r, int parts) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < parts; i++) {
+			sb.append(PARTS[r.nextInt(PARTS.length)]);
+		}
+		return sb.toString();
+	}
+}
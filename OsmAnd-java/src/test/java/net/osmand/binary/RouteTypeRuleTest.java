@@ -0,0 +1,40 @@
+package net.osmand.binary;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteTypeRule;
+
+public class RouteTypeRuleTest {
+
+	@Test
+	public void testConditionsUseCurrentDefaultTimeZone() {
+		RouteRegion region = new RouteRegion();
+		region.initRouteEncodingRule(0, "highway", "primary");
+		region.initRouteEncodingRule(1, "maxspeed:conditional", "30 @ (Mo-Fr 07:00-09:00)");
+		region.completeRouteEncodingRules();
+		RouteTypeRule rule = region.quickGetEncodingRule(1);
+		int maxspeed = region.findOrCreateRouteType("maxspeed", "30");
+
+		TimeZone def = TimeZone.getDefault();
+		try {
+			// Monday 08:00 in UTC+3 is Monday 05:00 UTC
+			TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+			Calendar c = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+			c.clear();
+			c.set(2024, Calendar.JANUARY, 1, 5, 0);
+			long time = c.getTimeInMillis();
+			Assert.assertEquals(0, rule.conditionalValue(time));
+			TimeZone.setDefault(TimeZone.getTimeZone("GMT+03:00"));
+			Assert.assertEquals(maxspeed, rule.conditionalValue(time));
+			TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+			Assert.assertEquals(0, rule.conditionalValue(time));
+		} finally {
+			TimeZone.setDefault(def);
+		}
+	}
+}
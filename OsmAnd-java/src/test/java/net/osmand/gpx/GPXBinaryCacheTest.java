@@ -0,0 +1,210 @@
+package net.osmand.gpx;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xmlpull.v1.XmlSerializer;
+
+import net.osmand.gpx.GPXUtilities.Route;
+import net.osmand.gpx.GPXUtilities.Track;
+import net.osmand.gpx.GPXUtilities.TrkSegment;
+import net.osmand.gpx.GPXUtilities.WptPt;
+
+public class GPXBinaryCacheTest {
+
+	private static final String GPX = "<?xml version='1.0' encoding='UTF-8'?>\n"
+			+ "<gpx version=\"1.1\" creator=\"test\" xmlns:osmand=\"https://osmand.net\">\n"
+			+ "<metadata><name>meta</name><desc>meta desc</desc><time>2020-05-14T10:00:00Z</time>"
+			+ "<author><name>author</name></author></metadata>\n"
+			+ "<wpt lat=\"52.1\" lon=\"4.1\"><ele>1.5</ele><time>2020-05-14T10:23:05Z</time><name>first</name>"
+			+ "<desc>desc</desc><type>group</type><extensions><osmand:color>#ff0000</osmand:color>"
+			+ "<osmand:icon>star</osmand:icon></extensions></wpt>\n"
+			+ "<wpt lat=\"52.2\" lon=\"4.2\"><name>second</name><cmt>comment</cmt><link href=\"https://osmand.net\"/></wpt>\n"
+			+ "<trk><name>track</name><desc>track desc</desc><extensions><osmand:width>bold</osmand:width></extensions>\n"
+			+ " <trkseg>\n"
+			+ "  <trkpt lat=\"52.123456789\" lon=\"4.987654321\"><ele>10.25</ele><time>2020-05-14T10:23:05.120Z</time>"
+			+ "<hdop>1.5</hdop><extensions><speed>3.5</speed><hr>80</hr></extensions></trkpt>\n"
+			+ "  <trkpt lat=\"52.2\" lon=\"4.9\"><time>2020-05-14T10:23:06Z</time></trkpt>\n"
+			+ "  <trkpt lat=\"-52.3\" lon=\"-179.9\"><ele>-3</ele></trkpt>\n"
+			+ " </trkseg>\n"
+			+ " <trkseg><name>second segment</name><trkpt lat=\"53\" lon=\"5\"/></trkseg>\n"
+			+ "</trk>\n"
+			+ "<trk><name>empty</name></trk>\n"
+			+ "<rte><name>route</name><desc>route desc</desc>\n"
+			+ " <rtept lat=\"12.1\" lon=\"22.1\"><name>rtept</name><extensions><osmand:profile>car</osmand:profile>"
+			+ "</extensions></rtept>\n"
+			+ " <rtept lat=\"12.5\" lon=\"22.5\"/>\n"
+			+ "</rte>\n"
+			+ "<extensions><osmand:show_arrows>true</osmand:show_arrows></extensions>\n"
+			+ "</gpx>";
+
+	private boolean binaryCache;
+	private long binaryCacheMinSize;
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		binaryCache = GPXUtilities.GPX_BINARY_CACHE;
+		binaryCacheMinSize = GPXUtilities.GPX_BINARY_CACHE_MIN_SIZE;
+		GPXUtilities.GPX_BINARY_CACHE = true;
+		GPXUtilities.GPX_BINARY_CACHE_MIN_SIZE = 0;
+		file = File.createTempFile("cache", ".gpx");
+		writeGpx(GPX);
+	}
+
+	@After
+	public void tearDown() {
+		GPXUtilities.GPX_BINARY_CACHE = binaryCache;
+		GPXUtilities.GPX_BINARY_CACHE_MIN_SIZE = binaryCacheMinSize;
+		GPXBinaryCache.delete(file);
+		file.delete();
+	}
+
+	@Test
+	public void testCachedFileEqualsLoadedFile() throws IOException {
+		GPXFile expected = GPXUtilities.loadGPXFile(new ByteArrayInputStream(GPX.getBytes("UTF-8")));
+		Assert.assertNull(expected.error);
+		GPXFile parsed = GPXUtilities.loadGPXFile(file);
+		Assert.assertTrue(GPXBinaryCache.getCacheFile(file).exists());
+		GPXFile cached = GPXBinaryCache.read(file);
+		Assert.assertNotNull(cached);
+		GPXFile loaded = GPXUtilities.loadGPXFile(file);
+		for (GPXFile actual : new GPXFile[] { parsed, loaded }) {
+			Assert.assertNull(actual.error);
+			assertGpx(expected, actual);
+			Assert.assertEquals(file.getAbsolutePath(), actual.path);
+			Assert.assertEquals(file.lastModified(), actual.modifiedTime);
+		}
+		// cache is stored without general track
+		Assert.assertEquals(expected.tracks.size() - 1, cached.tracks.size());
+		Assert.assertEquals(GPXUtilities.asString(expected), GPXUtilities.asString(cached));
+	}
+
+	@Test
+	public void testCacheOfChangedFileIsIgnored() throws IOException {
+		GPXUtilities.loadGPXFile(file);
+		Assert.assertNotNull(GPXBinaryCache.read(file));
+
+		// same size, other time
+		Assert.assertTrue(file.setLastModified(file.lastModified() - 10000));
+		Assert.assertNull(GPXBinaryCache.read(file));
+
+		GPXUtilities.loadGPXFile(file);
+		Assert.assertNotNull(GPXBinaryCache.read(file));
+		long lastModified = file.lastModified();
+		String changed = GPX.replace("<name>track</name>", "<name>changed track</name>");
+		writeGpx(changed);
+		Assert.assertTrue(file.setLastModified(lastModified));
+		Assert.assertNull(GPXBinaryCache.read(file));
+		Assert.assertEquals("changed track", getFirstTrackName(GPXUtilities.loadGPXFile(file)));
+
+		// cache is written with size and time of file before it was parsed
+		GPXFile gpxFile = GPXUtilities.loadGPXFile(new ByteArrayInputStream(GPX.getBytes("UTF-8")));
+		GPXBinaryCache.write(file, gpxFile, file.length() + 1, file.lastModified());
+		Assert.assertNull(GPXBinaryCache.read(file));
+		GPXBinaryCache.write(file, gpxFile, file.length(), file.lastModified() - 1000);
+		Assert.assertNull(GPXBinaryCache.read(file));
+		Assert.assertEquals("changed track", getFirstTrackName(GPXUtilities.loadGPXFile(file)));
+	}
+
+	@Test
+	public void testSavedFileIsCached() throws IOException {
+		GPXFile gpxFile = GPXUtilities.loadGPXFile(new ByteArrayInputStream(GPX.getBytes("UTF-8")));
+		GPXBinaryCache.delete(file);
+		Assert.assertNull(GPXUtilities.writeGpxFile(file, gpxFile));
+		GPXFile cached = GPXBinaryCache.read(file);
+		Assert.assertNotNull(cached);
+		Assert.assertEquals(GPXUtilities.asString(gpxFile), GPXUtilities.asString(cached));
+
+		// extensions of custom writer are not in cache
+		gpxFile.getPoints().get(0).setExtensionsWriter(new GPXUtilities.GPXExtensionsWriter() {
+			@Override
+			public void writeExtensions(XmlSerializer serializer) {
+			}
+		});
+		Assert.assertNull(GPXUtilities.writeGpxFile(file, gpxFile));
+		Assert.assertFalse(GPXBinaryCache.getCacheFile(file).exists());
+	}
+
+	private static String getFirstTrackName(GPXFile gpxFile) {
+		for (Track t : gpxFile.tracks) {
+			if (!t.generalTrack) {
+				return t.name;
+			}
+		}
+		return null;
+	}
+
+	private void writeGpx(String gpx) throws IOException {
+		Writer w = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		w.write(gpx);
+		w.close();
+	}
+
+	private static void assertGpx(GPXFile expected, GPXFile actual) {
+		Assert.assertEquals(expected.author, actual.author);
+		Assert.assertEquals(expected.metadata.name, actual.metadata.name);
+		Assert.assertEquals(expected.metadata.desc, actual.metadata.desc);
+		Assert.assertEquals(expected.metadata.time, actual.metadata.time);
+		Assert.assertEquals(expected.getExtensionsToRead(), actual.getExtensionsToRead());
+		assertPoints(expected.getPoints(), actual.getPoints());
+		Assert.assertEquals(expected.getPointsGroups().keySet(), actual.getPointsGroups().keySet());
+
+		Assert.assertEquals(expected.tracks.size(), actual.tracks.size());
+		for (int t = 0; t < expected.tracks.size(); t++) {
+			Track e = expected.tracks.get(t);
+			Track a = actual.tracks.get(t);
+			Assert.assertEquals(e.name, a.name);
+			Assert.assertEquals(e.desc, a.desc);
+			Assert.assertEquals(e.generalTrack, a.generalTrack);
+			Assert.assertEquals(e.getExtensionsToRead(), a.getExtensionsToRead());
+			Assert.assertEquals(e.segments.size(), a.segments.size());
+			for (int s = 0; s < e.segments.size(); s++) {
+				TrkSegment es = e.segments.get(s);
+				TrkSegment as = a.segments.get(s);
+				Assert.assertEquals(es.name, as.name);
+				Assert.assertEquals(es.generalSegment, as.generalSegment);
+				assertPoints(es.points, as.points);
+			}
+		}
+		Assert.assertEquals(expected.routes.size(), actual.routes.size());
+		for (int r = 0; r < expected.routes.size(); r++) {
+			Route e = expected.routes.get(r);
+			Route a = actual.routes.get(r);
+			Assert.assertEquals(e.name, a.name);
+			Assert.assertEquals(e.desc, a.desc);
+			assertPoints(e.points, a.points);
+		}
+	}
+
+	private static void assertPoints(List<WptPt> expected, List<WptPt> actual) {
+		Assert.assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			WptPt e = expected.get(i);
+			WptPt a = actual.get(i);
+			Assert.assertEquals(e.lat, a.lat, 1e-7);
+			Assert.assertEquals(e.lon, a.lon, 1e-7);
+			Assert.assertEquals(e.ele, a.ele, 1e-6);
+			Assert.assertEquals(e.time, a.time);
+			Assert.assertEquals(e.speed, a.speed, 1e-6);
+			Assert.assertEquals(e.hdop, a.hdop, 1e-6);
+			Assert.assertEquals(e.name, a.name);
+			Assert.assertEquals(e.desc, a.desc);
+			Assert.assertEquals(e.comment, a.comment);
+			Assert.assertEquals(e.link, a.link);
+			Assert.assertEquals(e.category, a.category);
+			Assert.assertEquals(e.firstPoint, a.firstPoint);
+			Assert.assertEquals(e.lastPoint, a.lastPoint);
+			Assert.assertEquals(e.getExtensionsToRead(), a.getExtensionsToRead());
+		}
+	}
+}
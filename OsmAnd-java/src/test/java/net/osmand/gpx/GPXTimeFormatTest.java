@@ -0,0 +1,91 @@
+package net.osmand.gpx;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class GPXTimeFormatTest {
+
+	private static final String[] TIMES = { "2020-05-14T10:23:05Z", "2020-05-14T10:23:05.120Z",
+			"2020-05-14T10:23:05+02:00", "2020-05-14T10:23:05.999-05:30", "1970-01-01T00:00:00Z",
+			"1969-12-31T23:59:59.001Z", "2000-02-29T12:00:00Z", "1900-03-01T00:00:00Z", "2100-02-28T23:59:59Z",
+			"2020-05-14T10:23:05", "2020-05-14T00:00:00+14:00" };
+
+	private static final String[] NOT_STRICT = { null, "", "2020-05-14", "2020-05-14 10:23:05Z", "2020-02-30T10:00:00Z",
+			"2020-05-14T10:23:05.1Z", "2020-05-14T10:23:05.123456Z", "2020-05-14T10:23:05.120", "2020-05-14T10:23:60Z",
+			"2020-05-14T10:23:05+0200", "2020-05-14T10:23:05Z trailing", "1800-01-01T00:00:00Z", "abcd-05-14T10:23:05Z" };
+
+	@Test
+	public void testParseIsSameAsDateFormat() {
+		for (String t : TIMES) {
+			Assert.assertEquals(t, parseByDateFormat(t), GPXTimeFormat.parse(t));
+		}
+		Random r = new Random(0);
+		for (int i = 0; i < 10000; i++) {
+			long time = (long) ((r.nextDouble() * 2 - 0.5) * 4e12);
+			String offset = r.nextBoolean() ? "Z" : String.format(Locale.US, "%s%02d:%02d",
+					r.nextBoolean() ? "+" : "-", r.nextInt(14), r.nextInt(4) * 15);
+			String t = getFormat("yyyy-MM-dd'T'HH:mm:ss.SSS").format(new Date(time)) + offset;
+			Assert.assertEquals(t, parseByDateFormat(t), GPXTimeFormat.parse(t));
+		}
+	}
+
+	@Test
+	public void testNotStrictTimesAreLeftToDateFormat() {
+		for (String t : NOT_STRICT) {
+			Assert.assertEquals(String.valueOf(t), GPXTimeFormat.NOT_PARSED, GPXTimeFormat.parse(t));
+		}
+		Assert.assertEquals(parseByDateFormat("2020-05-14T10:23:05.1Z"), GPXUtilities.parseTime("2020-05-14T10:23:05.1Z"));
+		Assert.assertEquals(0, GPXUtilities.parseTime("abcd-05-14T10:23:05Z"));
+	}
+
+	@Test
+	public void testFormatIsSameAsDateFormat() {
+		SimpleDateFormat format = getFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+		SimpleDateFormat formatMillis = getFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+		Random r = new Random(1);
+		for (int i = 0; i < 10000; i++) {
+			long time = (long) ((r.nextDouble() * 2 - 0.5) * 4e12);
+			Date date = new Date(time);
+			Assert.assertEquals(format.format(date), GPXTimeFormat.format(time, false));
+			Assert.assertEquals(formatMillis.format(date), GPXTimeFormat.format(time, true));
+			Assert.assertEquals(format.format(date), GPXUtilities.formatTime(time));
+		}
+		Assert.assertNull(GPXTimeFormat.format((long) -3e12, false));
+	}
+
+	@Test
+	public void testOldFormatIgnoresOffset() {
+		boolean oldFormat = GPXUtilities.GPX_TIME_OLD_FORMAT;
+		GPXUtilities.GPX_TIME_OLD_FORMAT = true;
+		try {
+			for (String t : TIMES) {
+				Assert.assertEquals(t, GPXUtilities.parseTime(t, getFormat("yyyy-MM-dd'T'HH:mm:ss'Z'"),
+						getFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'")), GPXUtilities.parseTime(t));
+			}
+			long utc = GPXTimeFormat.parse("2020-05-14T10:23:05Z");
+			Assert.assertEquals(utc, GPXUtilities.parseTime("2020-05-14T10:23:05+02:00"));
+			Assert.assertEquals(utc, GPXUtilities.parseTime("2020-05-14T10:23:05.999-05:30"));
+			Assert.assertEquals(utc + 120, GPXUtilities.parseTime("2020-05-14T10:23:05.120Z"));
+		} finally {
+			GPXUtilities.GPX_TIME_OLD_FORMAT = oldFormat;
+		}
+		Assert.assertEquals(GPXTimeFormat.parse("2020-05-14T08:23:05Z"), GPXUtilities.parseTime("2020-05-14T10:23:05+02:00"));
+	}
+
+	private static long parseByDateFormat(String text) {
+		return GPXUtilities.parseTime(text, getFormat("yyyy-MM-dd'T'HH:mm:ssXXX"),
+				getFormat("yyyy-MM-dd'T'HH:mm:ss.SSSXXX"));
+	}
+
+	private static SimpleDateFormat getFormat(String pattern) {
+		SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.US);
+		format.setTimeZone(TimeZone.getTimeZone("UTC"));
+		return format;
+	}
+}
@@ -0,0 +1,146 @@
+package net.osmand.gpx;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.osmand.gpx.GPXTrackPointsReader.TrackPointsChunk;
+import net.osmand.gpx.GPXTrackPointsReader.TrackPointsListener;
+import net.osmand.gpx.GPXUtilities.Track;
+import net.osmand.gpx.GPXUtilities.TrkSegment;
+import net.osmand.gpx.GPXUtilities.WptPt;
+
+public class GPXTrackPointsReaderTest {
+
+	private static final String GPX = "<?xml version='1.0' encoding='UTF-8'?>\n"
+			+ "<gpx version=\"1.1\" creator=\"test\">\n"
+			+ "<wpt lat=\"1\" lon=\"1\"><name>wpt</name></wpt>\n"
+			+ "<trk><name>first</name>\n"
+			+ " <trkpt lat=\"10.1\" lon=\"20.1\"><ele>5.5</ele></trkpt>\n"
+			+ " <trkseg>\n"
+			+ "  <trkpt lat=\"10.2\" lon=\"20.2\"><ele>6</ele><time>2020-05-14T10:23:05Z</time><hdop>1.5</hdop></trkpt>\n"
+			+ "  <trkpt lat=\"10.3\" lon=\"20.3\"><time>2020-05-14T10:23:06.500Z</time>"
+			+ "<extensions><speed>3.5</speed><hr>80</hr></extensions></trkpt>\n"
+			+ "  <rpt lat=\"10.4\" lon=\"20.4\"><ele>7</ele></rpt>\n"
+			+ " </trkseg>\n"
+			+ " <trkpt lat=\"10.5\" lon=\"20.5\"><speed>2</speed></trkpt>\n"
+			+ " <rpt lat=\"10.6\" lon=\"20.6\"/>\n"
+			+ " <trkseg><csvattributes>30.1,40.1,100\n30.2,40.2,101\nbad,40.3,102\n30.4,40.4,bad</csvattributes></trkseg>\n"
+			+ " <trkseg><csvattributes>30.5,40.5\n30.6,40.6</csvattributes></trkseg>\n"
+			+ " <trkseg><csvattributes>30.7,40.7,10</csvattributes></trkseg>\n"
+			+ " <trkseg></trkseg>\n"
+			+ "</trk>\n"
+			+ "<trk><name>second</name>\n"
+			+ " <trkseg>\n"
+			+ "  <trkpt lat=\"11.1\" lon=\"21.1\"/><trkpt lat=\"11.2\" lon=\"21.2\"/><trkpt lat=\"11.3\" lon=\"21.3\"/>\n"
+			+ "  <trkpt lat=\"11.4\" lon=\"21.4\"/><trkpt lat=\"11.5\" lon=\"21.5\"/>\n"
+			+ " </trkseg>\n"
+			+ "</trk>\n"
+			+ "<rte><name>route</name>\n"
+			+ " <rtept lat=\"12.1\" lon=\"22.1\"><extensions><RoutePointExtension>\n"
+			+ "  <rpt lat=\"12.2\" lon=\"22.2\"/><rpt lat=\"12.3\" lon=\"22.3\"/><rpt lat=\"12.4\" lon=\"22.4\"/>\n"
+			+ " </RoutePointExtension></extensions></rtept>\n"
+			+ " <rtept lat=\"12.5\" lon=\"22.5\"/>\n"
+			+ "</rte>\n"
+			+ "<trk><name>empty</name></trk>\n"
+			+ "</gpx>";
+
+	@Test
+	public void testStreamedPointsEqualLoadedGpx() throws IOException {
+		GPXFile gpx = GPXUtilities.loadGPXFile(stream(), null, false);
+		Assert.assertNull(gpx.error);
+		// points outside trkseg are in the last segment, route points extension is the last track
+		Assert.assertEquals(4, gpx.tracks.size());
+		Assert.assertEquals(6, gpx.tracks.get(0).segments.size());
+		Assert.assertEquals(5, gpx.tracks.get(0).segments.get(1).points.size());
+		Assert.assertEquals(3, gpx.tracks.get(0).segments.get(2).points.size());
+		Assert.assertEquals(3, gpx.tracks.get(3).segments.get(0).points.size());
+		for (int chunkSize : new int[] { 1, 2, 3, GPXTrackPointsReader.DEFAULT_CHUNK_SIZE }) {
+			PointsCollector collector = new PointsCollector();
+			int read = new GPXTrackPointsReader(chunkSize).read(stream(), collector);
+			Assert.assertEquals(-1, collector.trackIndex);
+
+			int expectedPoints = 0;
+			List<List<TrkSegment>> expected = new ArrayList<List<TrkSegment>>();
+			for (Track t : gpx.tracks) {
+				expected.add(t.segments);
+				for (TrkSegment s : t.segments) {
+					expectedPoints += s.points.size();
+				}
+			}
+			Assert.assertEquals(expectedPoints, read);
+			Assert.assertEquals(expected.size(), collector.tracks.size());
+			for (int t = 0; t < collector.tracks.size(); t++) {
+				List<List<WptPt>> segments = collector.tracks.get(t);
+				Assert.assertEquals(expected.get(t).size(), segments.size());
+				for (int s = 0; s < segments.size(); s++) {
+					assertPoints(expected.get(t).get(s).points, segments.get(s));
+				}
+			}
+		}
+	}
+
+	private static void assertPoints(List<WptPt> expected, List<WptPt> actual) {
+		Assert.assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			WptPt e = expected.get(i);
+			WptPt a = actual.get(i);
+			Assert.assertEquals(e.lat, a.lat, 0);
+			Assert.assertEquals(e.lon, a.lon, 0);
+			Assert.assertEquals(e.ele, a.ele, 0);
+			Assert.assertEquals(e.time, a.time);
+			Assert.assertEquals(e.speed, a.speed, 0);
+			Assert.assertEquals(e.hdop, a.hdop, 0);
+		}
+	}
+
+	private static InputStream stream() {
+		return new ByteArrayInputStream(GPX.getBytes());
+	}
+
+	private static class PointsCollector implements TrackPointsListener {
+
+		private final List<List<List<WptPt>>> tracks = new ArrayList<List<List<WptPt>>>();
+		private int trackIndex = -1;
+		private int segmentIndex = -1;
+
+		@Override
+		public void segmentStarted(int trackIndex, int segmentIndex) {
+			Assert.assertEquals(-1, this.trackIndex);
+			while (tracks.size() <= trackIndex) {
+				tracks.add(new ArrayList<List<WptPt>>());
+			}
+			List<List<WptPt>> segments = tracks.get(trackIndex);
+			Assert.assertEquals(segments.size(), segmentIndex);
+			segments.add(new ArrayList<WptPt>());
+			this.trackIndex = trackIndex;
+			this.segmentIndex = segmentIndex;
+		}
+
+		@Override
+		public void pointsRead(TrackPointsChunk chunk) {
+			Assert.assertEquals(trackIndex, chunk.trackIndex);
+			Assert.assertEquals(segmentIndex, chunk.segmentIndex);
+			List<WptPt> points = tracks.get(trackIndex).get(segmentIndex);
+			Assert.assertEquals(points.size(), chunk.startIndex);
+			Assert.assertTrue(chunk.size > 0);
+			for (int i = 0; i < chunk.size; i++) {
+				points.add(new WptPt(chunk.lat[i], chunk.lon[i], chunk.time[i], chunk.ele[i], chunk.speed[i],
+						chunk.hdop[i]));
+			}
+		}
+
+		@Override
+		public void segmentFinished(int trackIndex, int segmentIndex) {
+			Assert.assertEquals(this.trackIndex, trackIndex);
+			Assert.assertEquals(this.segmentIndex, segmentIndex);
+			this.trackIndex = -1;
+			this.segmentIndex = -1;
+		}
+	}
+}
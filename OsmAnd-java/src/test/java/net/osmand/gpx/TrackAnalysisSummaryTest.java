@@ -0,0 +1,169 @@
+package net.osmand.gpx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.osmand.gpx.GPXUtilities.TrkSegment;
+import net.osmand.gpx.GPXUtilities.WptPt;
+
+public class TrackAnalysisSummaryTest {
+
+	@Test
+	public void testMergedChunksEqualSequentialAnalysis() throws InterruptedException {
+		for (int seed = 0; seed < 30; seed++) {
+			Random r = new Random(seed);
+			// segments without speed, with speed after some points and with speed from the start
+			int[] speedFrom = { -1, 1 + r.nextInt(40), 0, -1 };
+			List<TrkSegment> segments = createSegments(new Random(seed), speedFrom);
+			GPXTrackAnalysis expected = prepareSequential(segments);
+
+			// chunk boundaries are inside of segment and inside of points without speed
+			List<TrackAnalysisSummary> summaries = new ArrayList<>();
+			for (TrkSegment segment : createSegments(new Random(seed), speedFrom)) {
+				int size = segment.points.size();
+				TrackAnalysisSummary summary = new TrackAnalysisSummary();
+				for (int from = 0; from < size; ) {
+					int to = Math.min(size, from + 1 + r.nextInt(15));
+					summary.add(TrackAnalysisSummary.of(segment, from, to));
+					from = to;
+				}
+				summaries.add(summary);
+			}
+			List<TrkSegment> merged = createSegments(new Random(seed), speedFrom);
+			GPXTrackAnalysis actual = new GPXTrackAnalysis().prepareInformation(0, merged, summaries, null);
+			assertAnalysis(expected, actual);
+			assertDistances(segments, merged);
+		}
+	}
+
+	@Test
+	public void testAppendedPointsEqualSequentialAnalysis() throws InterruptedException {
+		int[] speedFrom = { 5, -1 };
+		List<TrkSegment> segments = createSegments(new Random(1), speedFrom);
+		List<TrackAnalysisSummary> summaries = new ArrayList<>();
+		for (TrkSegment segment : segments) {
+			TrackAnalysisSummary summary = new TrackAnalysisSummary();
+			int half = segment.points.size() / 2;
+			summary.append(segment, 0, half);
+			summary.append(segment, half, segment.points.size());
+			summaries.add(summary);
+		}
+		GPXTrackAnalysis actual = new GPXTrackAnalysis().prepareInformation(0, segments, summaries, null);
+		assertAnalysis(prepareSequential(createSegments(new Random(1), speedFrom)), actual);
+	}
+
+	@Test
+	public void testParallelChunksEqualSequentialAnalysis() throws InterruptedException {
+		int[] speedFrom = { -1, TrackAnalysisSummary.CHUNK_SIZE + 10, 3 };
+		List<TrkSegment> segments = createSegments(new Random(2), speedFrom, TrackAnalysisSummary.CHUNK_SIZE * 2 + 100);
+		GPXTrackAnalysis expected = prepareSequential(segments);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			assertAnalysis(expected, GPXTrackAnalysis.prepareInformation(0, segments, pool));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private static GPXTrackAnalysis prepareSequential(List<TrkSegment> segments) {
+		SplitSegment[] splitSegments = new SplitSegment[segments.size()];
+		for (int i = 0; i < segments.size(); i++) {
+			splitSegments[i] = new SplitSegment(segments.get(i));
+		}
+		return new GPXTrackAnalysis().prepareInformation(0, null, splitSegments);
+	}
+
+	private static void assertAnalysis(GPXTrackAnalysis expected, GPXTrackAnalysis actual) {
+		Assert.assertEquals(expected.points, actual.points);
+		assertFloat(expected.totalDistance, actual.totalDistance);
+		assertFloat(expected.totalDistanceMoving, actual.totalDistanceMoving);
+		Assert.assertEquals(expected.startTime, actual.startTime);
+		Assert.assertEquals(expected.endTime, actual.endTime);
+		Assert.assertEquals(expected.timeSpan, actual.timeSpan);
+		Assert.assertEquals(expected.timeMoving, actual.timeMoving);
+		Assert.assertEquals(expected.diffElevationUp, actual.diffElevationUp, 1e-6);
+		Assert.assertEquals(expected.diffElevationDown, actual.diffElevationDown, 1e-6);
+		Assert.assertEquals(expected.avgElevation, actual.avgElevation, 1e-3);
+		Assert.assertEquals(expected.minElevation, actual.minElevation, 0);
+		Assert.assertEquals(expected.maxElevation, actual.maxElevation, 0);
+		assertFloat(expected.minSpeed, actual.minSpeed);
+		assertFloat(expected.maxSpeed, actual.maxSpeed);
+		assertFloat(expected.avgSpeed, actual.avgSpeed);
+		Assert.assertEquals(expected.hasSpeedInTrack, actual.hasSpeedInTrack);
+		Assert.assertEquals(expected.minHdop, actual.minHdop, 0);
+		Assert.assertEquals(expected.maxHdop, actual.maxHdop, 0);
+		Assert.assertEquals(expected.left, actual.left, 0);
+		Assert.assertEquals(expected.right, actual.right, 0);
+		Assert.assertEquals(expected.top, actual.top, 0);
+		Assert.assertEquals(expected.bottom, actual.bottom, 0);
+		Assert.assertEquals(expected.availableAttributes, actual.availableAttributes);
+		Assert.assertEquals(expected.pointAttributes.size(), actual.pointAttributes.size());
+		for (int i = 0; i < expected.pointAttributes.size(); i++) {
+			PointAttributes e = expected.pointAttributes.get(i);
+			PointAttributes a = actual.pointAttributes.get(i);
+			Assert.assertEquals(e.distance, a.distance, 0);
+			Assert.assertEquals(e.timeDiff, a.timeDiff, 0);
+			Assert.assertEquals(e.speed, a.speed, 0);
+			Assert.assertEquals(e.elevation, a.elevation, 0);
+		}
+	}
+
+	private static void assertDistances(List<TrkSegment> expected, List<TrkSegment> actual) {
+		for (int i = 0; i < expected.size(); i++) {
+			List<WptPt> e = expected.get(i).points;
+			List<WptPt> a = actual.get(i).points;
+			for (int j = 0; j < e.size(); j++) {
+				assertFloat(e.get(j).distance, a.get(j).distance);
+			}
+		}
+	}
+
+	// float sums of long segments are added in other order
+	private static void assertFloat(double expected, double actual) {
+		Assert.assertEquals(expected, actual, Math.max(1e-3, Math.abs(expected) * 1e-4));
+	}
+
+	private static List<TrkSegment> createSegments(Random r, int[] speedFrom) {
+		return createSegments(r, speedFrom, 0);
+	}
+
+	/**
+	 * @param speedFrom index of the first point with speed in segment, -1 for segment without speed
+	 */
+	private static List<TrkSegment> createSegments(Random r, int[] speedFrom, int minSize) {
+		List<TrkSegment> segments = new ArrayList<>();
+		long time = 1589451785000L;
+		double lat = 52.3;
+		double lon = 4.9;
+		for (int from : speedFrom) {
+			TrkSegment segment = new TrkSegment();
+			int size = minSize + 20 + r.nextInt(60);
+			double ele = 10;
+			for (int i = 0; i < size; i++) {
+				int kind = r.nextInt(10);
+				if (kind > 0) {
+					// stops and slow moves are not counted as moving
+					double step = kind == 1 ? 0 : kind == 2 ? 1e-6 : r.nextDouble() * 2e-4;
+					lat += step;
+					lon += step * (r.nextDouble() - 0.5);
+				}
+				// gaps and reversed time
+				time += kind == 3 ? -2000 : kind == 4 ? 600000 : 1000 + r.nextInt(5000);
+				ele += r.nextDouble() * 6 - 3;
+				WptPt p = new WptPt(lat, lon, kind == 5 ? 0 : time, kind == 6 ? Double.NaN : ele,
+						from >= 0 && i >= from && kind != 7 ? r.nextFloat() * 10 : 0,
+						kind == 8 ? Double.NaN : r.nextFloat() * 5);
+				segment.points.add(p);
+			}
+			segments.add(segment);
+		}
+		// empty segment is skipped
+		segments.add(1, new TrkSegment());
+		return segments;
+	}
+}
@@ -0,0 +1,165 @@
+package net.osmand.gpx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.osmand.gpx.GPXTrackPointsReader.TrackPointsChunk;
+import net.osmand.gpx.GPXUtilities.WptPt;
+
+public class TrackPointsColumnsTest {
+
+	@Test
+	public void testColumnsRoundTrip() {
+		Random r = new Random(1);
+		List<WptPt> pts = randomPoints(r, 50);
+		TrackPointsColumns columns = TrackPointsColumns.fromPoints(pts);
+		Assert.assertEquals(pts.size(), columns.size());
+		for (int i = 0; i < pts.size(); i++) {
+			assertColumn(pts.get(i), columns, i);
+		}
+		List<WptPt> view = columns.asPoints();
+		for (int i = 0; i < pts.size(); i++) {
+			assertPoint(pts.get(i), view.get(i));
+		}
+
+		// changes of materialized point and of list are stored in columns
+		WptPt p = view.get(3);
+		p.lat = 1;
+		p.ele = 2;
+		p.time = 3;
+		Assert.assertEquals(1, columns.getLat(3), 0);
+		Assert.assertEquals(2, columns.getEle(3), 0);
+		Assert.assertEquals(3, columns.getTime(3));
+		columns.setDistance(3, 100);
+		Assert.assertEquals(100, p.distance, 0);
+
+		List<WptPt> expected = new ArrayList<WptPt>(view);
+		WptPt added = randomPoints(r, 1).get(0);
+		view.add(5, added);
+		expected.add(5, added);
+		view.remove(10);
+		expected.remove(10);
+		view.subList(20, 25).clear();
+		expected.subList(20, 25).clear();
+		WptPt replaced = randomPoints(r, 1).get(0);
+		view.set(0, replaced);
+		expected.set(0, replaced);
+		Assert.assertEquals(expected.size(), columns.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Assert.assertSame(expected.get(i), view.get(i));
+			assertColumn(expected.get(i), columns, i);
+		}
+	}
+
+	@Test
+	public void testAddPointsAfterMaterialization() {
+		Random r = new Random(2);
+		TrackPointsColumns columns = new TrackPointsColumns(2);
+		List<WptPt> expected = new ArrayList<WptPt>();
+		List<WptPt> view = columns.asPoints();
+		List<WptPt> materialized = new ArrayList<WptPt>();
+		TrackPointsChunk chunk = new TrackPointsChunk(7);
+		for (int step = 0; step < 20; step++) {
+			if (step % 2 == 0) {
+				WptPt p = randomPoints(r, 1).get(0);
+				columns.add(p.lat, p.lon, p.ele, p.time, (float) p.speed, (float) p.hdop);
+				expected.add(p);
+			} else {
+				chunk.size = 0;
+				for (WptPt p : randomPoints(r, 1 + r.nextInt(chunk.capacity()))) {
+					chunk.lat[chunk.size] = p.lat;
+					chunk.lon[chunk.size] = p.lon;
+					chunk.ele[chunk.size] = p.ele;
+					chunk.time[chunk.size] = p.time;
+					chunk.speed[chunk.size] = (float) p.speed;
+					chunk.hdop[chunk.size] = (float) p.hdop;
+					chunk.size++;
+					expected.add(p);
+				}
+				columns.addChunk(chunk);
+			}
+			// points materialized before columns grow stay the same
+			for (int i = 0; i < materialized.size(); i++) {
+				Assert.assertSame(materialized.get(i), view.get(i * 3));
+			}
+			while (materialized.size() * 3 < view.size()) {
+				materialized.add(view.get(materialized.size() * 3));
+			}
+		}
+		Assert.assertEquals(expected.size(), columns.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertColumn(expected.get(i), columns, i);
+			assertPoint(expected.get(i), view.get(i));
+		}
+	}
+
+	@Test
+	public void testPointsMaterializedOnceInThreads() throws Exception {
+		final TrackPointsColumns columns = TrackPointsColumns.fromPoints(randomPoints(new Random(3), 10000));
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<WptPt[]>> results = new ArrayList<Future<WptPt[]>>();
+			for (int t = 0; t < 4; t++) {
+				results.add(executor.submit(new Callable<WptPt[]>() {
+					@Override
+					public WptPt[] call() {
+						WptPt[] pts = new WptPt[columns.size()];
+						for (int i = 0; i < pts.length; i++) {
+							pts[i] = columns.getPoint(i);
+						}
+						return pts;
+					}
+				}));
+			}
+			WptPt[] first = results.get(0).get();
+			for (Future<WptPt[]> f : results) {
+				WptPt[] pts = f.get();
+				for (int i = 0; i < pts.length; i++) {
+					Assert.assertSame(first[i], pts[i]);
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static void assertColumn(WptPt expected, TrackPointsColumns columns, int i) {
+		Assert.assertEquals(expected.lat, columns.getLat(i), 0);
+		Assert.assertEquals(expected.lon, columns.getLon(i), 0);
+		Assert.assertEquals(expected.ele, columns.getEle(i), 0);
+		Assert.assertEquals(expected.time, columns.getTime(i));
+		Assert.assertEquals(expected.speed, columns.getSpeed(i), 0);
+		Assert.assertEquals(expected.hdop, columns.getHdop(i), 0);
+		Assert.assertEquals(expected.distance, columns.getDistance(i), 0);
+	}
+
+	private static void assertPoint(WptPt expected, WptPt actual) {
+		Assert.assertEquals(expected.lat, actual.lat, 0);
+		Assert.assertEquals(expected.lon, actual.lon, 0);
+		Assert.assertEquals(expected.ele, actual.ele, 0);
+		Assert.assertEquals(expected.time, actual.time);
+		Assert.assertEquals(expected.speed, actual.speed, 0);
+		Assert.assertEquals(expected.hdop, actual.hdop, 0);
+		Assert.assertEquals(expected.distance, actual.distance, 0);
+	}
+
+	// speed and hdop are float values as in columns
+	private static List<WptPt> randomPoints(Random r, int count) {
+		List<WptPt> pts = new ArrayList<WptPt>();
+		for (int i = 0; i < count; i++) {
+			WptPt p = new WptPt(r.nextDouble() * 180 - 90, r.nextDouble() * 360 - 180, r.nextLong(),
+					r.nextInt(5) == 0 ? Double.NaN : r.nextDouble() * 1000, r.nextFloat() * 30,
+					r.nextInt(5) == 0 ? Float.NaN : r.nextFloat() * 10);
+			pts.add(p);
+		}
+		return pts;
+	}
+}
@@ -0,0 +1,122 @@
+package net.osmand.router;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.RouteDataObject;
+
+public class CompiledGeneralRouterTest {
+
+	private static final String[][] ROAD_TAGS = {
+			{ "highway", "motorway" }, { "highway", "trunk" }, { "highway", "primary" }, { "highway", "secondary" },
+			{ "highway", "tertiary" }, { "highway", "residential" }, { "highway", "service" }, { "highway", "track" },
+			{ "highway", "footway" }, { "highway", "cycleway" }, { "highway", "path" }, { "highway", "steps" },
+			{ "highway", "living_street" }, { "highway", "motorway_link" },
+			{ "oneway", "yes" }, { "oneway", "-1" }, { "oneway", "no" }, { "junction", "roundabout" },
+			{ "access", "no" }, { "access", "private" }, { "access", "destination" }, { "motor_vehicle", "no" },
+			{ "motorcar", "yes" }, { "bicycle", "no" }, { "bicycle", "designated" }, { "foot", "no" },
+			{ "foot", "yes" }, { "maxspeed", "30" }, { "maxspeed", "50" }, { "maxspeed", "90" },
+			{ "surface", "asphalt" }, { "surface", "gravel" }, { "surface", "unpaved" }, { "tracktype", "grade4" },
+			{ "toll", "yes" }, { "route", "ferry" }, { "tunnel", "yes" }, { "bridge", "yes" },
+			{ "lanes", "2" }, { "smoothness", "bad" }, { "motorroad", "yes" } };
+
+	private static final String[][] POINT_TAGS = {
+			{ "highway", "traffic_signals" }, { "highway", "stop" }, { "highway", "crossing" },
+			{ "railway", "level_crossing" }, { "barrier", "gate" }, { "barrier", "bollard" },
+			{ "barrier", "lift_gate" }, { "traffic_calming", "bump" }, { "access", "no" }, { "motorcar", "no" } };
+
+	@Test
+	public void testCompiledRouterEqualsInterpreted() {
+		RouteRegion region = new RouteRegion();
+		int id = 0;
+		for (String[] t : ROAD_TAGS) {
+			region.initRouteEncodingRule(id++, t[0], t[1]);
+		}
+		int pointTypesStart = id;
+		for (String[] t : POINT_TAGS) {
+			region.initRouteEncodingRule(id++, t[0], t[1]);
+		}
+		region.completeRouteEncodingRules();
+		List<RouteDataObject> roads = createRoads(new Random(3), region, pointTypesStart, 500);
+
+		RoutingConfiguration.Builder builder = RoutingConfiguration.getDefault();
+		Map<String, String> avoid = new HashMap<String, String>();
+		avoid.put("avoid_toll", "true");
+		avoid.put("avoid_motorway", "true");
+		avoid.put("avoid_unpaved", "true");
+		List<Map<String, String>> params = new ArrayList<Map<String, String>>();
+		params.add(Collections.<String, String>emptyMap());
+		params.add(avoid);
+		for (String profile : new String[] { "car", "bicycle", "pedestrian" }) {
+			GeneralRouter base = builder.getRouter(profile);
+			Assert.assertNotNull(base);
+			for (Map<String, String> p : params) {
+				GeneralRouter interpreted = base.build(p);
+				CompiledGeneralRouter compiled = interpreted.compile();
+				// second pass is evaluated from filled tables
+				for (int pass = 0; pass < 2; pass++) {
+					for (RouteDataObject road : roads) {
+						assertRoad(profile, interpreted, compiled, road);
+					}
+				}
+			}
+		}
+	}
+
+	private static void assertRoad(String profile, GeneralRouter expected, CompiledGeneralRouter actual,
+			RouteDataObject road) {
+		String msg = profile + " " + road;
+		Assert.assertEquals(msg, expected.acceptLine(road), actual.acceptLine(road));
+		Assert.assertEquals(msg, expected.isOneWay(road), actual.isOneWay(road));
+		Assert.assertEquals(msg, expected.getPenaltyTransition(road), actual.getPenaltyTransition(road), 0);
+		Assert.assertEquals(msg, expected.defineDestinationPriority(road), actual.defineDestinationPriority(road), 0);
+		for (boolean dir : new boolean[] { true, false }) {
+			Assert.assertEquals(msg, expected.defineRoutingSpeed(road, dir), actual.defineRoutingSpeed(road, dir), 0);
+			Assert.assertEquals(msg, expected.defineSpeedPriority(road, dir), actual.defineSpeedPriority(road, dir), 0);
+			for (int i = 0; i < road.getPointsLength(); i++) {
+				Assert.assertEquals(msg, expected.defineObstacle(road, i, dir), actual.defineObstacle(road, i, dir), 0);
+				Assert.assertEquals(msg, expected.defineRoutingObstacle(road, i, dir),
+						actual.defineRoutingObstacle(road, i, dir), 0);
+			}
+		}
+	}
+
+	private static List<RouteDataObject> createRoads(Random r, RouteRegion region, int pointTypesStart, int count) {
+		List<RouteDataObject> roads = new ArrayList<RouteDataObject>();
+		for (int k = 0; k < count; k++) {
+			RouteDataObject road = new RouteDataObject(region);
+			road.id = k;
+			// the first type is highway, others are random tags which could repeat key of previous one
+			int[] types = new int[1 + r.nextInt(5)];
+			types[0] = r.nextInt(14);
+			for (int i = 1; i < types.length; i++) {
+				types[i] = r.nextInt(pointTypesStart);
+			}
+			road.types = types;
+			int points = 2 + r.nextInt(3);
+			road.pointsX = new int[points];
+			road.pointsY = new int[points];
+			for (int i = 0; i < points; i++) {
+				road.pointsX[i] = 1 << 30 | i * 100;
+				road.pointsY[i] = 1 << 29 | i * 100;
+				if (r.nextInt(3) == 0) {
+					int[] pointTypes = new int[1 + r.nextInt(2)];
+					for (int j = 0; j < pointTypes.length; j++) {
+						pointTypes[j] = pointTypesStart + r.nextInt(POINT_TAGS.length);
+					}
+					road.setPointTypes(i, pointTypes);
+				}
+			}
+			roads.add(road);
+		}
+		return roads;
+	}
+}
@@ -0,0 +1,225 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.data.LatLon;
+import net.osmand.router.HHRouteDataStructure.HHRoutingConfig;
+import net.osmand.router.HHRouteDataStructure.HHRoutingContext;
+import net.osmand.router.HHRouteDataStructure.NetworkDBPointCh;
+import net.osmand.router.HHRouteDataStructure.NetworkDBSegment;
+import net.osmand.router.HHRouteDataStructure.RoutingStats;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+
+/**
+ * Matrix is checked on synthetic contraction hierarchy network (loaded through graph snapshot as there are no
+ * routing files in tests) against all pairs shortest paths and point to point hh routing.
+ */
+public class HHRoutePlannerMatrixTest {
+
+	private static final int POINTS = 12;
+	private static final double INF = Double.POSITIVE_INFINITY;
+	// start / end costs from locations rounded to 31 tile coordinates
+	private static final double DELTA = 0.5;
+
+	private File snapshotFile;
+	private HHRoutingGraphSnapshot snapshot;
+	private TestPlanner planner;
+	private double[][] expected;
+	private List<LatLon> locations;
+
+	@Before
+	public void setUp() throws IOException, SQLException {
+		HHRoutingContext<NetworkDBPointCh> network = createNetwork(POINTS, 7);
+		expected = new double[POINTS][POINTS];
+		for (int i = 0; i < POINTS; i++) {
+			Arrays.fill(expected[i], INF);
+			expected[i][i] = 0;
+			for (NetworkDBSegment s : network.pointsById.get(i).connected(false)) {
+				if (!s.shortcut) {
+					expected[i][s.end.index] = Math.min(expected[i][s.end.index], s.dist);
+				}
+			}
+		}
+		for (int k = 0; k < POINTS; k++) {
+			for (int i = 0; i < POINTS; i++) {
+				for (int j = 0; j < POINTS; j++) {
+					expected[i][j] = Math.min(expected[i][j], expected[i][k] + expected[k][j]);
+				}
+			}
+		}
+		snapshotFile = File.createTempFile("matrix", HHRoutingGraphSnapshot.EXT);
+		HHRoutingGraphSnapshot.write(network, snapshotFile);
+		snapshot = HHRoutingGraphSnapshot.open(snapshotFile);
+		planner = new TestPlanner(snapshot);
+		locations = new ArrayList<>();
+		for (int i = 0; i < POINTS; i++) {
+			locations.add(planner.cacheHctx.pointsById.get(i).getPoint());
+		}
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		snapshot.close();
+		snapshotFile.delete();
+	}
+
+	@Test
+	public void testMatrixEqualsPointToPointRouting() throws Exception {
+		double[][] matrix = planner.runRoutingMatrix(locations, locations, HHRoutingConfig.ch());
+		for (int i = 0; i < POINTS; i++) {
+			for (int j = 0; j < POINTS; j++) {
+				String msg = i + " -> " + j;
+				Assert.assertEquals(msg, expected[i][j], matrix[i][j], DELTA);
+				Assert.assertEquals(msg, planner.runRoutingPointToPoint(i, j), matrix[i][j], DELTA);
+			}
+		}
+		double[][] part = planner.runRoutingMatrix(locations.subList(3, 5), locations.subList(0, 7), HHRoutingConfig.ch());
+		for (int i = 0; i < part.length; i++) {
+			for (int j = 0; j < part[i].length; j++) {
+				Assert.assertEquals(expected[i + 3][j], part[i][j], DELTA);
+			}
+		}
+	}
+
+	@Test
+	public void testMatrixWithLimitedDijkstra() throws Exception {
+		HHRoutingConfig config = HHRoutingConfig.dijkstra(0);
+		config.MAX_COST = 1e9;
+		double[][] matrix = planner.runRoutingMatrix(locations, locations, config);
+		for (int i = 0; i < POINTS; i++) {
+			for (int j = 0; j < POINTS; j++) {
+				Assert.assertEquals(expected[i][j], matrix[i][j], DELTA);
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNotLimitedDijkstraIsRejected() throws Exception {
+		planner.runRoutingMatrix(locations, locations, HHRoutingConfig.dijkstra(0));
+	}
+
+	/**
+	 * Creates network of self dual points (1 point per cluster) placed in centers of different 20km tiles,
+	 * ch index is random and shortcuts are added by contraction in ch index order (without witness search).
+	 */
+	static HHRoutingContext<NetworkDBPointCh> createNetwork(int n, long seed) {
+		Random r = new Random(seed);
+		HHRoutingContext<NetworkDBPointCh> ctx = new HHRoutingContext<>();
+		ctx.pointsById = new TLongObjectHashMap<>();
+		List<Integer> order = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			NetworkDBPointCh p = new NetworkDBPointCh();
+			p.index = i;
+			p.dualPoint = p;
+			p.clusterId = i;
+			p.fileId = 100 + i;
+			p.roadId = (1000L + i) * 64;
+			p.start = 0;
+			p.end = 1;
+			p.startX = p.endX = ((1100 + (i % 4) * 3) << 20) + (1 << 19);
+			p.startY = p.endY = ((700 + (i / 4) * 3) << 20) + (1 << 19);
+			ctx.pointsById.put(i, p);
+			order.add(i);
+		}
+		for (int i = 0; i < n; i++) {
+			// ring keeps network strongly connected
+			addSegment(ctx, i, (i + 1) % n, 50 + r.nextInt(100), false);
+			for (int k = 0; k < 2; k++) {
+				int j = r.nextInt(n);
+				if (j != i) {
+					addSegment(ctx, i, j, 50 + r.nextInt(300), false);
+				}
+			}
+		}
+		Collections.shuffle(order, r);
+		for (int i = 0; i < n; i++) {
+			ctx.pointsById.get(order.get(i)).chInd = i + 1;
+		}
+		for (int v : order) {
+			NetworkDBPointCh pnt = ctx.pointsById.get(v);
+			List<NetworkDBSegment> in = new ArrayList<>(pnt.connected(true));
+			List<NetworkDBSegment> out = new ArrayList<>(pnt.connected(false));
+			for (NetworkDBSegment a : in) {
+				for (NetworkDBSegment b : out) {
+					NetworkDBPointCh u = (NetworkDBPointCh) a.start;
+					NetworkDBPointCh w = (NetworkDBPointCh) b.end;
+					if (u != w && u.chInd > pnt.chInd && w.chInd > pnt.chInd) {
+						NetworkDBSegment ex = u.getSegment(w, true);
+						if (ex == null || ex.dist > a.dist + b.dist) {
+							addSegment(ctx, u.index, w.index, a.dist + b.dist, true);
+						}
+					}
+				}
+			}
+		}
+		return ctx;
+	}
+
+	private static void addSegment(HHRoutingContext<NetworkDBPointCh> ctx, int from, int to, double dist, boolean shortcut) {
+		NetworkDBPointCh st = ctx.pointsById.get(from);
+		NetworkDBPointCh en = ctx.pointsById.get(to);
+		// as loaded from db, the best segment goes first to be found by getSegment
+		st.connected(false).add(0, new NetworkDBSegment(st, en, dist, true, shortcut));
+		en.connected(true).add(0, new NetworkDBSegment(st, en, dist, false, shortcut));
+	}
+
+	private static class TestPlanner extends HHRoutePlanner<NetworkDBPointCh> {
+
+		private static final double LAST_MILE_COST = 1;
+
+		TestPlanner(HHRoutingGraphSnapshot snapshot) {
+			super(new RoutingContext(new RoutingConfiguration(), null, new BinaryMapIndexReader[0],
+					RouteCalculationMode.NORMAL), null, NetworkDBPointCh.class);
+			HHRoutingContext<NetworkDBPointCh> hctx = cacheHctx;
+			hctx.snapshot = snapshot;
+			hctx.pointsById = snapshot.loadNetworkPoints(NetworkDBPointCh.class);
+			for (NetworkDBPointCh p : hctx.pointsById.valueCollection()) {
+				LatLon l = p.getPoint();
+				hctx.pointsRect.registerObject(l.getLatitude(), l.getLongitude(), p);
+			}
+			hctx.initialized = true;
+		}
+
+		@Override
+		protected HHRoutingContext<NetworkDBPointCh> initHCtx(HHRoutingConfig c, LatLon start, LatLon end) {
+			HHRoutingContext<NetworkDBPointCh> hctx = cacheHctx;
+			hctx.stats = new RoutingStats();
+			hctx.config = c;
+			hctx.setStartEnd(start, end);
+			hctx.clearVisited();
+			return hctx;
+		}
+
+		double runRoutingPointToPoint(int from, int to) throws SQLException, IOException {
+			HHRoutingContext<NetworkDBPointCh> hctx = initHCtx(HHRoutingConfig.dijkstra(0), null, null);
+			TLongObjectHashMap<NetworkDBPointCh> st = new TLongObjectHashMap<>();
+			TLongObjectHashMap<NetworkDBPointCh> end = new TLongObjectHashMap<>();
+			NetworkDBPointCh stPnt = hctx.pointsById.get(from);
+			NetworkDBPointCh endPnt = hctx.pointsById.get(to);
+			// as after last mile, start / end points without cost are not accepted as final point
+			stPnt.setCostParentRt(false, LAST_MILE_COST, null, LAST_MILE_COST);
+			endPnt.setCostParentRt(true, LAST_MILE_COST, null, LAST_MILE_COST);
+			st.put(from, stPnt);
+			end.put(to, endPnt);
+			NetworkDBPointCh fin = runRoutingPointsToPoints(hctx, st, end);
+			double cost = fin == null ? INF
+					: fin.rt(false).rtDistanceFromStart + fin.rt(true).rtDistanceFromStart - 2 * LAST_MILE_COST;
+			hctx.clearVisited();
+			return cost;
+		}
+	}
+}
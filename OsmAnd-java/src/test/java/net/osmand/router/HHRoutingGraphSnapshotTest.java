@@ -0,0 +1,100 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.osmand.router.HHRouteDataStructure.HHRoutingContext;
+import net.osmand.router.HHRouteDataStructure.NetworkDBPointCh;
+import net.osmand.router.HHRouteDataStructure.NetworkDBSegment;
+
+/**
+ * Snapshot is compared with source network context (db / obf network can't be loaded in tests).
+ */
+public class HHRoutingGraphSnapshotTest {
+
+	@Test
+	public void testWriteReadRoundTrip() throws IOException, SQLException {
+		HHRoutingContext<NetworkDBPointCh> src = HHRoutePlannerMatrixTest.createNetwork(20, 3);
+		File file = File.createTempFile("roundtrip", HHRoutingGraphSnapshot.EXT);
+		HHRoutingGraphSnapshot snapshot = null;
+		try {
+			HHRoutingGraphSnapshot.write(src, file);
+			snapshot = HHRoutingGraphSnapshot.open(file);
+			Assert.assertEquals(src.getGraphSnapshotKey(), snapshot.getKey());
+			Assert.assertEquals(src.pointsById.size(), snapshot.getPointsCount());
+
+			HHRoutingContext<NetworkDBPointCh> ctx = new HHRoutingContext<>();
+			ctx.snapshot = snapshot;
+			ctx.pointsById = ctx.loadNetworkPoints(NetworkDBPointCh.class);
+			Assert.assertEquals(src.pointsById.size(), ctx.pointsById.size());
+			int segments = 0;
+			for (NetworkDBPointCh s : src.pointsById.valueCollection()) {
+				NetworkDBPointCh p = ctx.pointsById.get(s.index);
+				Assert.assertNotNull(p);
+				Assert.assertEquals(s.dualPoint.index, p.dualPoint.index);
+				Assert.assertEquals(s.clusterId, p.clusterId);
+				Assert.assertEquals(s.fileId, p.fileId);
+				Assert.assertEquals(s.mapId, p.mapId);
+				Assert.assertEquals(s.chInd, p.chInd);
+				Assert.assertEquals(s.roadId, p.roadId);
+				Assert.assertEquals(s.start, p.start);
+				Assert.assertEquals(s.end, p.end);
+				Assert.assertEquals(s.startX, p.startX);
+				Assert.assertEquals(s.startY, p.startY);
+				Assert.assertEquals(s.endX, p.endX);
+				Assert.assertEquals(s.endY, p.endY);
+				// segments are loaded lazily
+				Assert.assertNull(p.connected(false));
+				Assert.assertNull(p.connected(true));
+				segments += ctx.loadNetworkSegmentPoint(p, false);
+				segments += ctx.loadNetworkSegmentPoint(p, true);
+				assertSegments(s.connected(false), p.connected(false));
+				assertSegments(s.connected(true), p.connected(true));
+				Assert.assertEquals(0, ctx.loadNetworkSegmentPoint(p, false));
+			}
+			Assert.assertEquals(snapshot.getSegmentsCount(), segments);
+		} finally {
+			if (snapshot != null) {
+				snapshot.close();
+			}
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testFileKeyChangesWithFile() throws IOException {
+		File file = File.createTempFile("routing", ".obf");
+		try {
+			String key = HHRoutingGraphSnapshot.getFileKey(file);
+			Assert.assertEquals(key, HHRoutingGraphSnapshot.getFileKey(file));
+			FileOutputStream out = new FileOutputStream(file);
+			out.write(new byte[] { 1, 2, 3 });
+			out.close();
+			String changedLength = HHRoutingGraphSnapshot.getFileKey(file);
+			Assert.assertNotEquals(key, changedLength);
+			Assert.assertTrue(file.setLastModified(file.lastModified() - 10000));
+			Assert.assertNotEquals(changedLength, HHRoutingGraphSnapshot.getFileKey(file));
+		} finally {
+			file.delete();
+		}
+	}
+
+	private static void assertSegments(List<NetworkDBSegment> expected, List<NetworkDBSegment> actual) {
+		Assert.assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			NetworkDBSegment e = expected.get(i);
+			NetworkDBSegment a = actual.get(i);
+			Assert.assertEquals(e.start.index, a.start.index);
+			Assert.assertEquals(e.end.index, a.end.index);
+			Assert.assertEquals(e.dist, a.dist, 0);
+			Assert.assertEquals(e.shortcut, a.shortcut);
+			Assert.assertEquals(e.direction, a.direction);
+		}
+	}
+}
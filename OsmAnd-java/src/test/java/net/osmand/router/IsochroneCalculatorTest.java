@@ -0,0 +1,136 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.util.List;
+import java.util.Objects;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.data.LatLon;
+import net.osmand.router.IsochroneCalculator.IsochroneBand;
+import net.osmand.router.IsochroneCalculator.ReachedSegment;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+import net.osmand.router.RoutingConfiguration.RoutingMemoryLimits;
+import net.osmand.util.MapUtils;
+
+public class IsochroneCalculatorTest {
+
+	private static final String ROUTING_FILE = "src/test/resources/routing/Routing_test_archive.obf";
+	private static final float[] LIMITS = { 30, 60 };
+
+	private BinaryMapIndexReader reader;
+	private RoutePlannerFrontEnd fe;
+	private TestEntry entry;
+
+	@Before
+	public void setUp() throws IOException {
+		reader = new BinaryMapIndexReader(new RandomAccessFile(ROUTING_FILE, "r"), new File(ROUTING_FILE));
+		fe = new RoutePlannerFrontEnd();
+		Reader r = new InputStreamReader(Objects.requireNonNull(
+				IsochroneCalculatorTest.class.getResourceAsStream("/test_routing.json")));
+		TestEntry[] entries = new Gson().fromJson(r, TestEntry[].class);
+		r.close();
+		// the longest car route on the test archive map
+		double maxDist = 0;
+		for (TestEntry te : entries) {
+			if (te.isIgnore() || te.getParams().containsKey("map") || te.getParams().containsKey("vehicle")) {
+				continue;
+			}
+			double dist = MapUtils.getDistance(te.getStartPoint(), te.getEndPoint());
+			if (dist > maxDist) {
+				maxDist = dist;
+				entry = te;
+			}
+		}
+		Assert.assertNotNull(entry);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		reader.close();
+	}
+
+	@Test
+	public void testReachedSegmentsWithinCost() throws Exception {
+		List<RouteSegmentResult> route = fe.searchRoute(createContext(), entry.getStartPoint(),
+				entry.getEndPoint(), null).detailed;
+		Assert.assertNotNull(route);
+		float maxLimit = LIMITS[LIMITS.length - 1];
+
+		RoutingContext ctx = createContext();
+		float maxCost = ctx.config.MAX_COST;
+		int planRoadDirection = ctx.config.planRoadDirection;
+		List<IsochroneBand> bands = new IsochroneCalculator(fe).calculate(ctx, entry.getStartPoint(), LIMITS,
+				false, true);
+		// configuration of context is not changed by search
+		Assert.assertEquals(maxCost, ctx.config.MAX_COST, 0);
+		Assert.assertEquals(planRoadDirection, ctx.config.planRoadDirection);
+
+		Assert.assertEquals(LIMITS.length, bands.size());
+		float prevLimit = 0;
+		for (IsochroneBand b : bands) {
+			for (ReachedSegment s : b.segments) {
+				Assert.assertTrue(s.cost > prevLimit && s.cost <= b.limit || prevLimit == 0 && s.cost == 0);
+			}
+			prevLimit = b.limit;
+		}
+		Assert.assertFalse(bands.get(0).segments.isEmpty());
+		Assert.assertFalse(bands.get(bands.size() - 1).hull.isEmpty());
+
+		// costs along the fastest route are the smallest costs to reach its points
+		float time = 0;
+		boolean checkedReachable = false;
+		boolean checkedUnreachable = false;
+		for (RouteSegmentResult rs : route) {
+			time += rs.getSegmentTime();
+			if (time < maxLimit / 2) {
+				Assert.assertTrue(isRoadReached(bands, rs.getObject().getId()));
+				checkedReachable = true;
+			} else if (time > maxLimit * 2) {
+				Assert.assertFalse(isReached(bands, rs.getEndPoint()));
+				checkedUnreachable = true;
+			}
+		}
+		Assert.assertTrue(checkedReachable);
+		Assert.assertTrue(checkedUnreachable);
+	}
+
+	private static boolean isRoadReached(List<IsochroneBand> bands, long roadId) {
+		for (IsochroneBand b : bands) {
+			for (ReachedSegment s : b.segments) {
+				if (s.road.getId() == roadId) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static boolean isReached(List<IsochroneBand> bands, LatLon l) {
+		for (IsochroneBand b : bands) {
+			for (ReachedSegment s : b.segments) {
+				if (MapUtils.getDistance(s.getEndPoint(), l) < 1) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private RoutingContext createContext() {
+		RoutingMemoryLimits memoryLimits = new RoutingMemoryLimits(RoutingConfiguration.DEFAULT_MEMORY_LIMIT * 3,
+				RoutingConfiguration.DEFAULT_NATIVE_MEMORY_LIMIT);
+		RoutingConfiguration config = RoutingConfiguration.getDefault().build("car", memoryLimits);
+		return fe.buildRoutingContext(config, null, new BinaryMapIndexReader[] { reader }, RouteCalculationMode.NORMAL);
+	}
+}
@@ -0,0 +1,333 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+
+import net.osmand.LocationsHolder;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.data.LatLon;
+import net.osmand.router.RoutePlannerFrontEnd.GpxPoint;
+import net.osmand.router.RoutePlannerFrontEnd.GpxRouteApproximation;
+import net.osmand.router.RoutePlannerFrontEnd.RouteBatchJob;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+import net.osmand.router.RoutingConfiguration.RoutingMemoryLimits;
+import net.osmand.util.MapUtils;
+
+public class RoutePlannerFrontEndTest {
+
+	private static final String ROUTING_FILE = "src/test/resources/routing/Routing_test_archive.obf";
+
+	private BinaryMapIndexReader reader;
+	private RoutePlannerFrontEnd fe;
+	private TestEntry entry;
+
+	@Before
+	public void setUp() throws IOException {
+		reader = new BinaryMapIndexReader(new RandomAccessFile(ROUTING_FILE, "r"), new File(ROUTING_FILE));
+		fe = new RoutePlannerFrontEnd();
+		Reader r = new InputStreamReader(Objects.requireNonNull(
+				RoutePlannerFrontEndTest.class.getResourceAsStream("/test_routing.json")));
+		TestEntry[] entries = new Gson().fromJson(r, TestEntry[].class);
+		r.close();
+		// the longest car route on the test archive map
+		double maxDist = 0;
+		for (TestEntry te : entries) {
+			if (te.isIgnore() || te.getParams().containsKey("map") || te.getParams().containsKey("vehicle")
+					|| !te.getTransitPoint().isEmpty()) {
+				continue;
+			}
+			double dist = MapUtils.getDistance(te.getStartPoint(), te.getEndPoint());
+			if (dist > maxDist) {
+				maxDist = dist;
+				entry = te;
+			}
+		}
+		Assert.assertNotNull(entry);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		reader.close();
+	}
+
+	@Test
+	public void testParallelGpxApproximationEqualsSequential() throws Exception {
+		List<RouteSegmentResult> route = fe.searchRoute(createContext(), entry.getStartPoint(),
+				entry.getEndPoint(), null).detailed;
+		Assert.assertNotNull(route);
+		List<LatLon> track = new ArrayList<LatLon>();
+		for (RouteSegmentResult s : route) {
+			for (int i = s.getStartPointIndex(); i != s.getEndPointIndex(); i += s.isForwardDirection() ? 1 : -1) {
+				track.add(s.getPoint(i));
+			}
+		}
+		track.add(route.get(route.size() - 1).getEndPoint());
+
+		GpxRouteApproximation sequential = approximate(track, null);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		GpxRouteApproximation parallel;
+		try {
+			parallel = approximate(track, pool);
+		} finally {
+			pool.shutdown();
+		}
+		Assert.assertFalse(sequential.result.isEmpty());
+		Assert.assertEquals(sequential.result.size(), parallel.result.size());
+		for (int i = 0; i < sequential.result.size(); i++) {
+			RouteSegmentResult s = sequential.result.get(i);
+			RouteSegmentResult p = parallel.result.get(i);
+			Assert.assertEquals(s.getObject().getId(), p.getObject().getId());
+			Assert.assertEquals(s.getStartPointIndex(), p.getStartPointIndex());
+			Assert.assertEquals(s.getEndPointIndex(), p.getEndPointIndex());
+		}
+		Assert.assertEquals(sequential.routeDistance, parallel.routeDistance);
+		Assert.assertEquals(sequential.routeDistanceUnmatched, parallel.routeDistanceUnmatched);
+	}
+
+	@Test
+	public void testMapMatchingOfNoisyTrace() throws Exception {
+		List<RouteSegmentResult> route = fe.searchRoute(createContext(), entry.getStartPoint(),
+				entry.getEndPoint(), null).detailed;
+		Assert.assertNotNull(route);
+		// samples every ~30 m along the route with up to 5 m noise
+		Random r = new Random(11);
+		List<LatLon> track = new ArrayList<LatLon>();
+		for (RouteSegmentResult s : route) {
+			int step = s.isForwardDirection() ? 1 : -1;
+			for (int i = s.getStartPointIndex(); i != s.getEndPointIndex(); i += step) {
+				LatLon a = s.getPoint(i);
+				LatLon b = s.getPoint(i + step);
+				int parts = Math.max(1, (int) (MapUtils.getDistance(a, b) / 30));
+				for (int k = 0; k < parts; k++) {
+					double lat = a.getLatitude() + (b.getLatitude() - a.getLatitude()) * k / parts;
+					double lon = a.getLongitude() + (b.getLongitude() - a.getLongitude()) * k / parts;
+					track.add(new LatLon(lat + (r.nextDouble() - 0.5) * 9e-5, lon + (r.nextDouble() - 0.5) * 9e-5));
+				}
+			}
+		}
+		track.add(route.get(route.size() - 1).getEndPoint());
+
+		RoutingContext ctx = createContext();
+		GpxRouteApproximation gctx = new GpxRouteApproximation(ctx);
+		List<GpxPoint> points = fe.generateGpxPoints(gctx, new LocationsHolder(track));
+		fe.searchGpxRouteByMapMatching(gctx, points, null);
+		Assert.assertEquals(getRoadIds(route), getRoadIds(gctx.result));
+	}
+
+	@Test
+	public void testIncrementalRecalculationEqualsNewRoute() throws Exception {
+		RoutePlannerFrontEnd incremental = new RoutePlannerFrontEnd().setUseIncrementalRecalculation(true);
+		RoutingContext ctx = createContext();
+		List<RouteSegmentResult> route = incremental.searchRoute(ctx, entry.getStartPoint(), entry.getEndPoint(),
+				null).detailed;
+		Assert.assertNotNull(route);
+		Assert.assertNotNull(ctx.reverseSearchTree);
+		// start is moved along the route and aside of it
+		List<LatLon> starts = new ArrayList<LatLon>();
+		starts.add(route.get(route.size() / 4).getEndPoint());
+		starts.add(route.get(route.size() / 2).getStartPoint());
+		LatLon p = route.get(route.size() / 3).getEndPoint();
+		starts.add(new LatLon(p.getLatitude() + 0.002, p.getLongitude() - 0.002));
+		for (LatLon start : starts) {
+			List<RouteSegmentResult> actual = incremental.searchRoute(ctx, start, entry.getEndPoint(), null).detailed;
+			List<RouteSegmentResult> expected = fe.searchRoute(createContext(), start, entry.getEndPoint(),
+					null).detailed;
+			assertSameRoute(expected, actual);
+		}
+	}
+
+	@Test
+	public void testBatchRoutesEqualIndividualRoutes() throws Exception {
+		List<RouteSegmentResult> route = fe.searchRoute(createContext(), entry.getStartPoint(),
+				entry.getEndPoint(), null).detailed;
+		Assert.assertNotNull(route);
+		LatLon middle = route.get(route.size() / 2).getStartPoint();
+		List<RouteBatchJob> jobs = createBatchJobs(middle);
+		fe.searchRoutes(createContext(), jobs, null);
+		assertBatchJobs(jobs);
+
+		jobs = createBatchJobs(middle);
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			fe.searchRoutes(createContext(), jobs, pool);
+		} finally {
+			pool.shutdown();
+		}
+		assertBatchJobs(jobs);
+	}
+
+	@Test
+	public void testCancelledBatchSkipsJobs() throws Exception {
+		RoutingContext ctx = createContext();
+		ctx.calculationProgress = new RouteCalculationProgress();
+		ctx.calculationProgress.isCancelled = true;
+		List<RouteBatchJob> jobs = createBatchJobs(entry.getEndPoint());
+		fe.searchRoutes(ctx, jobs, null);
+		for (RouteBatchJob job : jobs) {
+			Assert.assertFalse(job.isCalculated());
+		}
+	}
+
+	@Test
+	public void testBatchKeepsLoadedTilesBetweenJobs() throws Exception {
+		RoutingContext ctx = createContext();
+		List<RouteBatchJob> jobs = new ArrayList<RouteBatchJob>();
+		jobs.add(new RouteBatchJob(entry.getStartPoint(), entry.getEndPoint(), null));
+		jobs.add(new RouteBatchJob(entry.getStartPoint(), entry.getEndPoint(), null));
+		fe.searchRoutes(ctx, jobs, null);
+		Assert.assertTrue(jobs.get(0).isCalculated());
+		Assert.assertTrue(jobs.get(0).progress.loadedTiles > 0);
+		// the same route is calculated on tiles and subregions loaded by the first job
+		RouteCalculationProgress second = jobs.get(1).progress;
+		Assert.assertTrue(jobs.get(1).isCalculated());
+		Assert.assertEquals(0, second.loadedTiles);
+		Assert.assertEquals(0, second.unloadedTiles);
+		Assert.assertFalse(ctx.subregionTiles.isEmpty());
+		Assert.assertFalse(ctx.indexedSubregions.isEmpty());
+		int loaded = 0;
+		for (RoutingContext.RoutingSubregionTile tile : ctx.subregionTiles) {
+			if (tile.isLoaded()) {
+				loaded++;
+			}
+		}
+		Assert.assertTrue(loaded > 0);
+		assertSameRoute(jobs.get(0).result.detailed, jobs.get(1).result.detailed);
+	}
+
+	@Test
+	public void testParallelBidirectionalSearchEqualsSequential() throws Exception {
+		RoutingContext ctx = createContext();
+		List<RouteSegmentResult> sequential = fe.searchRoute(ctx, entry.getStartPoint(), entry.getEndPoint(),
+				null).detailed;
+		ctx.config.parallelBidirectionalSearch = true;
+		for (int i = 0; i < 3; i++) {
+			ctx.calculationProgress = new RouteCalculationProgress();
+			List<RouteSegmentResult> parallel = fe.searchRoute(ctx, entry.getStartPoint(), entry.getEndPoint(),
+					null).detailed;
+			assertSameRoute(sequential, parallel);
+		}
+	}
+
+	@Test
+	public void testCompactTilesRouteEqualsNormalTiles() throws Exception {
+		List<RouteSegmentResult> expected = fe.searchRoute(createContext(), entry.getStartPoint(),
+				entry.getEndPoint(), null).detailed;
+		for (boolean offHeap : new boolean[] { false, true }) {
+			RoutingContext ctx = createContext();
+			ctx.config.compactTiles = true;
+			ctx.config.compactTilesOffHeap = offHeap;
+			List<RouteSegmentResult> compact = fe.searchRoute(ctx, entry.getStartPoint(), entry.getEndPoint(),
+					null).detailed;
+			assertSameRoute(expected, compact);
+		}
+	}
+
+	@Test
+	public void testTileCacheEvictionsUnderSmallLimit() throws Exception {
+		// every loaded tile is over the limit, so it evicts previously loaded one
+		RoutingTileCache cache = new RoutingTileCache(1);
+		RoutingContext ctx = createContext();
+		ctx.config.tileCache = cache;
+		RoutingContext expectedCtx = createContext();
+		for (LatLon l : new LatLon[] { entry.getStartPoint(), entry.getEndPoint() }) {
+			int x31 = MapUtils.get31TileNumberX(l.getLongitude());
+			int y31 = MapUtils.get31TileNumberY(l.getLatitude());
+			List<RouteDataObject> expected = new ArrayList<RouteDataObject>();
+			expectedCtx.loadTileData(x31, y31, 12, expected);
+			List<RouteDataObject> actual = new ArrayList<RouteDataObject>();
+			ctx.loadTileData(x31, y31, 12, actual);
+			Assert.assertEquals(getIds(expected), getIds(actual));
+		}
+		RoutingContext.TileStatistics stat = cache.getStatistics();
+		Assert.assertTrue(stat.cacheMisses > 1);
+		Assert.assertTrue(ctx.global.cacheEvictions > 0);
+		Assert.assertEquals(stat.cacheEvictions, ctx.global.cacheEvictions);
+		Assert.assertEquals(1, cache.getCachedTiles());
+	}
+
+	private static List<Long> getIds(List<RouteDataObject> objects) {
+		List<Long> ids = new ArrayList<Long>();
+		for (RouteDataObject o : objects) {
+			ids.add(o.getId());
+		}
+		Collections.sort(ids);
+		return ids;
+	}
+
+	private List<RouteBatchJob> createBatchJobs(LatLon middle) {
+		List<RouteBatchJob> jobs = new ArrayList<RouteBatchJob>();
+		jobs.add(new RouteBatchJob(entry.getStartPoint(), entry.getEndPoint(), null));
+		jobs.add(new RouteBatchJob(entry.getEndPoint(), entry.getStartPoint(), null));
+		jobs.add(new RouteBatchJob(entry.getStartPoint(), middle, null));
+		jobs.add(new RouteBatchJob(entry.getStartPoint(), entry.getEndPoint(), Collections.singletonList(middle)));
+		jobs.add(new RouteBatchJob(middle, entry.getStartPoint(), Collections.singletonList(entry.getEndPoint())));
+		return jobs;
+	}
+
+	private void assertBatchJobs(List<RouteBatchJob> jobs) throws Exception {
+		for (RouteBatchJob job : jobs) {
+			Assert.assertTrue(job.isCalculated());
+			List<RouteSegmentResult> expected = fe.searchRoute(createContext(), job.start, job.end,
+					job.intermediates).detailed;
+			assertSameRoute(expected, job.result.detailed);
+		}
+	}
+
+	private static void assertSameRoute(List<RouteSegmentResult> expected, List<RouteSegmentResult> actual) {
+		Assert.assertFalse(expected.isEmpty());
+		Assert.assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			RouteSegmentResult e = expected.get(i);
+			RouteSegmentResult a = actual.get(i);
+			Assert.assertEquals(e.getObject().getId(), a.getObject().getId());
+			Assert.assertEquals(e.getStartPointIndex(), a.getStartPointIndex());
+			Assert.assertEquals(e.getEndPointIndex(), a.getEndPointIndex());
+			Assert.assertEquals(e.getSegmentTime(), a.getSegmentTime(), 1e-3);
+		}
+	}
+
+	private static List<Long> getRoadIds(List<RouteSegmentResult> route) {
+		List<Long> ids = new ArrayList<Long>();
+		for (RouteSegmentResult s : route) {
+			long id = s.getObject().getId() >> RouteResultPreparation.SHIFT_ID;
+			if (ids.isEmpty() || ids.get(ids.size() - 1) != id) {
+				ids.add(id);
+			}
+		}
+		return ids;
+	}
+
+	private GpxRouteApproximation approximate(List<LatLon> track, ForkJoinPool pool) throws Exception {
+		RoutingContext ctx = createContext();
+		// small steps to split short test track into several chunks
+		ctx.config.maxStepApproximation = 200;
+		ctx.config.minStepApproximation = 50;
+		GpxRouteApproximation gctx = new GpxRouteApproximation(ctx);
+		List<GpxPoint> points = fe.generateGpxPoints(gctx, new LocationsHolder(track));
+		return fe.searchGpxRoute(gctx, points, null, pool);
+	}
+
+	private RoutingContext createContext() {
+		RoutingMemoryLimits memoryLimits = new RoutingMemoryLimits(RoutingConfiguration.DEFAULT_MEMORY_LIMIT * 3,
+				RoutingConfiguration.DEFAULT_NATIVE_MEMORY_LIMIT);
+		RoutingConfiguration config = RoutingConfiguration.getDefault().build("car", memoryLimits);
+		return fe.buildRoutingContext(config, null, new BinaryMapIndexReader[] { reader }, RouteCalculationMode.NORMAL);
+	}
+}
@@ -0,0 +1,184 @@
+package net.osmand.search.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.osm.MapPoiTypes;
+import net.osmand.search.SearchUICore.SearchResultMatcher;
+import net.osmand.search.core.SearchCoreFactory.SearchBaseAPI;
+
+public class SearchOfflineFilesTest {
+
+	private static final int FILES = 20;
+	private static final int PARALLELISM = 3;
+
+	private File file;
+	private RandomAccessFile raf;
+	private List<BinaryMapIndexReader> readers = new ArrayList<>();
+	private Map<BinaryMapIndexReader, Integer> indexes = new IdentityHashMap<>();
+	private ForkJoinPool pool;
+
+	@BeforeClass
+	public static void setUpPoiTypes() {
+		MapPoiTypes.setDefault(new MapPoiTypes("src/test/resources/poi_types.xml"));
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("search", ".obf");
+		raf = new RandomAccessFile(file, "r");
+		for (int i = 0; i < FILES; i++) {
+			BinaryMapIndexReader r = new BinaryMapIndexReader(raf, file, false);
+			readers.add(r);
+			indexes.put(r, i);
+		}
+		pool = new ForkJoinPool(PARALLELISM);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		pool.shutdown();
+		raf.close();
+		file.delete();
+	}
+
+	@Test
+	public void testParallelResultsEqualSequential() throws IOException {
+		FileSearch sequential = new FileSearch(null, 0);
+		search(null, sequential, -1);
+		FileSearch parallel = new FileSearch(null, 1);
+		search(pool, parallel, -1);
+		Assert.assertEquals(FILES * 3, sequential.results.size());
+		Assert.assertEquals(sequential.results, parallel.results);
+		Assert.assertTrue(parallel.maxReadAhead.get() <= PARALLELISM);
+		Assert.assertEquals(0, parallel.running.get());
+	}
+
+	@Test
+	public void testCancelledSearchWaitsForStartedReads() throws IOException {
+		FileSearch sequential = new FileSearch(null, 0);
+		search(null, sequential, -1);
+		for (int cancelAfter = 0; cancelAfter < 5; cancelAfter++) {
+			CancelMatcher cancel = new CancelMatcher();
+			FileSearch parallel = new FileSearch(cancel, 20);
+			search(pool, parallel, cancelAfter, cancel);
+			// nothing is read after return, cancelled reads are not published
+			Assert.assertEquals(0, parallel.running.get());
+			int read = parallel.read.get();
+			Assert.assertTrue(read <= cancelAfter + PARALLELISM + 1);
+			Assert.assertEquals(sequential.results.subList(0, (cancelAfter + 1) * 3), parallel.results);
+			sleep(50);
+			Assert.assertEquals(read, parallel.read.get());
+		}
+	}
+
+	private void search(ForkJoinPool pool, FileSearch search, int cancelAfter) throws IOException {
+		search(pool, search, cancelAfter, new CancelMatcher());
+	}
+
+	private void search(ForkJoinPool pool, FileSearch search, int cancelAfter, CancelMatcher cancel)
+			throws IOException {
+		search.cancelAfter = cancelAfter;
+		SearchSettings settings = new SearchSettings((SearchSettings) null).setParallelSearchPool(pool);
+		SearchPhrase phrase = SearchPhrase.emptyPhrase(settings);
+		SearchResultMatcher matcher = new SearchResultMatcher(cancel, phrase, 0, new AtomicInteger(0), -1);
+		new SearchBaseAPI(ObjectType.POI) {
+		}.searchOfflineFiles(phrase, matcher, readers.iterator(), search);
+	}
+
+	private static void sleep(long ms) {
+		try {
+			Thread.sleep(ms);
+		} catch (InterruptedException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static class CancelMatcher implements ResultMatcher<SearchResult> {
+
+		private volatile boolean cancelled;
+
+		@Override
+		public boolean publish(SearchResult object) {
+			return true;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return cancelled;
+		}
+	}
+
+	private class FileSearch implements SearchCoreFactory.OfflineFileSearch<List<String>> {
+
+		private final CancelMatcher cancel;
+		private final long readTime;
+		private final List<String> results = new ArrayList<>();
+		private final AtomicInteger running = new AtomicInteger();
+		private final AtomicInteger read = new AtomicInteger();
+		private final AtomicInteger readAhead = new AtomicInteger();
+		private final AtomicInteger maxReadAhead = new AtomicInteger();
+		private int cancelAfter = -1;
+
+		FileSearch(CancelMatcher cancel, long readTime) {
+			this.cancel = cancel;
+			this.readTime = readTime;
+		}
+
+		@Override
+		public void search(BinaryMapIndexReader file) throws IOException {
+			List<String> data = read(file);
+			readAhead.decrementAndGet();
+			publish(file, data);
+		}
+
+		@Override
+		public List<String> read(BinaryMapIndexReader file) throws IOException {
+			running.incrementAndGet();
+			read.incrementAndGet();
+			int ahead = readAhead.incrementAndGet();
+			synchronized (maxReadAhead) {
+				maxReadAhead.set(Math.max(maxReadAhead.get(), ahead));
+			}
+			try {
+				int index = indexes.get(file);
+				sleep(readTime == 0 ? 0 : readTime + (index * 7) % 5);
+				List<String> data = new ArrayList<>();
+				for (int i = 0; i < 3; i++) {
+					data.add(index + "-" + i);
+				}
+				return data;
+			} finally {
+				running.decrementAndGet();
+			}
+		}
+
+		@Override
+		public void process(BinaryMapIndexReader file, List<String> data) throws IOException {
+			readAhead.decrementAndGet();
+			publish(file, data);
+		}
+
+		private void publish(BinaryMapIndexReader file, List<String> data) {
+			results.addAll(data);
+			if (indexes.get(file) == cancelAfter && cancel != null) {
+				cancel.cancelled = true;
+			}
+		}
+	}
+}
@@ -637,6 +637,28 @@ public class OpeningHoursParserTest {
 		testParsedAndAssembledCorrectly("Mo-Fr ٤:٣٠-١٠:٠٠ ص, ٧:٣٠ ص-١١:٠٠ م; Sa, Su, PH ١:٣٠-١١:٠٠ م", hours);
 	}
 
+	@Test
+	public void testWeeklyMinutes() throws ParseException {
+		String[] weekly = {"Mo-Fr 07:00-19:00", "Sa 22:00-03:00", "24/7", "Mo 14:00-02:00; Tu off",
+				"Mo-Fr 07:00-09:00,16:00-18:30; Sa 08:00-14:00", "22:00-06:00"};
+		SimpleDateFormat format = new SimpleDateFormat("dd.MM.yyyy HH:mm", Locale.US);
+		for (String s : weekly) {
+			OpeningHours hours = parseOpenedHours(s);
+			long[] minutes = hours.getWeeklyMinutes();
+			Assert.assertNotNull(s, minutes);
+			Calendar cal = Calendar.getInstance();
+			// 15.01.2018 is Monday, check every 7th minute of the week
+			cal.setTime(format.parse("15.01.2018 00:00"));
+			for (int m = 0; m < 7 * 24 * 60; m += 7) {
+				boolean bit = (minutes[m >> 6] & (1L << (m & 63))) != 0;
+				Assert.assertEquals(s + " " + format.format(cal.getTime()), hours.isOpenedForTime(cal), bit);
+				cal.add(Calendar.MINUTE, 7);
+			}
+		}
+		Assert.assertNull(parseOpenedHours("Nov-Mar Mo-Fr 08:00-16:00").getWeeklyMinutes());
+		Assert.assertNull(parseOpenedHours("Mo-Fr 08:00-16:00; PH off").getWeeklyMinutes());
+	}
+
 	private static OpeningHours parseOpenedHours(String string) {
 		return OpeningHoursParser.parseOpenedHours(string);
 	}
@@ -147,6 +147,8 @@ public class AppInitializer implements IProgress {
 	static {
 		//Set old time format of GPX for Android 6.0 and lower
 		GPXUtilities.GPX_TIME_OLD_FORMAT = Build.VERSION.SDK_INT <= Build.VERSION_CODES.M;
+		//Open large tracks from binary cache instead of parsing xml
+		GPXUtilities.GPX_BINARY_CACHE = true;
 	}
 
 	public interface AppInitializeListener {
@@ -14,7 +14,7 @@ import androidx.annotation.Nullable;
 
 import net.osmand.plus.utils.AndroidUtils;
 import net.osmand.Location;
-import net.osmand.TspAnt;
+import net.osmand.TspLocalSearch;
 import net.osmand.data.FavouritePoint;
 import net.osmand.data.LatLon;
 import net.osmand.data.LocationPoint;
@@ -396,7 +396,7 @@ public class WaypointDialogHelper {
 					al.add(p.point);
 				}
 				try {
-					return new TspAnt().readGraph(al, start.point, end.point).solve();
+					return new TspLocalSearch().readGraph(al, start.point, end.point).solve();
 				} catch (Exception e) {
 					return null;
 				}
@@ -20,7 +20,7 @@ import com.google.android.material.snackbar.Snackbar;
 import net.osmand.gpx.GPXUtilities.TrkSegment;
 import net.osmand.gpx.GPXUtilities.WptPt;
 import net.osmand.Location;
-import net.osmand.TspAnt;
+import net.osmand.TspLocalSearch;
 import net.osmand.data.LatLon;
 import net.osmand.data.PointDescription;
 import net.osmand.data.RotatedTileBox;
@@ -863,7 +863,7 @@ public class PlanRouteFragment extends BaseOsmAndFragment
 
 				LatLon start = startFromLoc ? new LatLon(myLoc.getLatitude(), myLoc.getLongitude()) : selectedLatLon.remove(0);
 
-				int[] sequence = new TspAnt().readGraph(selectedLatLon, start, null).solve();
+				int[] sequence = new TspLocalSearch().readGraph(selectedLatLon, start, null).solve();
 
 				List<MapMarker> res = new ArrayList<>();
 				for (int i = 0; i < sequence.length; i++) {
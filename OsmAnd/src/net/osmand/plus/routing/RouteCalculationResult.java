@@ -61,6 +61,8 @@ public class RouteCalculationResult {
 	protected List<LocationPoint> locationPoints = new ArrayList<>();
 
 	protected List<WorldRegion> missingMaps;
+	// context with reverse search tree to the target, reused by recalculation after deviation
+	protected RoutingContext recalculationContext;
 
 	// params
 	protected final ApplicationMode appMode;
@@ -205,6 +207,15 @@ public class RouteCalculationResult {
 		return missingMaps;
 	}
 
+	@Nullable
+	public RoutingContext getRecalculationContext() {
+		return recalculationContext;
+	}
+
+	public void setRecalculationContext(@Nullable RoutingContext recalculationContext) {
+		this.recalculationContext = recalculationContext;
+	}
+
 	public boolean hasMissingMaps() {
 		return !Algorithms.isEmpty(missingMaps);
 	}
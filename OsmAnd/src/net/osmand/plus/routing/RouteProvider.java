@@ -724,11 +724,23 @@ public class RouteProvider {
 
 		params.ctx.getResourceManager().getRenderer().checkInitialized(15, lib, leftX, rightX, bottomY, topY);
 
-		RoutingContext ctx = router.buildRoutingContext(cf, lib, files, RouteCalculationMode.NORMAL);
+		// java routing keeps reverse search to the target in context, so recalculation after deviation continues it
+		boolean incremental = settings.USE_FAST_RECALCULATION.get() && lib == null && !settings.USE_HH_ROUTING.get()
+				&& precalculated == null && Algorithms.isEmpty(params.intermediates);
+		router.setUseIncrementalRecalculation(incremental);
+		RoutingContext ctx = null;
+		if (incremental && params.previousToRecalculate != null && params.onlyStartPointChanged
+				&& params.previousToRecalculate.getAppMode() == params.mode) {
+			ctx = params.previousToRecalculate.getRecalculationContext();
+		}
+		boolean recalculation = ctx != null;
+		if (ctx == null) {
+			ctx = router.buildRoutingContext(cf, lib, files, RouteCalculationMode.NORMAL);
+		}
 
 		RoutingContext complexCtx = null;
 		boolean complex = !skipComplex && params.mode.isDerivedRoutingFrom(ApplicationMode.CAR) && !settings.DISABLE_COMPLEX_ROUTING.get()
-				&& precalculated == null;
+				&& precalculated == null && !recalculation;
 		ctx.leftSideNavigation = params.leftSide;
 		ctx.calculationProgress = params.calculationProgress;
 		ctx.publicTransport = params.inPublicTransportMode;
@@ -866,6 +878,9 @@ public class RouteProvider {
 				RouteCalculationResult res = new RouteCalculationResult(result.getList(), params.start, params.end,
 						params.intermediates, params.ctx, params.leftSide, ctx, params.gpxRoute  == null? null: params.gpxRoute.wpt,
 								params.mode, true, params.initialCalculation);
+				if (router.isUseIncrementalRecalculation() && ctx != complexCtx) {
+					res.setRecalculationContext(ctx);
+				}
 				return res;
 			}
 		} catch (RuntimeException e) {
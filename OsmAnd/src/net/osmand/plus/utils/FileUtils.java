@@ -22,6 +22,7 @@ import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentActivity;
 import androidx.fragment.app.FragmentManager;
 
+import net.osmand.gpx.GPXBinaryCache;
 import net.osmand.plus.OsmandApplication;
 import net.osmand.plus.R;
 import net.osmand.plus.dialogs.RenameFileBottomSheet;
@@ -131,6 +132,7 @@ public class FileUtils {
 			destDir.mkdirs();
 		}
 		if (src.renameTo(dest)) {
+			GPXBinaryCache.delete(src);
 			updateRenamedGpx(app, src, dest);
 			return dest;
 		}
@@ -168,6 +170,7 @@ public class FileUtils {
 			GpxSelectionHelper helper = app.getSelectedGpxHelper();
 			SelectedGpxFile selected = helper.getSelectedFileByPath(file.getAbsolutePath());
 			file.delete();
+			GPXBinaryCache.delete(file);
 			if (selected != null) {
 				GpxSelectionParams params = GpxSelectionParams.newInstance()
 						.hideFromMap().syncGroup().saveSelection();